@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.util.*;
+
+/**
+ * Exercises {@link GpuResourceDeletionQueue} on the JVM with a fake deleter that records deletions instead of calling
+ * OpenGL. Checks deletion order, the count and time budgets, progress under a zero budget, isolation of a failing
+ * deletion, discarding, and the queue depth metrics. Prints each check that passes, and exits with status 1 at the
+ * first check that fails.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class GpuResourceDeletionQueueCheck
+{
+    /** A deleter that records each deletion, optionally takes time, and fails for one chosen resource. */
+    protected static class FakeDeleter implements GpuResourceDeletionQueue.Deleter
+    {
+        protected final List<Object> deleted = new ArrayList<Object>();
+        protected final List<String> types = new ArrayList<String>();
+        protected long delayNanos;
+        protected Object failingResource;
+
+        public void delete(Object resource, String resourceType)
+        {
+            if (this.delayNanos > 0)
+            {
+                long start = System.nanoTime();
+                while (System.nanoTime() - start < this.delayNanos)
+                {
+                    Thread.yield();
+                }
+            }
+
+            if (resource.equals(this.failingResource))
+                throw new IllegalStateException("Fake deletion failure");
+
+            this.deleted.add(resource);
+            this.types.add(resourceType);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        try
+        {
+            checkDeletesInOrder();
+            checkCountBudget();
+            checkTimeBudget();
+            checkFailureDoesNotStopDrain();
+            checkDiscard();
+            checkMetrics();
+        }
+        catch (IllegalStateException e)
+        {
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    protected static void checkDeletesInOrder()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        queue.add(1, GpuResourceCache.TEXTURE);
+        queue.add(2, GpuResourceCache.VBO_BUFFERS);
+        queue.add(3, GpuResourceCache.PROGRAM);
+
+        int count = queue.drain(0, 0);
+
+        check(count == 3, "an unlimited drain deletes every resource");
+        check(deleter.deleted.equals(Arrays.<Object>asList(1, 2, 3)), "resources are deleted in the order added");
+        check(deleter.types.equals(Arrays.asList(GpuResourceCache.TEXTURE, GpuResourceCache.VBO_BUFFERS,
+            GpuResourceCache.PROGRAM)), "each resource is deleted with its type");
+        check(queue.getSize() == 0, "a drained queue is empty");
+        pass("deletion order");
+    }
+
+    protected static void checkCountBudget()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        for (int i = 0; i < 10; i++)
+        {
+            queue.add(i, GpuResourceCache.TEXTURE);
+        }
+
+        check(queue.drain(0, 4) == 4, "a drain stops at the count budget");
+        check(queue.getSize() == 6, "resources beyond the count budget stay queued");
+        check(queue.drain(0, 4) == 4 && queue.drain(0, 4) == 2, "later drains delete the remaining resources");
+        check(queue.drain(0, 4) == 0, "draining an empty queue deletes nothing");
+        pass("count budget");
+    }
+
+    protected static void checkTimeBudget()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        deleter.delayNanos = 2000000; // 2 ms per deletion
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        for (int i = 0; i < 10; i++)
+        {
+            queue.add(i, GpuResourceCache.TEXTURE);
+        }
+
+        int count = queue.drain(5000000, 0); // 5 ms
+        check(count >= 1 && count < 10, "a drain stops once the time budget is used up");
+
+        count = queue.drain(1, 0);
+        check(count == 1, "a drain whose budget is smaller than one deletion still deletes one resource");
+        pass("time budget");
+    }
+
+    protected static void checkFailureDoesNotStopDrain()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        deleter.failingResource = 2;
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        queue.add(1, GpuResourceCache.TEXTURE);
+        queue.add(2, GpuResourceCache.TEXTURE);
+        queue.add(3, GpuResourceCache.TEXTURE);
+
+        check(queue.drain(0, 0) == 3, "a failed deletion is counted and the drain continues");
+        check(deleter.deleted.equals(Arrays.<Object>asList(1, 3)), "resources after a failed deletion are deleted");
+        pass("failure isolation");
+    }
+
+    protected static void checkDiscard()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        queue.add(1, GpuResourceCache.TEXTURE);
+        queue.add(2, GpuResourceCache.TEXTURE);
+
+        queue.discard();
+
+        check(queue.getSize() == 0, "discard empties the queue");
+        check(queue.drain(0, 0) == 0 && deleter.deleted.isEmpty(), "discarded resources are never deleted");
+        pass("discard");
+    }
+
+    protected static void checkMetrics()
+    {
+        FakeDeleter deleter = new FakeDeleter();
+        GpuResourceDeletionQueue queue = new GpuResourceDeletionQueue(deleter);
+        for (int i = 0; i < 5; i++)
+        {
+            queue.add(i, GpuResourceCache.TEXTURE);
+        }
+        queue.drain(0, 3);
+        queue.add(5, GpuResourceCache.TEXTURE);
+
+        check(queue.getMaxSize() == 5, "the maximum depth is the largest size reached");
+        check(queue.getAddedCount() == 6, "every added resource is counted");
+        check(queue.getDeletedCount() == 3, "every deleted resource is counted");
+        check(queue.getLastDrainCount() == 3, "the last drain's count is recorded");
+        check(queue.getLastDrainTime() >= 0, "the last drain's time is recorded");
+        pass("metrics");
+    }
+
+    protected static void check(boolean condition, String description)
+    {
+        if (!condition)
+            throw new IllegalStateException(description);
+    }
+
+    protected static void pass(String name)
+    {
+        System.out.println("passed: " + name);
+    }
+}
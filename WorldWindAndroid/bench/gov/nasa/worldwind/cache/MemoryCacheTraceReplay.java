@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Replays a tile-key trace through the memory caches with and without a {@link TinyLfuAdmissionFilter}, and prints
+ * each cache's hit rate. Every key in the trace is looked up, and a miss is followed by a put, as the tile layers do.
+ * <p/>
+ * A trace is a text file with one request per line: the tile's cache key, optionally followed by whitespace and the
+ * entry's size in bytes. Blank lines and lines starting with <code>#</code> are ignored. Without a trace file a
+ * synthetic trace is replayed, in which a small set of low resolution tiles is revisited between long flights over
+ * high resolution tiles that are each seen only once.
+ * <p/>
+ * Usage: <code>MemoryCacheTraceReplay [-capacity bytes] [-size bytes] [traceFile]</code>
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class MemoryCacheTraceReplay
+{
+    protected static class Request
+    {
+        protected final String key;
+        protected final long size;
+
+        public Request(String key, long size)
+        {
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    protected static final long DEFAULT_CAPACITY = 16L * 1024 * 1024;
+    protected static final long DEFAULT_ENTRY_SIZE = 64L * 1024;
+
+    public static void main(String[] args) throws IOException
+    {
+        long capacity = DEFAULT_CAPACITY;
+        long entrySize = DEFAULT_ENTRY_SIZE;
+        String traceFile = null;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if ("-capacity".equals(args[i]) && i + 1 < args.length)
+                capacity = Long.parseLong(args[++i]);
+            else if ("-size".equals(args[i]) && i + 1 < args.length)
+                entrySize = Long.parseLong(args[++i]);
+            else
+                traceFile = args[i];
+        }
+
+        List<Request> trace = traceFile != null ? readTrace(new File(traceFile), entrySize)
+            : createSyntheticTrace(entrySize);
+        int maximumEntries = (int) Math.max(1, capacity / entrySize);
+
+        System.out.println(String.format("Trace: %s, %d requests, capacity %d bytes",
+            traceFile != null ? traceFile : "synthetic", trace.size(), capacity));
+
+        replay("BasicMemoryCache", new BasicMemoryCache((long) (0.8 * capacity), capacity), null, trace);
+        replay("BasicMemoryCache + TinyLFU", new BasicMemoryCache((long) (0.8 * capacity), capacity),
+            new TinyLfuAdmissionFilter(maximumEntries), trace);
+        replay("SegmentedLruMemoryCache", new SegmentedLruMemoryCache((long) (0.8 * capacity), capacity), null, trace);
+        replay("SegmentedLruMemoryCache + TinyLFU", new SegmentedLruMemoryCache((long) (0.8 * capacity), capacity),
+            new TinyLfuAdmissionFilter(maximumEntries), trace);
+    }
+
+    protected static void replay(String name, MemoryCache cache, MemoryCache.AdmissionFilter filter,
+        List<Request> trace)
+    {
+        cache.setAdmissionFilter(filter);
+
+        long start = System.nanoTime();
+        for (Request request : trace)
+        {
+            if (cache.get(request.key) == null)
+                cache.put(request.key, request.key, Math.min(request.size, cache.getCapacity()));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        CacheStatistics.Snapshot stats = cache.getStatistics().getSnapshot();
+        System.out.println(String.format("%-36s hit rate %6.2f%%  evictions %8d  %8.1f ms", name,
+            100 * stats.getHitRate(), stats.getEvictions(), elapsed / 1.0e6));
+    }
+
+    protected static List<Request> readTrace(File file, long defaultSize) throws IOException
+    {
+        List<Request> trace = new ArrayList<Request>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split("\\s+");
+                long size = fields.length > 1 ? Long.parseLong(fields[1]) : defaultSize;
+                trace.add(new Request(fields[0], Math.max(1, size)));
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return trace;
+    }
+
+    protected static List<Request> createSyntheticTrace(long entrySize)
+    {
+        List<Request> trace = new ArrayList<Request>();
+        Random random = new Random(42);
+        int flightTile = 0;
+
+        for (int frame = 0; frame < 2000; frame++)
+        {
+            // The view returns to the whole globe: levels 0 to 3 of a 1 by 2 top level tile grid.
+            if (frame % 10 == 0)
+            {
+                for (int level = 0; level < 4; level++)
+                {
+                    int rows = 1 << level;
+                    for (int row = 0; row < rows; row++)
+                    {
+                        for (int col = 0; col < 2 * rows; col++)
+                        {
+                            trace.add(new Request(level + "/" + row + "/" + col, entrySize));
+                        }
+                    }
+                }
+            }
+
+            // A fast flight passes over high resolution tiles that are never seen again, and revisits a few tiles.
+            for (int i = 0; i < 40; i++)
+            {
+                if (random.nextInt(10) == 0 && flightTile > 0)
+                    trace.add(new Request("12/" + random.nextInt(Math.min(flightTile, 200)), entrySize));
+                else
+                    trace.add(new Request("12/" + flightTile++, entrySize));
+            }
+        }
+
+        return trace;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Measures the tiles per second retrieved through {@link BasicHTTPTransport} from a {@link LocalTileServer} by thread
+ * pools of different sizes. Retrievals reserve a connection to the host before they connect, and a retrieval that
+ * cannot reserve one is put aside and returned to the pool when another retrieval releases its reservation, as {@link
+ * BasicRetrievalService} does. The host's connection limit is the pool size unless one is given.
+ * <p/>
+ * Usage: <code>HTTPTransportThroughputBench [-tiles n] [-latency ms] [-size bytes] [-limit n] [-pools n,n,...]</code>
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class HTTPTransportThroughputBench
+{
+    protected static final int DEFAULT_NUM_TILES = 500;
+    protected static final long DEFAULT_LATENCY = 50; // milliseconds
+    protected static final int DEFAULT_TILE_SIZE = 16384;
+    protected static final int[] DEFAULT_POOL_SIZES = {1, 2, 4, 8, 16};
+
+    /** Retrieves one tile, or puts itself aside if the host has no free connection. */
+    protected static class Fetch implements Runnable
+    {
+        protected final Run run;
+        protected final URL url;
+        protected boolean reserved;
+
+        public Fetch(Run run, URL url)
+        {
+            this.run = run;
+            this.url = url;
+        }
+
+        public void run()
+        {
+            if (!this.reserved && !this.run.transport.reserveConnection(this.url))
+            {
+                this.run.waitForHost(this);
+                return;
+            }
+
+            try
+            {
+                this.run.bytesRead.addAndGet(this.read());
+            }
+            catch (IOException e)
+            {
+                this.run.numFailed.incrementAndGet();
+            }
+            finally
+            {
+                this.reserved = false;
+                this.run.releaseReservation(this.url);
+                this.run.done.countDown();
+            }
+        }
+
+        protected long read() throws IOException
+        {
+            HttpURLConnection connection = this.run.transport.openConnection(this.url, null);
+            try
+            {
+                InputStream stream = connection.getInputStream();
+                byte[] buffer = new byte[8192];
+                long total = 0;
+                int count;
+                while ((count = stream.read(buffer)) >= 0)
+                {
+                    total += count;
+                }
+                stream.close();
+                return total;
+            }
+            finally
+            {
+                this.run.transport.releaseConnection(connection);
+            }
+        }
+    }
+
+    /** The state of one measurement: a pool, a transport, and the retrievals waiting for a connection. */
+    protected static class Run
+    {
+        protected final BasicHTTPTransport transport;
+        protected final ExecutorService pool;
+        protected final LinkedList<Fetch> waiting = new LinkedList<Fetch>(); // guarded by this
+        protected final CountDownLatch done;
+        protected final AtomicLong bytesRead = new AtomicLong();
+        protected final AtomicInteger numFailed = new AtomicInteger();
+        protected final AtomicInteger numPutAside = new AtomicInteger();
+
+        public Run(int poolSize, int limit, int numTiles)
+        {
+            this.transport = new BasicHTTPTransport(limit, Math.max(limit, 8));
+            this.pool = Executors.newFixedThreadPool(poolSize);
+            this.done = new CountDownLatch(numTiles);
+        }
+
+        protected synchronized void waitForHost(Fetch fetch)
+        {
+            this.numPutAside.incrementAndGet();
+            this.waiting.addLast(fetch);
+            this.wake(fetch.url); // A reservation released since this one failed found nothing waiting.
+        }
+
+        protected synchronized void releaseReservation(URL url)
+        {
+            this.transport.releaseReservation(url);
+            this.wake(url);
+        }
+
+        protected void wake(URL url) // MUST BE CALLED WITHIN SYNCHRONIZED
+        {
+            while (!this.waiting.isEmpty() && this.transport.reserveConnection(url))
+            {
+                Fetch fetch = this.waiting.removeFirst();
+                fetch.reserved = true;
+                this.pool.execute(fetch);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int numTiles = DEFAULT_NUM_TILES;
+        long latency = DEFAULT_LATENCY;
+        int tileSize = DEFAULT_TILE_SIZE;
+        int limit = 0;
+        int[] poolSizes = DEFAULT_POOL_SIZES;
+
+        for (int i = 0; i + 1 < args.length; i += 2)
+        {
+            if ("-tiles".equals(args[i]))
+                numTiles = Integer.parseInt(args[i + 1]);
+            else if ("-latency".equals(args[i]))
+                latency = Long.parseLong(args[i + 1]);
+            else if ("-size".equals(args[i]))
+                tileSize = Integer.parseInt(args[i + 1]);
+            else if ("-limit".equals(args[i]))
+                limit = Integer.parseInt(args[i + 1]);
+            else if ("-pools".equals(args[i]))
+                poolSizes = parseSizes(args[i + 1]);
+        }
+
+        LocalTileServer server = new LocalTileServer(latency, tileSize);
+        try
+        {
+            System.out.println(String.format("%d tiles of %d bytes, %d ms latency", numTiles, tileSize, latency));
+
+            for (int poolSize : poolSizes)
+            {
+                measure(server, poolSize, limit > 0 ? limit : poolSize, numTiles);
+            }
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    protected static void measure(LocalTileServer server, int poolSize, int limit, int numTiles) throws Exception
+    {
+        Run run = new Run(poolSize, limit, numTiles);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numTiles; i++)
+        {
+            run.pool.execute(new Fetch(run, server.getURL("tiles/" + poolSize + "/" + i + ".png")));
+        }
+        run.done.await();
+        long elapsed = System.nanoTime() - start;
+        run.pool.shutdown();
+
+        System.out.println(String.format("pool %2d  limit %2d  %8.1f tiles/s  %8.1f KB/s  failed %d  put aside %d",
+            poolSize, limit, numTiles / (elapsed / 1.0e9), run.bytesRead.get() / 1024.0 / (elapsed / 1.0e9),
+            run.numFailed.get(), run.numPutAside.get()));
+    }
+
+    protected static int[] parseSizes(String value)
+    {
+        String[] fields = value.split(",");
+        int[] sizes = new int[fields.length];
+        for (int i = 0; i < fields.length; i++)
+        {
+            sizes[i] = Integer.parseInt(fields[i].trim());
+        }
+
+        return sizes;
+    }
+}
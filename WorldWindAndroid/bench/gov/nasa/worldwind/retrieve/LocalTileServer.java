@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import com.sun.net.httpserver.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+
+/**
+ * A local HTTP server that stands in for a tile server in benchmarks. Every request is answered, after a fixed
+ * latency, with a tile of a fixed size. The server handles requests concurrently, so that the latency of one request
+ * does not delay another.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class LocalTileServer
+{
+    protected final HttpServer server;
+    protected final ExecutorService executor;
+    protected final long latency;
+    protected final byte[] tile;
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     *
+     * @param latency  the time to wait before answering each request, in milliseconds.
+     * @param tileSize the size of each tile, in bytes.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    public LocalTileServer(long latency, int tileSize) throws IOException
+    {
+        this.latency = latency;
+        this.tile = new byte[tileSize];
+
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", new HttpHandler()
+        {
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                handleRequest(exchange);
+            }
+        });
+        this.server.start();
+    }
+
+    /**
+     * Returns the URL of a tile on this server.
+     *
+     * @param path the tile's path, relative to the server's root.
+     *
+     * @return the tile's URL.
+     *
+     * @throws MalformedURLException if the path does not form a valid URL.
+     */
+    public URL getURL(String path) throws MalformedURLException
+    {
+        return new URL("http", "127.0.0.1", this.server.getAddress().getPort(), "/" + path);
+    }
+
+    public void stop()
+    {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    protected void handleRequest(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (this.latency > 0)
+                Thread.sleep(this.latency);
+
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, this.tile.length);
+            OutputStream body = exchange.getResponseBody();
+            body.write(this.tile);
+            body.close();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.layers.*;
+import gov.nasa.worldwind.terrain.BasicElevationModel;
+
+import java.io.IOException;
+
+/**
+ * Loads the tiles of a sector through a {@link TiledImageLayer} and a {@link BasicElevationModel} served by a {@link
+ * WMSTestServer}, and reports the tiles per second, the median and 99th percentile retrieval latency, and the bytes
+ * copied by the retrieval service and sent by the server. Tiles are loaded by the layer's and the model's bulk
+ * downloaders, so each tile goes through the same retrieval service, post-processors and file store as tiles loaded
+ * for display. Each run uses new cache folders, so every tile is retrieved.
+ * <p/>
+ * The harness needs the World Wind runtime, and so runs on a device or emulator, for example by calling
+ * <code>main</code> from a test activity. Without a <code>-service</code> URL it starts a {@link WMSTestServer} in
+ * the same process, configured by the remaining options. To load tiles from a server running on a development host,
+ * start <code>WMSTestServer</code> there and pass its URL, such as <code>http://10.0.2.2:8080/wms?</code> from the
+ * Android emulator.
+ * <p/>
+ * Usage: <code>TileLoadHarness [-service url] [-sector minLat,maxLat,minLon,maxLon] [-imageLevel n]
+ * [-elevationLevel n] [-format image/png|image/jpeg] [-latency ms] [-bandwidth bytesPerSec] [-errorRate fraction]
+ * [-contentType type] [-imageSize bytes]</code>
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class TileLoadHarness
+{
+    protected static final double IMAGE_TILE_DELTA = 36; // degrees
+    protected static final int IMAGE_TILE_SIZE = 512;
+    protected static final double ELEVATION_TILE_DELTA = 20; // degrees
+    protected static final int ELEVATION_TILE_SIZE = 150;
+    protected static final long POLL_INTERVAL = 10; // milliseconds
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        String service = null;
+        Sector sector = Sector.fromDegrees(0, 5, 0, 5);
+        int imageLevel = 6;
+        int elevationLevel = 4;
+        String format = "image/png";
+        WMSTestServer server = null;
+
+        long latency = 50;
+        long bandwidth = 0;
+        double errorRate = 0;
+        String contentType = null;
+        int imageSize = 0;
+
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            if ("-service".equals(args[i]))
+                service = args[++i];
+            else if ("-sector".equals(args[i]))
+                sector = parseSector(args[++i]);
+            else if ("-imageLevel".equals(args[i]))
+                imageLevel = Integer.parseInt(args[++i]);
+            else if ("-elevationLevel".equals(args[i]))
+                elevationLevel = Integer.parseInt(args[++i]);
+            else if ("-format".equals(args[i]))
+                format = args[++i];
+            else if ("-latency".equals(args[i]))
+                latency = Long.parseLong(args[++i]);
+            else if ("-bandwidth".equals(args[i]))
+                bandwidth = Long.parseLong(args[++i]);
+            else if ("-errorRate".equals(args[i]))
+                errorRate = Double.parseDouble(args[++i]);
+            else if ("-contentType".equals(args[i]))
+                contentType = args[++i];
+            else if ("-imageSize".equals(args[i]))
+                imageSize = Integer.parseInt(args[++i]);
+        }
+
+        if (service == null)
+        {
+            server = new WMSTestServer();
+            server.setLatency(latency);
+            server.setBandwidth(bandwidth);
+            server.setErrorRate(errorRate);
+            server.setContentType(contentType);
+            server.setImageSize(imageSize);
+            service = server.getServiceURL();
+        }
+
+        String cacheName = "Bench/TileLoadHarness/" + System.currentTimeMillis();
+        System.out.println(String.format("Service: %s, sector %s, %d retrievers", service, sector,
+            WorldWind.getRetrievalService().getRetrieverPoolSize()));
+
+        try
+        {
+            TiledImageLayer layer = createLayer(service, format, cacheName + "/Imagery");
+            double imageResolution = Angle.fromDegrees(IMAGE_TILE_DELTA / (1 << imageLevel)).radians
+                / IMAGE_TILE_SIZE;
+            run("TiledImageLayer", layer, sector, imageResolution, server);
+
+            BasicElevationModel model = createElevationModel(service, cacheName + "/Elevations");
+            double elevationResolution = Angle.fromDegrees(ELEVATION_TILE_DELTA / (1 << elevationLevel)).radians
+                / ELEVATION_TILE_SIZE;
+            run("BasicElevationModel", model, sector, elevationResolution, server);
+        }
+        finally
+        {
+            if (server != null)
+                server.stop();
+        }
+    }
+
+    protected static void run(String name, BulkRetrievable retrievable, Sector sector, double resolution,
+        WMSTestServer server) throws InterruptedException
+    {
+        RetrievalService service = WorldWind.getRetrievalService();
+        service.getStatistics().reset();
+        if (server != null)
+            server.resetCounts();
+
+        // The bulk downloader starts on its own thread and returns once every missing tile has been requested. The
+        // run ends when the retrievals it requested have finished.
+        BulkRetrievalThread thread = retrievable.makeLocal(sector, resolution, null);
+        if (thread != null)
+            thread.join();
+        while (service.hasActiveTasks())
+        {
+            Thread.sleep(POLL_INTERVAL);
+        }
+
+        RetrievalStatistics.Snapshot stats = service.getStatistics().getSnapshot();
+        System.out.println(String.format(
+            "%-20s %6d tiles %5d failed %8.1f tiles/s  p50 %5d ms  p99 %5d ms  %10d bytes copied  %10s bytes sent",
+            name, stats.getNumSuccessful(), stats.getNumFailed(), stats.getRetrievalRate(),
+            stats.getLatencyPercentile(50), stats.getLatencyPercentile(99), stats.getBytesRead(),
+            server != null ? Long.toString(server.getBytesSent()) : "-"));
+    }
+
+    protected static TiledImageLayer createLayer(String service, String format, String cacheName)
+    {
+        AVList params = createParams(service, cacheName, IMAGE_TILE_DELTA, IMAGE_TILE_SIZE);
+        params.setValue(AVKey.DISPLAY_NAME, "Synthetic imagery");
+        params.setValue(AVKey.IMAGE_FORMAT, format);
+        params.setValue(AVKey.FORMAT_SUFFIX, "image/jpeg".equals(format) ? ".jpg" : ".png");
+        params.setValue(AVKey.TILE_URL_BUILDER, new WMSTiledImageLayer.URLBuilder(params));
+
+        return new WMSTiledImageLayer(params);
+    }
+
+    protected static BasicElevationModel createElevationModel(String service, String cacheName)
+    {
+        AVList params = createParams(service, cacheName, ELEVATION_TILE_DELTA, ELEVATION_TILE_SIZE);
+        params.setValue(AVKey.DISPLAY_NAME, "Synthetic elevations");
+        params.setValue(AVKey.IMAGE_FORMAT, "application/bil16");
+        params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+        params.setValue(AVKey.DATA_TYPE, AVKey.INT16);
+        params.setValue(AVKey.BYTE_ORDER, AVKey.LITTLE_ENDIAN);
+        params.setValue(AVKey.MISSING_DATA_SIGNAL, -9999d);
+        params.setValue(AVKey.ELEVATION_MIN, -2000d);
+        params.setValue(AVKey.ELEVATION_MAX, 2000d);
+        params.setValue(AVKey.TILE_URL_BUILDER, new WMSTiledImageLayer.URLBuilder(params));
+
+        return new BasicElevationModel(params);
+    }
+
+    protected static AVList createParams(String service, String cacheName, double tileDelta, int tileSize)
+    {
+        AVList params = new AVListImpl();
+        params.setValue(AVKey.SERVICE, service);
+        params.setValue(AVKey.LAYER_NAMES, "synthetic");
+        params.setValue(AVKey.WMS_VERSION, "1.3.0");
+        params.setValue(AVKey.DATA_CACHE_NAME, cacheName);
+        params.setValue(AVKey.DATASET_NAME, "synthetic");
+        params.setValue(AVKey.SECTOR, Sector.fromDegrees(-90, 90, -180, 180));
+        params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA,
+            new LatLon(Angle.fromDegrees(tileDelta), Angle.fromDegrees(tileDelta)));
+        params.setValue(AVKey.TILE_WIDTH, tileSize);
+        params.setValue(AVKey.TILE_HEIGHT, tileSize);
+        params.setValue(AVKey.NUM_LEVELS, 19);
+        params.setValue(AVKey.NUM_EMPTY_LEVELS, 0);
+
+        return params;
+    }
+
+    protected static Sector parseSector(String value)
+    {
+        String[] parts = value.split(",");
+        if (parts.length != 4)
+            throw new IllegalArgumentException("Expected minLat,maxLat,minLon,maxLon: " + value);
+
+        return Sector.fromDegrees(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+            Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+    }
+}
@@ -0,0 +1,669 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+/**
+ * An embedded HTTP server that answers WMS GetMap requests with synthetic imagery and elevations, for benchmarks and
+ * load tests of the retrieval path. A request whose <code>format</code> is <code>image/png</code> or
+ * <code>image/jpeg</code> is answered with an image of the requested width and height, and a request whose format is
+ * <code>application/bil16</code> or <code>application/bil32</code> is answered with little endian 16-bit elevations
+ * computed from the request's bounding box. Any other format is answered with a PNG.
+ * <p/>
+ * The latency before each response, the bandwidth of each response, the fraction of requests answered with an error,
+ * the content type reported for GetMap responses and the least size of each image may be changed at any time. A
+ * larger image size pads PNGs with a text chunk and JPEGs with comment segments, so that the transfer cost of real
+ * tiles can be mimicked without the cost of encoding real images.
+ * <p/>
+ * The server uses only <code>java.net</code>, so it runs on the JVM and on Android alike. Each connection is served
+ * by its own thread, and connections are kept alive between requests as HTTP/1.1 clients expect.
+ * <p/>
+ * Usage: <code>WMSTestServer [-port n] [-latency ms] [-bandwidth bytesPerSec] [-errorRate fraction]
+ * [-contentType type] [-imageSize bytes]</code>
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class WMSTestServer
+{
+    protected static final int BUFFER_SIZE = 8192;
+    protected static final int IDLE_TIMEOUT = 30000; // milliseconds
+    protected static final int MAX_IMAGE_DIMENSION = 4096;
+
+    protected final ServerSocket serverSocket;
+    protected final ExecutorService executor;
+    protected final Random random = new Random();
+    protected volatile long latency;
+    protected volatile long bandwidth;
+    protected volatile double errorRate;
+    protected volatile String contentType;
+    protected volatile int imageSize;
+    protected final AtomicLong numRequests = new AtomicLong();
+    protected final AtomicLong numErrors = new AtomicLong();
+    protected final AtomicLong bytesSent = new AtomicLong();
+
+    public static void main(String[] args) throws IOException
+    {
+        int port = 0;
+        long latency = 0;
+        long bandwidth = 0;
+        double errorRate = 0;
+        String contentType = null;
+        int imageSize = 0;
+
+        for (int i = 0; i < args.length - 1; i++)
+        {
+            if ("-port".equals(args[i]))
+                port = Integer.parseInt(args[++i]);
+            else if ("-latency".equals(args[i]))
+                latency = Long.parseLong(args[++i]);
+            else if ("-bandwidth".equals(args[i]))
+                bandwidth = Long.parseLong(args[++i]);
+            else if ("-errorRate".equals(args[i]))
+                errorRate = Double.parseDouble(args[++i]);
+            else if ("-contentType".equals(args[i]))
+                contentType = args[++i];
+            else if ("-imageSize".equals(args[i]))
+                imageSize = Integer.parseInt(args[++i]);
+        }
+
+        WMSTestServer server = new WMSTestServer(InetAddress.getByName("0.0.0.0"), port);
+        server.setLatency(latency);
+        server.setBandwidth(bandwidth);
+        server.setErrorRate(errorRate);
+        server.setContentType(contentType);
+        server.setImageSize(imageSize);
+
+        System.out.println("Serving WMS GetMap requests at " + server.getServiceURL());
+    }
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    public WMSTestServer() throws IOException
+    {
+        this(InetAddress.getByName("127.0.0.1"), 0);
+    }
+
+    /**
+     * Starts a server on a specified address and port.
+     *
+     * @param address the address to listen on.
+     * @param port    the port to listen on, or 0 to listen on a free port.
+     *
+     * @throws IOException if the server cannot be started.
+     */
+    public WMSTestServer(InetAddress address, int port) throws IOException
+    {
+        this.serverSocket = new ServerSocket(port, 50, address);
+        this.executor = Executors.newCachedThreadPool();
+        this.executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                acceptConnections();
+            }
+        });
+    }
+
+    /**
+     * Returns the WMS service URL of this server, ending with the <code>?</code> that starts a query, as layer and
+     * elevation model configurations expect.
+     *
+     * @return the service URL.
+     */
+    public String getServiceURL()
+    {
+        InetAddress address = this.serverSocket.getInetAddress();
+        String host = address.isAnyLocalAddress() ? "127.0.0.1" : address.getHostAddress();
+
+        return "http://" + host + ":" + this.serverSocket.getLocalPort() + "/wms?";
+    }
+
+    public long getLatency()
+    {
+        return this.latency;
+    }
+
+    /**
+     * Specifies the time to wait before answering each request.
+     *
+     * @param latency the latency in milliseconds. Zero or less means no latency.
+     */
+    public void setLatency(long latency)
+    {
+        this.latency = latency;
+    }
+
+    public long getBandwidth()
+    {
+        return this.bandwidth;
+    }
+
+    /**
+     * Specifies the rate at which each response's body is sent. The rate applies to each connection separately.
+     *
+     * @param bandwidth the rate in bytes per second. Zero or less means no limit.
+     */
+    public void setBandwidth(long bandwidth)
+    {
+        this.bandwidth = bandwidth;
+    }
+
+    public double getErrorRate()
+    {
+        return this.errorRate;
+    }
+
+    /**
+     * Specifies the fraction of requests answered with an HTTP 500 error instead of data.
+     *
+     * @param errorRate the fraction of requests that fail, in the range [0, 1].
+     */
+    public void setErrorRate(double errorRate)
+    {
+        this.errorRate = errorRate;
+    }
+
+    public String getContentType()
+    {
+        return this.contentType;
+    }
+
+    /**
+     * Specifies the content type reported for GetMap responses, in place of the type of the data sent. This mimics
+     * servers that report the wrong type, such as <code>text/html</code> from a captive portal.
+     *
+     * @param contentType the content type to report, or null to report the type of the data sent.
+     */
+    public void setContentType(String contentType)
+    {
+        this.contentType = contentType;
+    }
+
+    public int getImageSize()
+    {
+        return this.imageSize;
+    }
+
+    /**
+     * Specifies the least size of each image. Smaller images are padded to this size. Elevations are not padded.
+     *
+     * @param imageSize the least image size in bytes. Zero or less means images are not padded.
+     */
+    public void setImageSize(int imageSize)
+    {
+        this.imageSize = imageSize;
+    }
+
+    public long getNumRequests()
+    {
+        return this.numRequests.get();
+    }
+
+    public long getNumErrors()
+    {
+        return this.numErrors.get();
+    }
+
+    /**
+     * Returns the number of response body bytes sent since the server started or was last reset.
+     *
+     * @return the number of bytes sent.
+     */
+    public long getBytesSent()
+    {
+        return this.bytesSent.get();
+    }
+
+    /** Sets the request, error and byte counts to zero. */
+    public void resetCounts()
+    {
+        this.numRequests.set(0);
+        this.numErrors.set(0);
+        this.bytesSent.set(0);
+    }
+
+    public void stop()
+    {
+        try
+        {
+            this.serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            // Ignore errors closing the socket; the server is stopping regardless.
+        }
+
+        this.executor.shutdownNow();
+    }
+
+    protected void acceptConnections()
+    {
+        while (!this.serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket socket = this.serverSocket.accept();
+                this.executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        serveConnection(socket);
+                    }
+                });
+            }
+            catch (IOException e)
+            {
+                // The server socket was closed, or the connection failed before it was accepted.
+            }
+            catch (RejectedExecutionException e)
+            {
+                return; // The server is stopping.
+            }
+        }
+    }
+
+    protected void serveConnection(Socket socket)
+    {
+        try
+        {
+            socket.setSoTimeout(IDLE_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            // Serve requests until the client closes the connection, asks for it to be closed, or stays idle.
+            String requestLine;
+            while ((requestLine = readLine(in)) != null && !Thread.currentThread().isInterrupted())
+            {
+                boolean close = false;
+                String header;
+                while ((header = readLine(in)) != null && header.length() > 0)
+                {
+                    if (header.toLowerCase().startsWith("connection:") && header.toLowerCase().contains("close"))
+                        close = true;
+                }
+
+                if (requestLine.length() == 0)
+                    continue;
+
+                this.handleRequest(requestLine, out);
+                out.flush();
+
+                if (close)
+                    break;
+            }
+        }
+        catch (IOException e)
+        {
+            // The client closed the connection or stayed idle too long.
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                // Ignore errors closing the socket; the connection is done regardless.
+            }
+        }
+    }
+
+    protected void handleRequest(String requestLine, OutputStream out) throws IOException, InterruptedException
+    {
+        this.numRequests.incrementAndGet();
+
+        long latency = this.latency;
+        if (latency > 0)
+            Thread.sleep(latency);
+
+        String[] parts = requestLine.split(" ");
+        Map<String, String> params = parseQuery(parts.length > 1 ? parts[1] : "");
+
+        double errorRate = this.errorRate;
+        if (errorRate > 0 && this.nextDouble() < errorRate)
+        {
+            this.numErrors.incrementAndGet();
+            this.sendResponse(out, "500 Internal Server Error", "text/plain", "Synthetic error".getBytes("UTF-8"));
+            return;
+        }
+
+        if (!"GetMap".equalsIgnoreCase(params.get("request")))
+        {
+            this.sendResponse(out, "400 Bad Request", "text/plain", "Unsupported request".getBytes("UTF-8"));
+            return;
+        }
+
+        int width = parseDimension(params.get("width"));
+        int height = parseDimension(params.get("height"));
+        double[] bbox = parseBoundingBox(params.get("bbox"));
+        String format = params.get("format") != null ? params.get("format").toLowerCase() : "image/png";
+
+        byte[] body;
+        if (format.startsWith("application/bil"))
+        {
+            body = createElevations(width, height, bbox);
+        }
+        else if (format.equals("image/jpeg"))
+        {
+            body = createJpeg(width, height, this.imageSize);
+        }
+        else
+        {
+            format = "image/png";
+            body = createPng(width, height, bbox, this.imageSize);
+        }
+
+        String contentType = this.contentType;
+        this.sendResponse(out, "200 OK", contentType != null ? contentType : format, body);
+    }
+
+    protected void sendResponse(OutputStream out, String status, String contentType, byte[] body)
+        throws IOException, InterruptedException
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 ").append(status).append("\r\n");
+        sb.append("Content-Type: ").append(contentType).append("\r\n");
+        sb.append("Content-Length: ").append(body.length).append("\r\n");
+        sb.append("\r\n");
+        out.write(sb.toString().getBytes("US-ASCII"));
+
+        // Send the body in chunks, pausing between them so that the configured bandwidth is not exceeded.
+        long bandwidth = this.bandwidth;
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += BUFFER_SIZE)
+        {
+            int count = Math.min(BUFFER_SIZE, body.length - offset);
+            out.write(body, offset, count);
+            this.bytesSent.addAndGet(count);
+
+            if (bandwidth > 0)
+            {
+                out.flush();
+                long due = (offset + count) * 1000L / bandwidth;
+                long elapsed = (System.nanoTime() - start) / 1000000L;
+                if (due > elapsed)
+                    Thread.sleep(due - elapsed);
+            }
+        }
+    }
+
+    protected synchronized double nextDouble()
+    {
+        return this.random.nextDouble();
+    }
+
+    //**************************************************************//
+    //********************  Synthetic Data  ************************//
+    //**************************************************************//
+
+    /**
+     * Creates little endian 16-bit elevations in meters for a bounding box. The elevations are a smooth function of
+     * longitude and latitude, so that adjacent tiles agree along their shared edges.
+     *
+     * @param width  the number of samples in each row.
+     * @param height the number of rows.
+     * @param bbox   the bounding box, as minimum longitude, minimum latitude, maximum longitude and maximum latitude.
+     *
+     * @return the elevations.
+     */
+    protected static byte[] createElevations(int width, int height, double[] bbox)
+    {
+        byte[] data = new byte[2 * width * height];
+        int i = 0;
+        for (int row = 0; row < height; row++)
+        {
+            double lat = bbox[3] - (bbox[3] - bbox[1]) * row / Math.max(1, height - 1);
+            for (int col = 0; col < width; col++)
+            {
+                double lon = bbox[0] + (bbox[2] - bbox[0]) * col / Math.max(1, width - 1);
+                int elevation = (int) (2000 * Math.sin(Math.toRadians(4 * lon)) * Math.cos(Math.toRadians(4 * lat)));
+                data[i++] = (byte) elevation;
+                data[i++] = (byte) (elevation >> 8);
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Creates an RGB PNG image whose colors follow the bounding box, so that tiles at different places can be told
+     * apart.
+     *
+     * @param width     the image width.
+     * @param height    the image height.
+     * @param bbox      the bounding box, as minimum longitude, minimum latitude, maximum longitude and maximum
+     *                  latitude.
+     * @param imageSize the least size of the image in bytes. Smaller images are padded with a text chunk.
+     *
+     * @return the PNG data.
+     *
+     * @throws IOException if the image cannot be encoded.
+     */
+    protected static byte[] createPng(int width, int height, double[] bbox, int imageSize) throws IOException
+    {
+        byte[] rows = new byte[(1 + 3 * width) * height];
+        int i = 0;
+        for (int row = 0; row < height; row++)
+        {
+            rows[i++] = 0; // No filter.
+            double lat = bbox[3] - (bbox[3] - bbox[1]) * row / Math.max(1, height);
+            for (int col = 0; col < width; col++)
+            {
+                double lon = bbox[0] + (bbox[2] - bbox[0]) * col / Math.max(1, width);
+                rows[i++] = (byte) (lon + 180);
+                rows[i++] = (byte) (2 * (lat + 90));
+                rows[i++] = (byte) (((int) Math.floor(lon) + (int) Math.floor(lat)) % 2 == 0 ? 64 : 192);
+            }
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(compressed);
+        deflater.write(rows);
+        deflater.close();
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream dataHeader = new DataOutputStream(header);
+        dataHeader.writeInt(width);
+        dataHeader.writeInt(height);
+        dataHeader.writeByte(8); // bit depth
+        dataHeader.writeByte(2); // color type RGB
+        dataHeader.writeByte(0); // compression method
+        dataHeader.writeByte(0); // filter method
+        dataHeader.writeByte(0); // interlace method
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        png.write(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        writePngChunk(png, "IHDR", header.toByteArray());
+
+        // Each chunk adds 12 bytes to the image: its length, type and CRC.
+        int padding = imageSize - (png.size() + compressed.size() + 12 + 12);
+        if (padding > 12)
+        {
+            byte[] text = new byte[padding - 12];
+            Arrays.fill(text, (byte) ' ');
+            System.arraycopy("Comment\0".getBytes("ISO-8859-1"), 0, text, 0, Math.min(8, text.length));
+            writePngChunk(png, "tEXt", text);
+        }
+
+        writePngChunk(png, "IDAT", compressed.toByteArray());
+        writePngChunk(png, "IEND", new byte[0]);
+
+        return png.toByteArray();
+    }
+
+    protected static void writePngChunk(ByteArrayOutputStream png, String type, byte[] data) throws IOException
+    {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        DataOutputStream out = new DataOutputStream(png);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Creates a uniformly gray baseline JPEG image. Every block of a uniform image codes as a zero DC difference
+     * followed by an end of block, so the image is encoded with one-symbol Huffman tables and no transform.
+     *
+     * @param width     the image width.
+     * @param height    the image height.
+     * @param imageSize the least size of the image in bytes. Smaller images are padded with comment segments.
+     *
+     * @return the JPEG data.
+     */
+    protected static byte[] createJpeg(int width, int height, int imageSize)
+    {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        jpeg.write(0xFF);
+        jpeg.write(0xD8); // SOI
+
+        // Quantization table 0, all ones.
+        byte[] dqt = new byte[65];
+        Arrays.fill(dqt, 1, dqt.length, (byte) 1);
+        writeJpegSegment(jpeg, 0xDB, dqt);
+
+        // Baseline frame with one 8-bit component, sampled 1x1, using quantization table 0.
+        writeJpegSegment(jpeg, 0xC0, new byte[] {8, (byte) (height >> 8), (byte) height, (byte) (width >> 8),
+            (byte) width, 1, 1, 0x11, 0});
+
+        // DC and AC Huffman tables 0, each with the single one-bit code 0: category 0 for DC and end of block for AC.
+        byte[] dht = new byte[18];
+        dht[1] = 1;
+        writeJpegSegment(jpeg, 0xC4, dht);
+        dht[0] = 0x10;
+        writeJpegSegment(jpeg, 0xC4, dht);
+
+        int numBlocks = ((width + 7) / 8) * ((height + 7) / 8);
+        int dataSize = (2 * numBlocks + 7) / 8;
+        int padding = imageSize - (jpeg.size() + 10 + dataSize + 2);
+        while (padding > 4)
+        {
+            int length = Math.min(padding - 4, 65533 - 2);
+            writeJpegSegment(jpeg, 0xFE, new byte[length]); // COM
+            padding -= length + 4;
+        }
+
+        // Scan of the one component using Huffman tables 0, covering the full spectrum.
+        writeJpegSegment(jpeg, 0xDA, new byte[] {1, 1, 0, 0, 63, 0});
+
+        // Two zero bits per block, with the final byte padded with one bits.
+        byte[] data = new byte[dataSize];
+        int bits = 2 * numBlocks;
+        if (bits % 8 != 0)
+            data[dataSize - 1] = (byte) (0xFF >> (bits % 8));
+        jpeg.write(data, 0, data.length);
+
+        jpeg.write(0xFF);
+        jpeg.write(0xD9); // EOI
+
+        return jpeg.toByteArray();
+    }
+
+    protected static void writeJpegSegment(ByteArrayOutputStream jpeg, int marker, byte[] data)
+    {
+        int length = data.length + 2;
+        jpeg.write(0xFF);
+        jpeg.write(marker);
+        jpeg.write(length >> 8);
+        jpeg.write(length);
+        jpeg.write(data, 0, data.length);
+    }
+
+    //**************************************************************//
+    //********************  Request Parsing  ***********************//
+    //**************************************************************//
+
+    protected static String readLine(InputStream in) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0)
+        {
+            if (c == '\n')
+                return sb.toString();
+            if (c != '\r')
+                sb.append((char) c);
+        }
+
+        return sb.length() > 0 ? sb.toString() : null;
+    }
+
+    protected static Map<String, String> parseQuery(String target) throws UnsupportedEncodingException
+    {
+        Map<String, String> params = new HashMap<String, String>();
+
+        int index = target.indexOf('?');
+        if (index < 0)
+            return params;
+
+        for (String pair : target.substring(index + 1).split("&"))
+        {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+            {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8").toLowerCase(),
+                    URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+
+        return params;
+    }
+
+    protected static int parseDimension(String value)
+    {
+        try
+        {
+            int dimension = value != null ? Integer.parseInt(value) : 256;
+            return Math.max(1, Math.min(dimension, MAX_IMAGE_DIMENSION));
+        }
+        catch (NumberFormatException e)
+        {
+            return 256;
+        }
+    }
+
+    protected static double[] parseBoundingBox(String value)
+    {
+        double[] bbox = new double[] {-180, -90, 180, 90};
+        if (value == null)
+            return bbox;
+
+        String[] parts = value.split(",");
+        for (int i = 0; i < Math.min(4, parts.length); i++)
+        {
+            try
+            {
+                bbox[i] = Double.parseDouble(parts[i]);
+            }
+            catch (NumberFormatException e)
+            {
+                // Keep the whole world for a malformed coordinate.
+            }
+        }
+
+        return bbox;
+    }
+}
@@ -14,7 +14,7 @@ import org.w3c.dom.Element;
  * @author dcollins
  * @version $Id: BasicModel.java 733 2012-09-02 17:15:09Z dcollins $
  */
-public class BasicModel extends WWObjectImpl implements Model
+public class BasicModel extends WWObjectImpl implements Model, Disposable
 {
     protected Globe globe;
     protected LayerList layers;
@@ -101,4 +101,14 @@ public class BasicModel extends WWObjectImpl implements Model
         this.layers = layers;
         this.firePropertyChange(AVKey.LAYERS, old, this.layers);
     }
+
+    /**
+     * Disposes of the globe's tessellator, which stops the thread it builds terrain geometry on. The globe and layers
+     * stay attached to this model.
+     */
+    public void dispose()
+    {
+        if (this.globe != null && this.globe.getTessellator() instanceof Disposable)
+            ((Disposable) this.globe.getTessellator()).dispose();
+    }
 }
@@ -7,14 +7,18 @@ package gov.nasa.worldwind;
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.GpuResourceCache;
+import gov.nasa.worldwind.cache.GpuResourceDeletionQueue;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickedObject;
 import gov.nasa.worldwind.pick.PickedObjectList;
 import gov.nasa.worldwind.render.Color;
 import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.GpuUploadManager;
 import gov.nasa.worldwind.render.OrderedRenderable;
 import gov.nasa.worldwind.terrain.SectorGeometryList;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.TileLoadPipeline;
+import gov.nasa.worldwind.util.TileRequestScheduler;
 import android.graphics.Point;
 import android.opengl.GLES20;
 
@@ -34,9 +38,17 @@ public class SceneController extends WWObjectImpl {
 	protected boolean deepPick;
 	protected Point pickPoint;
 	protected PickedObjectList objectsAtPickPoint = new PickedObjectList();
+	protected double gpuResourceDeletionTimeBudget;
+	protected int gpuResourceDeletionCountBudget;
+	protected GpuUploadManager gpuUploadManager;
 
 	protected SceneController() {
 		this.setVerticalExaggeration(Configuration.getDoubleValue(AVKey.VERTICAL_EXAGGERATION));
+		this.gpuResourceDeletionTimeBudget = Configuration.getDoubleValue(AVKey.GPU_RESOURCE_DELETION_TIME_BUDGET, 2d);
+		this.gpuResourceDeletionCountBudget = Configuration.getIntegerValue(AVKey.GPU_RESOURCE_DELETION_COUNT_BUDGET, 0);
+		long uploadByteBudget = Configuration.getLongValue(AVKey.GPU_UPLOAD_BYTE_BUDGET, 0L);
+		double uploadTimeBudget = Configuration.getDoubleValue(AVKey.GPU_UPLOAD_TIME_BUDGET, 0d);
+		this.gpuUploadManager = new GpuUploadManager(uploadByteBudget, uploadTimeBudget);
 		this.dc = this.createDrawContext();
 	}
 
@@ -134,6 +146,56 @@ public class SceneController extends WWObjectImpl {
 		this.gpuResourceCache = gpuResourceCache;
 	}
 
+	/**
+	 * Indicates the maximum time spent deleting evicted GPU resources each frame.
+	 * 
+	 * @return the per-frame deletion time budget, in milliseconds. Zero or less means no limit.
+	 */
+	public double getGpuResourceDeletionTimeBudget() {
+		return this.gpuResourceDeletionTimeBudget;
+	}
+
+	/**
+	 * Specifies the maximum time spent deleting evicted GPU resources each frame. Resources that do not fit in the
+	 * budget are deleted in later frames.
+	 * 
+	 * @param budget
+	 *            the per-frame deletion time budget, in milliseconds. Zero or less means no limit.
+	 */
+	public void setGpuResourceDeletionTimeBudget(double budget) {
+		this.gpuResourceDeletionTimeBudget = budget;
+	}
+
+	/**
+	 * Indicates the maximum number of evicted GPU resources deleted each frame.
+	 * 
+	 * @return the per-frame deletion count budget. Zero or less means no limit.
+	 */
+	public int getGpuResourceDeletionCountBudget() {
+		return this.gpuResourceDeletionCountBudget;
+	}
+
+	/**
+	 * Specifies the maximum number of evicted GPU resources deleted each frame. Resources that do not fit in the budget
+	 * are deleted in later frames.
+	 * 
+	 * @param budget
+	 *            the per-frame deletion count budget. Zero or less means no limit.
+	 */
+	public void setGpuResourceDeletionCountBudget(int budget) {
+		this.gpuResourceDeletionCountBudget = budget;
+	}
+
+	/**
+	 * Returns the manager that limits the bytes and time of texture and vertex buffer uploads each frame. Its budgets
+	 * may be changed at any time.
+	 * 
+	 * @return the GPU upload manager.
+	 */
+	public GpuUploadManager getGpuUploadManager() {
+		return this.gpuUploadManager;
+	}
+
 	/**
 	 * Indicates whether all items under the cursor are identified during picking.
 	 * 
@@ -223,16 +285,101 @@ public class SceneController extends WWObjectImpl {
 		this.initializeFrame(dc);
 		try {
 			this.applyView(dc);
+			this.beginTileRequests(dc);
+			this.deliverLoadedTiles(dc);
+			this.beginGpuUploads(dc);
 			this.createTerrain(dc);
 			this.clearFrame(dc);
 			this.pick(dc);
 			this.clearFrame(dc);
 			this.draw(dc);
+			this.sendTileRequests(dc);
+			this.endGpuUploads(dc);
+			this.deleteGpuResources(dc);
 		} finally {
 			this.finalizeFrame(dc);
 		}
 	}
 
+	/**
+	 * Starts collecting the tile requests of this frame's layers and elevation models. Called once the view is applied, so that requests are prioritized
+	 * from the current eye point.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void beginTileRequests(DrawContext dc) {
+		TileRequestScheduler scheduler = WorldWind.getTileRequestScheduler();
+		if (scheduler != null) scheduler.beginFrame(dc);
+	}
+
+	/**
+	 * Gives the tiles loaded since the last frame to the layers that requested them, so that they are drawn in this
+	 * frame. Tiles are read and decoded on the tile load pipeline's threads, and only handed over on the GL thread.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void deliverLoadedTiles(DrawContext dc) {
+		TileLoadPipeline pipeline = WorldWind.getTileLoadPipeline();
+		if (pipeline != null) pipeline.deliverLoadedTiles();
+	}
+
+	/**
+	 * Starts this frame's GPU upload budget, and grants the most urgent of the uploads deferred in earlier frames.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void beginGpuUploads(DrawContext dc) {
+		GpuUploadManager manager = dc.getGpuUploadManager();
+		if (manager != null) manager.beginFrame();
+	}
+
+	/**
+	 * Requests another frame if uploads were deferred because they did not fit in this frame's budget. Tiles whose
+	 * upload is deferred are drawn with their fallback tile's texture until then.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void endGpuUploads(DrawContext dc) {
+		GpuUploadManager manager = dc.getGpuUploadManager();
+		if (manager != null && manager.getNumPendingUploads() > 0) this.firePropertyChange(AVKey.REPAINT, null, null);
+	}
+
+	/**
+	 * Sends the most important of the tile requests made this frame and in earlier frames to the task service. Requests that do not fit wait for a later
+	 * frame.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void sendTileRequests(DrawContext dc) {
+		TileRequestScheduler scheduler = WorldWind.getTileRequestScheduler();
+		if (scheduler != null) scheduler.sendRequests(WorldWind.getTaskService());
+	}
+
+	/**
+	 * Deletes the GPU resources evicted from the GPU resource cache, within this scene controller's per-frame time and
+	 * count budgets. Resources that do not fit in the budget remain queued until the next frame.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void deleteGpuResources(DrawContext dc) {
+		GpuResourceCache cache = dc.getGpuResourceCache();
+		if (cache == null) return;
+
+		GpuResourceDeletionQueue queue = cache.getDeletionQueue();
+		if (queue == null) return;
+
+		queue.drain((long) (this.gpuResourceDeletionTimeBudget * 1.0e6), this.gpuResourceDeletionCountBudget);
+
+		// Request another frame to continue deleting the resources that did not fit in this frame's budget.
+		if (queue.getSize() > 0) this.firePropertyChange(AVKey.REPAINT, null, null);
+	}
+
 	protected void initializeDrawContext(DrawContext dc, int viewportWidth, int viewportHeight) {
 		long timeStamp = System.currentTimeMillis();
 
@@ -241,6 +388,7 @@ public class SceneController extends WWObjectImpl {
 		dc.setView(this.view);
 		dc.setVerticalExaggeration(this.verticalExaggeration);
 		dc.setGpuResourceCache(this.gpuResourceCache);
+		dc.setGpuUploadManager(this.gpuUploadManager);
 		dc.setFrameTimeStamp(timeStamp);
 		dc.setPickPoint(this.pickPoint);
 	}
@@ -7,14 +7,18 @@ package gov.nasa.worldwind;
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.FileStore;
+import gov.nasa.worldwind.cache.MemoryBudgetCoordinator;
 import gov.nasa.worldwind.cache.MemoryCache;
 import gov.nasa.worldwind.cache.MemoryCacheSet;
 import gov.nasa.worldwind.cache.SessionCache;
 import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.retrieve.HTTPTransport;
 import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.NetworkStatus;
 import gov.nasa.worldwind.util.TaskService;
+import gov.nasa.worldwind.util.TileLoadPipeline;
+import gov.nasa.worldwind.util.TileRequestScheduler;
 import gov.nasa.worldwind.util.WWUtil;
 import java.beans.PropertyChangeListener;
 
@@ -31,11 +35,15 @@ public class WorldWind {
 
 	private WWObjectImpl wwo;
 	protected MemoryCacheSet memoryCacheSet;
+	protected MemoryBudgetCoordinator memoryBudgetCoordinator;
 	protected RetrievalService remoteRetrievalService;
 	protected RetrievalService localRetrievalService;
+	protected HTTPTransport httpTransport;
 	protected NetworkStatus networkStatus;
 	protected FileStore dataFileStore;
 	protected TaskService taskService;
+	protected TileRequestScheduler tileRequestScheduler;
+	protected TileLoadPipeline tileLoadPipeline;
 	protected SessionCache sessionCache;
 
 	// Singleton, prevent public instantiation.
@@ -45,6 +53,7 @@ public class WorldWind {
 
 	protected void initialize() {
 		this.wwo = new WWObjectImpl();
+		this.httpTransport = (HTTPTransport) createConfigurationComponent(AVKey.HTTP_TRANSPORT_CLASS_NAME);
 		this.remoteRetrievalService = (RetrievalService) createConfigurationComponent(AVKey.RETRIEVAL_SERVICE_CLASS_NAME);
 		this.localRetrievalService = (RetrievalService) createConfigurationComponent(AVKey.RETRIEVAL_SERVICE_CLASS_NAME);
 
@@ -53,6 +62,40 @@ public class WorldWind {
 		this.networkStatus = (NetworkStatus) createConfigurationComponent(AVKey.NETWORK_STATUS_CLASS_NAME);
 		this.sessionCache = (SessionCache) createConfigurationComponent(AVKey.SESSION_CACHE_CLASS_NAME);
 		this.taskService = (TaskService) createConfigurationComponent(AVKey.TASK_SERVICE_CLASS_NAME);
+		this.tileRequestScheduler = (TileRequestScheduler) createConfigurationComponent(AVKey.TILE_REQUEST_SCHEDULER_CLASS_NAME);
+		this.tileLoadPipeline = (TileLoadPipeline) createConfigurationComponent(AVKey.TILE_LOAD_PIPELINE_CLASS_NAME);
+
+		long budget = Configuration.getLongValue(AVKey.MEMORY_CACHE_BUDGET, 0L);
+		if (budget > 0) {
+			this.memoryBudgetCoordinator = new MemoryBudgetCoordinator(this.memoryCacheSet, budget);
+			this.memoryBudgetCoordinator.start(Configuration.getLongValue(AVKey.MEMORY_CACHE_BUDGET_INTERVAL, 0L));
+		}
+	}
+
+	/**
+	 * Shuts down World Wind. Listeners for {@link #SHUTDOWN_EVENT} are notified first, so that objects such as the
+	 * tessellators can stop their threads. Then the retrieval services, the tile load pipeline and the task service are
+	 * shut down, the HTTP transport's connections are closed, the file store is closed, the memory budget coordinator
+	 * is stopped, and the memory and session caches are cleared. World Wind is then initialized again, with new
+	 * services, so it may be used after it is shut down.
+	 */
+	public static synchronized void shutDown() {
+		instance.wwo.firePropertyChange(SHUTDOWN_EVENT, null, -1);
+		instance.dispose();
+		instance = new WorldWind();
+	}
+
+	protected void dispose() {
+		if (this.remoteRetrievalService != null) this.remoteRetrievalService.shutdown(true);
+		if (this.localRetrievalService != null) this.localRetrievalService.shutdown(true);
+		if (this.tileLoadPipeline != null) this.tileLoadPipeline.shutdown();
+		if (this.taskService != null) this.taskService.shutdownNow();
+		// The transport and file store are closed once nothing that retrieves or reads files is running.
+		if (this.httpTransport != null) this.httpTransport.shutdown();
+		if (this.dataFileStore != null) this.dataFileStore.close();
+		if (this.memoryBudgetCoordinator != null) this.memoryBudgetCoordinator.stop();
+		if (this.memoryCacheSet != null) this.memoryCacheSet.clear();
+		if (this.sessionCache != null) this.sessionCache.clear();
 	}
 
 	public static RetrievalService getRetrievalService() {
@@ -67,6 +110,15 @@ public class WorldWind {
 		return getRetrievalService();
 	}
 
+	/**
+	 * Returns the transport that opens the HTTP connections of all retrievals.
+	 * 
+	 * @return the HTTP transport.
+	 */
+	public static HTTPTransport getHTTPTransport() {
+		return instance.httpTransport;
+	}
+
 	public static MemoryCacheSet getMemoryCacheSet() {
 		return instance.memoryCacheSet;
 	}
@@ -75,6 +127,15 @@ public class WorldWind {
 		return instance.memoryCacheSet.get(key);
 	}
 
+	/**
+	 * Returns the coordinator that divides the memory budget among the caches of the memory cache set.
+	 * 
+	 * @return the memory budget coordinator, or null if no memory cache budget is configured.
+	 */
+	public static MemoryBudgetCoordinator getMemoryBudgetCoordinator() {
+		return instance.memoryBudgetCoordinator;
+	}
+
 	public static NetworkStatus getNetworkStatus() {
 		return instance.networkStatus;
 	}
@@ -87,6 +148,24 @@ public class WorldWind {
 		return instance.taskService;
 	}
 
+	/**
+	 * Returns the scheduler that orders the tile requests of all layers and elevation models.
+	 * 
+	 * @return the tile request scheduler.
+	 */
+	public static TileRequestScheduler getTileRequestScheduler() {
+		return instance.tileRequestScheduler;
+	}
+
+	/**
+	 * Returns the pipeline that reads and decodes tiles from the file store, and hands them to the GL thread.
+	 * 
+	 * @return the tile load pipeline.
+	 */
+	public static TileLoadPipeline getTileLoadPipeline() {
+		return instance.tileLoadPipeline;
+	}
+
 	public static FileStore getDataFileStore() {
 		return instance.dataFileStore;
 	}
@@ -128,7 +128,8 @@ public class WorldWindowGLSurfaceView extends GLSurfaceView implements GLSurface
     protected GpuResourceCache createGpuResourceCache()
     {
         long size = Configuration.getLongValue(AVKey.GPU_RESOURCE_CACHE_SIZE);
-        return new BasicGpuResourceCache((long) (0.8 * size), size);
+        long poolSize = Configuration.getLongValue(AVKey.GPU_TEXTURE_POOL_SIZE, 0L);
+        return new BasicGpuResourceCache((long) (0.8 * size), size, poolSize);
     }
 
     /** {@inheritDoc} */
@@ -158,10 +159,16 @@ public class WorldWindowGLSurfaceView extends GLSurfaceView implements GLSurface
         // Clear the GPU resource cache each time the surface is created or recreated. This happens when the rendering
         // thread starts or when the EGL context is lost. All GPU object names are invalid, and must be recreated. Since
         // the EGL context has changed, the currently active context is not the one used to create the Gpu resources in
-        // the cache. The cache is emptied and the GL silently ignores deletion of resource names that it does not
-        // recognize.
+        // the cache. The cache is emptied, and the resources waiting for deletion or reuse are discarded since their
+        // names may now refer to objects created in the new context.
         if (this.gpuResourceCache != null)
+        {
             this.gpuResourceCache.clear();
+            this.gpuResourceCache.getDeletionQueue().discard();
+
+            if (this.gpuResourceCache.getTexturePool() != null)
+                this.gpuResourceCache.getTexturePool().discard();
+        }
     }
 
     @Override
@@ -38,6 +38,8 @@ public interface AVKey {
 	final String CONTEXT = "gov.nasa.worldwind.avkey.Context";
 
 	final String DATA_CACHE_NAME = "gov.nasa.worldwind.avkey.DataCacheName";
+	/** Describes the capacity, in bytes, of the data file store's write location. Zero or less means no limit. */
+	final String DATA_FILE_STORE_CAPACITY = "gov.nasa.worldwind.avkey.DataFileStoreCapacity";
 	final String DATA_FILE_STORE_CLASS_NAME = "gov.nasa.worldwind.avkey.DataFileStoreClassName";
 	final String DATA_FILE_STORE_CONFIGURATION_FILE_NAME = "gov.nasa.worldwind.avkey.DataFileStoreConfigurationFileName";
 	final String DATASET_NAME = "gov.nasa.worldwind.avkey.DatasetNameKey";
@@ -75,6 +77,16 @@ public interface AVKey {
 	final String GLOBE = "gov.nasa.worldwind.avkey.Globe";
 	final String GLOBE_CLASS_NAME = "gov.nasa.worldwind.avkey.GlobeClassName";
 	final String GPU_RESOURCE_CACHE_SIZE = "gov.nasa.worldwind.avkey.GpuResourceCacheSize";
+	/** Describes the maximum number of evicted GPU resources deleted per frame. Zero or less means no limit. */
+	final String GPU_RESOURCE_DELETION_COUNT_BUDGET = "gov.nasa.worldwind.avkey.GpuResourceDeletionCountBudget";
+	/** Describes the maximum time, in milliseconds, spent deleting evicted GPU resources per frame. Zero or less means no limit. */
+	final String GPU_RESOURCE_DELETION_TIME_BUDGET = "gov.nasa.worldwind.avkey.GpuResourceDeletionTimeBudget";
+	/** Describes the maximum number of bytes of textures and vertex buffers uploaded to the GPU per frame. Zero or less means no limit. */
+	final String GPU_UPLOAD_BYTE_BUDGET = "gov.nasa.worldwind.avkey.GpuUploadByteBudget";
+	/** Describes the maximum time, in milliseconds, spent uploading textures and vertex buffers to the GPU per frame. Zero or less means no limit. */
+	final String GPU_UPLOAD_TIME_BUDGET = "gov.nasa.worldwind.avkey.GpuUploadTimeBudget";
+	/** Describes the size, in bytes, of the pool that keeps evicted textures for reuse. Zero disables texture pooling. */
+	final String GPU_TEXTURE_POOL_SIZE = "gov.nasa.worldwind.avkey.GpuTexturePoolSize";
 	final String GPU_TEXTURE_TILE_CACHE_SIZE = "gov.nasa.worldwind.avkey.GpuTextureTileCacheSize";
 	/**
 	 * Path type constant indicating the great circle method for interpolating between two geographic locations. When
@@ -85,6 +97,11 @@ public interface AVKey {
 	final String GREAT_CIRCLE = "gov.nasa.worldwind.avkey.GreatCircle";
 
 	final String HEIGHT = "gov.nasa.worldwind.avkey.Height";
+	/** The most HTTP connections that may be open to one host at a time. */
+	final String HTTP_MAX_CONNECTIONS_PER_HOST = "gov.nasa.worldwind.avkey.HTTPMaxConnectionsPerHost";
+	/** The most idle HTTP connections kept alive for reuse. */
+	final String HTTP_MAX_IDLE_CONNECTIONS = "gov.nasa.worldwind.avkey.HTTPMaxIdleConnections";
+	final String HTTP_TRANSPORT_CLASS_NAME = "gov.nasa.worldwind.avkey.HTTPTransportClassName";
 
 	final String IMAGE_FORMAT = "gov.nasa.worldwind.avkey.ImageFormat";
 	final String INACTIVE_LEVELS = "gov.nasa.worldwind.avkey.InactiveLevels";
@@ -125,8 +142,21 @@ public interface AVKey {
 	 * @see #MIN_ABSENT_TILE_CHECK_INTERVAL
 	 */
 	final String MAX_ABSENT_TILE_ATTEMPTS = "gov.nasa.worldwind.avkey.MaxAbsentTileAttempts";
+	/**
+	 * Describes the longest interval, in milliseconds, to wait before allowing further attempts to download a tile that
+	 * has repeatedly been found to be absent. The interval doubles each time the tile is found to be absent again, up
+	 * to this value.
+	 */
+	final String MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL = "gov.nasa.worldwind.avkey.MaxAbsentTileTryAgainInterval";
 	final String MAX_ACTIVE_ALTITUDE = "gov.nasa.worldwind.avkey.MaxActiveAltitude";
 	final String MAX_MESSAGE_REPEAT = "gov.nasa.worldwind.avkey.MaxMessageRepeat";
+	/**
+	 * Describes the total capacity, in bytes, shared by the caches in the World Wind memory cache set. When this value is specified, a
+	 * {@link gov.nasa.worldwind.cache.MemoryBudgetCoordinator} divides it among the caches according to their recent hit rates.
+	 */
+	final String MEMORY_CACHE_BUDGET = "gov.nasa.worldwind.avkey.MemoryCacheBudget";
+	/** Describes the interval, in milliseconds, between redistributions of the memory cache budget. */
+	final String MEMORY_CACHE_BUDGET_INTERVAL = "gov.nasa.worldwind.avkey.MemoryCacheBudgetInterval";
 	final String MEMORY_CACHE_SET_CLASS_NAME = "gov.nasa.worldwind.avkey.MemoryCacheSetClassName";
 	final String MIN_ACTIVE_ALTITUDE = "gov.nasa.worldwind.avkey.MinActiveAltitude";
 	/**
@@ -174,7 +204,26 @@ public interface AVKey {
 	final String RESIZE_SHRINK_ONLY = "gov.nasa.worldwind.CompassLayer.ResizeShrinkOnly";
 	/** Does not modify the item size when the window changes size. */
 	final String RESIZE_KEEP_FIXED_SIZE = "gov.nasa.worldwind.CompassLayer.ResizeKeepFixedSize";
+	/**
+	 * Indicates whether the retrieval service adapts the number of concurrent retrievals to the network. See
+	 * {@link gov.nasa.worldwind.retrieve.AdaptiveConcurrencyController}.
+	 */
+	final String RETRIEVAL_ADAPTIVE_CONCURRENCY_ENABLED = "gov.nasa.worldwind.avkey.RetrievalAdaptiveConcurrencyEnabled";
+	/**
+	 * Identifies the client that requested a retrieval. A client may update the priorities of its retrievals, and cancel
+	 * those it no longer needs, by calling {@link gov.nasa.worldwind.retrieve.RetrievalService#updatePriorities(Object, java.util.Map)}.
+	 */
+	final String RETRIEVAL_CLIENT = "gov.nasa.worldwind.avkey.RetrievalClient";
+	/** Identifies a retrieval among the retrievals of a client. See {@link #RETRIEVAL_CLIENT}. */
+	final String RETRIEVAL_KEY = "gov.nasa.worldwind.avkey.RetrievalKey";
+	final String RETRIEVAL_MAX_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalMaxPoolSize";
+	/** The most times a failed retrieval is retried. See {@link gov.nasa.worldwind.retrieve.RetryPolicy}. */
+	final String RETRIEVAL_MAX_RETRIES = "gov.nasa.worldwind.avkey.RetrievalMaxRetries";
 	final String RETRIEVAL_POOL_SIZE = "gov.nasa.worldwind.avkey.RetrievalPoolSize";
+	final String RETRIEVAL_RETRY_BASE_DELAY = "gov.nasa.worldwind.avkey.RetrievalRetryBaseDelay";
+	/** The largest share of the retrieval traffic that retries may become. */
+	final String RETRIEVAL_RETRY_BUDGET = "gov.nasa.worldwind.avkey.RetrievalRetryBudget";
+	final String RETRIEVAL_RETRY_MAX_DELAY = "gov.nasa.worldwind.avkey.RetrievalRetryMaxDelay";
 	final String RETRIEVE_PROPERTIES_FROM_SERVICE = "gov.nasa.worldwind.avkey.RetrievePropertiesFromService";
 	final String RETRIEVAL_QUEUE_SIZE = "gov.nasa.worldwind.avkey.RetrievalQueueSize";
 	final String RETRIEVAL_QUEUE_STALE_REQUEST_LIMIT = "gov.nasa.worldwind.avkey.RetrievalStaleRequestLimit";
@@ -206,9 +255,32 @@ public interface AVKey {
 	final String TESSELLATOR_CONFIG_FILE = "gov.nasa.worldwind.avkey.TessellatorConfigFile";
 	final String TEXTURE_FORMAT = "gov.nasa.worldwind.avkey.TextureFormat";
 	final String TASK_SERVICE_CLASS_NAME = "gov.nasa.worldwind.avkey.TaskServiceClassName";
+	/**
+	 * The most tasks of one owner, such as a layer, that a {@link gov.nasa.worldwind.util.PriorityTaskService} holds in its queue at a time.
+	 */
+	final String TASK_SERVICE_OWNER_QUOTA = "gov.nasa.worldwind.avkey.TaskServiceOwnerQuota";
 	final String TASK_SERVICE_POOL_SIZE = "gov.nasa.worldwind.avkey.TaskServicePoolSize";
 	final String TASK_SERVICE_QUEUE_SIZE = "gov.nasa.worldwind.avkey.TaskServiceQueueSize";
+	/**
+	 * Indicates whether the memory caches of texture tiles, elevation tiles and terrain geometry use a {@link gov.nasa.worldwind.cache.TinyLfuAdmissionFilter}
+	 * to keep tiles that are seen only once from displacing frequently used tiles.
+	 */
+	final String TILE_CACHE_ADMISSION_FILTER_ENABLED = "gov.nasa.worldwind.avkey.TileCacheAdmissionFilterEnabled";
+	/**
+	 * The fraction by which the priority of a waiting tile request improves for each frame it waits. See {@link gov.nasa.worldwind.util.TileRequestScheduler}.
+	 */
+	final String TILE_REQUEST_AGING_RATE = "gov.nasa.worldwind.avkey.TileRequestAgingRate";
+	/** The time in milliseconds after which a tile request that has not been made again is discarded. */
+	final String TILE_REQUEST_EXPIRY_TIME = "gov.nasa.worldwind.avkey.TileRequestExpiryTime";
+	final String TILE_REQUEST_SCHEDULER_CLASS_NAME = "gov.nasa.worldwind.avkey.TileRequestSchedulerClassName";
 	final String TILE_DELTA = "gov.nasa.worldwind.avkey.TileDelta";
+	/** The number of threads decoding tiles in the {@link gov.nasa.worldwind.util.TileLoadPipeline}, or 0 for one per processor. */
+	final String TILE_LOAD_DECODE_THREADS = "gov.nasa.worldwind.avkey.TileLoadDecodeThreads";
+	final String TILE_LOAD_PIPELINE_CLASS_NAME = "gov.nasa.worldwind.avkey.TileLoadPipelineClassName";
+	/** The number of loads each stage's queue in the {@link gov.nasa.worldwind.util.TileLoadPipeline} holds. */
+	final String TILE_LOAD_QUEUE_SIZE = "gov.nasa.worldwind.avkey.TileLoadQueueSize";
+	/** The number of threads reading tiles from the file store in the {@link gov.nasa.worldwind.util.TileLoadPipeline}. */
+	final String TILE_LOAD_READ_THREADS = "gov.nasa.worldwind.avkey.TileLoadReadThreads";
 	final String TILE_HEIGHT = "gov.nasa.worldwind.avkey.TileHeight";
 	final String TILE_ORIGIN = "gov.nasa.worldwind.avkey.TileOrigin";
 	final String TILE_URL_BUILDER = "gov.nasa.worldwind.avkey.TileURLBuilder";
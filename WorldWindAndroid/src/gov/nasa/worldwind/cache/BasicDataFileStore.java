@@ -9,29 +9,62 @@ package gov.nasa.worldwind.cache;
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.util.DataConfigurationUtils;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWIO;
 import gov.nasa.worldwind.util.WWUtil;
 import gov.nasa.worldwind.util.WWXML;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.xml.xpath.XPath;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 /**
+ * A file store that keeps one file per entry in its read locations, and writes new entries to its write location.
+ * <p/>
+ * The write location may be given a capacity in bytes with the <code>gov.nasa.worldwind.avkey.DataFileStoreCapacity</code>
+ * configuration property. The size and last access time of each file in the write location are tracked in memory by a
+ * {@link FileStoreUsageIndex}, which is saved to the write location at most every few minutes. A background task removes
+ * the least recently used files whenever the write location exceeds its capacity. A write location without a capacity
+ * is not tracked at all. Metadata files that describe a cache rather than hold its data, such as the absent tile
+ * lists, tile validators and bulk retrieval checkpoints, are never removed. Reading a file does not modify the file or
+ * its directory.
+ * <p/>
+ * Each location is scanned once in the background when it is first searched, and the names of the files found are kept
+ * in a {@link FilePresenceIndex}. Once the scan completes, a search for a file that is not in a location does not query
+ * the file system for that location. Files created by {@link #newFile(String)} are added to the index. Files copied into
+ * a location by other processes are not seen until the location is scanned again.
+ * 
  * @author nicola.dorigatti Trilogis SRL
  * @version $Id $
  */
 public class BasicDataFileStore implements FileStore {
 	protected static class StoreLocation extends AVListImpl {
 		protected boolean markWhenUsed = false;
+		protected volatile FilePresenceIndex presenceIndex;
+		protected volatile FilePresenceIndex pendingPresenceIndex;
+		protected long presenceScanTime;
+		// The names most recently added to the location, which a scan started after they were created may not find
+		// because they have not yet been written.
+		protected final LinkedList<String> recentNames = new LinkedList<String>();
 
 		public StoreLocation(java.io.File file, boolean isInstall) {
 			this.setValue(AVKey.FILE_STORE_LOCATION, file);
@@ -75,6 +108,38 @@ public class BasicDataFileStore implements FileStore {
 	protected StoreLocation writeLocation = null;
 	private final Object fileLock = new Object();
 
+	/** The name of the file in the write location that holds the usage index. */
+	protected static final String USAGE_INDEX_FILE_NAME = ".wwusage";
+	/** The default interval between checks of the write location's size, in milliseconds. */
+	protected static final long DEFAULT_EVICTION_INTERVAL = 30000;
+	/** The fraction of its capacity the write location is reduced to when it exceeds its capacity. */
+	protected static final double LOW_WATER_FRACTION = 0.9;
+	/** The least interval between saves of the usage index, in milliseconds. */
+	protected static final long USAGE_INDEX_SAVE_INTERVAL = 300000;
+	/** The names of metadata files, which are never evicted. */
+	protected static final String[] METADATA_FILE_NAMES = { "AbsentTiles.dat", "Validators.dat" };
+	/** The name prefix of bulk retrieval checkpoint files, which are never evicted. */
+	protected static final String CHECKPOINT_FILE_PREFIX = "BulkRetrieval-";
+
+	protected final FileStoreUsageIndex usageIndex = new FileStoreUsageIndex();
+	protected final FileStoreFilter evictionFilter = new FileStoreFilter() {
+		public boolean accept(FileStore fileStore, String fileName) {
+			return isEvictable(fileName);
+		}
+	};
+	protected volatile long capacity;
+	protected long usageIndexSaveTime; // used only by the eviction service
+	protected volatile ScheduledExecutorService evictionService;
+
+	/** The minimum time between scans of a location, in milliseconds. */
+	protected static final long PRESENCE_SCAN_INTERVAL = 60000;
+	/** The number of recently added names kept for each location. */
+	protected static final int MAX_RECENT_NAMES = 1024;
+
+	protected volatile ScheduledExecutorService scanService;
+	protected boolean usageIndexLoaded;
+	protected volatile boolean closed;
+
 	// **************************************************************//
 	// ******************** File Store Configuration **************//
 	// **************************************************************//
@@ -102,6 +167,7 @@ public class BasicDataFileStore implements FileStore {
 		}
 
 		this.initialize(is);
+		this.capacity = Configuration.getLongValue(AVKey.DATA_FILE_STORE_CAPACITY, 0L);
 	}
 
 	protected void initialize(InputStream xmlConfigStream) {
@@ -323,6 +389,7 @@ public class BasicDataFileStore implements FileStore {
 			java.io.File file;
 
 			if (fileName.startsWith(dir.getAbsolutePath())) file = new java.io.File(fileName);
+			else if (!this.mightContain(location, fileName)) continue;
 			else file = new File(dir, fileName);
 
 			if (file.exists()) return true;
@@ -348,20 +415,25 @@ public class BasicDataFileStore implements FileStore {
 			throw new IllegalArgumentException(message);
 		}
 
+		this.startEvictionService();
+
 		if (checkClassPath) {
 			URL url = this.getClass().getClassLoader().getResource(fileName);
 			if (url != null) return url;
 		}
 
 		for (StoreLocation location : this.readLocations) {
+			// Skip the location without querying the file system if its presence index knows the file is absent.
+			if (!this.mightContain(location, fileName)) continue;
+
 			File dir = location.getFile();
 			if (!dir.exists()) continue;
 
 			File file = new File(dir, fileName);
 			if (file.exists()) {
 				try {
-					if (location.isMarkWhenUsed()) markFileUsed(file);
-					else markFileUsed(file.getParentFile());
+					// Record the access in memory rather than touching the file, so that a read does not write.
+					if (location == this.writeLocation) this.recordAccess(fileName);
 
 					return file.toURI().toURL();
 				} catch (MalformedURLException e) {
@@ -400,8 +472,11 @@ public class BasicDataFileStore implements FileStore {
 				else if (file.getParentFile().mkdirs()) canCreateFile = true;
 			}
 
-			if (canCreateFile) return file;
-			else {
+			if (canCreateFile) {
+				this.recordWrite(fileName);
+				this.recordPresence(this.writeLocation, fileName);
+				return file;
+			} else {
 				String msg = Logging.getMessage("generic.CannotCreateFile", file);
 				Logging.error(msg);
 			}
@@ -420,6 +495,9 @@ public class BasicDataFileStore implements FileStore {
 		try {
 			File file = new File(url.toURI());
 
+			String name = this.writeLocationNameFor(file);
+			if (name != null) this.usageIndex.remove(name);
+
 			// This block of code must be synchronized for proper operation. A thread may check that the file exists,
 			// and become immediately suspended. A second thread may then delete that file. When the first thread
 			// wakes up, file.delete() fails.
@@ -434,31 +512,494 @@ public class BasicDataFileStore implements FileStore {
 		}
 	}
 
+	public boolean isFileExpired(URL url, long expiryTime) {
+		if (url == null) {
+			String msg = Logging.getMessage("nullValue.URLIsNull");
+			Logging.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		return WWIO.isFileOutOfDate(url, expiryTime);
+	}
+
+	public boolean refreshFile(String fileName) {
+		if (fileName == null) {
+			String message = Logging.getMessage("nullValue.FilePathIsNull");
+			Logging.error(message);
+			throw new IllegalArgumentException(message);
+		}
+
+		URL url = this.findFile(fileName, false);
+		File file = url != null ? WWIO.convertURLToFile(url) : null;
+		if (file == null) return false;
+
+		synchronized (this.fileLock) {
+			return file.exists() && file.setLastModified(System.currentTimeMillis());
+		}
+	}
+
 	public String[] listFileNames(String pathName, FileStoreFilter filter) {
-		// TODO Implement on Android
-		return new String[0];
+		return this.doListFileNames(pathName, filter, false, false);
 	}
 
 	public String[] listAllFileNames(String pathName, FileStoreFilter filter) {
-		// TODO Implement on Android
-		return new String[0];
+		return this.doListFileNames(pathName, filter, true, false);
 	}
 
 	public String[] listTopFileNames(String pathName, FileStoreFilter filter) {
-		// TODO Implement on Android
-		return new String[0];
+		return this.doListFileNames(pathName, filter, true, true);
 	}
 
-	protected void markFileUsed(java.io.File file) {
-		if (file == null) return;
+	protected String[] doListFileNames(String pathName, FileStoreFilter filter, boolean recurse, boolean exitBranchOnFirstMatch) {
+		if (filter == null) {
+			String msg = Logging.getMessage("nullValue.FilterIsNull");
+			Logging.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		String prefix = this.normalizePathName(pathName);
+		// The same name found in more than one location is listed once.
+		Collection<String> names = new LinkedHashSet<String>();
+
+		for (StoreLocation location : this.readLocations) {
+			// Search from the root of each location if the path name is null, otherwise search from the named path.
+			File dir = location.getFile();
+			if (prefix != null) dir = new File(dir, prefix);
+
+			// Either the location does not exist, or the path does not exist under the location.
+			if (!dir.isDirectory()) continue;
+
+			this.listDirectory(dir, prefix, filter, recurse, exitBranchOnFirstMatch, names);
+		}
+
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Adds the names of the files under a directory that are accepted by a filter. Files directly under the directory
+	 * are considered before its subdirectories. If <code>exitBranchOnFirstMatch</code> is true, the search of a
+	 * directory ends at its first accepted file, which has the effect of choosing the files closest to the search root.
+	 * 
+	 * @param dir
+	 *            the directory to search.
+	 * @param prefix
+	 *            the directory's name relative to its store location, or null for the location itself.
+	 * @param filter
+	 *            the filter, or null to accept every file.
+	 * @param recurse
+	 *            true to search subdirectories, otherwise false.
+	 * @param exitBranchOnFirstMatch
+	 *            true to end the search of a directory at its first accepted file, otherwise false.
+	 * @param names
+	 *            the collection to add the accepted names to.
+	 */
+	protected void listDirectory(File dir, String prefix, FileStoreFilter filter, boolean recurse, boolean exitBranchOnFirstMatch, Collection<String> names) {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+
+		List<File> subDirs = new ArrayList<File>();
+
+		for (File file : files) {
+			if (file.isDirectory()) {
+				subDirs.add(file);
+				continue;
+			}
+
+			if (prefix == null && file.getName().startsWith(USAGE_INDEX_FILE_NAME)) continue;
+
+			String name = prefix != null ? prefix + "/" + file.getName() : file.getName();
+			if (filter == null || filter.accept(this, name)) {
+				names.add(name);
+				if (exitBranchOnFirstMatch) return;
+			}
+		}
+
+		if (!recurse) return;
+
+		for (File subDir : subDirs) {
+			String name = prefix != null ? prefix + "/" + subDir.getName() : subDir.getName();
+			this.listDirectory(subDir, name, filter, recurse, exitBranchOnFirstMatch, names);
+		}
+	}
+
+	protected String normalizePathName(String pathName) {
+		if (pathName == null) return null;
+
+		String s = WWIO.stripTrailingSeparator(WWIO.stripLeadingSeparator(pathName.replace('\\', '/')));
+		return s.length() > 0 ? s : null;
+	}
+
+	// **************************************************************//
+	// ******************** Presence Index ************************//
+	// **************************************************************//
+
+	/** Adds scanned file names to a presence index. */
+	protected static class PresenceCollector extends AbstractCollection<String> {
+		protected final FilePresenceIndex index;
+
+		public PresenceCollector(FilePresenceIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean add(String name) {
+			this.index.addScanned(name);
+			return true;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return Collections.<String> emptyList().iterator();
+		}
+
+		@Override
+		public int size() {
+			return 0;
+		}
+	}
+
+	/**
+	 * Indicates whether a location might contain a file. Starts a scan of the location if it has no presence index or
+	 * its index is saturated.
+	 * 
+	 * @param location
+	 *            the location to search.
+	 * @param fileName
+	 *            the file name, relative to the location.
+	 * @return false if the location definitely does not contain the file, otherwise true.
+	 */
+	protected boolean mightContain(StoreLocation location, String fileName) {
+		FilePresenceIndex index = location.presenceIndex;
+		if (index == null || index.isSaturated()) this.requestPresenceScan(location);
+
+		return index == null || index.mightContain(fileName);
+	}
+
+	protected void recordPresence(StoreLocation location, String fileName) {
+		synchronized (location) {
+			location.recentNames.addLast(fileName);
+			if (location.recentNames.size() > MAX_RECENT_NAMES) location.recentNames.removeFirst();
+
+			if (location.presenceIndex != null) location.presenceIndex.add(fileName);
+
+			if (location.pendingPresenceIndex != null) location.pendingPresenceIndex.add(fileName);
+		}
+	}
+
+	protected void requestPresenceScan(final StoreLocation location) {
+		if (this.closed) return;
+
+		synchronized (location) {
+			long now = System.currentTimeMillis();
+			if (location.pendingPresenceIndex != null || (location.presenceScanTime > 0 && now - location.presenceScanTime < PRESENCE_SCAN_INTERVAL)) return;
+
+			location.presenceScanTime = now;
+			location.pendingPresenceIndex = new FilePresenceIndex();
+		}
+
+		ScheduledExecutorService service = this.getScanService();
+		if (service == null) return; // the store has been closed
+
+		try {
+			service.execute(new Runnable() {
+				public void run() {
+					scanLocation(location);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The store was closed while the scan was requested. The location is searched directly from now on.
+		}
+	}
+
+	protected ScheduledExecutorService getScanService() {
+		if (this.scanService == null) {
+			synchronized (this.readLocations) {
+				if (this.scanService == null && !this.closed) this.scanService = DataConfigurationUtils.createResourceRetrievalService("World Wind File Store Scan");
+			}
+		}
+
+		return this.scanService;
+	}
+
+	protected void scanLocation(StoreLocation location) {
+		FilePresenceIndex index = location.pendingPresenceIndex;
+
+		try {
+			// A location that does not exist is searched directly until a later scan succeeds, since it may appear
+			// during the session. E.g., removable media.
+			File dir = location.getFile();
+			if (!dir.isDirectory()) return;
+
+			this.listDirectory(dir, null, null, true, false, new PresenceCollector(index));
 
-		long currentTime = System.currentTimeMillis();
+			synchronized (location) {
+				for (String name : location.recentNames) {
+					index.add(name);
+				}
+
+				index.endBuild();
+				location.presenceIndex = index;
+			}
+		} catch (Throwable t) {
+			Logging.error(Logging.getMessage("FileStore.ExceptionScanningLocation", location.getFile()), t);
+		} finally {
+			synchronized (location) {
+				location.pendingPresenceIndex = null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the capacity of the write location.
+	 * 
+	 * @return the capacity in bytes, or 0 if the write location is not limited.
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Specifies the capacity of the write location. When the files in the write location exceed this size, the least
+	 * recently used files are removed until they occupy no more than 90% of it. Files are removed by a background task,
+	 * so the write location may briefly exceed its capacity.
+	 * 
+	 * @param capacity
+	 *            the capacity in bytes, or 0 to not limit the write location.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public void setCapacity(long capacity) {
+		if (capacity < 0) {
+			String msg = Logging.getMessage("generic.CapacityIsInvalid", capacity);
+			Logging.error(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		this.capacity = capacity;
+		this.startEvictionService();
+	}
+
+	/**
+	 * Stops the background tasks that scan the store locations and remove files from the write location. The store's
+	 * files can still be found and written once it is closed, but each search queries the file system, and the write
+	 * location is no longer kept within its capacity.
+	 */
+	public void close() {
+		synchronized (this.usageIndex) {
+			this.closed = true;
+			if (this.evictionService != null) this.evictionService.shutdown();
+		}
+
+		synchronized (this.readLocations) {
+			if (this.scanService != null) this.scanService.shutdown();
+		}
+	}
+
+	/**
+	 * Returns the index that tracks the size and last access time of the files in the write location.
+	 * 
+	 * @return the write location's usage index.
+	 */
+	public FileStoreUsageIndex getUsageIndex() {
+		return this.usageIndex;
+	}
+
+	// **************************************************************//
+	// ******************** Write Location Budget *****************//
+	// **************************************************************//
+
+	/**
+	 * Records a read of a file in the write location. Reads are tracked only while the write location has a capacity,
+	 * since they serve only to choose the files to evict.
+	 * 
+	 * @param name
+	 *            the file's name, relative to the write location.
+	 */
+	protected void recordAccess(String name) {
+		if (this.capacity > 0) this.usageIndex.recordAccess(name);
+	}
+
+	/**
+	 * Records a new file in the write location, and starts the eviction service if it is not running. Does nothing if
+	 * the write location has no capacity.
+	 * 
+	 * @param name
+	 *            the file's name, relative to the write location.
+	 */
+	protected void recordWrite(String name) {
+		if (this.capacity <= 0) return;
+
+		this.usageIndex.recordWrite(name, -1);
+		this.startEvictionService();
+	}
+
+	protected void startEvictionService() {
+		// The service is started on first use rather than in the constructor, so that the background task never runs
+		// against a subclass whose constructor has not completed. An unlimited write location needs no eviction, so
+		// the service, its initial scan and the usage index saves wait until a capacity is set.
+		if (this.capacity <= 0 || this.evictionService != null || this.writeLocation == null || this.closed) return;
+
+		synchronized (this.usageIndex) {
+			if (this.evictionService != null || this.closed) return;
+
+			ScheduledExecutorService service = DataConfigurationUtils.createResourceRetrievalService("World Wind File Store Eviction");
+			service.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						maintainWriteLocation();
+					} catch (Throwable t) {
+						Logging.error(Logging.getMessage("FileStore.ExceptionMaintainingStore", getWriteLocation()), t);
+					}
+				}
+			}, 0, DEFAULT_EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+
+			this.evictionService = service;
+		}
+	}
+
+	/**
+	 * Brings the write location's usage index up to date, removes the least recently used files if the write location
+	 * exceeds its capacity, and saves the usage index if it has changed. Called periodically on a background thread.
+	 */
+	protected void maintainWriteLocation() {
+		File location = this.getWriteLocation();
+		long capacity = this.getCapacity();
+		if (location == null || capacity <= 0) return;
+
+		if (!this.usageIndexLoaded) {
+			this.loadUsageIndex(location);
+			this.usageIndexLoaded = true;
+		}
+
+		for (String name : this.usageIndex.getUnsizedNames()) {
+			long size = this.getStoredFileSize(name);
+			if (size > 0) this.usageIndex.setSize(name, size);
+		}
+
+		if (this.usageIndex.getTotalSize() > capacity) this.evictFiles((long) (capacity * LOW_WATER_FRACTION));
+
+		// Saving only every few minutes loses at most a few minutes of access order if the process is killed.
+		long now = System.currentTimeMillis();
+		if (this.usageIndex.isDirty() && now - this.usageIndexSaveTime >= USAGE_INDEX_SAVE_INTERVAL) {
+			this.usageIndexSaveTime = now;
+			File file = new File(location, USAGE_INDEX_FILE_NAME);
+			try {
+				this.usageIndex.save(file);
+			} catch (IOException e) {
+				Logging.error(Logging.getMessage("FileStore.ExceptionWritingUsageIndex", file), e);
+			}
+		}
+	}
+
+	protected void loadUsageIndex(File location) {
+		Map<String, Long> times = FileStoreUsageIndex.load(new File(location, USAGE_INDEX_FILE_NAME));
+		List<FileStoreUsageIndex.Entry> entries = new ArrayList<FileStoreUsageIndex.Entry>();
+		this.scanWriteLocation(location, null, times, entries);
+		this.usageIndex.merge(entries);
+	}
+
+	/**
+	 * Adds an entry for each file under a directory of the write location. A file's access time is taken from the saved
+	 * usage index if it is there, and from its modification time otherwise.
+	 * 
+	 * @param dir
+	 *            the directory to scan.
+	 * @param prefix
+	 *            the directory's name relative to the write location, or null for the write location itself.
+	 * @param times
+	 *            the access times read from the saved usage index.
+	 * @param entries
+	 *            the list to add the entries to.
+	 */
+	protected void scanWriteLocation(File dir, String prefix, Map<String, Long> times, List<FileStoreUsageIndex.Entry> entries) {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+
+		for (File file : files) {
+			if (prefix == null && file.getName().startsWith(USAGE_INDEX_FILE_NAME)) continue;
+
+			String name = prefix != null ? prefix + "/" + file.getName() : file.getName();
+			if (file.isDirectory()) {
+				this.scanWriteLocation(file, name, times, entries);
+			} else {
+				Long time = times.get(name);
+				entries.add(new FileStoreUsageIndex.Entry(name, file.length(), time != null ? time : file.lastModified()));
+			}
+		}
+	}
+
+	protected void evictFiles(long targetSize) {
+		int count = 0;
+
+		for (String name : this.usageIndex.selectEvictions(targetSize, this, this.evictionFilter)) {
+			if (this.evictFile(name)) {
+				this.usageIndex.remove(name);
+				count++;
+			}
+		}
+
+		if (count > 0) Logging.verbose(Logging.getMessage("FileStore.EvictedFiles", count, this.getWriteLocation(), this.getCapacity()));
+	}
+
+	/**
+	 * Indicates whether a file in the write location may be removed to reduce the write location's size. Metadata files
+	 * are kept, since they are small and losing them forgets which tiles are absent, how to revalidate cached tiles, or
+	 * where a bulk retrieval stopped.
+	 * 
+	 * @param name
+	 *            the file's name, relative to the write location.
+	 * @return true if the file may be evicted, otherwise false.
+	 */
+	protected boolean isEvictable(String name) {
+		String fileName = name.substring(name.lastIndexOf('/') + 1);
+		if (fileName.startsWith(CHECKPOINT_FILE_PREFIX)) return false;
+
+		for (String metadataName : METADATA_FILE_NAMES) {
+			if (fileName.equals(metadataName)) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Removes a file from the write location to reduce the write location's size.
+	 * 
+	 * @param name
+	 *            the file's name, relative to the write location.
+	 * @return true if the file no longer exists, otherwise false.
+	 */
+	protected boolean evictFile(String name) {
+		File file = new File(this.getWriteLocation(), name);
+
+		synchronized (this.fileLock) {
+			if (file.exists()) {
+				// noinspection ResultOfMethodCallIgnored
+				file.delete();
+			}
+
+			return !file.exists();
+		}
+	}
+
+	/**
+	 * Returns the size of a file in the write location.
+	 * 
+	 * @param name
+	 *            the file's name, relative to the write location.
+	 * @return the file's size in bytes, or -1 if the file does not exist.
+	 */
+	protected long getStoredFileSize(String name) {
+		File file = new File(this.getWriteLocation(), name);
+		return file.exists() ? file.length() : -1;
+	}
 
-		if (file.canWrite()) file.setLastModified(currentTime);
+	protected String writeLocationNameFor(File file) {
+		File location = this.getWriteLocation();
+		if (location == null) return null;
 
-		if (file.isDirectory()) return;
+		String root = location.getAbsolutePath() + File.separator;
+		String path = file.getAbsolutePath();
 
-		java.io.File parent = file.getParentFile();
-		if (parent != null && parent.canWrite()) parent.setLastModified(currentTime);
+		return path.startsWith(root) ? path.substring(root.length()).replace(File.separatorChar, '/') : null;
 	}
 }
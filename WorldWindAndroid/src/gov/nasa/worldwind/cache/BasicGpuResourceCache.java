@@ -19,9 +19,9 @@ import android.opengl.GLES20;
  * reduced to the "low water" size in this case (see {@link #setLowWater(long)}.
  * <p/>
  * When a resource is removed from the cache, and if it is a recognized OpenGL resource -- a texture, a list of vertex buffer IDs, a list of display list IDs,
- * etc. -- and there is a current Open GL context, the appropriate glDelete function is called to de-register the resource with the GPU. If there is no current
- * OpenGL context the resource is not deleted and will likely remain allocated on the GPU until the GL context is destroyed. Edited By: Nicola Dorigatti,
- * Trilogis
+ * etc. -- it is added to the cache's {@link GpuResourceDeletionQueue}. When the queue is drained on the OpenGL thread, the appropriate glDelete function is
+ * called to de-register the resource with the GPU. Textures whose shape is known are first offered to the cache's {@link GpuTexturePool}, and are queued
+ * for deletion only when the pool has no room for them. Edited By: Nicola Dorigatti, Trilogis
  * 
  * @author nicola.dorigatti Trilogis SRL
  * @version $Id: BasicGpuResourceCache.java 733 2012-09-02 17:15:09Z dcollins $
@@ -49,10 +49,35 @@ public class BasicGpuResourceCache implements GpuResourceCache {
 	}
 
 	protected final BasicMemoryCache resources;
+	protected final GpuResourceDeletionQueue deletionQueue;
+	protected final GpuTexturePool texturePool;
 
 	public BasicGpuResourceCache(long loWater, long hiWater) {
+		this(loWater, hiWater, 0);
+	}
+
+	/**
+	 * Creates a cache with a texture pool of the specified capacity.
+	 * 
+	 * @param loWater
+	 *            the cache's low water size in bytes.
+	 * @param hiWater
+	 *            the cache's capacity in bytes.
+	 * @param texturePoolCapacity
+	 *            the capacity of the cache's texture pool in bytes. A capacity of zero disables texture pooling.
+	 */
+	public BasicGpuResourceCache(long loWater, long hiWater, long texturePoolCapacity) {
+		this.texturePool = new GpuTexturePool(texturePoolCapacity);
 		this.resources = new BasicMemoryCache(loWater, hiWater);
 		this.resources.setName("GPU Resource Cache");
+		// Delete evicted GPU resources after the cache's lock is released, so that an eviction cascade does not block
+		// other threads reading the cache.
+		this.resources.setBatchedNotification(true);
+		this.deletionQueue = new GpuResourceDeletionQueue(new GpuResourceDeletionQueue.Deleter() {
+			public void delete(Object resource, String resourceType) {
+				deleteResource(resource, resourceType);
+			}
+		});
 		this.resources.addCacheListener(new MemoryCache.CacheListener() {
 			public void entryRemoved(Object key, Object clientObject) {
 				onEntryRemoved(key, clientObject);
@@ -75,11 +100,26 @@ public class BasicGpuResourceCache implements GpuResourceCache {
 
 		CacheEntry entry = (CacheEntry) clientObject;
 
-		if (entry.resource instanceof Disposable) {
+		// Park evicted textures in the texture pool so that their texture objects can be reused. Only the textures
+		// the pool has no room for are deleted.
+		if (TEXTURE.equals(entry.resourceType) && entry.resource instanceof GpuTexture) {
+			for (GpuTexture texture : this.texturePool.offer((GpuTexture) entry.resource)) {
+				this.deletionQueue.add(texture, TEXTURE);
+			}
+			return;
+		}
+
+		// Defer the deletion until the OpenGL thread drains the deletion queue, so that the cost of an eviction is
+		// spread over several frames.
+		this.deletionQueue.add(entry.resource, entry.resourceType);
+	}
+
+	protected void deleteResource(Object resource, String resourceType) {
+		if (resource instanceof Disposable) {
 			// Dispose a GPU resource when it leaves the cache.
-			((Disposable) entry.resource).dispose();
-		} else if (entry.resourceType.equals(VBO_BUFFERS)) {
-			int[] ids = (int[]) entry.resource;
+			((Disposable) resource).dispose();
+		} else if (VBO_BUFFERS.equals(resourceType)) {
+			int[] ids = (int[]) resource;
 			GLES20.glDeleteBuffers(ids.length, ids, 0);
 		}
 	}
@@ -270,6 +310,21 @@ public class BasicGpuResourceCache implements GpuResourceCache {
 		this.resources.setLowWater(loWater);
 	}
 
+	/** {@inheritDoc} */
+	public GpuResourceDeletionQueue getDeletionQueue() {
+		return this.deletionQueue;
+	}
+
+	/** {@inheritDoc} */
+	public GpuTexturePool getTexturePool() {
+		return this.texturePool;
+	}
+
+	/** {@inheritDoc} */
+	public CacheStatistics getStatistics() {
+		return this.resources.getStatistics();
+	}
+
 	protected long computeEntrySize(CacheEntry entry) {
 		if (entry.resource instanceof Cacheable) return ((Cacheable) entry.resource).getSizeInBytes();
 
@@ -7,8 +7,7 @@ package gov.nasa.worldwind.cache;
 
 import gov.nasa.worldwind.util.Logging;
 
-import java.util.Arrays;
-import java.util.concurrent.*;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -17,34 +16,32 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class BasicMemoryCache implements MemoryCache
 {
-    protected static class CacheEntry implements Comparable<CacheEntry>
+    protected static class CacheEntry
     {
         protected Object key;
         protected Object value;
         protected long size;
-        protected long lastUsed;
+        protected long created;
 
         protected CacheEntry(Object key, Object value, long size)
         {
             this.key = key;
             this.value = value;
             this.size = size;
-            this.lastUsed = System.nanoTime();
-        }
-
-        public int compareTo(CacheEntry that)
-        {
-            return this.lastUsed < that.lastUsed ? -1 : this.lastUsed == that.lastUsed ? 0 : 1;
+            this.created = System.nanoTime();
         }
     }
 
     protected String name;
-    protected ConcurrentHashMap<Object, CacheEntry> entries;
-    protected CopyOnWriteArrayList<CacheListener> listeners;
+    // Ordered from least to most recently used, so the entry evicted next is always the first. Guarded by lock.
+    protected LinkedHashMap<Object, CacheEntry> entries;
     protected AtomicLong capacity = new AtomicLong();
     protected AtomicLong usedCapacity = new AtomicLong();
     protected AtomicLong lowWater = new AtomicLong();
+    protected volatile AdmissionFilter admissionFilter;
+    protected final CacheStatistics statistics = new CacheStatistics();
     protected final Object lock = new Object();
+    protected final CacheRemovalNotifier notifier = new CacheRemovalNotifier(this.lock);
 
     /**
      * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
@@ -54,8 +51,7 @@ public class BasicMemoryCache implements MemoryCache
      */
     public BasicMemoryCache(long loWater, long capacity)
     {
-        this.entries = new ConcurrentHashMap<Object, CacheEntry>();
-        this.listeners = new CopyOnWriteArrayList<CacheListener>();
+        this.entries = new LinkedHashMap<Object, CacheEntry>(16, 0.75f, true); // access order
         this.capacity.set(capacity);
         this.usedCapacity.set(0L);
         this.lowWater.set(loWater);
@@ -83,19 +79,21 @@ public class BasicMemoryCache implements MemoryCache
             throw new IllegalArgumentException(msg);
         }
 
-        CacheEntry entry; // don't need to lock because call is atomic
+        AdmissionFilter filter = this.admissionFilter;
+        if (filter != null)
+            filter.recordAccess(key);
+
+        CacheEntry entry;
         synchronized (this.lock)
         {
-            entry = this.entries.get(key);
-
-            if (entry != null)
-            {
-                // System.nanoTime overflows once every 292 years. Overflow results in a slowing of the cache until WW
-                // is restarted or the cache is cleared.
-                entry.lastUsed = System.nanoTime();
-            }
+            entry = this.entries.get(key); // moves the entry to the most recently used end
         }
 
+        if (entry != null)
+            this.statistics.recordHit();
+        else
+            this.statistics.recordMiss();
+
         return entry != null ? entry.value : null;
     }
 
@@ -141,11 +139,21 @@ public class BasicMemoryCache implements MemoryCache
                 this.removeEntry(existing);
 
             if (this.usedCapacity.get() + size > cap)
+            {
+                // The least recently used entry is both the admission filter's comparison victim and the first entry
+                // evicted.
+                if (existing == null && !this.isAdmitted(key, this.getLeastRecentlyUsedEntry()))
+                    return;
+
                 this.makeSpace(size);
+            }
 
             this.usedCapacity.addAndGet(size);
+            this.statistics.recordPut();
             this.entries.put(entry.key, entry);
         }
+
+        this.notifier.dispatchPendingRemovals();
     }
 
     /** {@inheritDoc} */
@@ -200,6 +208,8 @@ public class BasicMemoryCache implements MemoryCache
             if (entry != null)
                 this.removeEntry(entry);
         }
+
+        this.notifier.dispatchPendingRemovals();
     }
 
     /** {@inheritDoc} */
@@ -207,17 +217,22 @@ public class BasicMemoryCache implements MemoryCache
     {
         synchronized (this.lock)
         {
-            for (CacheEntry entry : this.entries.values())
+            for (CacheEntry entry : new ArrayList<CacheEntry>(this.entries.values()))
             {
                 this.removeEntry(entry);
             }
         }
+
+        this.notifier.dispatchPendingRemovals();
     }
 
     /** {@inheritDoc} */
     public int getNumObjects()
     {
-        return this.entries.size();
+        synchronized (this.lock)
+        {
+            return this.entries.size();
+        }
     }
 
     /** {@inheritDoc} */
@@ -241,7 +256,16 @@ public class BasicMemoryCache implements MemoryCache
     /** {@inheritDoc} */
     public void setCapacity(long newCapacity)
     {
-        this.capacity.set(newCapacity);
+        synchronized (this.lock)
+        {
+            this.capacity.set(newCapacity);
+
+            // Evict the entries that no longer fit, down to the low water level.
+            if (this.usedCapacity.get() > newCapacity)
+                this.makeSpace(0);
+        }
+
+        this.notifier.dispatchPendingRemovals();
     }
 
     /** {@inheritDoc} */
@@ -269,7 +293,7 @@ public class BasicMemoryCache implements MemoryCache
             throw new IllegalArgumentException(msg);
         }
 
-        this.listeners.add(listener);
+        this.notifier.addListener(listener);
     }
 
     /** {@inheritDoc} */
@@ -282,7 +306,52 @@ public class BasicMemoryCache implements MemoryCache
             throw new IllegalArgumentException(msg);
         }
 
-        this.listeners.remove(listener);
+        this.notifier.removeListener(listener);
+    }
+
+    /**
+     * Indicates whether removal notifications are delivered after the cache's lock is released.
+     *
+     * @return true if removal notifications are batched, otherwise false.
+     *
+     * @see #setBatchedNotification(boolean)
+     */
+    public boolean isBatchedNotification()
+    {
+        return this.notifier.isBatchedNotification();
+    }
+
+    /**
+     * Specifies whether removal notifications are delivered after the cache's lock is released. By default, each
+     * <code>CacheListener</code> is notified while the lock is held, as each entry is removed, so other threads cannot
+     * read the cache until every listener returns. When batched notification is enabled, entries are only unlinked
+     * while the lock is held. The entries removed by one operation are then delivered as a batch once the lock is
+     * released, on the executor declared by each {@link MemoryCache.ExecutorCacheListener} or on the calling thread.
+     *
+     * @param batched true to deliver removal notifications in batches after the lock is released, false to notify
+     *                listeners under the lock.
+     */
+    public void setBatchedNotification(boolean batched)
+    {
+        this.notifier.setBatchedNotification(batched);
+    }
+
+    /** {@inheritDoc} */
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /** {@inheritDoc} */
+    public AdmissionFilter getAdmissionFilter()
+    {
+        return this.admissionFilter;
+    }
+
+    /** {@inheritDoc} */
+    public void setAdmissionFilter(AdmissionFilter filter)
+    {
+        this.admissionFilter = filter;
     }
 
     /**
@@ -298,24 +367,43 @@ public class BasicMemoryCache implements MemoryCache
         if (this.entries.remove(entry.key) != null) // returns null if entry does not exist
         {
             this.usedCapacity.addAndGet(-entry.size);
-
-            for (MemoryCache.CacheListener listener : this.listeners)
-            {
-                try
-                {
-                    listener.entryRemoved(entry.key, entry.value);
-                }
-                catch (Exception e)
-                {
-                    listener.removalException(e, entry.key, entry.value);
-                }
-            }
+            this.notifier.entryRemoved(entry.key, entry.value);
         }
     }
 
+    /**
+     * Indicates whether this cache's admission filter permits a new entry with the specified key to displace the least
+     * recently used entry.
+     *
+     * @param key    the new entry's key.
+     * @param victim the least recently used entry, which is evicted first. May be null if the cache is empty.
+     *
+     * @return true if the new entry may be added, otherwise false.
+     */
+    protected boolean isAdmitted(Object key, CacheEntry victim) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        AdmissionFilter filter = this.admissionFilter;
+        if (filter == null)
+            return true;
+
+        return victim == null || filter.admit(key, victim.key);
+    }
+
+    /**
+     * Returns the least recently used entry, which is the next entry evicted.
+     *
+     * @return the least recently used entry, or null if the cache is empty.
+     */
+    protected CacheEntry getLeastRecentlyUsedEntry() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        Iterator<CacheEntry> iter = this.entries.values().iterator();
+        return iter.hasNext() ? iter.next() : null;
+    }
+
     /**
      * Makes at least <code>spaceRequired</code> space in the cache. If spaceRequired is less than (capacity-lowWater),
-     * makes more space. Does nothing if capacity is less than spaceRequired.
+     * makes more space. Does nothing if capacity is less than spaceRequired. Entries are evicted from the least
+     * recently used end, so each eviction takes constant time.
      *
      * @param spaceRequired the amount of space required.
      */
@@ -324,16 +412,15 @@ public class BasicMemoryCache implements MemoryCache
         if (spaceRequired > this.capacity.get() || spaceRequired < 0)
             return;
 
-        CacheEntry[] timeOrderedEntries = new CacheEntry[this.entries.size()];
-        Arrays.sort(this.entries.values().toArray(timeOrderedEntries)); // TODO
-
-        int i = 0;
+        long now = System.nanoTime();
         while (this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.getLowWater())
         {
-            if (i < timeOrderedEntries.length)
-            {
-                this.removeEntry(timeOrderedEntries[i++]);
-            }
+            CacheEntry entry = this.getLeastRecentlyUsedEntry();
+            if (entry == null)
+                break;
+
+            this.statistics.recordEviction(entry.size, now - entry.created);
+            this.removeEntry(entry);
         }
     }
 }
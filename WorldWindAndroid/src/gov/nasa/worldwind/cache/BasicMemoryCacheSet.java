@@ -7,6 +7,7 @@ package gov.nasa.worldwind.cache;
 
 import gov.nasa.worldwind.util.Logging;
 
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -67,6 +68,12 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
         return this.caches.containsKey(key);
     }
 
+    /** {@inheritDoc} */
+    public synchronized Collection<MemoryCache> getCaches()
+    {
+        return new ArrayList<MemoryCache>(this.caches.values());
+    }
+
     /** {@inheritDoc} */
     public synchronized void clear()
     {
@@ -77,4 +84,23 @@ public class BasicMemoryCacheSet implements MemoryCacheSet
 
         this.caches.clear();
     }
+
+    /** {@inheritDoc} */
+    public CacheStatistics.Snapshot getStatistics()
+    {
+        CacheStatistics.Snapshot result = new CacheStatistics.Snapshot(0, 0, 0, 0, 0, 0, 0);
+
+        for (MemoryCache cache : this.caches.values())
+        {
+            result = result.add(cache.getStatistics().getSnapshot());
+        }
+
+        return result;
+    }
+
+    /** {@inheritDoc} */
+    public MemoryCache createMemoryCache(long loWater, long capacity)
+    {
+        return new BasicMemoryCache(loWater, capacity);
+    }
 }
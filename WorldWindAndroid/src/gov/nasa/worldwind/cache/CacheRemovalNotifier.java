@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Delivers a memory cache's removal notifications to its <code>CacheListener</code>s. By default each listener is
+ * notified as soon as an entry is removed, while the cache's lock is held. When batched notification is enabled, the
+ * removed entries are queued under the lock and delivered as a batch by {@link #dispatchPendingRemovals()} once the
+ * lock is released.
+ * <p/>
+ * The notifier shares the lock of the cache that owns it; {@link #entryRemoved(Object, Object)} must be called while
+ * that lock is held, and {@link #dispatchPendingRemovals()} must be called after it is released.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+class CacheRemovalNotifier
+{
+    protected static class Removal
+    {
+        protected final Object key;
+        protected final Object value;
+
+        protected Removal(Object key, Object value)
+        {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    protected final Object lock;
+    protected final CopyOnWriteArrayList<MemoryCache.CacheListener> listeners =
+        new CopyOnWriteArrayList<MemoryCache.CacheListener>();
+    protected boolean batchedNotification;
+    protected ArrayList<Removal> pendingRemovals = new ArrayList<Removal>(); // guarded by lock
+
+    /**
+     * Creates a notifier that queues batched removals under the specified lock.
+     *
+     * @param lock the lock of the cache that owns this notifier.
+     */
+    CacheRemovalNotifier(Object lock)
+    {
+        this.lock = lock;
+    }
+
+    public void addListener(MemoryCache.CacheListener listener)
+    {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(MemoryCache.CacheListener listener)
+    {
+        this.listeners.remove(listener);
+    }
+
+    public boolean isBatchedNotification()
+    {
+        return this.batchedNotification;
+    }
+
+    public void setBatchedNotification(boolean batched)
+    {
+        this.batchedNotification = batched;
+    }
+
+    /**
+     * Notifies the listeners that an entry has been removed, or queues the notification when batched notification is
+     * enabled.
+     *
+     * @param key   the removed entry's key.
+     * @param value the removed entry's value.
+     */
+    public void entryRemoved(Object key, Object value) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (this.batchedNotification)
+        {
+            this.pendingRemovals.add(new Removal(key, value));
+            return;
+        }
+
+        for (MemoryCache.CacheListener listener : this.listeners)
+        {
+            this.notifyEntryRemoved(listener, key, value);
+        }
+    }
+
+    /**
+     * Delivers the removal notifications deferred while batched notification is enabled. The notifications for
+     * listeners that implement {@link MemoryCache.ExecutorCacheListener} are submitted to the listener's executor as a
+     * single task; all other listeners are notified on the current thread.
+     */
+    public void dispatchPendingRemovals() // MUST BE CALLED OUTSIDE SYNCHRONIZED
+    {
+        final List<Removal> batch;
+        synchronized (this.lock)
+        {
+            if (this.pendingRemovals.isEmpty())
+                return;
+
+            batch = this.pendingRemovals;
+            this.pendingRemovals = new ArrayList<Removal>();
+        }
+
+        for (final MemoryCache.CacheListener listener : this.listeners)
+        {
+            Executor executor = (listener instanceof MemoryCache.ExecutorCacheListener) ?
+                ((MemoryCache.ExecutorCacheListener) listener).getNotificationExecutor() : null;
+
+            if (executor != null)
+            {
+                executor.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        notifyEntriesRemoved(listener, batch);
+                    }
+                });
+            }
+            else
+            {
+                this.notifyEntriesRemoved(listener, batch);
+            }
+        }
+    }
+
+    protected void notifyEntriesRemoved(MemoryCache.CacheListener listener, List<Removal> batch)
+    {
+        for (Removal removal : batch)
+        {
+            this.notifyEntryRemoved(listener, removal.key, removal.value);
+        }
+    }
+
+    protected void notifyEntryRemoved(MemoryCache.CacheListener listener, Object key, Object value)
+    {
+        try
+        {
+            listener.entryRemoved(key, value);
+        }
+        catch (Exception e)
+        {
+            listener.removalException(e, key, value);
+        }
+    }
+}
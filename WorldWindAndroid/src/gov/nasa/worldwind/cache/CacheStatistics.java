@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates usage statistics for a memory cache: lookups that hit and missed, entries added, and entries evicted to
+ * make room for new entries. Counters are updated without locking so that recording a lookup adds no contention to the
+ * cache's read path. Use {@link #getSnapshot()} to read a consistent copy of the current values.
+ * <p/>
+ * Evictions count only entries removed because the cache ran out of space. Entries removed explicitly by {@link
+ * MemoryCache#remove(Object)} or {@link MemoryCache#clear()} are not counted.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class CacheStatistics
+{
+    /** An immutable copy of a cache's statistics at a point in time. */
+    public static class Snapshot
+    {
+        protected final long hits;
+        protected final long misses;
+        protected final long puts;
+        protected final long evictions;
+        protected final long evictedBytes;
+        protected final long evictedLifetimeNanos;
+        protected final double evictionRate;
+
+        public Snapshot(long hits, long misses, long puts, long evictions, long evictedBytes,
+            long evictedLifetimeNanos, double evictionRate)
+        {
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.evictions = evictions;
+            this.evictedBytes = evictedBytes;
+            this.evictedLifetimeNanos = evictedLifetimeNanos;
+            this.evictionRate = evictionRate;
+        }
+
+        /**
+         * Returns the number of lookups that found an entry.
+         *
+         * @return the number of cache hits.
+         */
+        public long getHits()
+        {
+            return this.hits;
+        }
+
+        /**
+         * Returns the number of lookups that did not find an entry.
+         *
+         * @return the number of cache misses.
+         */
+        public long getMisses()
+        {
+            return this.misses;
+        }
+
+        /**
+         * Returns the fraction of lookups that found an entry.
+         *
+         * @return the hit rate in the range [0, 1], or 0 if there have been no lookups.
+         */
+        public double getHitRate()
+        {
+            long lookups = this.hits + this.misses;
+            return lookups > 0 ? (double) this.hits / lookups : 0;
+        }
+
+        /**
+         * Returns the number of entries added to the cache.
+         *
+         * @return the number of entries added.
+         */
+        public long getPuts()
+        {
+            return this.puts;
+        }
+
+        /**
+         * Returns the number of entries removed to make room for new entries.
+         *
+         * @return the number of evictions.
+         */
+        public long getEvictions()
+        {
+            return this.evictions;
+        }
+
+        /**
+         * Returns the total size, in cache units, of the entries removed to make room for new entries.
+         *
+         * @return the evicted size.
+         */
+        public long getEvictedBytes()
+        {
+            return this.evictedBytes;
+        }
+
+        /**
+         * Returns the average time evicted entries spent in the cache.
+         *
+         * @return the average lifetime of evicted entries in milliseconds, or 0 if no entries have been evicted.
+         */
+        public double getAverageEntryLifetime()
+        {
+            return this.evictions > 0 ? this.evictedLifetimeNanos / 1.0e6 / this.evictions : 0;
+        }
+
+        /**
+         * Returns the recent eviction rate, measured over the last complete eviction rate window and the current partial
+         * window.
+         *
+         * @return the number of evictions per second.
+         */
+        public double getEvictionRate()
+        {
+            return this.evictionRate;
+        }
+
+        /**
+         * Returns a snapshot that combines this snapshot's values with another's. Counts and eviction rates are summed.
+         *
+         * @param that the snapshot to combine with this one.
+         *
+         * @return a new snapshot holding the combined values.
+         */
+        public Snapshot add(Snapshot that)
+        {
+            return new Snapshot(this.hits + that.hits, this.misses + that.misses, this.puts + that.puts,
+                this.evictions + that.evictions, this.evictedBytes + that.evictedBytes,
+                this.evictedLifetimeNanos + that.evictedLifetimeNanos, this.evictionRate + that.evictionRate);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("hits=").append(this.hits);
+            sb.append(", misses=").append(this.misses);
+            sb.append(", hitRate=").append(String.format("%.3f", this.getHitRate()));
+            sb.append(", puts=").append(this.puts);
+            sb.append(", evictions=").append(this.evictions);
+            sb.append(", evictedBytes=").append(this.evictedBytes);
+            sb.append(", avgLifetimeMs=").append(String.format("%.1f", this.getAverageEntryLifetime()));
+            sb.append(", evictionsPerSec=").append(String.format("%.2f", this.evictionRate));
+
+            return sb.toString();
+        }
+    }
+
+    /** The default length of the eviction rate window, in milliseconds. */
+    protected static final long DEFAULT_RATE_WINDOW = 10000;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong puts = new AtomicLong();
+    protected final AtomicLong evictions = new AtomicLong();
+    protected final AtomicLong evictedBytes = new AtomicLong();
+    protected final AtomicLong evictedLifetimeNanos = new AtomicLong();
+    // The eviction rate is measured over two consecutive fixed windows: the last complete window and the current one.
+    protected final long rateWindowNanos;
+    protected long windowStart;
+    protected long windowEvictions;
+    protected long previousWindowEvictions;
+
+    /** Creates a statistics accumulator with the default eviction rate window of 10 seconds. */
+    public CacheStatistics()
+    {
+        this(DEFAULT_RATE_WINDOW);
+    }
+
+    /**
+     * Creates a statistics accumulator with a specified eviction rate window.
+     *
+     * @param rateWindow the length of the eviction rate window, in milliseconds.
+     */
+    public CacheStatistics(long rateWindow)
+    {
+        this.rateWindowNanos = Math.max(1, rateWindow) * 1000000L;
+        this.windowStart = System.nanoTime();
+    }
+
+    /** Records a lookup that found an entry. */
+    public void recordHit()
+    {
+        this.hits.incrementAndGet();
+    }
+
+    /** Records a lookup that did not find an entry. */
+    public void recordMiss()
+    {
+        this.misses.incrementAndGet();
+    }
+
+    /** Records that an entry was added to the cache. */
+    public void recordPut()
+    {
+        this.puts.incrementAndGet();
+    }
+
+    /**
+     * Records that an entry was removed to make room for a new entry.
+     *
+     * @param size     the evicted entry's size in cache units.
+     * @param lifetime the time the entry spent in the cache, in nanoseconds.
+     */
+    public void recordEviction(long size, long lifetime)
+    {
+        this.evictions.incrementAndGet();
+        this.evictedBytes.addAndGet(size);
+        this.evictedLifetimeNanos.addAndGet(Math.max(0, lifetime));
+
+        synchronized (this)
+        {
+            this.advanceWindow(System.nanoTime());
+            this.windowEvictions++;
+        }
+    }
+
+    /**
+     * Returns a consistent copy of the current statistics.
+     *
+     * @return a snapshot of the current statistics.
+     */
+    public Snapshot getSnapshot()
+    {
+        double rate;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            this.advanceWindow(now);
+            long elapsed = this.rateWindowNanos + (now - this.windowStart);
+            rate = (this.previousWindowEvictions + this.windowEvictions) / (elapsed / 1.0e9);
+        }
+
+        return new Snapshot(this.hits.get(), this.misses.get(), this.puts.get(), this.evictions.get(),
+            this.evictedBytes.get(), this.evictedLifetimeNanos.get(), rate);
+    }
+
+    /** Sets all statistics to zero. */
+    public void reset()
+    {
+        this.hits.set(0);
+        this.misses.set(0);
+        this.puts.set(0);
+        this.evictions.set(0);
+        this.evictedBytes.set(0);
+        this.evictedLifetimeNanos.set(0);
+
+        synchronized (this)
+        {
+            this.windowStart = System.nanoTime();
+            this.windowEvictions = 0;
+            this.previousWindowEvictions = 0;
+        }
+    }
+
+    protected void advanceWindow(long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long elapsed = now - this.windowStart;
+        if (elapsed < this.rateWindowNanos)
+            return;
+
+        // When more than one full window has passed without an eviction, the previous window was empty.
+        this.previousWindowEvictions = elapsed < 2 * this.rateWindowNanos ? this.windowEvictions : 0;
+        this.windowEvictions = 0;
+        this.windowStart = now - (elapsed % this.rateWindowNanos);
+    }
+}
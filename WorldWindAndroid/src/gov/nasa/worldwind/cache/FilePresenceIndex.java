@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * Answers whether a file store location might contain a file, without querying the file system. The index is a Bloom
+ * filter over the names of the files found by scanning the location, so it never reports a file that exists as absent,
+ * but occasionally reports a file that does not exist as present. A file store uses it to skip the file system query
+ * for files that are definitely absent, which are the common case for tiles that have not yet been downloaded.
+ * <p/>
+ * The index is built in two steps. While the location is being scanned, {@link #addScanned(String)} collects the
+ * names' hashes, and {@link #mightContain(String)} conservatively answers true for every name. {@link #endBuild()}
+ * then sizes the filter for the number of names found and makes it ready. Names added by {@link #add(String)} at any
+ * time, including during the scan, are included. Removing a file from the location cannot remove its name from the
+ * filter; the name continues to be reported as possibly present, which costs a file system query but is never wrong.
+ * <p/>
+ * The filter is sized with room for twice the number of scanned names. Once more names than that have been added, the
+ * false positive rate rises and {@link #isSaturated()} returns true to indicate that the location should be scanned
+ * again.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class FilePresenceIndex
+{
+    /** The default false positive rate at the filter's expected number of names. */
+    protected static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+    /** The smallest number of names the filter is sized for. */
+    protected static final int MIN_EXPECTED_NAMES = 1024;
+
+    protected final double falsePositiveRate;
+    protected long[] bits;
+    protected int numBits;
+    protected int numHashes;
+    protected int expectedNames;
+    protected int numNames;
+    // Hashes of the names found while scanning, and of names added before the filter is ready.
+    protected long[] pendingHashes = new long[MIN_EXPECTED_NAMES];
+    protected int numPendingHashes;
+
+    /** Creates an index that is not yet ready, with the default false positive rate. */
+    public FilePresenceIndex()
+    {
+        this(DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Creates an index that is not yet ready, with a specified false positive rate.
+     *
+     * @param falsePositiveRate the fraction of absent names the index may report as present, in the range (0, 1).
+     *
+     * @throws IllegalArgumentException if the rate is outside the range (0, 1).
+     */
+    public FilePresenceIndex(double falsePositiveRate)
+    {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+        {
+            String msg = Logging.getMessage("generic.FractionIsInvalid", falsePositiveRate);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Records a name found while scanning the location. Has no effect once the index is ready.
+     *
+     * @param name the file name, relative to the location.
+     */
+    public synchronized void addScanned(String name)
+    {
+        if (this.bits == null)
+            this.addPending(hash(name));
+    }
+
+    /**
+     * Sizes the filter for the names found by the scan and makes the index ready. Has no effect if the index is
+     * already ready.
+     */
+    public synchronized void endBuild()
+    {
+        if (this.bits != null)
+            return;
+
+        this.expectedNames = Math.max(MIN_EXPECTED_NAMES, 2 * this.numPendingHashes);
+        double ln2 = Math.log(2);
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - 63,
+            Math.ceil(-this.expectedNames * Math.log(this.falsePositiveRate) / (ln2 * ln2)));
+        this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / this.expectedNames * ln2));
+        this.bits = new long[(this.numBits + 63) / 64];
+
+        for (int i = 0; i < this.numPendingHashes; i++)
+        {
+            this.set(this.pendingHashes[i]);
+        }
+
+        this.pendingHashes = null;
+        this.numPendingHashes = 0;
+    }
+
+    /**
+     * Records that a file was added to the location.
+     *
+     * @param name the file name, relative to the location.
+     */
+    public synchronized void add(String name)
+    {
+        long hash = hash(name);
+
+        if (this.bits != null)
+            this.set(hash);
+        else
+            this.addPending(hash);
+    }
+
+    /**
+     * Indicates whether the location might contain a file. The answer is true for every name until the index is ready.
+     *
+     * @param name the file name, relative to the location.
+     *
+     * @return false if the location definitely does not contain the file, otherwise true.
+     */
+    public synchronized boolean mightContain(String name)
+    {
+        if (this.bits == null)
+            return true;
+
+        long hash = hash(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < this.numHashes; i++)
+        {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            if ((this.bits[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Indicates whether the scan has completed and the index answers from its filter.
+     *
+     * @return true if the index is ready, otherwise false.
+     */
+    public synchronized boolean isReady()
+    {
+        return this.bits != null;
+    }
+
+    /**
+     * Indicates whether more names have been added than the filter was sized for, so that its false positive rate is
+     * higher than intended.
+     *
+     * @return true if the location should be scanned again, otherwise false.
+     */
+    public synchronized boolean isSaturated()
+    {
+        return this.bits != null && this.numNames > this.expectedNames;
+    }
+
+    /**
+     * Returns the number of names added to the index, including names added more than once.
+     *
+     * @return the number of names.
+     */
+    public synchronized int getNumNames()
+    {
+        return this.bits != null ? this.numNames : this.numPendingHashes;
+    }
+
+    /**
+     * Returns the size of the filter.
+     *
+     * @return the filter's size in bytes, or 0 if the index is not yet ready.
+     */
+    public synchronized long getSizeInBytes()
+    {
+        return this.bits != null ? 8L * this.bits.length : 0;
+    }
+
+    protected void addPending(long hash) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (this.numPendingHashes == this.pendingHashes.length)
+            this.pendingHashes = Arrays.copyOf(this.pendingHashes, 2 * this.pendingHashes.length);
+
+        this.pendingHashes[this.numPendingHashes++] = hash;
+    }
+
+    protected void set(long hash) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (int i = 0; i < this.numHashes; i++)
+        {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+            this.bits[bit >>> 6] |= 1L << bit;
+        }
+
+        this.numNames++;
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash of a name. The two halves of the hash are combined to derive the filter's bit
+     * positions.
+     *
+     * @param name the name to hash.
+     *
+     * @return the name's hash.
+     */
+    protected static long hash(String name)
+    {
+        long hash = 0xcbf29ce484222325L;
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        // Make the second half odd so that it is never zero, and the probes do not all select the same bit.
+        return hash | 0x100000000L;
+    }
+}
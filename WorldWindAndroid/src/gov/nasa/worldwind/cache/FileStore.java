@@ -105,6 +105,32 @@ public interface FileStore
      */
     void removeFile(java.net.URL url);
 
+    /**
+     * Indicates whether a file in the file store was last modified before a specified time, and should be refreshed
+     * from its source.
+     *
+     * @param url        a URL, as returned by {@link #findFile(String, boolean)} identifying the file.
+     * @param expiryTime the time before which files are expired, in milliseconds since the epoch.
+     *
+     * @return true if the file exists and was last modified before the expiry time, otherwise false.
+     *
+     * @throws IllegalArgumentException if the specified URL is null.
+     */
+    boolean isFileExpired(java.net.URL url, long expiryTime);
+
+    /**
+     * Sets the modification time of a file in the file store to the current time, so that it is no longer expired.
+     * Called when the file's source confirms that the file has not changed.
+     *
+     * @param fileName the file to refresh, identified by a path relative to the root of the file store.
+     *
+     * @return true if the file's modification time was set, false if the file store does not contain the file or its
+     *         time could not be set.
+     *
+     * @throws IllegalArgumentException if the specified path is null.
+     */
+    boolean refreshFile(String fileName);
+
     /**
      * Returns an array of strings naming the files discovered directly under a specified file store path name. If the
      * path name is null, files under the store root are searched. This returns null if the path does not exist in the
@@ -151,4 +177,10 @@ public interface FileStore
      * @throws IllegalArgumentException if the filter is null.
      */
     String[] listTopFileNames(String pathName, FileStoreFilter filter);
+
+    /**
+     * Stops the file store's background tasks and closes the files it holds open. Called when World Wind shuts down,
+     * before another file store is created over the same locations.
+     */
+    void close();
 }
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Tracks the size and last access time of the files in a file store location, in least recently used order. Accesses
+ * are recorded in memory only, so that reading a file from the store does not write to the file system. The access
+ * times are written to a file in batches by {@link #save(java.io.File)}, and read back by {@link #load(java.io.File)}
+ * when the store is next opened. Only coarse changes mark the index as changed: an access marks it only if the file's
+ * saved access time is older than {@link #ACCESS_TIME_RESOLUTION}, so that reading the same files repeatedly does not
+ * cause the index to be saved again.
+ * <p/>
+ * A file's size may be unknown when the file is recorded, for example when its name is handed out before its contents
+ * are written. Such files are not counted in {@link #getTotalSize()} until their size is set by {@link
+ * #setSize(String, long)}.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class FileStoreUsageIndex
+{
+    /** The size and access time of a single file. */
+    public static class Entry
+    {
+        protected final String name;
+        protected long size;
+        protected long time;
+        protected long savedTime;
+
+        /**
+         * Creates an entry for a file.
+         *
+         * @param name the file's name, relative to the store location.
+         * @param size the file's size in bytes, or -1 if unknown.
+         * @param time the file's last access time, in milliseconds since the epoch.
+         */
+        public Entry(String name, long size, long time)
+        {
+            this.name = name;
+            this.size = size;
+            this.time = time;
+            this.savedTime = time;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public long getSize()
+        {
+            return this.size;
+        }
+
+        public long getTime()
+        {
+            return this.time;
+        }
+    }
+
+    /**
+     * The least change, in milliseconds, to a file's saved access time that marks the index as changed. Access order
+     * within this resolution is lost when the store is closed.
+     */
+    public static final long ACCESS_TIME_RESOLUTION = 600000;
+    protected static final int FILE_MAGIC = 0x57575549;
+
+    // Least recently used first. An access moves an entry to the end by removing and re-inserting it.
+    protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+    protected long totalSize;
+    protected boolean dirty;
+
+    /** Creates an empty index. */
+    public FileStoreUsageIndex()
+    {
+    }
+
+    /**
+     * Records that a file was read. The file becomes the most recently used file. A file that is not in the index is
+     * added with an unknown size.
+     *
+     * @param name the file's name.
+     */
+    public synchronized void recordAccess(String name)
+    {
+        Entry entry = this.entries.remove(name);
+        if (entry == null)
+        {
+            entry = new Entry(name, -1, 0);
+            this.dirty = true;
+        }
+
+        entry.time = System.currentTimeMillis();
+        this.entries.put(name, entry);
+
+        if (entry.time - entry.savedTime >= ACCESS_TIME_RESOLUTION)
+            this.dirty = true;
+    }
+
+    /**
+     * Records that a file was written. The file becomes the most recently used file, and replaces any file of the same
+     * name in the index.
+     *
+     * @param name the file's name.
+     * @param size the file's size in bytes, or -1 if not yet known.
+     */
+    public synchronized void recordWrite(String name, long size)
+    {
+        this.removeEntry(name);
+        this.addEntry(new Entry(name, size, System.currentTimeMillis()));
+        this.dirty = true;
+    }
+
+    /**
+     * Removes a file from the index.
+     *
+     * @param name the file's name.
+     */
+    public synchronized void remove(String name)
+    {
+        if (this.removeEntry(name) != null)
+            this.dirty = true;
+    }
+
+    /**
+     * Indicates whether the index contains a file.
+     *
+     * @param name the file's name.
+     *
+     * @return true if the index contains the file, otherwise false.
+     */
+    public synchronized boolean contains(String name)
+    {
+        return this.entries.containsKey(name);
+    }
+
+    /**
+     * Specifies the size of a file in the index without changing its position in the least recently used order.
+     *
+     * @param name the file's name.
+     * @param size the file's size in bytes.
+     */
+    public synchronized void setSize(String name, long size)
+    {
+        Entry entry = this.entries.get(name);
+        if (entry == null)
+            return;
+
+        if (entry.size > 0)
+            this.totalSize -= entry.size;
+
+        entry.size = size;
+
+        if (entry.size > 0)
+            this.totalSize += entry.size;
+    }
+
+    /**
+     * Returns the names of the files whose size is unknown.
+     *
+     * @return the names of the files whose size is unknown.
+     */
+    public synchronized List<String> getUnsizedNames()
+    {
+        List<String> names = new ArrayList<String>();
+
+        for (Entry entry : this.entries.values())
+        {
+            if (entry.size < 0)
+                names.add(entry.name);
+        }
+
+        return names;
+    }
+
+    /**
+     * Returns the total size of the files in the index whose size is known.
+     *
+     * @return the total size in bytes.
+     */
+    public synchronized long getTotalSize()
+    {
+        return this.totalSize;
+    }
+
+    /**
+     * Returns the number of files in the index.
+     *
+     * @return the number of files.
+     */
+    public synchronized int getNumEntries()
+    {
+        return this.entries.size();
+    }
+
+    /**
+     * Returns the least recently used files that must be removed to reduce the total size to <code>targetSize</code>
+     * or less. The files are not removed from the index.
+     *
+     * @param targetSize the total size to reduce the index to, in bytes.
+     *
+     * @return the names of the files to remove, least recently used first.
+     */
+    public List<String> selectEvictions(long targetSize)
+    {
+        return this.selectEvictions(targetSize, null, null);
+    }
+
+    /**
+     * Returns the least recently used files accepted by a filter that must be removed to reduce the total size to
+     * <code>targetSize</code> or less. Files the filter rejects are never selected, but still count toward the total
+     * size. The files are not removed from the index.
+     *
+     * @param targetSize the total size to reduce the index to, in bytes.
+     * @param fileStore  the file store passed to the filter.
+     * @param filter     the filter that selects the files that may be removed, or null to allow every file.
+     *
+     * @return the names of the files to remove, least recently used first.
+     */
+    public synchronized List<String> selectEvictions(long targetSize, FileStore fileStore, FileStoreFilter filter)
+    {
+        List<String> names = new ArrayList<String>();
+        long size = this.totalSize;
+
+        for (Entry entry : this.entries.values())
+        {
+            if (size <= targetSize)
+                break;
+
+            if (filter != null && !filter.accept(fileStore, entry.name))
+                continue;
+
+            names.add(entry.name);
+
+            if (entry.size > 0)
+                size -= entry.size;
+        }
+
+        return names;
+    }
+
+    /**
+     * Adds files found by scanning the store location. The scanned files are ordered by access time and placed before
+     * the files recorded since the index was created, which are more recent. A scanned file already in the index keeps
+     * its recorded access time, and takes the scanned size if its size is unknown.
+     *
+     * @param scanned the files found in the store location.
+     */
+    public synchronized void merge(Collection<Entry> scanned)
+    {
+        List<Entry> sorted = new ArrayList<Entry>(scanned);
+        Collections.sort(sorted, new Comparator<Entry>()
+        {
+            public int compare(Entry a, Entry b)
+            {
+                return a.time < b.time ? -1 : (a.time > b.time ? 1 : 0);
+            }
+        });
+
+        List<Entry> recorded = new ArrayList<Entry>(this.entries.values());
+        this.entries.clear();
+        this.totalSize = 0;
+
+        for (Entry entry : sorted)
+        {
+            this.addEntry(entry);
+        }
+
+        for (Entry entry : recorded)
+        {
+            Entry old = this.removeEntry(entry.name);
+            if (entry.size < 0 && old != null)
+                entry.size = old.size;
+
+            this.addEntry(entry);
+        }
+
+        this.dirty = true;
+    }
+
+    /**
+     * Indicates whether the index has changed since it was last saved.
+     *
+     * @return true if the index has unsaved changes, otherwise false.
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty;
+    }
+
+    /**
+     * Writes the index's file names and access times to a file. The file is written to a temporary file first and then
+     * renamed, so an interrupted save leaves the previous file intact.
+     *
+     * @param file the file to write.
+     *
+     * @throws IOException if the file cannot be written.
+     */
+    public void save(File file) throws IOException
+    {
+        List<Entry> snapshot;
+        synchronized (this)
+        {
+            snapshot = new ArrayList<Entry>(this.entries.size());
+            for (Entry entry : this.entries.values())
+            {
+                snapshot.add(new Entry(entry.name, entry.size, entry.time));
+                entry.savedTime = entry.time;
+            }
+            this.dirty = false;
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        try
+        {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot)
+            {
+                out.writeUTF(entry.name);
+                out.writeLong(entry.time);
+            }
+        }
+        catch (IOException e)
+        {
+            synchronized (this)
+            {
+                this.dirty = true;
+            }
+            throw e;
+        }
+        finally
+        {
+            WWIO.closeStream(out, tmpFile.getPath());
+        }
+
+        if (!tmpFile.renameTo(file))
+        {
+            // Some file systems do not replace an existing file on rename.
+            // noinspection ResultOfMethodCallIgnored
+            file.delete();
+            if (!tmpFile.renameTo(file))
+                throw new IOException(Logging.getMessage("generic.CannotCreateFile", file));
+        }
+    }
+
+    /**
+     * Reads the access times written by {@link #save(java.io.File)}. The returned times are intended to replace the
+     * modification times of the files found by scanning the store location before they are passed to {@link
+     * #merge(java.util.Collection)}.
+     *
+     * @param file the file to read.
+     *
+     * @return a map from file name to access time. The map is empty if the file does not exist or cannot be read.
+     */
+    public static Map<String, Long> load(File file)
+    {
+        Map<String, Long> times = new HashMap<String, Long>();
+        if (!file.exists())
+            return times;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_MAGIC)
+                return times;
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                String name = in.readUTF();
+                times.put(name, in.readLong());
+            }
+        }
+        catch (IOException e)
+        {
+            Logging.warning(Logging.getMessage("FileStore.ExceptionReadingUsageIndex", file), e);
+        }
+        finally
+        {
+            WWIO.closeStream(in, file.getPath());
+        }
+
+        return times;
+    }
+
+    protected void addEntry(Entry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        this.entries.put(entry.name, entry);
+
+        if (entry.size > 0)
+            this.totalSize += entry.size;
+    }
+
+    protected Entry removeEntry(String name) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        Entry entry = this.entries.remove(name);
+
+        if (entry != null && entry.size > 0)
+            this.totalSize -= entry.size;
+
+        return entry;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A count-min sketch that estimates how often keys have been seen, using four 4-bit counters per key. Counters are
+ * packed sixteen to a <code>long</code> and saturate at 15. Once the number of recorded increments reaches the sample
+ * size, every counter is halved so that the estimates favor recent history over old history.
+ * <p/>
+ * The sketch is safe to use from multiple threads without locking, except while it halves its counters. Concurrent
+ * increments may occasionally be lost; this only lowers the estimates slightly and never raises them.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class FrequencySketch
+{
+    protected static final int[] SEEDS = new int[] {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    protected static final long RESET_MASK = 0x7777777777777777L;
+    protected static final int SAMPLE_FACTOR = 10;
+
+    protected final AtomicLongArray table;
+    protected final int counterMask;
+    protected final int sampleSize;
+    protected final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates a sketch sized to estimate the frequencies of about <code>maximumEntries</code> distinct keys.
+     *
+     * @param maximumEntries the number of distinct keys the sketch should distinguish.
+     *
+     * @throws IllegalArgumentException if <code>maximumEntries</code> is less than 1.
+     */
+    public FrequencySketch(int maximumEntries)
+    {
+        if (maximumEntries < 1)
+        {
+            String msg = Logging.getMessage("generic.SizeIsInvalid", maximumEntries);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Use one 64-bit word, sixteen counters, for every four expected keys, rounded up to a power of two.
+        int tableLength = Integer.highestOneBit(Math.max(1, maximumEntries / 4 - 1)) << 1;
+        this.table = new AtomicLongArray(tableLength);
+        this.counterMask = tableLength * 16 - 1;
+        this.sampleSize = maximumEntries * SAMPLE_FACTOR;
+    }
+
+    /**
+     * Returns the estimated number of times the key has been recorded since the counters were last halved, up to 15.
+     *
+     * @param key the key to look up.
+     *
+     * @return the key's estimated frequency.
+     */
+    public int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            int index = this.counterIndex(hash, i);
+            int count = (int) ((this.table.get(index >>> 4) >>> ((index & 15) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records one occurrence of the key.
+     *
+     * @param key the key to record.
+     */
+    public void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for (int i = 0; i < SEEDS.length; i++)
+        {
+            added |= this.incrementCounter(this.counterIndex(hash, i));
+        }
+
+        if (added && this.size.incrementAndGet() >= this.sampleSize)
+            this.reset();
+    }
+
+    /** Halves every counter in the sketch. */
+    protected synchronized void reset()
+    {
+        if (this.size.get() < this.sampleSize) // another thread reset the sketch while we were waiting
+            return;
+
+        for (int i = 0; i < this.table.length(); i++)
+        {
+            long value;
+            do
+            {
+                value = this.table.get(i);
+            }
+            while (!this.table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+        }
+
+        this.size.set(this.size.get() / 2);
+    }
+
+    protected boolean incrementCounter(int index)
+    {
+        int tableIndex = index >>> 4;
+        int shift = (index & 15) << 2;
+        long mask = 0xFL << shift;
+
+        long value = this.table.get(tableIndex);
+        if ((value & mask) == mask) // counter is saturated
+            return false;
+
+        return this.table.compareAndSet(tableIndex, value, value + (1L << shift));
+    }
+
+    protected int counterIndex(int hash, int depth)
+    {
+        int h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 16;
+
+        return h & this.counterMask;
+    }
+
+    protected static int spread(int hash)
+    {
+        hash ^= (hash >>> 17);
+        hash *= 0xED5AD4BB;
+        hash ^= (hash >>> 11);
+        hash *= 0xAC4C1B51;
+        hash ^= (hash >>> 15);
+
+        return hash;
+    }
+}
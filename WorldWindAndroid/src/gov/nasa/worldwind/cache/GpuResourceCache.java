@@ -184,4 +184,28 @@ public interface GpuResourceCache
      * @see #remove(Object)
      */
     void setLowWater(long loWater);
+
+    /**
+     * Returns the usage statistics accumulated by this cache: hits, misses, puts and evictions.
+     *
+     * @return this cache's statistics.
+     */
+    CacheStatistics getStatistics();
+
+    /**
+     * Returns the queue that holds resources removed from this cache until they are deleted. Removing a resource from
+     * the cache does not delete it; the owner of the OpenGL context must drain this queue on the OpenGL thread, which
+     * {@link gov.nasa.worldwind.SceneController} does once per frame.
+     *
+     * @return this cache's deletion queue.
+     */
+    GpuResourceDeletionQueue getDeletionQueue();
+
+    /**
+     * Returns the pool that holds textures removed from this cache so that their texture objects can be reused by new
+     * textures of the same shape.
+     *
+     * @return this cache's texture pool, or null if this cache does not pool textures.
+     */
+    GpuTexturePool getTexturePool();
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Holds GPU resources that have left a {@link GpuResourceCache} until they can be deleted on the OpenGL thread.
+ * Resources may be added from any thread. The OpenGL thread calls {@link #drain(long, int)} once per frame, which
+ * deletes resources in the order they were added until a time or count budget is used up. This spreads the cost of a
+ * large eviction over several frames instead of stalling the frame that triggered it.
+ * <p/>
+ * The queue does not call OpenGL itself. Deletion is delegated to a {@link Deleter}, so the queue can be used without
+ * an OpenGL context.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class GpuResourceDeletionQueue
+{
+    /** Deletes a single GPU resource. Called only from {@link GpuResourceDeletionQueue#drain(long, int)}. */
+    public interface Deleter
+    {
+        /**
+         * Deletes the specified resource.
+         *
+         * @param resource     the resource to delete.
+         * @param resourceType the resource's type, one of the resource types defined by {@link GpuResourceCache}.
+         */
+        void delete(Object resource, String resourceType);
+    }
+
+    protected static class PendingDeletion
+    {
+        protected final Object resource;
+        protected final String resourceType;
+
+        public PendingDeletion(Object resource, String resourceType)
+        {
+            this.resource = resource;
+            this.resourceType = resourceType;
+        }
+    }
+
+    protected final Deleter deleter;
+    protected final Queue<PendingDeletion> queue = new ConcurrentLinkedQueue<PendingDeletion>();
+    protected final AtomicInteger size = new AtomicInteger();
+    protected final AtomicInteger maxSize = new AtomicInteger();
+    protected final AtomicLong addedCount = new AtomicLong();
+    protected final AtomicLong deletedCount = new AtomicLong();
+    protected volatile int lastDrainCount;
+    protected volatile long lastDrainTime;
+
+    /**
+     * Creates an empty deletion queue that deletes resources with the specified deleter.
+     *
+     * @param deleter the deleter that performs the actual deletions.
+     *
+     * @throws IllegalArgumentException if the deleter is null.
+     */
+    public GpuResourceDeletionQueue(Deleter deleter)
+    {
+        if (deleter == null)
+        {
+            String msg = Logging.getMessage("nullValue.DeleterIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.deleter = deleter;
+    }
+
+    /**
+     * Adds a resource to the end of the queue. May be called from any thread.
+     *
+     * @param resource     the resource to delete.
+     * @param resourceType the resource's type.
+     *
+     * @throws IllegalArgumentException if the resource is null.
+     */
+    public void add(Object resource, String resourceType)
+    {
+        if (resource == null)
+        {
+            String msg = Logging.getMessage("nullValue.ResourceIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.queue.add(new PendingDeletion(resource, resourceType));
+        this.addedCount.incrementAndGet();
+
+        int newSize = this.size.incrementAndGet();
+        int oldMax;
+        while (newSize > (oldMax = this.maxSize.get()))
+        {
+            if (this.maxSize.compareAndSet(oldMax, newSize))
+                break;
+        }
+    }
+
+    /**
+     * Deletes queued resources in the order they were added until the queue is empty, <code>maxTime</code> has
+     * elapsed, or <code>maxCount</code> resources have been deleted. At least one resource is deleted if the queue is
+     * not empty, so the queue always makes progress. Must be called on the thread that owns the OpenGL context.
+     *
+     * @param maxTime  the time budget in nanoseconds. Values less than 1 mean no time limit.
+     * @param maxCount the maximum number of resources to delete. Values less than 1 mean no count limit.
+     *
+     * @return the number of resources deleted.
+     */
+    public int drain(long maxTime, int maxCount)
+    {
+        long start = System.nanoTime();
+        int count = 0;
+
+        PendingDeletion pending;
+        while ((pending = this.queue.poll()) != null)
+        {
+            this.size.decrementAndGet();
+
+            try
+            {
+                this.deleter.delete(pending.resource, pending.resourceType);
+            }
+            catch (Exception e)
+            {
+                String msg = Logging.getMessage("GL.ExceptionRemovingCachedGpuResource", pending.resource);
+                Logging.info(msg, e);
+            }
+
+            count++;
+
+            if (maxCount > 0 && count >= maxCount)
+                break;
+
+            if (maxTime > 0 && System.nanoTime() - start >= maxTime)
+                break;
+        }
+
+        this.deletedCount.addAndGet(count);
+        this.lastDrainCount = count;
+        this.lastDrainTime = System.nanoTime() - start;
+
+        return count;
+    }
+
+    /**
+     * Removes every queued resource without deleting it. Use this when the OpenGL context that owned the resources
+     * has been destroyed, and their names are no longer valid.
+     */
+    public void discard()
+    {
+        while (this.queue.poll() != null)
+        {
+            this.size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the number of resources waiting to be deleted.
+     *
+     * @return the queue depth.
+     */
+    public int getSize()
+    {
+        return this.size.get();
+    }
+
+    /**
+     * Returns the largest number of resources that have been waiting to be deleted at once.
+     *
+     * @return the maximum queue depth.
+     */
+    public int getMaxSize()
+    {
+        return this.maxSize.get();
+    }
+
+    /**
+     * Returns the number of resources added to the queue.
+     *
+     * @return the total number of resources added.
+     */
+    public long getAddedCount()
+    {
+        return this.addedCount.get();
+    }
+
+    /**
+     * Returns the number of resources deleted by the queue.
+     *
+     * @return the total number of resources deleted.
+     */
+    public long getDeletedCount()
+    {
+        return this.deletedCount.get();
+    }
+
+    /**
+     * Returns the number of resources deleted by the most recent call to {@link #drain(long, int)}.
+     *
+     * @return the number of resources deleted by the last drain.
+     */
+    public int getLastDrainCount()
+    {
+        return this.lastDrainCount;
+    }
+
+    /**
+     * Returns the time spent in the most recent call to {@link #drain(long, int)}.
+     *
+     * @return the duration of the last drain, in nanoseconds.
+     */
+    public long getLastDrainTime()
+    {
+        return this.lastDrainTime;
+    }
+}
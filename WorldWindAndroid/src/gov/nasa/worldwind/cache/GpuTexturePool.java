@@ -0,0 +1,357 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.render.GpuTexture;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+
+/**
+ * Holds textures that have left a {@link GpuResourceCache} so that their OpenGL texture objects can be reused by new
+ * textures of the same shape, instead of being deleted and generated again. Tiled imagery is almost always drawn from
+ * a handful of tile sizes and pixel formats, so nearly every texture evicted while panning has the same shape as the
+ * texture that is created next. Reusing its texture object replaces a glDeleteTextures, glGenTextures and glTexImage2D
+ * allocation with a single glTexSubImage2D upload.
+ * <p/>
+ * Textures are pooled by their target, width, height, internal format and pixel type. Textures whose format is unknown
+ * are not pooled. The pool holds at most a fixed number of bytes. When a new texture would exceed that capacity, the
+ * textures that have been in the pool the longest are returned to the caller for deletion.
+ * <p/>
+ * The pool never calls OpenGL itself, and may be used from any thread. The pool's statistics count a successful
+ * {@link #take(int, int, int, int, int)} as a hit, an unsuccessful one as a miss, each pooled texture as a put, and each
+ * texture displaced to stay within capacity as an eviction.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class GpuTexturePool
+{
+    protected static class PoolKey
+    {
+        protected final int target;
+        protected final int width;
+        protected final int height;
+        protected final int format;
+        protected final int type;
+
+        public PoolKey(int target, int width, int height, int format, int type)
+        {
+            this.target = target;
+            this.width = width;
+            this.height = height;
+            this.format = format;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+                return true;
+            if (o == null || this.getClass() != o.getClass())
+                return false;
+
+            PoolKey that = (PoolKey) o;
+            return this.target == that.target && this.width == that.width && this.height == that.height
+                && this.format == that.format && this.type == that.type;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = this.target;
+            result = 31 * result + this.width;
+            result = 31 * result + this.height;
+            result = 31 * result + this.format;
+            result = 31 * result + this.type;
+            return result;
+        }
+    }
+
+    protected static class PooledTexture
+    {
+        protected final GpuTexture texture;
+        protected final PoolKey key;
+        protected final long pooled;
+
+        public PooledTexture(GpuTexture texture, PoolKey key)
+        {
+            this.texture = texture;
+            this.key = key;
+            this.pooled = System.nanoTime();
+        }
+    }
+
+    protected final Object lock = new Object();
+    // Textures of each shape, most recently pooled last.
+    protected final Map<PoolKey, LinkedList<PooledTexture>> textures = new HashMap<PoolKey, LinkedList<PooledTexture>>();
+    // All pooled textures, least recently pooled first. The oldest texture of any shape is also the first in its list.
+    protected final LinkedList<PooledTexture> order = new LinkedList<PooledTexture>();
+    protected final CacheStatistics statistics = new CacheStatistics();
+    protected long capacity;
+    protected long usedCapacity;
+
+    /**
+     * Creates an empty pool that holds at most <code>capacity</code> bytes of textures.
+     *
+     * @param capacity the pool's capacity in bytes. A capacity of zero disables pooling.
+     *
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public GpuTexturePool(long capacity)
+    {
+        if (capacity < 0)
+        {
+            String msg = Logging.getMessage("generic.CapacityIsInvalid", capacity);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Indicates whether a texture can be pooled. A texture can be pooled if its internal format and pixel type are
+     * known, and it is no larger than the pool's capacity.
+     *
+     * @param texture the texture to test.
+     *
+     * @return true if the texture can be pooled, otherwise false.
+     */
+    public boolean isPoolable(GpuTexture texture)
+    {
+        return texture != null && texture.getFormat() != 0 && texture.getType() != 0
+            && texture.getSizeInBytes() <= this.getCapacity();
+    }
+
+    /**
+     * Adds a texture to the pool. If the pool would exceed its capacity, the textures that have been pooled the longest
+     * are removed from the pool and returned. The caller owns the returned textures and must delete them. A texture
+     * that cannot be pooled is returned as the only element of the list.
+     *
+     * @param texture the texture to pool.
+     *
+     * @return the textures the caller must delete. The list is empty if the pool had room for the texture.
+     *
+     * @throws IllegalArgumentException if the texture is null.
+     */
+    public List<GpuTexture> offer(GpuTexture texture)
+    {
+        if (texture == null)
+        {
+            String msg = Logging.getMessage("nullValue.TextureIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (!this.isPoolable(texture))
+            return Collections.singletonList(texture);
+
+        List<GpuTexture> displaced = new ArrayList<GpuTexture>();
+
+        synchronized (this.lock)
+        {
+            long size = texture.getSizeInBytes();
+            while (this.usedCapacity + size > this.capacity && !this.order.isEmpty())
+            {
+                displaced.add(this.removeOldest().texture);
+            }
+
+            PoolKey key = this.createKey(texture.getTarget(), texture.getWidth(), texture.getHeight(),
+                texture.getFormat(), texture.getType());
+
+            LinkedList<PooledTexture> list = this.textures.get(key);
+            if (list == null)
+            {
+                list = new LinkedList<PooledTexture>();
+                this.textures.put(key, list);
+            }
+
+            PooledTexture pooled = new PooledTexture(texture, key);
+            list.addLast(pooled);
+            this.order.addLast(pooled);
+            this.usedCapacity += size;
+        }
+
+        this.statistics.recordPut();
+
+        return displaced;
+    }
+
+    /**
+     * Removes and returns a pooled texture with the specified shape. The most recently pooled matching texture is
+     * returned, since its texture object is the most likely to still be resident in GPU memory.
+     *
+     * @param target the texture's target, such as GL_TEXTURE_2D.
+     * @param width  the texture's width in texels.
+     * @param height the texture's height in texels.
+     * @param format the texture's internal format, such as GL_RGBA.
+     * @param type   the texture's pixel type, such as GL_UNSIGNED_BYTE.
+     *
+     * @return a pooled texture with the specified shape, or null if the pool holds none.
+     */
+    public GpuTexture take(int target, int width, int height, int format, int type)
+    {
+        PooledTexture pooled = null;
+
+        synchronized (this.lock)
+        {
+            LinkedList<PooledTexture> list = this.textures.get(this.createKey(target, width, height, format, type));
+            if (list != null && !list.isEmpty())
+            {
+                pooled = list.removeLast();
+                this.order.remove(pooled);
+                this.usedCapacity -= pooled.texture.getSizeInBytes();
+            }
+        }
+
+        if (pooled != null)
+            this.statistics.recordHit();
+        else
+            this.statistics.recordMiss();
+
+        return pooled != null ? pooled.texture : null;
+    }
+
+    /**
+     * Removes every texture from the pool and returns them. The caller owns the returned textures and must delete
+     * them.
+     *
+     * @return the textures that were in the pool.
+     */
+    public List<GpuTexture> clear()
+    {
+        List<GpuTexture> removed = new ArrayList<GpuTexture>();
+
+        synchronized (this.lock)
+        {
+            for (PooledTexture pooled : this.order)
+            {
+                removed.add(pooled.texture);
+            }
+
+            this.textures.clear();
+            this.order.clear();
+            this.usedCapacity = 0;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Removes every texture from the pool without returning them. Use this when the OpenGL context that owned the
+     * textures has been destroyed, and their names are no longer valid.
+     */
+    public void discard()
+    {
+        this.clear();
+    }
+
+    /**
+     * Returns the number of bytes of textures the pool may hold.
+     *
+     * @return the pool's capacity in bytes.
+     */
+    public long getCapacity()
+    {
+        synchronized (this.lock)
+        {
+            return this.capacity;
+        }
+    }
+
+    /**
+     * Specifies the number of bytes of textures the pool may hold. When the capacity shrinks, the textures that have
+     * been pooled the longest are removed until the pool fits, and are returned.
+     *
+     * @param capacity the pool's capacity in bytes. A capacity of zero disables pooling.
+     *
+     * @return the textures the caller must delete.
+     *
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public List<GpuTexture> setCapacity(long capacity)
+    {
+        if (capacity < 0)
+        {
+            String msg = Logging.getMessage("generic.CapacityIsInvalid", capacity);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<GpuTexture> displaced = new ArrayList<GpuTexture>();
+
+        synchronized (this.lock)
+        {
+            this.capacity = capacity;
+
+            while (this.usedCapacity > this.capacity && !this.order.isEmpty())
+            {
+                displaced.add(this.removeOldest().texture);
+            }
+        }
+
+        return displaced;
+    }
+
+    /**
+     * Returns the number of bytes of textures in the pool.
+     *
+     * @return the pool's used capacity in bytes.
+     */
+    public long getUsedCapacity()
+    {
+        synchronized (this.lock)
+        {
+            return this.usedCapacity;
+        }
+    }
+
+    /**
+     * Returns the number of textures in the pool.
+     *
+     * @return the number of pooled textures.
+     */
+    public int getNumObjects()
+    {
+        synchronized (this.lock)
+        {
+            return this.order.size();
+        }
+    }
+
+    /**
+     * Returns the pool's hit, miss and eviction statistics.
+     *
+     * @return the pool's statistics.
+     */
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    protected PoolKey createKey(int target, int width, int height, int format, int type)
+    {
+        return new PoolKey(target, width, height, format, type);
+    }
+
+    protected PooledTexture removeOldest() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        PooledTexture pooled = this.order.removeFirst();
+
+        LinkedList<PooledTexture> list = this.textures.get(pooled.key);
+        list.removeFirst();
+        if (list.isEmpty())
+            this.textures.remove(pooled.key);
+
+        long size = pooled.texture.getSizeInBytes();
+        this.usedCapacity -= size;
+        this.statistics.recordEviction(size, System.nanoTime() - pooled.pooled);
+
+        return pooled;
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Divides a single memory budget among the caches of a {@link MemoryCacheSet}. Instead of each cache keeping the fixed
+ * capacity it was created with, the coordinator periodically moves capacity from the cache that would lose the least
+ * by shrinking to the cache that would gain the most by growing. A cache's marginal value is estimated from the
+ * statistics it accumulated since the last rebalance: a cache that evicted entries and then missed lookups would likely
+ * have hit with more space, whereas a cache that evicted nothing does not need the space it has.
+ * <p/>
+ * The sum of the managed caches' capacities always equals the budget. Caches added to the cache set after the
+ * coordinator starts are picked up at the next rebalance, and the existing capacities are scaled to make room for them.
+ * Each cache keeps its original ratio of low water to capacity.
+ * <p/>
+ * When the host application receives a low memory signal it should call {@link #onLowMemory()}, which shrinks the
+ * budget and every cache proportionally. Entries that no longer fit are evicted, but the caches are not cleared. Each
+ * later rebalance grows the budget by one step until it is back to the configured budget.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class MemoryBudgetCoordinator
+{
+    protected static class CacheState
+    {
+        protected final MemoryCache cache;
+        protected final double lowWaterRatio;
+        protected CacheStatistics.Snapshot lastSnapshot;
+
+        protected CacheState(MemoryCache cache)
+        {
+            this.cache = cache;
+            long capacity = cache.getCapacity();
+            this.lowWaterRatio = capacity > 0 ? (double) cache.getLowWater() / capacity : DEFAULT_LOW_WATER_RATIO;
+            this.lastSnapshot = cache.getStatistics().getSnapshot();
+        }
+    }
+
+    /** The default interval between rebalances, in milliseconds. */
+    protected static final long DEFAULT_REBALANCE_INTERVAL = 5000;
+    /** The default fraction of the budget moved between two caches in one rebalance. */
+    protected static final double DEFAULT_STEP_FRACTION = 0.05;
+    /** The default smallest fraction of the budget a cache may be reduced to. */
+    protected static final double DEFAULT_MIN_CACHE_FRACTION = 0.05;
+    /** The default fraction of the budget retained after a low memory signal. */
+    protected static final double DEFAULT_LOW_MEMORY_FRACTION = 0.5;
+    protected static final double DEFAULT_LOW_WATER_RATIO = 0.8;
+
+    protected final MemoryCacheSet cacheSet;
+    protected long budget;
+    protected long configuredBudget;
+    protected double stepFraction = DEFAULT_STEP_FRACTION;
+    protected double minCacheFraction = DEFAULT_MIN_CACHE_FRACTION;
+    protected double lowMemoryFraction = DEFAULT_LOW_MEMORY_FRACTION;
+    protected final Map<MemoryCache, CacheState> states = new IdentityHashMap<MemoryCache, CacheState>();
+    protected ScheduledExecutorService executor;
+
+    /**
+     * Creates a coordinator that divides <code>budget</code> among the caches in <code>cacheSet</code>. The coordinator
+     * does not rebalance until {@link #start(long)} is called or {@link #rebalance()} is called explicitly.
+     *
+     * @param cacheSet the cache set whose caches are managed.
+     * @param budget   the total capacity to divide among the caches, in cache units.
+     *
+     * @throws IllegalArgumentException if the cache set is null or the budget is less than 1.
+     */
+    public MemoryBudgetCoordinator(MemoryCacheSet cacheSet, long budget)
+    {
+        if (cacheSet == null)
+        {
+            String msg = Logging.getMessage("nullValue.CacheIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (budget < 1)
+        {
+            String msg = Logging.getMessage("generic.CapacityIsInvalid", budget);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.cacheSet = cacheSet;
+        this.budget = budget;
+        this.configuredBudget = budget;
+    }
+
+    /**
+     * Returns the total capacity currently divided among the managed caches. This is less than the configured budget
+     * while the coordinator recovers from a low memory signal.
+     *
+     * @return the budget, in cache units.
+     */
+    public synchronized long getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * Specifies the total capacity to divide among the managed caches. The caches are scaled proportionally to the new
+     * budget immediately, and the budget becomes the one restored after a low memory signal.
+     *
+     * @param budget the budget, in cache units.
+     *
+     * @throws IllegalArgumentException if the budget is less than 1.
+     */
+    public synchronized void setBudget(long budget)
+    {
+        if (budget < 1)
+        {
+            String msg = Logging.getMessage("generic.CapacityIsInvalid", budget);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.budget = budget;
+        this.configuredBudget = budget;
+        this.updateCacheList();
+        this.scaleToBudget();
+    }
+
+    /**
+     * Returns the budget specified at construction or by the last call to {@link #setBudget(long)}. The budget returns
+     * to this value after a low memory signal.
+     *
+     * @return the configured budget, in cache units.
+     */
+    public synchronized long getConfiguredBudget()
+    {
+        return this.configuredBudget;
+    }
+
+    /**
+     * Returns the fraction of the budget that is retained when {@link #onLowMemory()} is called.
+     *
+     * @return the fraction retained on low memory, in the range (0, 1].
+     */
+    public synchronized double getLowMemoryFraction()
+    {
+        return this.lowMemoryFraction;
+    }
+
+    /**
+     * Specifies the fraction of the budget that is retained when {@link #onLowMemory()} is called.
+     *
+     * @param fraction the fraction retained on low memory, in the range (0, 1].
+     *
+     * @throws IllegalArgumentException if the fraction is outside the range (0, 1].
+     */
+    public synchronized void setLowMemoryFraction(double fraction)
+    {
+        if (fraction <= 0 || fraction > 1)
+        {
+            String msg = Logging.getMessage("generic.FractionIsInvalid", fraction);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.lowMemoryFraction = fraction;
+    }
+
+    /**
+     * Starts rebalancing the budget periodically on a background thread. Does nothing if the coordinator is already
+     * started.
+     *
+     * @param interval the time between rebalances, in milliseconds. Values less than 1 select the default of 5
+     *                 seconds.
+     */
+    public synchronized void start(long interval)
+    {
+        if (this.executor != null)
+            return;
+
+        if (interval < 1)
+            interval = DEFAULT_REBALANCE_INTERVAL;
+
+        this.executor = DataConfigurationUtils.createResourceRetrievalService("World Wind Memory Budget");
+        this.executor.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    rebalance();
+                }
+                catch (Throwable t)
+                {
+                    Logging.error(Logging.getMessage("MemoryBudget.ExceptionRebalancing"), t);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops periodic rebalancing. The caches keep their current capacities. */
+    public synchronized void stop()
+    {
+        if (this.executor == null)
+            return;
+
+        this.executor.shutdownNow();
+        this.executor = null;
+    }
+
+    /**
+     * Shrinks the budget to the low memory fraction of its current value, and shrinks every managed cache
+     * proportionally. Entries that no longer fit are evicted in least recently used order. The caches are not cleared.
+     * Later rebalances grow the budget back to the configured budget one step at a time.
+     */
+    public synchronized void onLowMemory()
+    {
+        this.budget = Math.max(1, (long) (this.budget * this.lowMemoryFraction));
+        this.updateCacheList();
+        this.scaleToBudget();
+
+        Logging.info(Logging.getMessage("MemoryBudget.LowMemory", this.budget));
+    }
+
+    /**
+     * Moves one step of capacity from the managed cache with the lowest marginal value to the cache with the highest
+     * marginal value. Caches that have joined the cache set since the last rebalance are added first, and all caches
+     * are scaled to the budget if their capacities no longer add up to it. A budget reduced by a low memory signal is
+     * first grown by one step toward the configured budget.
+     */
+    public synchronized void rebalance()
+    {
+        this.updateCacheList();
+        if (this.states.isEmpty())
+            return;
+
+        if (this.budget < this.configuredBudget)
+        {
+            long growth = Math.max(1, (long) (this.configuredBudget * this.stepFraction));
+            this.budget = Math.min(this.configuredBudget, this.budget + growth);
+        }
+
+        this.scaleToBudget();
+
+        CacheState donor = null;
+        CacheState recipient = null;
+        double donorValue = Double.MAX_VALUE;
+        double recipientValue = 0;
+        long step = (long) (this.budget * this.stepFraction);
+        long minCapacity = (long) (this.budget * this.minCacheFraction);
+
+        for (CacheState state : this.states.values())
+        {
+            CacheStatistics.Snapshot snapshot = state.cache.getStatistics().getSnapshot();
+            double value = this.computeMarginalValue(state, snapshot);
+            state.lastSnapshot = snapshot;
+
+            if (value > recipientValue)
+            {
+                recipient = state;
+                recipientValue = value;
+            }
+
+            if (value < donorValue && state.cache.getCapacity() - step >= minCapacity)
+            {
+                donor = state;
+                donorValue = value;
+            }
+        }
+
+        if (donor == null || recipient == null || donor == recipient || step < 1)
+            return;
+
+        this.resize(donor, donor.cache.getCapacity() - step);
+        this.resize(recipient, recipient.cache.getCapacity() + step);
+    }
+
+    /**
+     * Estimates how many additional hits one unit of capacity would have earned the cache since the last rebalance. A
+     * cache that evicted nothing is not short of space, so its value is zero. Otherwise the value is the number of
+     * misses per unit of capacity, weighted by the fraction of lookups that missed.
+     *
+     * @param state    the cache's state as of the last rebalance.
+     * @param snapshot the cache's current statistics.
+     *
+     * @return the cache's marginal value.
+     */
+    protected double computeMarginalValue(CacheState state, CacheStatistics.Snapshot snapshot)
+    {
+        long evictions = snapshot.getEvictions() - state.lastSnapshot.getEvictions();
+        long misses = snapshot.getMisses() - state.lastSnapshot.getMisses();
+        long hits = snapshot.getHits() - state.lastSnapshot.getHits();
+        long capacity = state.cache.getCapacity();
+
+        if (evictions <= 0 || misses <= 0 || capacity <= 0)
+            return 0;
+
+        double missRate = (double) misses / (hits + misses);
+        return missRate * misses / capacity;
+    }
+
+    protected void updateCacheList() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        Collection<MemoryCache> caches = this.cacheSet.getCaches();
+
+        for (MemoryCache cache : caches)
+        {
+            if (!this.states.containsKey(cache))
+                this.states.put(cache, new CacheState(cache));
+        }
+
+        this.states.keySet().retainAll(caches);
+    }
+
+    protected void scaleToBudget() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long total = 0;
+        for (CacheState state : this.states.values())
+        {
+            total += state.cache.getCapacity();
+        }
+
+        // Ignore the rounding error left by a previous scale.
+        if (Math.abs(total - this.budget) <= this.states.size() || total <= 0)
+            return;
+
+        double scale = (double) this.budget / total;
+        for (CacheState state : this.states.values())
+        {
+            this.resize(state, (long) (state.cache.getCapacity() * scale));
+        }
+    }
+
+    protected void resize(CacheState state, long capacity) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        capacity = Math.max(1, capacity);
+        long lowWater = (long) (capacity * state.lowWaterRatio);
+
+        // The cache accepts only a low water less than its capacity. Lower the low water first when shrinking, and
+        // raise the capacity first when growing.
+        if (capacity < state.cache.getCapacity())
+        {
+            state.cache.setLowWater(lowWater);
+            state.cache.setCapacity(capacity);
+        }
+        else
+        {
+            state.cache.setCapacity(capacity);
+            state.cache.setLowWater(lowWater);
+        }
+    }
+}
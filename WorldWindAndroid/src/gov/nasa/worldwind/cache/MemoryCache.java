@@ -5,6 +5,8 @@
  */
 package gov.nasa.worldwind.cache;
 
+import java.util.concurrent.Executor;
+
 /**
  * @author dcollins
  * @version $Id: MemoryCache.java 733 2012-09-02 17:15:09Z dcollins $
@@ -37,6 +39,53 @@ public interface MemoryCache
         public void removalException(Throwable exception, Object key, Object value);
     }
 
+    /**
+     * A <code>CacheListener</code> that must be notified on a specific thread. Caches that deliver removal
+     * notifications after releasing their lock submit each batch of notifications for this listener to the listener's
+     * executor, instead of calling the listener on the thread that caused the removal. For example, a listener that
+     * deletes OpenGL objects can supply an executor that runs on the OpenGL thread.
+     */
+    public interface ExecutorCacheListener extends CacheListener
+    {
+        /**
+         * Returns the executor that runs this listener's removal notifications.
+         *
+         * @return the executor for this listener's notifications, or null to be notified on the thread that caused the
+         *         removal.
+         */
+        public Executor getNotificationExecutor();
+    }
+
+    /**
+     * Decides whether a new entry may displace an existing entry when the cache is full. A cache with an admission
+     * filter reports every key passed to {@link MemoryCache#get(Object)} to the filter, whether or not the key is found,
+     * and consults the filter before evicting an entry to make room for a new key. When the filter rejects the new key,
+     * the cache is left unchanged and the new entry is not added. Replacing the value of a key that is already in the
+     * cache is always permitted.
+     * <p/>
+     * Implementations must be safe to call from multiple threads.
+     */
+    public interface AdmissionFilter
+    {
+        /**
+         * Records an access to the specified key.
+         *
+         * @param key the accessed key.
+         */
+        public void recordAccess(Object key);
+
+        /**
+         * Indicates whether a new entry should be added to the cache at the expense of the cache's next eviction
+         * victim.
+         *
+         * @param candidateKey the key of the entry being added.
+         * @param victimKey    the key of the entry the cache would evict first to make room for the new entry.
+         *
+         * @return true if the new entry should be added, otherwise false.
+         */
+        public boolean admit(Object candidateKey, Object victimKey);
+    }
+
     String getName();
 
     void setName(String name);
@@ -59,6 +108,9 @@ public interface MemoryCache
      * Note that the size passed in may be used, rather than the real size of the object. In some implementations, the
      * accuracy of the space used calls will depend on the collection of these sizes, rather than actual size.
      * <p/>
+     * If the cache has an {@link AdmissionFilter} and must evict entries to make room for the new one, the filter may
+     * reject the new entry, in which case the cache is left unchanged.
+     * <p/>
      * This method should be declared <code>synchronized</code> when it is implemented.
      *
      * @param key   an object used to reference the cached item.
@@ -187,4 +239,26 @@ public interface MemoryCache
      * @param listener the cache listener to remove.
      */
     void removeCacheListener(CacheListener listener);
+
+    /**
+     * Returns the filter that decides whether new entries may displace existing entries when the cache is full.
+     *
+     * @return this cache's admission filter, or null if every new entry is admitted.
+     */
+    AdmissionFilter getAdmissionFilter();
+
+    /**
+     * Specifies the filter that decides whether new entries may displace existing entries when the cache is full.
+     * Specify null to admit every new entry, which is the default.
+     *
+     * @param filter the admission filter. May be null.
+     */
+    void setAdmissionFilter(AdmissionFilter filter);
+
+    /**
+     * Returns the usage statistics accumulated by this cache: hits, misses, puts and evictions.
+     *
+     * @return this cache's statistics.
+     */
+    CacheStatistics getStatistics();
 }
@@ -5,6 +5,8 @@
  */
 package gov.nasa.worldwind.cache;
 
+import java.util.Collection;
+
 /**
  * @author dcollins
  * @version $Id: MemoryCacheSet.java 834 2012-10-08 22:25:55Z dcollins $
@@ -17,5 +19,30 @@ public interface MemoryCacheSet
 
     boolean contains(String key);
 
+    /**
+     * Returns the caches in this set.
+     *
+     * @return a copy of the collection of caches in this set.
+     */
+    Collection<MemoryCache> getCaches();
+
     void clear();
+
+    /**
+     * Returns the combined usage statistics of every cache in this set.
+     *
+     * @return a snapshot of the aggregate statistics.
+     */
+    CacheStatistics.Snapshot getStatistics();
+
+    /**
+     * Creates a new <code>MemoryCache</code> of the type managed by this cache set. The returned cache is not added to
+     * this set; call {@link #put(String, MemoryCache)} to add it.
+     *
+     * @param loWater  the new cache's low water level.
+     * @param capacity the new cache's maximum capacity.
+     *
+     * @return a new memory cache with the specified low water level and capacity.
+     */
+    MemoryCache createMemoryCache(long loWater, long capacity);
 }
@@ -0,0 +1,1390 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link FileStore} that keeps the files in its write location in a small number of large pack files rather than one
+ * file per tile. Storing a tile cache as hundreds of thousands of small files wastes file system blocks and inodes, and
+ * makes every lookup a file system query. This store keeps an in-memory index from file name to the file's position in
+ * a pack, and reads files from memory-mapped views of the packs. Files in the current pack, which grows as files are
+ * appended, are read with positional reads instead, so that an append does not cause the pack to be mapped again.
+ * <p/>
+ * The store is transparent to code written for {@link BasicDataFileStore}. {@link #newFile(String)} returns a staging
+ * file that the caller writes as usual. A background task appends staged files to the current pack once they have not
+ * been modified for a few seconds. Until then, {@link #findFile(String, boolean)} returns the staged file itself. A
+ * packed staged file is deleted by the task's next run, so that a reader that was handed the staged file just before it
+ * was packed can still open it. Files in a pack are addressed by URLs with the <code>wwpack</code> protocol, which can
+ * be opened with {@link URL#openStream()} like any other URL. Such URLs are opaque to {@link WWIO#isFileOutOfDate(URL,
+ * long)}, so each packed file keeps the modification time of its staged file in its pack, and {@link
+ * #isFileExpired(URL, long)} compares that time with the expiry time. {@link #refreshFile(String)} appends a record
+ * that carries a packed file's new time without copying its contents.
+ * <p/>
+ * Packs are append-only. Removing or replacing a file appends a record that supersedes the old one, and the index is
+ * rebuilt at startup by reading the packs' record headers in order. The same background task compacts packs that are
+ * mostly superseded records by copying their remaining files to the current pack and deleting them. Files in read
+ * locations other than the write location, and loose files written to the write location before this store was used,
+ * are found exactly as {@link BasicDataFileStore} finds them.
+ * <p/>
+ * Packed and staged files count toward the write location's capacity. Evicting a packed file removes it from its pack,
+ * and the space is reclaimed when the pack is compacted.
+ * <p/>
+ * To use this store, set the <code>gov.nasa.worldwind.avkey.DataFileStoreClassName</code> configuration property to
+ * <code>gov.nasa.worldwind.cache.PackedDataFileStore</code>.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class PackedDataFileStore extends BasicDataFileStore
+{
+    /** The URL protocol of files stored in a pack. */
+    public static final String PACK_PROTOCOL = "wwpack";
+
+    protected static class Pack
+    {
+        protected final int id;
+        protected final File file;
+        protected final RandomAccessFile randomAccessFile;
+        protected final FileChannel channel;
+        protected MappedByteBuffer buffer;
+        protected long size;
+        protected long liveSize;
+
+        public Pack(int id, File file) throws IOException
+        {
+            this.id = id;
+            this.file = file;
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            this.channel = this.randomAccessFile.getChannel();
+            this.size = this.channel.size();
+        }
+
+        public void close()
+        {
+            WWIO.closeStream(this.randomAccessFile, this.file.getPath());
+            this.buffer = null;
+        }
+    }
+
+    protected static class PackEntry
+    {
+        protected final Pack pack;
+        protected final long offset;
+        protected final int length;
+        protected final long time;
+
+        public PackEntry(Pack pack, long offset, int length, long time)
+        {
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+            this.time = time;
+        }
+
+        public long getRecordSize(String name)
+        {
+            return recordSize(name, this.length);
+        }
+    }
+
+    protected static class Record
+    {
+        protected final String name;
+        protected final long time;
+        protected final int dataOffset;
+        protected final int length;
+        protected final int end;
+
+        public Record(String name, long time, int dataOffset, int length, int end)
+        {
+            this.name = name;
+            this.time = time;
+            this.dataOffset = dataOffset;
+            this.length = length;
+            this.end = end;
+        }
+
+        public boolean isRemoval()
+        {
+            return this.length == REMOVED;
+        }
+
+        public boolean isRefresh()
+        {
+            return this.length == REFRESHED;
+        }
+    }
+
+    /** An input stream that reads the remaining bytes of a buffer without copying them. */
+    protected static class BufferInputStream extends InputStream
+    {
+        protected final ByteBuffer buffer;
+
+        public BufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0)
+                return 0;
+
+            if (!this.buffer.hasRemaining())
+                return -1;
+
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available()
+        {
+            return this.buffer.remaining();
+        }
+    }
+
+    protected class PackURLStreamHandler extends URLStreamHandler
+    {
+        @Override
+        protected URLConnection openConnection(final URL url) throws IOException
+        {
+            return new URLConnection(url)
+            {
+                @Override
+                public void connect()
+                {
+                    this.connected = true;
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException
+                {
+                    ByteBuffer buffer = readPackedFile(nameForURL(this.getURL()));
+                    if (buffer == null)
+                        throw new FileNotFoundException(this.getURL().toString());
+
+                    return new BufferInputStream(buffer);
+                }
+
+                @Override
+                public int getContentLength()
+                {
+                    PackEntry entry = getPackEntry(nameForURL(this.getURL()));
+                    return entry != null ? entry.length : -1;
+                }
+            };
+        }
+    }
+
+    protected static final int RECORD_MAGIC = 0x57575054;
+    // The data lengths of records that carry no data: one that removes a file, and one that updates its time.
+    protected static final int REMOVED = -1;
+    protected static final int REFRESHED = -2;
+    // magic (4) + time (8) + name length (2) + data length (4)
+    protected static final int RECORD_HEADER_SIZE = 18;
+    protected static final String PACK_DIRECTORY = "packs";
+    protected static final String STAGING_DIRECTORY = "staging";
+    protected static final String PACK_PREFIX = "pack-";
+    protected static final String PACK_SUFFIX = ".wwp";
+    /** The default size at which the current pack is closed and a new pack is started, in bytes. */
+    protected static final long DEFAULT_MAX_PACK_SIZE = 64L * 1024 * 1024;
+    /** The default fraction of live data below which a pack is compacted. */
+    protected static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    /** The default interval between runs of the staging and compaction task, in milliseconds. */
+    protected static final long DEFAULT_MAINTENANCE_INTERVAL = 10000;
+    /** The default time a staged file must be left unmodified before it is packed, in milliseconds. */
+    protected static final long DEFAULT_STAGING_DELAY = 5000;
+
+    protected final Object packLock = new Object();
+    protected final Map<String, PackEntry> index = new HashMap<String, PackEntry>();
+    protected final SortedMap<Integer, Pack> packs = new TreeMap<Integer, Pack>();
+    protected final Set<String> stagedNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** Staged files that have been packed, and are deleted by the next maintenance run. */
+    protected final List<String> packedStagedNames = new ArrayList<String>(); // used only by the maintenance task
+    protected final URLStreamHandler urlStreamHandler = new PackURLStreamHandler();
+    protected File packDirectory;
+    protected File stagingDirectory;
+    protected Pack currentPack;
+    protected long maxPackSize = DEFAULT_MAX_PACK_SIZE;
+    protected double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    protected long stagingDelay = DEFAULT_STAGING_DELAY;
+    protected ScheduledExecutorService maintenanceService;
+
+    /**
+     * Creates a packed file store with the locations specified by the data file store configuration file. If the
+     * configuration has no write location, the store behaves exactly like {@link BasicDataFileStore}.
+     *
+     * @throws IllegalStateException if the configuration file name cannot be determined from {@link
+     *                               gov.nasa.worldwind.Configuration} or the configuration file cannot be found.
+     */
+    public PackedDataFileStore()
+    {
+        File writeLocation = this.getWriteLocation();
+        if (writeLocation == null)
+            return;
+
+        this.packDirectory = new File(writeLocation, PACK_DIRECTORY);
+        this.stagingDirectory = new File(this.packDirectory, STAGING_DIRECTORY);
+
+        synchronized (this.packLock)
+        {
+            this.openPacks();
+        }
+
+        this.findStagedFiles(this.stagingDirectory, null);
+
+        this.maintenanceService = DataConfigurationUtils.createResourceRetrievalService("World Wind Pack Maintenance");
+        this.maintenanceService.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                performMaintenance();
+            }
+        }, DEFAULT_MAINTENANCE_INTERVAL, DEFAULT_MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Indicates whether files written to this store are packed. Files are packed when the store has a write location
+     * and its pack directory could be opened.
+     *
+     * @return true if files are packed, otherwise false.
+     */
+    public boolean isPackingEnabled()
+    {
+        synchronized (this.packLock)
+        {
+            return this.currentPack != null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Also stops this store's maintenance task and closes its packs. Once the store is closed, packed files are no
+     * longer found, and files written to the store are left as loose files in the staging directory.
+     */
+    @Override
+    public void close()
+    {
+        super.close();
+
+        if (this.maintenanceService != null)
+            this.maintenanceService.shutdown();
+
+        synchronized (this.packLock)
+        {
+            for (Pack pack : this.packs.values())
+            {
+                pack.close();
+            }
+
+            this.packs.clear();
+            this.index.clear();
+            this.currentPack = null;
+        }
+    }
+
+    /**
+     * Returns the size at which the current pack is closed and a new pack is started.
+     *
+     * @return the maximum pack size in bytes.
+     */
+    public long getMaxPackSize()
+    {
+        synchronized (this.packLock)
+        {
+            return this.maxPackSize;
+        }
+    }
+
+    /**
+     * Specifies the size at which the current pack is closed and a new pack is started. A single file larger than this
+     * size is still packed, in a pack of its own.
+     *
+     * @param size the maximum pack size in bytes.
+     *
+     * @throws IllegalArgumentException if the size is less than 1 or greater than the largest buffer that can be
+     *                                  mapped.
+     */
+    public void setMaxPackSize(long size)
+    {
+        if (size < 1 || size > Integer.MAX_VALUE)
+        {
+            String msg = Logging.getMessage("generic.SizeIsInvalid", size);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.packLock)
+        {
+            this.maxPackSize = size;
+        }
+    }
+
+    /**
+     * Returns the fraction of live data below which a pack is compacted.
+     *
+     * @return the compaction threshold, in the range [0, 1].
+     */
+    public double getCompactionThreshold()
+    {
+        synchronized (this.packLock)
+        {
+            return this.compactionThreshold;
+        }
+    }
+
+    /**
+     * Specifies the fraction of live data below which a pack is compacted. A pack is compacted when the files it holds
+     * that have not been removed or replaced make up less than this fraction of its size.
+     *
+     * @param threshold the compaction threshold, in the range [0, 1]. Zero disables compaction.
+     *
+     * @throws IllegalArgumentException if the threshold is outside the range [0, 1].
+     */
+    public void setCompactionThreshold(double threshold)
+    {
+        if (threshold < 0 || threshold > 1)
+        {
+            String msg = Logging.getMessage("generic.FractionIsInvalid", threshold);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.packLock)
+        {
+            this.compactionThreshold = threshold;
+        }
+    }
+
+    // **************************************************************//
+    // ******************** File Store Contents *******************//
+    // **************************************************************//
+
+    @Override
+    public boolean containsFile(String fileName)
+    {
+        if (fileName == null)
+            return false;
+
+        if (this.getPackEntry(fileName) != null)
+            return true;
+
+        if (this.stagedNames.contains(fileName) && this.getStagedFile(fileName).exists())
+            return true;
+
+        return super.containsFile(fileName);
+    }
+
+    @Override
+    public URL findFile(String fileName, boolean checkClassPath)
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.startEvictionService();
+
+        if (checkClassPath)
+        {
+            URL url = this.getClass().getClassLoader().getResource(fileName);
+            if (url != null)
+                return url;
+        }
+
+        if (this.getPackEntry(fileName) != null)
+        {
+            this.recordAccess(fileName);
+            return this.makePackURL(fileName);
+        }
+
+        if (this.stagedNames.contains(fileName))
+        {
+            File file = this.getStagedFile(fileName);
+            if (file.exists())
+            {
+                try
+                {
+                    this.recordAccess(fileName);
+                    return file.toURI().toURL();
+                }
+                catch (MalformedURLException e)
+                {
+                    Logging.error(Logging.getMessage("FileStore.ExceptionCreatingURLForFile", file.getPath()), e);
+                }
+            }
+        }
+
+        return super.findFile(fileName, false);
+    }
+
+    /**
+     * Returns a staging file for the specified name. The file is moved into a pack after the caller has finished
+     * writing it. If this store does not pack files, this returns the same file as {@link BasicDataFileStore}.
+     *
+     * @param fileName the name to give the newly created file.
+     *
+     * @return a handle to the newly created file if it could be created, otherwise null.
+     *
+     * @throws IllegalArgumentException if <code>fileName</code> is null.
+     */
+    @Override
+    public File newFile(String fileName)
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        if (!this.isPackingEnabled())
+            return super.newFile(fileName);
+
+        File file = this.getStagedFile(fileName);
+        boolean canCreateFile;
+
+        // Synchronize the check and the creation of the parent directories so that two threads creating files in the
+        // same directory do not both attempt to create it.
+        synchronized (this.stagedNames)
+        {
+            canCreateFile = file.getParentFile().exists() || file.getParentFile().mkdirs();
+        }
+
+        if (!canCreateFile)
+        {
+            String msg = Logging.getMessage("generic.CannotCreateFile", file);
+            Logging.error(msg);
+            return null;
+        }
+
+        this.stagedNames.add(fileName);
+        this.recordWrite(fileName);
+
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A packed file's modification time is the time recorded in its pack.
+     */
+    @Override
+    public boolean isFileExpired(URL url, long expiryTime)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (PACK_PROTOCOL.equals(url.getProtocol()))
+        {
+            PackEntry entry = this.getPackEntry(nameForURL(url));
+            return entry != null && entry.time < expiryTime;
+        }
+
+        return super.isFileExpired(url, expiryTime);
+    }
+
+    @Override
+    public boolean refreshFile(String fileName)
+    {
+        if (fileName == null)
+        {
+            String message = Logging.getMessage("nullValue.FilePathIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        long now = System.currentTimeMillis();
+
+        // A staged file is packed with its modification time, so refreshing it is enough.
+        if (this.stagedNames.contains(fileName))
+        {
+            File file = this.getStagedFile(fileName);
+            if (file.exists())
+                return file.setLastModified(now);
+        }
+
+        if (this.refreshPackedFile(fileName, now))
+            return true;
+
+        return super.refreshFile(fileName);
+    }
+
+    @Override
+    public void removeFile(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (PACK_PROTOCOL.equals(url.getProtocol()))
+        {
+            String name = nameForURL(url);
+            this.removePackedFile(name);
+            this.usageIndex.remove(name);
+            return;
+        }
+
+        String stagedName = this.stagedNameFor(url);
+        if (stagedName != null)
+        {
+            // The staged file may have been packed since the caller found it. Remove the packed copy as well.
+            this.stagedNames.remove(stagedName);
+            this.removePackedFile(stagedName);
+            this.usageIndex.remove(stagedName);
+        }
+
+        super.removeFile(url);
+    }
+
+    @Override
+    protected String[] doListFileNames(String pathName, FileStoreFilter filter, boolean recurse,
+        boolean exitBranchOnFirstMatch)
+    {
+        String[] names = super.doListFileNames(pathName, filter, recurse, exitBranchOnFirstMatch);
+
+        List<String> packedNames = this.listPackedFileNames(this.normalizePathName(pathName), filter, recurse,
+            exitBranchOnFirstMatch);
+        if (packedNames.isEmpty())
+            return names;
+
+        Set<String> allNames = new LinkedHashSet<String>(Arrays.asList(names));
+        allNames.addAll(packedNames);
+
+        return allNames.toArray(new String[allNames.size()]);
+    }
+
+    /**
+     * Returns the names of the packed and staged files under a path that are accepted by a filter. The names are
+     * considered in order of depth, so that with <code>exitBranchOnFirstMatch</code> the files closest to the path are
+     * chosen, as they are for loose files.
+     *
+     * @param prefix                 the path to search, relative to the write location, or null to search the entire
+     *                               store.
+     * @param filter                 the filter.
+     * @param recurse                true to include files below the path's immediate children, otherwise false.
+     * @param exitBranchOnFirstMatch true to skip files in directories at or below a directory that has an accepted
+     *                               file, otherwise false.
+     *
+     * @return the accepted names.
+     */
+    protected List<String> listPackedFileNames(String prefix, FileStoreFilter filter, boolean recurse,
+        boolean exitBranchOnFirstMatch)
+    {
+        String namePrefix = prefix != null ? prefix + "/" : "";
+
+        Set<String> matchingNames = new HashSet<String>();
+        synchronized (this.packLock)
+        {
+            for (String name : this.index.keySet())
+            {
+                if (name.startsWith(namePrefix))
+                    matchingNames.add(name);
+            }
+        }
+
+        for (String name : this.stagedNames)
+        {
+            if (name.startsWith(namePrefix))
+                matchingNames.add(name);
+        }
+
+        List<String> candidates = new ArrayList<String>(matchingNames);
+        Collections.sort(candidates, new Comparator<String>()
+        {
+            public int compare(String a, String b)
+            {
+                int depthA = depthOf(a);
+                int depthB = depthOf(b);
+                return depthA != depthB ? (depthA < depthB ? -1 : 1) : a.compareTo(b);
+            }
+        });
+
+        List<String> names = new ArrayList<String>();
+        Set<String> matchedDirs = new HashSet<String>();
+
+        for (String name : candidates)
+        {
+            int slash = name.lastIndexOf('/');
+            if (!recurse && slash >= namePrefix.length())
+                continue;
+
+            String dir = slash >= 0 ? name.substring(0, slash) : "";
+            if (exitBranchOnFirstMatch && isInMatchedDirectory(dir, matchedDirs))
+                continue;
+
+            if (!filter.accept(this, name))
+                continue;
+
+            names.add(name);
+
+            if (exitBranchOnFirstMatch)
+                matchedDirs.add(dir);
+        }
+
+        return names;
+    }
+
+    protected static int depthOf(String name)
+    {
+        int depth = 0;
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1))
+        {
+            depth++;
+        }
+
+        return depth;
+    }
+
+    protected static boolean isInMatchedDirectory(String dir, Set<String> matchedDirs)
+    {
+        for (String d = dir; ; d = d.substring(0, d.lastIndexOf('/')))
+        {
+            if (matchedDirs.contains(d))
+                return true;
+
+            if (d.lastIndexOf('/') < 0)
+                return !d.isEmpty() && matchedDirs.contains("");
+        }
+    }
+
+    @Override
+    protected void listDirectory(File dir, String prefix, FileStoreFilter filter, boolean recurse,
+        boolean exitBranchOnFirstMatch, Collection<String> names)
+    {
+        // The pack directory holds packs and staged files rather than files named by the store. Packed and staged
+        // files are listed from the index instead.
+        if (!dir.equals(this.packDirectory))
+            super.listDirectory(dir, prefix, filter, recurse, exitBranchOnFirstMatch, names);
+    }
+
+    /**
+     * Returns the contents of a packed file. Files in a full pack are returned as a read-only view of the memory-mapped
+     * pack, and files in the current pack as a copy.
+     *
+     * @param fileName the packed file's name.
+     *
+     * @return the file's contents, or null if no pack holds the file.
+     *
+     * @throws IOException if the pack cannot be mapped.
+     */
+    public ByteBuffer readPackedFile(String fileName) throws IOException
+    {
+        synchronized (this.packLock)
+        {
+            PackEntry entry = this.index.get(fileName);
+            if (entry == null)
+                return null;
+
+            return this.readEntry(entry);
+        }
+    }
+
+    protected PackEntry getPackEntry(String fileName)
+    {
+        synchronized (this.packLock)
+        {
+            return this.index.get(fileName);
+        }
+    }
+
+    protected URL makePackURL(String fileName)
+    {
+        try
+        {
+            return new URL(null, PACK_PROTOCOL + ":" + fileName, this.urlStreamHandler);
+        }
+        catch (MalformedURLException e)
+        {
+            Logging.error(Logging.getMessage("FileStore.ExceptionCreatingURLForFile", fileName), e);
+            return null;
+        }
+    }
+
+    protected static String nameForURL(URL url)
+    {
+        String s = url.toExternalForm();
+        return s.substring(PACK_PROTOCOL.length() + 1);
+    }
+
+    protected File getStagedFile(String fileName)
+    {
+        return new File(this.stagingDirectory, fileName);
+    }
+
+    protected String stagedNameFor(URL url)
+    {
+        if (this.stagingDirectory == null)
+            return null;
+
+        File file = WWIO.convertURLToFile(url);
+        if (file == null)
+            return null;
+
+        String root = this.stagingDirectory.getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+
+        return path.startsWith(root) ? path.substring(root.length()).replace(File.separatorChar, '/') : null;
+    }
+
+    /**
+     * Removes a packed file by appending a removal record to the current pack.
+     *
+     * @param fileName the packed file's name.
+     *
+     * @return true if the file was packed and has been removed, otherwise false.
+     */
+    protected boolean removePackedFile(String fileName)
+    {
+        synchronized (this.packLock)
+        {
+            // Without a current pack the removal cannot be recorded, and the index holds no packed files.
+            if (this.currentPack == null)
+                return false;
+
+            PackEntry entry = this.index.remove(fileName);
+            if (entry == null)
+                return false;
+
+            entry.pack.liveSize -= entry.getRecordSize(fileName);
+
+            try
+            {
+                this.appendRecord(fileName, System.currentTimeMillis(), null);
+            }
+            catch (IOException e)
+            {
+                Logging.error(Logging.getMessage("FileStore.ExceptionRemovingFile", fileName), e);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Sets the modification time of a packed file by appending a record that carries the new time and no data.
+     *
+     * @param fileName the packed file's name.
+     * @param time     the file's new modification time.
+     *
+     * @return true if the file is packed and its new time was recorded, otherwise false.
+     */
+    protected boolean refreshPackedFile(String fileName, long time)
+    {
+        synchronized (this.packLock)
+        {
+            PackEntry entry = this.index.get(fileName);
+            if (entry == null || this.currentPack == null)
+                return false;
+
+            try
+            {
+                this.appendRecord(fileName, time, REFRESHED, null);
+                this.index.put(fileName, new PackEntry(entry.pack, entry.offset, entry.length, time));
+                return true;
+            }
+            catch (IOException e)
+            {
+                Logging.error(Logging.getMessage("FileStore.ExceptionWritingPack", this.packDirectory), e);
+                return false;
+            }
+        }
+    }
+
+    // **************************************************************//
+    // ******************** Packs *********************************//
+    // **************************************************************//
+
+    protected void openPacks() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (!this.packDirectory.exists() && !this.packDirectory.mkdirs())
+        {
+            Logging.error(Logging.getMessage("generic.CannotCreateFile", this.packDirectory));
+            return;
+        }
+
+        File[] files = this.packDirectory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                int id = packIdFor(file.getName());
+                if (id < 0)
+                    continue;
+
+                try
+                {
+                    this.packs.put(id, new Pack(id, file));
+                }
+                catch (IOException e)
+                {
+                    Logging.error(Logging.getMessage("FileStore.ExceptionReadingPack", file), e);
+                }
+            }
+        }
+
+        // Packs are read in the order they were created, so that later records supersede earlier ones.
+        for (Pack pack : this.packs.values())
+        {
+            this.readPackIndex(pack);
+        }
+
+        try
+        {
+            this.currentPack = this.packs.isEmpty() ? this.createPack(0) : this.packs.get(this.packs.lastKey());
+        }
+        catch (IOException e)
+        {
+            Logging.error(Logging.getMessage("FileStore.ExceptionWritingPack", this.packDirectory), e);
+        }
+    }
+
+    protected Pack createPack(int id) throws IOException // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        File file = new File(this.packDirectory, String.format("%s%06d%s", PACK_PREFIX, id, PACK_SUFFIX));
+        Pack pack = new Pack(id, file);
+        this.packs.put(id, pack);
+
+        return pack;
+    }
+
+    protected static int packIdFor(String name)
+    {
+        if (!name.startsWith(PACK_PREFIX) || !name.endsWith(PACK_SUFFIX))
+            return -1;
+
+        try
+        {
+            return Integer.parseInt(name.substring(PACK_PREFIX.length(), name.length() - PACK_SUFFIX.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    protected static long recordSize(String name, int length)
+    {
+        return RECORD_HEADER_SIZE + encodeName(name).length + Math.max(0, length);
+    }
+
+    protected static byte[] encodeName(String name)
+    {
+        try
+        {
+            return name.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new IllegalStateException(e); // UTF-8 is always supported
+        }
+    }
+
+    protected void readPackIndex(Pack pack) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        ByteBuffer buffer;
+        try
+        {
+            buffer = this.mapPack(pack);
+        }
+        catch (IOException e)
+        {
+            Logging.error(Logging.getMessage("FileStore.ExceptionReadingPack", pack.file), e);
+            return;
+        }
+
+        int position = 0;
+        Record record;
+        while ((record = readRecord(buffer, position)) != null)
+        {
+            if (record.isRefresh())
+            {
+                // The record only updates the modification time of the file's live record.
+                PackEntry entry = this.index.get(record.name);
+                if (entry != null)
+                    this.index.put(record.name, new PackEntry(entry.pack, entry.offset, entry.length, record.time));
+
+                position = record.end;
+                continue;
+            }
+
+            PackEntry old = record.isRemoval() ? this.index.remove(record.name)
+                : this.index.put(record.name, new PackEntry(pack, record.dataOffset, record.length, record.time));
+
+            if (old != null)
+                old.pack.liveSize -= old.getRecordSize(record.name);
+
+            if (!record.isRemoval())
+                pack.liveSize += record.end - position;
+
+            position = record.end;
+        }
+
+        // A pack that ends with an incomplete record was being written when the process stopped. Discard the partial
+        // record so that the next record is appended where it belongs.
+        if (position < pack.size)
+        {
+            Logging.warning(Logging.getMessage("FileStore.PackTruncated", pack.file, position));
+
+            try
+            {
+                pack.channel.truncate(position);
+                pack.size = position;
+            }
+            catch (IOException e)
+            {
+                Logging.error(Logging.getMessage("FileStore.ExceptionWritingPack", pack.file), e);
+            }
+        }
+    }
+
+    protected static Record readRecord(ByteBuffer buffer, int position)
+    {
+        if (buffer.limit() - position < RECORD_HEADER_SIZE || buffer.getInt(position) != RECORD_MAGIC)
+            return null;
+
+        long time = buffer.getLong(position + 4);
+        int nameLength = buffer.getShort(position + 12) & 0xFFFF;
+        int lengthOffset = position + 14 + nameLength;
+        if (buffer.limit() - lengthOffset < 4)
+            return null;
+
+        int length = buffer.getInt(lengthOffset);
+        int dataOffset = lengthOffset + 4;
+        int end = dataOffset + Math.max(0, length);
+        if (length < REFRESHED || end > buffer.limit() || end < dataOffset)
+            return null;
+
+        byte[] nameBytes = new byte[nameLength];
+        ByteBuffer nameBuffer = buffer.duplicate();
+        nameBuffer.position(position + 14);
+        nameBuffer.get(nameBytes);
+
+        String name;
+        try
+        {
+            name = new String(nameBytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return null;
+        }
+
+        return new Record(name, time, dataOffset, length, end);
+    }
+
+    protected MappedByteBuffer mapPack(Pack pack) throws IOException // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // A pack mapped while it was the current pack is mapped again once, after it is full.
+        if (pack.buffer == null || pack.buffer.capacity() < pack.size)
+            pack.buffer = pack.channel.map(FileChannel.MapMode.READ_ONLY, 0, pack.size);
+
+        return pack.buffer;
+    }
+
+    protected ByteBuffer readEntry(PackEntry entry) throws IOException // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // The current pack grows with every append. Read its files directly rather than mapping it again each time.
+        if (entry.pack == this.currentPack)
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+            long offset = entry.offset;
+            while (buffer.hasRemaining())
+            {
+                int count = entry.pack.channel.read(buffer, offset);
+                if (count < 0)
+                    throw new EOFException(entry.pack.file.getPath());
+
+                offset += count;
+            }
+
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+
+        ByteBuffer buffer = this.mapPack(entry.pack).duplicate();
+        buffer.limit((int) entry.offset + entry.length);
+        buffer.position((int) entry.offset);
+
+        return buffer.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Appends a record to the current pack, starting a new pack first if the current pack is full.
+     *
+     * @param name the file name.
+     * @param time the file's modification time.
+     * @param data the file's contents, or null to record that the file was removed.
+     *
+     * @return the index entry for the appended file, or null if <code>data</code> is null.
+     *
+     * @throws IOException if the record cannot be written.
+     */
+    protected PackEntry appendRecord(String name, long time, ByteBuffer data) throws IOException
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        return this.appendRecord(name, time, data != null ? data.remaining() : REMOVED, data);
+    }
+
+    /**
+     * Appends a record to the current pack, starting a new pack first if the current pack is full.
+     *
+     * @param name   the file name.
+     * @param time   the file's modification time.
+     * @param length the length of the file's contents, or {@link #REMOVED} or {@link #REFRESHED} for a record with no
+     *               contents.
+     * @param data   the file's contents, or null if the record has none.
+     *
+     * @return the index entry for the appended file, or null if the record has no contents.
+     *
+     * @throws IOException if the record cannot be written, or the store has no current pack.
+     */
+    protected PackEntry appendRecord(String name, long time, int length, ByteBuffer data) throws IOException
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (this.currentPack == null)
+            throw new IOException(Logging.getMessage("FileStore.PacksNotOpen", this.packDirectory));
+
+        byte[] nameBytes = encodeName(name);
+        long size = RECORD_HEADER_SIZE + nameBytes.length + Math.max(0, length);
+
+        if (this.currentPack.size > 0 && this.currentPack.size + size > this.maxPackSize)
+            this.currentPack = this.createPack(this.currentPack.id + 1);
+
+        Pack pack = this.currentPack;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE + nameBytes.length);
+        header.putInt(RECORD_MAGIC);
+        header.putLong(time);
+        header.putShort((short) nameBytes.length);
+        header.put(nameBytes);
+        header.putInt(length);
+        header.flip();
+
+        long position = pack.size;
+        long offset = position;
+        while (header.hasRemaining())
+        {
+            offset += pack.channel.write(header, offset);
+        }
+
+        if (data != null)
+        {
+            data = data.duplicate();
+            while (data.hasRemaining())
+            {
+                offset += pack.channel.write(data, offset);
+            }
+        }
+
+        pack.size = offset;
+
+        if (length < 0)
+            return null;
+
+        pack.liveSize += size;
+        return new PackEntry(pack, offset - length, length, time);
+    }
+
+    /**
+     * Adds a file's contents to the current pack and makes it visible under the specified name. Any file previously
+     * stored under the name is superseded.
+     *
+     * @param name the file name.
+     * @param time the file's modification time.
+     * @param data the file's contents.
+     *
+     * @throws IOException if the file cannot be written to the pack, or the store has no current pack.
+     */
+    protected void packFile(String name, long time, ByteBuffer data) throws IOException
+    {
+        synchronized (this.packLock)
+        {
+            PackEntry entry = this.appendRecord(name, time, data);
+            PackEntry old = this.index.put(name, entry);
+            if (old != null)
+                old.pack.liveSize -= old.getRecordSize(name);
+
+            this.usageIndex.setSize(name, entry.length);
+        }
+    }
+
+    // **************************************************************//
+    // ******************** Write Location Budget *****************//
+    // **************************************************************//
+
+    @Override
+    protected void scanWriteLocation(File dir, String prefix, Map<String, Long> times,
+        List<FileStoreUsageIndex.Entry> entries)
+    {
+        if (!dir.equals(this.packDirectory))
+        {
+            super.scanWriteLocation(dir, prefix, times, entries);
+            return;
+        }
+
+        // The pack directory holds packs and staged files rather than files named by the store, so report the files
+        // they contain instead.
+        synchronized (this.packLock)
+        {
+            for (Map.Entry<String, PackEntry> e : this.index.entrySet())
+            {
+                Long time = times.get(e.getKey());
+                entries.add(new FileStoreUsageIndex.Entry(e.getKey(), e.getValue().length,
+                    time != null ? time : e.getValue().time));
+            }
+        }
+
+        for (String name : this.stagedNames)
+        {
+            File file = this.getStagedFile(name);
+            Long time = times.get(name);
+            if (file.exists())
+                entries.add(new FileStoreUsageIndex.Entry(name, file.length(), time != null ? time : file.lastModified()));
+        }
+    }
+
+    @Override
+    protected boolean evictFile(String name)
+    {
+        if (this.removePackedFile(name))
+            return true;
+
+        if (this.stagedNames.remove(name))
+        {
+            File file = this.getStagedFile(name);
+            // noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return !file.exists();
+        }
+
+        return super.evictFile(name);
+    }
+
+    @Override
+    protected long getStoredFileSize(String name)
+    {
+        PackEntry entry = this.getPackEntry(name);
+        if (entry != null)
+            return entry.length;
+
+        if (this.stagedNames.contains(name))
+        {
+            File file = this.getStagedFile(name);
+            if (file.exists())
+                return file.length();
+        }
+
+        return super.getStoredFileSize(name);
+    }
+
+    // **************************************************************//
+    // ******************** Maintenance ***************************//
+    // **************************************************************//
+
+    protected void performMaintenance()
+    {
+        try
+        {
+            this.deletePackedStagedFiles();
+            this.packStagedFiles();
+            this.compactPacks();
+        }
+        catch (Throwable t)
+        {
+            Logging.error(Logging.getMessage("FileStore.ExceptionMaintainingPacks", this.packDirectory), t);
+        }
+    }
+
+    protected void findStagedFiles(File dir, String prefix)
+    {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files)
+        {
+            String name = prefix != null ? prefix + "/" + file.getName() : file.getName();
+            if (file.isDirectory())
+                this.findStagedFiles(file, name);
+            else
+                this.stagedNames.add(name);
+        }
+    }
+
+    /**
+     * Moves staged files that have not been modified for the staging delay into the current pack. Files modified more
+     * recently may still be being written, and are left for the next run. The packed staged files are not deleted until
+     * the next run, since a reader may have been handed one by {@link #findFile(String, boolean)} before it was packed.
+     */
+    protected void packStagedFiles()
+    {
+        // Without a current pack, staged files stay where they are and are read as loose files.
+        if (!this.isPackingEnabled())
+            return;
+
+        long now = System.currentTimeMillis();
+
+        for (String name : this.stagedNames)
+        {
+            File file = this.getStagedFile(name);
+            if (!file.exists())
+            {
+                this.stagedNames.remove(name);
+                continue;
+            }
+
+            long time = file.lastModified();
+            if (now - time < this.stagingDelay)
+                continue;
+
+            try
+            {
+                this.packFile(name, time, this.readFile(file));
+                this.stagedNames.remove(name);
+                this.packedStagedNames.add(name);
+            }
+            catch (IOException e)
+            {
+                Logging.error(Logging.getMessage("FileStore.ExceptionPackingFile", file), e);
+            }
+        }
+    }
+
+    protected void deletePackedStagedFiles()
+    {
+        for (String name : this.packedStagedNames)
+        {
+            // A file that has been staged again since it was packed is newer than the packed copy. Leave it.
+            if (this.stagedNames.contains(name))
+                continue;
+
+            // noinspection ResultOfMethodCallIgnored
+            this.getStagedFile(name).delete();
+        }
+
+        this.packedStagedNames.clear();
+    }
+
+    protected ByteBuffer readFile(File file) throws IOException
+    {
+        FileInputStream stream = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = stream.getChannel();
+            return WWIO.readChannelToBuffer(channel, ByteBuffer.allocate((int) channel.size()));
+        }
+        finally
+        {
+            WWIO.closeStream(stream, file.getPath());
+        }
+    }
+
+    /**
+     * Compacts every pack other than the current pack whose live data has fallen below the compaction threshold. The
+     * pack's remaining files are copied to the current pack one at a time, so readers are blocked only while a single
+     * file is copied, and then the pack is deleted.
+     */
+    protected void compactPacks()
+    {
+        List<Pack> candidates = new ArrayList<Pack>();
+
+        synchronized (this.packLock)
+        {
+            if (this.currentPack == null || this.compactionThreshold <= 0)
+                return;
+
+            for (Pack pack : this.packs.values())
+            {
+                if (pack != this.currentPack && pack.liveSize < pack.size * this.compactionThreshold)
+                    candidates.add(pack);
+            }
+        }
+
+        for (Pack pack : candidates)
+        {
+            try
+            {
+                this.compactPack(pack);
+            }
+            catch (IOException e)
+            {
+                Logging.error(Logging.getMessage("FileStore.ExceptionCompactingPack", pack.file), e);
+            }
+        }
+    }
+
+    protected void compactPack(Pack pack) throws IOException
+    {
+        int position = 0;
+
+        while (true)
+        {
+            synchronized (this.packLock)
+            {
+                Record record = readRecord(this.mapPack(pack), position);
+                if (record == null)
+                    break;
+
+                position = record.end;
+                PackEntry entry = this.index.get(record.name);
+
+                if (!record.isRemoval() && entry != null && entry.pack == pack && entry.offset == record.dataOffset)
+                {
+                    // The record is the file's live record. Copy it to the current pack with its latest time.
+                    this.packFile(record.name, entry.time, this.readEntry(entry));
+                }
+                else if (record.isRefresh() && entry != null && entry.pack.id < pack.id)
+                {
+                    // The refresh applies to a record in an older pack. Keep it so that the file's time is not lost
+                    // when the index is rebuilt.
+                    this.appendRecord(record.name, entry.time, REFRESHED, null);
+                }
+                else if (record.isRemoval() && entry == null && this.packs.headMap(pack.id).size() > 0)
+                {
+                    // The removal may supersede a record in an older pack. Keep it so that the removed file is not
+                    // restored when the index is rebuilt.
+                    this.appendRecord(record.name, record.time, null);
+                }
+            }
+        }
+
+        synchronized (this.packLock)
+        {
+            this.packs.remove(pack.id);
+            pack.close();
+
+            if (!pack.file.delete())
+                Logging.warning(Logging.getMessage("FileStore.ExceptionRemovingFile", pack.file));
+        }
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A <code>MemoryCache</code> that orders its entries with a segmented LRU policy kept in intrusive doubly linked lists.
+ * New entries enter a probationary segment. Entries that are accessed while in the probationary segment are promoted to
+ * a protected segment, which holds at most a fixed fraction of the cache's capacity. Entries demoted from the protected
+ * segment re-enter the probationary segment at its most recently used end, and eviction always takes the least recently
+ * used probationary entry. Each eviction costs constant amortized time. Unlike {@link BasicMemoryCache}, which keeps a
+ * single least recently used order, an entry must be accessed twice before it is protected from a burst of new entries.
+ * <p/>
+ * Calls to {@link #get(Object)} do not acquire the cache's lock. An access only sets the entry's referenced flag, which
+ * is consumed when the entry reaches the least recently used end of its segment: referenced probationary entries are
+ * promoted instead of evicted, and referenced protected entries are given a second chance instead of being demoted.
+ * <p/>
+ * This cache uses the same capacity and low water semantics as <code>BasicMemoryCache</code>.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class SegmentedLruMemoryCache implements MemoryCache
+{
+    protected static class CacheEntry
+    {
+        protected Object key;
+        protected Object value;
+        protected long size;
+        protected long created;
+        protected volatile boolean referenced;
+        protected boolean inProtectedSegment;
+        protected CacheEntry prev;
+        protected CacheEntry next;
+
+        protected CacheEntry(Object key, Object value, long size)
+        {
+            this.key = key;
+            this.value = value;
+            this.size = size;
+            this.created = System.nanoTime();
+        }
+    }
+
+    /** The default fraction of the cache's capacity that may be occupied by the protected segment. */
+    protected static final double DEFAULT_PROTECTED_FRACTION = 0.8;
+
+    protected String name;
+    protected ConcurrentHashMap<Object, CacheEntry> entries;
+    protected AtomicLong capacity = new AtomicLong();
+    protected AtomicLong usedCapacity = new AtomicLong();
+    protected AtomicLong lowWater = new AtomicLong();
+    protected volatile AdmissionFilter admissionFilter;
+    protected final CacheStatistics statistics = new CacheStatistics();
+    protected double protectedFraction = DEFAULT_PROTECTED_FRACTION;
+    // The probationary and protected segments are circular lists with sentinel heads. The entry after the head is the
+    // least recently used entry in the segment, and the entry before the head is the most recently used.
+    protected final CacheEntry probation = createSentinel();
+    protected final CacheEntry protectedSegment = createSentinel();
+    protected long protectedSize;
+    protected final Object lock = new Object();
+    protected final CacheRemovalNotifier notifier = new CacheRemovalNotifier(this.lock);
+
+    /**
+     * Constructs a new cache using <code>capacity</code> for maximum size, and <code>loWater</code> for the low water.
+     *
+     * @param loWater  the low water level.
+     * @param capacity the maximum capacity.
+     */
+    public SegmentedLruMemoryCache(long loWater, long capacity)
+    {
+        this.entries = new ConcurrentHashMap<Object, CacheEntry>();
+        this.capacity.set(capacity);
+        this.usedCapacity.set(0L);
+        this.lowWater.set(loWater);
+    }
+
+    protected static CacheEntry createSentinel()
+    {
+        CacheEntry sentinel = new CacheEntry(null, null, 0);
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+
+        return sentinel;
+    }
+
+    /** {@inheritDoc} */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /** {@inheritDoc} */
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Indicates the fraction of this cache's capacity that may be occupied by entries in the protected segment.
+     *
+     * @return the protected segment's fraction of the capacity, in the range [0, 1].
+     */
+    public double getProtectedFraction()
+    {
+        return this.protectedFraction;
+    }
+
+    /**
+     * Specifies the fraction of this cache's capacity that may be occupied by entries in the protected segment. Entries
+     * in excess of the new limit are demoted to the probationary segment the next time space is made in the cache.
+     *
+     * @param fraction the protected segment's fraction of the capacity, in the range [0, 1].
+     *
+     * @throws IllegalArgumentException if <code>fraction</code> is outside the range [0, 1].
+     */
+    public void setProtectedFraction(double fraction)
+    {
+        if (fraction < 0 || fraction > 1)
+        {
+            String msg = Logging.getMessage("generic.FractionIsInvalid", fraction);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.lock)
+        {
+            this.protectedFraction = fraction;
+        }
+    }
+
+    /** {@inheritDoc} */
+    public Object get(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // The lookup and the access mark do not need the lock. The referenced flag is consumed by the eviction path,
+        // which runs under the lock.
+        AdmissionFilter filter = this.admissionFilter;
+        if (filter != null)
+            filter.recordAccess(key);
+
+        CacheEntry entry = this.entries.get(key);
+        if (entry == null)
+        {
+            this.statistics.recordMiss();
+            return null;
+        }
+
+        this.statistics.recordHit();
+        entry.referenced = true;
+        return entry.value;
+    }
+
+    /** {@inheritDoc} */
+    public void put(Object key, Object value, long size)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (value == null)
+        {
+            String msg = Logging.getMessage("nullValue.ValueIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (size < 1)
+        {
+            String msg = Logging.getMessage("MemoryCache.SizeIsLessThanOne", size);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long cap = this.capacity.get();
+
+        if (size > cap)
+        {
+            String msg = Logging.getMessage("MemoryCache.SizeIsLargerThanCapacity", size, cap);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        CacheEntry entry = new CacheEntry(key, value, size);
+
+        synchronized (this.lock)
+        {
+            CacheEntry existing = this.entries.get(key);
+            if (existing != null) // replacing
+                this.removeEntry(existing);
+
+            if (this.usedCapacity.get() + size > cap)
+            {
+                if (existing == null && !this.isAdmitted(key))
+                    return;
+
+                this.makeSpace(size);
+            }
+
+            this.usedCapacity.addAndGet(size);
+            this.statistics.recordPut();
+            this.linkLast(this.probation, entry);
+            this.entries.put(entry.key, entry);
+        }
+
+        this.notifier.dispatchPendingRemovals();
+    }
+
+    /** {@inheritDoc} */
+    public void put(Object key, Cacheable value)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (value == null)
+        {
+            String msg = Logging.getMessage("nullValue.ValueIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.put(key, value, value.getSizeInBytes());
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.entries.containsKey(key);
+    }
+
+    /** {@inheritDoc} */
+    public void remove(Object key)
+    {
+        if (key == null)
+        {
+            String msg = Logging.getMessage("nullValue.KeyIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        synchronized (this.lock)
+        {
+            CacheEntry entry = this.entries.get(key);
+            if (entry != null)
+                this.removeEntry(entry);
+        }
+
+        this.notifier.dispatchPendingRemovals();
+    }
+
+    /** {@inheritDoc} */
+    public void clear()
+    {
+        synchronized (this.lock)
+        {
+            for (CacheEntry entry : this.entries.values())
+            {
+                this.removeEntry(entry);
+            }
+        }
+
+        this.notifier.dispatchPendingRemovals();
+    }
+
+    /** {@inheritDoc} */
+    public int getNumObjects()
+    {
+        return this.entries.size();
+    }
+
+    /** {@inheritDoc} */
+    public long getCapacity()
+    {
+        return this.capacity.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getUsedCapacity()
+    {
+        return this.usedCapacity.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getFreeCapacity()
+    {
+        return Math.max(this.capacity.get() - this.usedCapacity.get(), 0);
+    }
+
+    /** {@inheritDoc} */
+    public void setCapacity(long newCapacity)
+    {
+        synchronized (this.lock)
+        {
+            this.capacity.set(newCapacity);
+
+            // Evict the entries that no longer fit, down to the low water level.
+            if (this.usedCapacity.get() > newCapacity)
+                this.makeSpace(0);
+        }
+
+        this.notifier.dispatchPendingRemovals();
+    }
+
+    /** {@inheritDoc} */
+    public long getLowWater()
+    {
+        return this.lowWater.get();
+    }
+
+    /** {@inheritDoc} */
+    public void setLowWater(long loWater)
+    {
+        if (loWater < this.capacity.get() && loWater >= 0)
+        {
+            this.lowWater.set(loWater);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public void addCacheListener(CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String msg = Logging.getMessage("nullValue.ListenerIsNull");
+            Logging.warning(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.notifier.addListener(listener);
+    }
+
+    /** {@inheritDoc} */
+    public void removeCacheListener(CacheListener listener)
+    {
+        if (listener == null)
+        {
+            String msg = Logging.getMessage("nullValue.ListenerIsNull");
+            Logging.warning(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.notifier.removeListener(listener);
+    }
+
+    /**
+     * Indicates whether removal notifications are delivered after the cache's lock is released.
+     *
+     * @return true if removal notifications are batched, otherwise false.
+     *
+     * @see #setBatchedNotification(boolean)
+     */
+    public boolean isBatchedNotification()
+    {
+        return this.notifier.isBatchedNotification();
+    }
+
+    /**
+     * Specifies whether removal notifications are delivered after the cache's lock is released. By default, each
+     * <code>CacheListener</code> is notified while the lock is held, as each entry is removed, so other threads cannot
+     * read the cache until every listener returns. When batched notification is enabled, entries are only unlinked
+     * while the lock is held. The entries removed by one operation are then delivered as a batch once the lock is
+     * released, on the executor declared by each {@link MemoryCache.ExecutorCacheListener} or on the calling thread.
+     *
+     * @param batched true to deliver removal notifications in batches after the lock is released, false to notify
+     *                listeners under the lock.
+     */
+    public void setBatchedNotification(boolean batched)
+    {
+        this.notifier.setBatchedNotification(batched);
+    }
+
+    /** {@inheritDoc} */
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /** {@inheritDoc} */
+    public AdmissionFilter getAdmissionFilter()
+    {
+        return this.admissionFilter;
+    }
+
+    /** {@inheritDoc} */
+    public void setAdmissionFilter(AdmissionFilter filter)
+    {
+        this.admissionFilter = filter;
+    }
+
+    /**
+     * Removes <code>entry</code> from the cache. To remove an entry using its key, use <code>remove()</code>.
+     *
+     * @param entry The entry (as opposed to key) of the item to be removed.
+     */
+    protected void removeEntry(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // all removal passes through this function,
+        // so the reduction in "currentUsedCapacity" and listener notification is done here
+
+        if (this.entries.remove(entry.key) != null) // returns null if entry does not exist
+        {
+            this.unlink(entry);
+            this.usedCapacity.addAndGet(-entry.size);
+            this.notifier.entryRemoved(entry.key, entry.value);
+        }
+    }
+
+    /**
+     * Indicates whether this cache's admission filter permits a new entry with the specified key to displace the next
+     * eviction victim.
+     *
+     * @param key the new entry's key.
+     *
+     * @return true if the new entry may be added, otherwise false.
+     */
+    protected boolean isAdmitted(Object key) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        AdmissionFilter filter = this.admissionFilter;
+        if (filter == null)
+            return true;
+
+        CacheEntry victim = this.nextVictim();
+        return victim == null || filter.admit(key, victim.key);
+    }
+
+    /**
+     * Makes at least <code>spaceRequired</code> space in the cache. If spaceRequired is less than (capacity-lowWater),
+     * makes more space. Does nothing if capacity is less than spaceRequired.
+     *
+     * @param spaceRequired the amount of space required.
+     */
+    protected void makeSpace(long spaceRequired) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (spaceRequired > this.capacity.get() || spaceRequired < 0)
+            return;
+
+        while (this.getFreeCapacity() < spaceRequired || this.getUsedCapacity() > this.getLowWater())
+        {
+            CacheEntry victim = this.nextVictim();
+            if (victim == null)
+                break;
+
+            this.statistics.recordEviction(victim.size, System.nanoTime() - victim.created);
+            this.removeEntry(victim);
+        }
+    }
+
+    /**
+     * Returns the entry to evict next, promoting referenced probationary entries and demoting protected entries along
+     * the way. Every loop iteration either clears an entry's referenced flag or moves an unreferenced entry closer to
+     * eviction, so the amortized cost per eviction is constant.
+     *
+     * @return the least recently used unreferenced entry, or null if the cache is empty.
+     */
+    protected CacheEntry nextVictim() // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long maxProtectedSize = (long) (this.protectedFraction * this.capacity.get());
+
+        while (true)
+        {
+            // Keep the protected segment within its share of the capacity.
+            while (this.protectedSize > maxProtectedSize && this.protectedSegment.next != this.protectedSegment)
+            {
+                this.demoteOrRetain(this.protectedSegment.next);
+            }
+
+            CacheEntry candidate = this.probation.next;
+            if (candidate == this.probation)
+            {
+                // The probationary segment is empty. Demote the protected segment's least recently used entry.
+                if (this.protectedSegment.next == this.protectedSegment)
+                    return null;
+
+                this.demoteOrRetain(this.protectedSegment.next);
+                continue;
+            }
+
+            if (!candidate.referenced)
+                return candidate;
+
+            // The candidate was accessed while on probation. Promote it to the protected segment.
+            candidate.referenced = false;
+            this.unlink(candidate);
+            this.linkLast(this.protectedSegment, candidate);
+        }
+    }
+
+    /**
+     * Moves the protected entry <code>entry</code> to the probationary segment's most recently used end, or gives it a
+     * second chance at the protected segment's most recently used end if it has been accessed since it was last
+     * examined.
+     *
+     * @param entry the protected segment's least recently used entry.
+     */
+    protected void demoteOrRetain(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        this.unlink(entry);
+
+        if (entry.referenced && this.protectedSize + entry.size <= this.protectedFraction * this.capacity.get())
+        {
+            entry.referenced = false;
+            this.linkLast(this.protectedSegment, entry);
+        }
+        else
+        {
+            this.linkLast(this.probation, entry);
+        }
+    }
+
+    protected void linkLast(CacheEntry head, CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        entry.prev = head.prev;
+        entry.next = head;
+        head.prev.next = entry;
+        head.prev = entry;
+        entry.inProtectedSegment = (head == this.protectedSegment);
+
+        if (entry.inProtectedSegment)
+            this.protectedSize += entry.size;
+    }
+
+    protected void unlink(CacheEntry entry) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (entry.prev == null || entry.next == null)
+            return;
+
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+
+        if (entry.inProtectedSegment)
+            this.protectedSize -= entry.size;
+
+        entry.inProtectedSegment = false;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+/**
+ * A <code>MemoryCacheSet</code> that creates {@link SegmentedLruMemoryCache} instances. Select this cache set by
+ * specifying its class name as the value of the <code>gov.nasa.worldwind.avkey.MemoryCacheSetClassName</code>
+ * configuration property.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class SegmentedLruMemoryCacheSet extends BasicMemoryCacheSet
+{
+    public SegmentedLruMemoryCacheSet()
+    {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public MemoryCache createMemoryCache(long loWater, long capacity)
+    {
+        return new SegmentedLruMemoryCache(loWater, capacity);
+    }
+}
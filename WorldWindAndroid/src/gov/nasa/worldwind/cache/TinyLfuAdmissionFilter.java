@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.cache;
+
+/**
+ * A <code>MemoryCache.AdmissionFilter</code> that admits a new entry only when its key has been requested more often
+ * than the key of the entry it would displace. Request frequencies are estimated by a {@link FrequencySketch}, which
+ * ages its counts so that keys that were popular long ago do not keep new keys out of the cache forever.
+ * <p/>
+ * This protects frequently revisited entries, such as low resolution tiles, from being flushed by a stream of entries
+ * that are used only once, such as the tiles passed over during a fast flight.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class TinyLfuAdmissionFilter implements MemoryCache.AdmissionFilter
+{
+    /** The default number of distinct keys the filter's frequency sketch distinguishes. */
+    protected static final int DEFAULT_MAXIMUM_ENTRIES = 1024;
+
+    protected final FrequencySketch sketch;
+
+    /** Creates a filter with a frequency sketch sized for the default number of distinct keys. */
+    public TinyLfuAdmissionFilter()
+    {
+        this(DEFAULT_MAXIMUM_ENTRIES);
+    }
+
+    /**
+     * Creates a filter with a frequency sketch sized for a specified number of distinct keys.
+     *
+     * @param maximumEntries the number of distinct keys the frequency sketch should distinguish.
+     *
+     * @throws IllegalArgumentException if <code>maximumEntries</code> is less than 1.
+     */
+    public TinyLfuAdmissionFilter(int maximumEntries)
+    {
+        this.sketch = new FrequencySketch(maximumEntries);
+    }
+
+    /** {@inheritDoc} */
+    public void recordAccess(Object key)
+    {
+        this.sketch.increment(key);
+    }
+
+    /** {@inheritDoc} */
+    public boolean admit(Object candidateKey, Object victimKey)
+    {
+        return this.sketch.frequency(candidateKey) > this.sketch.frequency(victimKey);
+    }
+}
@@ -5,6 +5,7 @@
  */
 package gov.nasa.worldwind.layers;
 
+import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
@@ -23,6 +24,7 @@ import gov.nasa.worldwind.util.AbsentResourceList;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
 import gov.nasa.worldwind.util.LevelSet;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.PrioritizedTask;
 import gov.nasa.worldwind.util.WWXML;
 import java.net.URL;
 import java.util.concurrent.ScheduledExecutorService;
@@ -148,7 +150,7 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 			return;
 		}
 
-		this.requestQ.add(task);
+		WorldWind.getTileRequestScheduler().addRequest(task);
 	}
 
 	protected RequestTask createRequestTask(DrawContext dc, GpuTextureTile tile) {
@@ -158,7 +160,7 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 		// return new RequestTask(tile, this);
 	}
 
-	protected static class RequestTask implements Runnable, Comparable<RequestTask> {
+	protected static class RequestTask implements PrioritizedTask, Comparable<RequestTask> {
 		protected final BasicTiledImageLayer layer;
 		protected final GpuTextureTile tile;
 		protected double priority;
@@ -175,6 +177,14 @@ public class BasicTiledImageLayer extends TiledImageLayer implements BulkRetriev
 			this.layer.loadTile(this.tile);
 		}
 
+		public double getPriority() {
+			return this.priority;
+		}
+
+		public Object getOwner() {
+			return this.layer;
+		}
+
 		/**
 		 * @param that
 		 *            the task to compare
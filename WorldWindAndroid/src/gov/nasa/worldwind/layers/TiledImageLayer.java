@@ -10,9 +10,9 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
-import gov.nasa.worldwind.cache.BasicMemoryCache;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.cache.TinyLfuAdmissionFilter;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Extent;
@@ -27,14 +27,19 @@ import gov.nasa.worldwind.render.GpuTextureTile;
 import gov.nasa.worldwind.retrieve.AbstractRetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.BulkRetrievable;
 import gov.nasa.worldwind.retrieve.BulkRetrievalThread;
+import gov.nasa.worldwind.retrieve.HTTPRetriever;
+import gov.nasa.worldwind.retrieve.ResponseValidator;
 import gov.nasa.worldwind.retrieve.Retriever;
+import gov.nasa.worldwind.retrieve.StreamingRetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.LevelSet;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.PrioritizedTask;
 import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileKey;
+import gov.nasa.worldwind.util.TileLoadPipeline;
 import gov.nasa.worldwind.util.WWIO;
 import gov.nasa.worldwind.util.WWXML;
 import java.io.File;
@@ -43,8 +48,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Map;
 import javax.xml.xpath.XPath;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -72,7 +78,8 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	// Stuff computed each frame
 	protected List<GpuTextureTile> currentTiles = new ArrayList<GpuTextureTile>();
 	protected GpuTextureTile currentAncestorTile;
-	protected PriorityBlockingQueue<Runnable> requestQ = new PriorityBlockingQueue<Runnable>(200);
+	// Priorities of the tiles requested this frame, used to reprioritize and cancel this layer's network retrievals.
+	protected Map<TileKey, Double> retrievalPriorities = new HashMap<TileKey, Double>();
 	protected final Object fileLock = new Object();
 
 	public TiledImageLayer(AVList params) {
@@ -233,10 +240,6 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 		return levels;
 	}
 
-	protected PriorityBlockingQueue<Runnable> getRequestQ() {
-		return requestQ;
-	}
-
 	public boolean isUseTransparentTextures() {
 		return this.useTransparentTextures;
 	}
@@ -291,16 +294,6 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 		}
 	}
 
-	protected void sendRequests() {
-		Runnable task = this.requestQ.poll();
-		while (task != null) {
-			if (!WorldWind.getTaskService().isFull()) {
-				WorldWind.getTaskService().runTask(task);
-			}
-			task = this.requestQ.poll();
-		}
-	}
-
 	/**
 	 * {@inheritDoc}
 	 * <p/>
@@ -358,8 +351,9 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			this.currentTiles.clear();
 		}
 
-		this.sendRequests();
-		this.requestQ.clear();
+		// Retrievals of tiles that were not requested this frame are no longer in view; cancel them.
+		WorldWind.getRetrievalService().updatePriorities(this, this.retrievalPriorities);
+		this.retrievalPriorities.clear();
 
 		// TODO: clear fallback tiles
 	}
@@ -551,8 +545,9 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	protected MemoryCache getTextureTileCache() {
 		if (!WorldWind.getMemoryCacheSet().contains(GpuTextureTile.class.getName())) {
 			long size = Configuration.getLongValue(AVKey.GPU_TEXTURE_TILE_CACHE_SIZE);
-			MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+			MemoryCache cache = WorldWind.getMemoryCacheSet().createMemoryCache((long) (0.8 * size), size);
 			cache.setName("Texture Tiles");
+			if (Configuration.getBooleanValue(AVKey.TILE_CACHE_ADMISSION_FILTER_ENABLED, false)) cache.setAdmissionFilter(new TinyLfuAdmissionFilter());
 			WorldWind.getMemoryCacheSet().put(GpuTextureTile.class.getName(), cache);
 		}
 
@@ -571,7 +566,8 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			return;
 		}
 
-		this.requestQ.add(task);
+		// The scheduler sends this layer's requests together with those of every other layer, in order of importance.
+		WorldWind.getTileRequestScheduler().addRequest(task);
 	}
 
 	/**
@@ -586,6 +582,7 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	protected Runnable createRequestTask(DrawContext dc, GpuTextureTile tile) {
 		double priority = this.computeTilePriority(dc, tile);
 		tile.setPriority(priority);
+		this.retrievalPriorities.put(tile.getTileKey(), priority);
 		return new RequestTask(tile, this, priority);
 	}
 
@@ -601,14 +598,15 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	 */
 	protected double computeTilePriority(DrawContext dc, GpuTextureTile tile) {
 		// Tile priority is ordered from low (most priority) to high (least priority). Assign the tile priority based
-		// on square distance form the eye point. Since we don't care about the actual distance this enables us to
-		// avoid a square root computation. Tiles further from the eye point are loaded last.
-		return dc.getView().getEyePoint().distanceToSquared3(tile.getExtent().getCenter());
+		// on the tile's size on screen, so that it is comparable with the priorities of other layers' tiles and of
+		// elevation tiles. Tiles further from the eye point, or smaller, are loaded last.
+		return WorldWind.getTileRequestScheduler().computePriority(tile.getExtent());
 	}
 
 	/**
 	 * Load a tile. If the tile exists in the file cache, it will be loaded from the file cache. If not, it will be
-	 * requested from the network.
+	 * requested from the network. If the cached tile has expired it is still loaded, and is displayed while it is
+	 * revalidated with the network.
 	 * 
 	 * @param tile
 	 *            tile to load.
@@ -616,14 +614,19 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	protected void loadTile(GpuTextureTile tile) {
 		URL textureURL = this.getDataFileStore().findFile(tile.getPath(), false);
 		if (textureURL != null) {
+			boolean expired = this.isTextureFileExpired(tile, textureURL, this.getDataFileStore());
 			this.loadTileFromCache(tile, textureURL);
+			if (expired) this.retrieveTexture(tile, this.createDownloadPostProcessor(tile));
 		} else {
 			this.retrieveTexture(tile, this.createDownloadPostProcessor(tile));
 		}
 	}
 
 	/**
-	 * Load a tile from the file cache.
+	 * Load a tile from the file cache. The tile is read and decoded by the {@link TileLoadPipeline}, which hands the
+	 * decoded tile to {@link #handleTextureLoaded(GpuTextureTile, GpuTextureData)} on the GL thread. The file is read
+	 * without holding the layer's file lock, since downloads publish a tile's file by renaming a complete file into
+	 * place. If there is no pipeline the tile is loaded on the current thread.
 	 * 
 	 * @param tile
 	 *            tile to load.
@@ -631,33 +634,63 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	 *            local URL to the cached resource.
 	 */
 	protected void loadTileFromCache(GpuTextureTile tile, URL textureURL) {
-		GpuTextureData textureData;
-
-		synchronized (this.fileLock) {
-			textureData = this.createTextureData(textureURL);
+		TileLoadPipeline pipeline = WorldWind.getTileLoadPipeline();
+		if (pipeline != null) {
+			// A load refused by a full pipeline is requested again in a later frame.
+			pipeline.submit(new TextureLoadJob(tile, this, textureURL));
+			return;
 		}
 
-		if (textureData != null) {
-			tile.setTextureData(textureData);
+		GpuTextureData textureData = this.createTextureData(textureURL);
+		if (textureData != null) this.handleTextureLoaded(tile, textureData);
+		else this.handleTextureLoadFailed(textureURL, null);
+	}
 
-			// The tile's size has changed, so update its size in the memory cache.
-			MemoryCache cache = this.getTextureTileCache();
-			if (cache.contains(tile.getTileKey())) cache.put(tile.getTileKey(), tile);
+	/**
+	 * Called when a tile's texture data is loaded from the file cache.
+	 * 
+	 * @param tile
+	 *            the tile loaded.
+	 * @param textureData
+	 *            the tile's texture data.
+	 */
+	protected void handleTextureLoaded(GpuTextureTile tile, GpuTextureData textureData) {
+		tile.setTextureData(textureData);
 
-			// Mark the tile as not absent to ensure that it is used, and cause any World Windows containing this layer
-			// to repaint themselves.
-			this.levels.unmarkResourceAbsent(tile);
-			this.firePropertyChange(AVKey.LAYER, null, this);
-		} else {
-			// Assume that something is wrong with the file and delete it.
-			this.getDataFileStore().removeFile(textureURL);
-			String message = Logging.getMessage("generic.DeletedCorruptDataFile", textureURL);
-			Logging.info(message);
-		}
+		// The tile's size has changed, so update its size in the memory cache.
+		MemoryCache cache = this.getTextureTileCache();
+		if (cache.contains(tile.getTileKey())) cache.put(tile.getTileKey(), tile);
+
+		// Mark the tile as not absent to ensure that it is used, and cause any World Windows containing this layer
+		// to repaint themselves.
+		this.levels.unmarkResourceAbsent(tile);
+		this.firePropertyChange(AVKey.LAYER, null, this);
 	}
 
-	protected GpuTextureData createTextureData(URL textureURL) {
-		return GpuTextureData.createTextureData(textureURL);
+	/**
+	 * Called when a tile's file cannot be read or decoded.
+	 * 
+	 * @param textureURL
+	 *            local URL to the cached resource.
+	 * @param e
+	 *            the exception that stopped the load, or null if the file could not be decoded.
+	 */
+	protected void handleTextureLoadFailed(URL textureURL, Exception e) {
+		// Assume that something is wrong with the file and delete it.
+		this.getDataFileStore().removeFile(textureURL);
+		String message = Logging.getMessage("generic.DeletedCorruptDataFile", textureURL);
+		Logging.info(message, e);
+	}
+
+	/**
+	 * Decodes a tile's texture data.
+	 * 
+	 * @param source
+	 *            the tile's texture: a URL, or a stream over the tile's file read by the {@link TileLoadPipeline}.
+	 * @return the tile's texture data, or null if the texture cannot be decoded.
+	 */
+	protected GpuTextureData createTextureData(Object source) {
+		return GpuTextureData.createTextureData(source);
 	}
 
 	/**
@@ -680,10 +713,26 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 	 *            post processor to handle the retrieval.
 	 */
 	protected void retrieveTexture(GpuTextureTile tile, DownloadPostProcessor postProcessor) {
-		this.retrieveRemoteTexture(tile, postProcessor);
+		this.retrieveRemoteTexture(tile, postProcessor, this);
 	}
 
 	protected void retrieveRemoteTexture(GpuTextureTile tile, DownloadPostProcessor postProcessor) {
+		this.retrieveRemoteTexture(tile, postProcessor, null);
+	}
+
+	/**
+	 * Retrieve a tile from the network on behalf of a retrieval client. The retrieval service reprioritizes and cancels
+	 * the client's retrievals when the client calls {@link gov.nasa.worldwind.retrieve.RetrievalService#updatePriorities(Object, Map)}.
+	 * 
+	 * @param tile
+	 *            tile to download.
+	 * @param postProcessor
+	 *            post processor to handle the retrieval.
+	 * @param client
+	 *            the client whose priority updates apply to the retrieval, or null if the retrieval must run to completion, as
+	 *            bulk downloads must.
+	 */
+	protected void retrieveRemoteTexture(GpuTextureTile tile, DownloadPostProcessor postProcessor, Object client) {
 		if (!this.isNetworkRetrievalEnabled()) {
 			this.getLevels().markResourceAbsent(tile);
 			return;
@@ -710,6 +759,14 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			return;
 		}
 		retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy layers
+		// Revalidate a cached tile rather than download it again. The server sends no content if the tile hasn't changed.
+		if (retriever instanceof HTTPRetriever && this.getDataFileStore().findFile(tile.getPath(), false) != null) {
+			((HTTPRetriever) retriever).setRequestValidator(this.getLevels().getResponseValidator(tile));
+		}
+		if (client != null) {
+			retriever.setValue(AVKey.RETRIEVAL_CLIENT, client);
+			retriever.setValue(AVKey.RETRIEVAL_KEY, tile.getTileKey());
+		}
 
 		// Apply any overridden timeouts.
 		Integer connectTimeout = AVListImpl.getIntegerValue(this, AVKey.URL_CONNECT_TIMEOUT);
@@ -724,7 +781,52 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 		WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
 	}
 
-	protected static class RequestTask implements Runnable, Comparable<RequestTask> {
+	/** Loads a tile's texture from the file cache through the {@link TileLoadPipeline}. */
+	protected static class TextureLoadJob extends TileLoadPipeline.Job {
+		protected final GpuTextureTile tile;
+		protected final TiledImageLayer layer;
+		protected final URL textureURL;
+
+		public TextureLoadJob(GpuTextureTile tile, TiledImageLayer layer, URL textureURL) {
+			super(tile.getTileKey());
+			this.tile = tile;
+			this.layer = layer;
+			this.textureURL = textureURL;
+		}
+
+		@Override
+		protected ByteBuffer read() throws Exception {
+			return WWIO.readURLContentToBuffer(this.textureURL);
+		}
+
+		@Override
+		protected Object decode(ByteBuffer content) throws Exception {
+			return this.layer.createTextureData(WWIO.getInputStreamFromByteBuffer(content));
+		}
+
+		@Override
+		protected void decoded() {
+			// Request a frame, in which the decoded tile is handed to this layer.
+			this.layer.firePropertyChange(AVKey.LAYER, null, this.layer);
+		}
+
+		@Override
+		protected void deliver(Object result) {
+			this.layer.handleTextureLoaded(this.tile, (GpuTextureData) result);
+		}
+
+		@Override
+		protected void failed(Exception e) {
+			this.layer.handleTextureLoadFailed(this.textureURL, e);
+		}
+
+		@Override
+		public String toString() {
+			return this.tile.toString();
+		}
+	}
+
+	protected static class RequestTask implements PrioritizedTask, Comparable<RequestTask> {
 		protected GpuTextureTile tile;
 		protected TiledImageLayer layer;
 		protected double priority;
@@ -753,6 +855,14 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			this.layer.loadTile(this.tile);
 		}
 
+		public double getPriority() {
+			return this.priority;
+		}
+
+		public Object getOwner() {
+			return this.layer;
+		}
+
 		public int compareTo(RequestTask that) {
 			if (that == null) return -1;
 
@@ -779,7 +889,7 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 		}
 	}
 
-	protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor {
+	protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor implements StreamingRetrievalPostProcessor {
 		protected GpuTextureTile tile;
 		protected TiledImageLayer layer;
 		protected FileStore fileStore;
@@ -797,21 +907,45 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			this.layer.getLevels().markResourceAbsent(this.tile);
 		}
 
+		@Override
+		protected void markResourceMissing() {
+			this.layer.getLevels().markResourceMissing(this.tile);
+		}
+
 		@Override
 		protected Object getFileLock() {
 			return this.layer.fileLock;
 		}
 
+		/** Replaces an expired tile that has changed on the server. */
+		@Override
+		protected boolean overwriteExistingFile() {
+			return true;
+		}
+
 		@Override
 		protected File doGetOutputFile() {
 			return layer.getDataFileStore().newFile(this.tile.getPath());
 		}
 
+		/** Streams the tile into the file store, so that it is not held on the heap while it is downloaded. */
+		public File getStreamingDestination(Retriever retriever) {
+			return this.doGetOutputFile();
+		}
+
 		@Override
 		protected ByteBuffer handleSuccessfulRetrieval() {
 			ByteBuffer buffer = super.handleSuccessfulRetrieval();
 
 			if (buffer != null) {
+				this.layer.getLevels().setResponseValidator(this.tile, this.getResponseValidator());
+
+				// A revalidated tile that has changed replaces the expired tile already in memory.
+				if (this.isRevalidation() && this.layer.getTextureTileCache().contains(this.tile.getTileKey())) {
+					URL textureURL = this.layer.getDataFileStore().findFile(this.tile.getPath(), false);
+					if (textureURL != null) this.layer.loadTileFromCache(this.tile, textureURL);
+				}
+
 				// Fire a property change to denote that the layer's backing data has changed.
 				this.layer.firePropertyChange(AVKey.LAYER, null, this);
 			}
@@ -819,9 +953,21 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 			return buffer;
 		}
 
+		@Override
+		protected ByteBuffer handleNotModified() {
+			// The expired tile is still current, and remains the tile displayed. The file store refreshes it, since it
+			// may hold the tile in a pack rather than in a file of its own.
+			if (!this.layer.getDataFileStore().refreshFile(this.tile.getPath()))
+				Logging.warning(Logging.getMessage("generic.CannotRefreshDataFile", this.tile.getPath()));
+			this.layer.getLevels().setResponseValidator(this.tile, this.getResponseValidator());
+
+			return null;
+		}
+
 		@Override
 		protected ByteBuffer handleTextContent() throws IOException {
-			this.markResourceAbsent();
+			// The server answered with something other than a tile, and will likely do so again.
+			this.markResourceMissing();
 
 			return super.handleTextContent();
 		}
@@ -1198,11 +1344,25 @@ public class TiledImageLayer extends AbstractLayer implements Tile.TileFactory,
 		return downloader.getEstimatedMissingDataSize();
 	}
 
+	/**
+	 * Indicates whether a cached tile is older than its level's expiry time, and must be revalidated with the network.
+	 * The file is kept, so that it can be displayed until it is revalidated. A tile that the server declared fresh
+	 * beyond the current time is not revalidated again until that time.
+	 * 
+	 * @param tile
+	 *            the tile in question.
+	 * @param textureURL
+	 *            local URL to the cached tile.
+	 * @param fileStore
+	 *            the file store containing the tile.
+	 * @return true if the tile must be revalidated, otherwise false.
+	 */
 	protected boolean isTextureFileExpired(GpuTextureTile tile, java.net.URL textureURL, FileStore fileStore) {
-		if (!WWIO.isFileOutOfDate(textureURL, tile.getLevel().getExpiryTime())) return false;
+		if (!fileStore.isFileExpired(textureURL, tile.getLevel().getExpiryTime())) return false;
+
+		ResponseValidator validator = this.getLevels().getResponseValidator(tile);
+		if (validator != null && validator.isFresh(System.currentTimeMillis())) return false;
 
-		// The file has expired. Delete it.
-		fileStore.removeFile(textureURL);
 		String message = Logging.getMessage("generic.DataFileExpired", textureURL);
 		Logging.verbose(message);
 		return true;
@@ -88,6 +88,9 @@ public class TiledImageLayerBulkDownloader extends BulkRetrievalThread
     {
         try
         {
+            // Resume from the checkpoint of an earlier retrieval of the same sector and levels, if there is one
+            this.openCheckpoint(this.layer.getLevels(), this.level);
+
             // Init progress with missing tile count estimate
             this.progress.setTotalCount(this.estimateMissingTilesCount(20));
             this.progress.setTotalSize(this.progress.getTotalCount() * estimateAverageTileSize());
@@ -114,20 +117,25 @@ public class TiledImageLayerBulkDownloader extends BulkRetrievalThread
                         submitMissingTilesRequests();
                         if (this.missingTiles.size() > 0)
                             Thread.sleep(RETRIEVAL_SERVICE_POLL_DELAY);
+
+                        this.writeCheckpointIfDue();
                     }
                 }
             }
+            this.deleteCheckpoint();
             // Set progress to 100%
             this.progress.setTotalCount(this.progress.getCurrentCount());
             this.progress.setTotalSize(this.progress.getCurrentSize());
         }
         catch (InterruptedException e)
         {
+            this.writeCheckpoint();
             String message = Logging.getMessage("generic.BulkRetrievalInterrupted", this.layer.getName());
             Logging.warning(message, e);
         }
         catch (Exception e)
         {
+            this.writeCheckpoint();
             String message = Logging.getMessage("generic.ExceptionDuringBulkRetrieval", this.layer.getName());
             Logging.error(message);
             throw new RuntimeException(message);
@@ -151,7 +159,7 @@ public class TiledImageLayerBulkDownloader extends BulkRetrievalThread
             }
 
             URL url = this.fileStore.findFile(tile.getPath(), false);
-            if (url != null)
+            if (url != null && !this.layer.isTextureFileExpired(tile, url, this.fileStore))
             {
                 // tile has been retrieved and is local now, count it as retrieved.
                 removeRetrievedTile(tile);
@@ -199,6 +207,7 @@ public class TiledImageLayerBulkDownloader extends BulkRetrievalThread
     protected synchronized void removeRetrievedTile(GpuTextureTile tile)
     {
         this.missingTiles.remove(tile);
+        this.checkpointTile(tile);
         // Update progress
         this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
         this.progress.setCurrentSize(this.progress.getCurrentSize() + estimateAverageTileSize());
@@ -374,11 +383,12 @@ public class TiledImageLayerBulkDownloader extends BulkRetrievalThread
         {
             for (GpuTextureTile tile : row)
             {
-                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
-
-                if (tile == null)
+                // A tile retrieved before the retrieval was resumed needs no further examination.
+                if (tile == null || this.isTileCheckpointed(tile))
                     continue;
 
+                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+
                 if (isTileLocalOrAbsent(tile))
                     continue;  // tile is local or absent
 
@@ -64,6 +64,7 @@ public class DrawContext extends WWObjectImpl {
 	protected View view;
 	protected double verticalExaggeration = DEFAULT_VERTICAL_EXAGGERATION;
 	protected GpuResourceCache gpuResourceCache;
+	protected GpuUploadManager gpuUploadManager;
 	protected long frameTimestamp;
 	protected Sector visibleSector;
 	protected Terrain visibleTerrain = new VisibleTerrain(this);
@@ -103,6 +104,7 @@ public class DrawContext extends WWObjectImpl {
 		this.view = null;
 		this.verticalExaggeration = DEFAULT_VERTICAL_EXAGGERATION;
 		this.gpuResourceCache = null;
+		this.gpuUploadManager = null;
 		this.frameTimestamp = 0;
 		this.visibleSector = null;
 		this.surfaceGeometry = null;
@@ -245,6 +247,25 @@ public class DrawContext extends WWObjectImpl {
 		this.gpuResourceCache = gpuResourceCache;
 	}
 
+	/**
+	 * Returns the manager that limits the GPU uploads of each frame.
+	 * 
+	 * @return the GPU upload manager, or null if uploads are not limited.
+	 */
+	public GpuUploadManager getGpuUploadManager() {
+		return this.gpuUploadManager;
+	}
+
+	/**
+	 * Specifies the manager that limits the GPU uploads of each frame.
+	 * 
+	 * @param gpuUploadManager
+	 *            the GPU upload manager, or null to not limit uploads.
+	 */
+	public void setGpuUploadManager(GpuUploadManager gpuUploadManager) {
+		this.gpuUploadManager = gpuUploadManager;
+	}
+
 	/**
 	 * Returns the time stamp corresponding to the beginning of a pre-render, pick, render sequence. The stamp remains
 	 * constant across these three operations so that called objects may avoid recomputing the same values during each
@@ -7,6 +7,7 @@ package gov.nasa.worldwind.render;
 
 import gov.nasa.worldwind.Disposable;
 import gov.nasa.worldwind.cache.Cacheable;
+import gov.nasa.worldwind.cache.GpuTexturePool;
 import gov.nasa.worldwind.geom.Matrix;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.pkm.PKMGpuTextureData;
@@ -93,6 +94,16 @@ public class GpuTexture implements Cacheable, Disposable {
 
 	protected static GpuTexture doCreateFromBitmapData(DrawContext dc, GpuTextureData data) throws Exception {
 		Bitmap bitmap = data.getBitmapData().bitmap;
+		int format = GLUtils.getInternalFormat(bitmap);
+		int type = GLUtils.getType(bitmap);
+
+		// Reuse the texture object of an evicted texture with the same shape when one is available. Replacing the
+		// contents of an existing texture object avoids the driver allocating storage for a new one.
+		GpuTexturePool pool = dc.getGpuResourceCache() != null ? dc.getGpuResourceCache().getTexturePool() : null;
+		if (pool != null) {
+			GpuTexture recycled = pool.take(GLES20.GL_TEXTURE_2D, bitmap.getWidth(), bitmap.getHeight(), format, type);
+			if (recycled != null) return doUpdateFromBitmapData(dc, recycled, data);
+		}
 
 		int[] texture = new int[1];
 		try {
@@ -121,7 +132,27 @@ public class GpuTexture implements Cacheable, Disposable {
 			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
 		}
 
-		return new GpuTexture(GLES20.GL_TEXTURE_2D, texture[0], bitmap.getWidth(), bitmap.getHeight(), data.getSizeInBytes(), createVerticalFlipTransform());
+		return new GpuTexture(GLES20.GL_TEXTURE_2D, texture[0], bitmap.getWidth(), bitmap.getHeight(), format, type, data.getSizeInBytes(),
+				createVerticalFlipTransform());
+	}
+
+	protected static GpuTexture doUpdateFromBitmapData(DrawContext dc, GpuTexture texture, GpuTextureData data) throws Exception {
+		Bitmap bitmap = data.getBitmapData().bitmap;
+
+		try {
+			// The texture's storage and parameters are unchanged, so only its level 0 image and mipmaps are replaced.
+			GLES20.glBindTexture(texture.getTarget(), texture.getTextureId());
+			GLUtils.texSubImage2D(texture.getTarget(), 0, 0, 0, bitmap);
+			GLES20.glGenerateMipmap(texture.getTarget());
+		} catch (Exception e) {
+			texture.dispose();
+			throw e;
+		} finally {
+			GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+		}
+
+		texture.estimatedMemorySize = data.getSizeInBytes();
+		return texture;
 	}
 
 	protected static GpuTexture doCreateFromCompressedData(DrawContext dc, GpuTextureData data) throws Exception {
@@ -183,10 +214,37 @@ public class GpuTexture implements Cacheable, Disposable {
 	protected int textureId;
 	protected int width;
 	protected int height;
+	protected int format;
+	protected int type;
 	protected long estimatedMemorySize;
 	protected Matrix internalTransform;
 
 	public GpuTexture(int target, int textureId, int width, int height, long estimatedMemorySize, Matrix texCoordMatrix) {
+		this(target, textureId, width, height, 0, 0, estimatedMemorySize, texCoordMatrix);
+	}
+
+	/**
+	 * Creates a texture with a known internal format and pixel type. Only textures whose format and type are known can
+	 * be recycled by a {@link GpuTexturePool}.
+	 * 
+	 * @param target
+	 *            the texture's target, such as GL_TEXTURE_2D.
+	 * @param textureId
+	 *            the OpenGL texture object name.
+	 * @param width
+	 *            the texture's width in texels.
+	 * @param height
+	 *            the texture's height in texels.
+	 * @param format
+	 *            the texture's internal format, such as GL_RGBA, or 0 if unknown.
+	 * @param type
+	 *            the texture's pixel type, such as GL_UNSIGNED_BYTE, or 0 if unknown.
+	 * @param estimatedMemorySize
+	 *            the texture's estimated size in GPU memory, in bytes.
+	 * @param texCoordMatrix
+	 *            the transform applied to texture coordinates, or null if none.
+	 */
+	public GpuTexture(int target, int textureId, int width, int height, int format, int type, long estimatedMemorySize, Matrix texCoordMatrix) {
 		if (target != GLES20.GL_TEXTURE_2D && target != GLES20.GL_TEXTURE_CUBE_MAP_NEGATIVE_X && target != GLES20.GL_TEXTURE_CUBE_MAP_NEGATIVE_Y
 				&& target != GLES20.GL_TEXTURE_CUBE_MAP_NEGATIVE_Z && target != GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_X && target != GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_Y
 				&& target != GLES20.GL_TEXTURE_CUBE_MAP_POSITIVE_Z) {
@@ -223,6 +281,8 @@ public class GpuTexture implements Cacheable, Disposable {
 		this.textureId = textureId;
 		this.width = width;
 		this.height = height;
+		this.format = format;
+		this.type = type;
 		this.estimatedMemorySize = estimatedMemorySize;
 		this.internalTransform = texCoordMatrix;
 	}
@@ -243,6 +303,24 @@ public class GpuTexture implements Cacheable, Disposable {
 		return this.height;
 	}
 
+	/**
+	 * Returns this texture's internal format.
+	 * 
+	 * @return the internal format, such as GL_RGBA, or 0 if unknown.
+	 */
+	public int getFormat() {
+		return this.format;
+	}
+
+	/**
+	 * Returns this texture's pixel type.
+	 * 
+	 * @return the pixel type, such as GL_UNSIGNED_BYTE, or 0 if unknown.
+	 */
+	public int getType() {
+		return this.type;
+	}
+
 	public long getSizeInBytes() {
 		return this.estimatedMemorySize;
 	}
@@ -190,18 +190,39 @@ public class GpuTextureTile extends Tile implements SurfaceTile {
 	}
 
 	protected GpuTexture getOrCreateTexture(DrawContext dc) {
-		if (this.textureData != null) {
-			GpuTexture texture = this.createTexture(dc, this.textureData);
+		GpuTextureData textureData = this.textureData;
+		if (textureData != null && this.canUploadTexture(dc, textureData)) {
+			long startTime = System.nanoTime();
+			GpuTexture texture = this.createTexture(dc, textureData);
 			if (texture != null) this.setTexture(dc.getGpuResourceCache(), texture);
 			else {
 				String msg = Logging.getMessage("GpuTextureTile.UnableToCreateTexture", this);
 				Logging.warning(msg);
 			}
+
+			GpuUploadManager manager = dc.getGpuUploadManager();
+			if (manager != null) manager.recordUpload(textureData.getSizeInBytes(), System.nanoTime() - startTime);
 		}
 
 		return this.getTexture(dc.getGpuResourceCache());
 	}
 
+	/**
+	 * Indicates whether this tile's texture data may be uploaded in the current frame. Uploads are limited by the draw
+	 * context's {@link GpuUploadManager}, which grants deferred uploads in order of tile priority. Until this tile's
+	 * texture is uploaded, it is drawn with its fallback tile's texture, or with its previous texture if it has one.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 * @param textureData
+	 *            the texture data to upload.
+	 * @return true if the texture data may be uploaded now, otherwise false.
+	 */
+	protected boolean canUploadTexture(DrawContext dc, GpuTextureData textureData) {
+		GpuUploadManager manager = dc.getGpuUploadManager();
+		return manager == null || manager.requestUpload(this.tileKey, this.getPriority(), textureData.getSizeInBytes());
+	}
+
 	protected GpuTexture createTexture(DrawContext dc, GpuTextureData textureData) {
 		return GpuTexture.createTexture(dc, textureData);
 	}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.render;
+
+import java.util.*;
+
+/**
+ * Limits the number of bytes and the time spent uploading textures and vertex buffers to the GPU each frame. A frame
+ * that uploads every tile it draws stalls after a fast pan, when dozens of newly loaded tiles are drawn at once. The
+ * scene controller calls {@link #beginFrame()} at the start of each frame, and code that uploads GPU resources reports
+ * each upload to {@link #recordUpload(long, long)}.
+ * <p/>
+ * Uploads that can wait ask for permission first by calling {@link #requestUpload(Object, double, long)}. A request
+ * is allowed at once while the frame's budget has room for it, beyond the bytes set aside for requests granted at the
+ * start of the frame. A request that is refused is kept, and at the start of the next frame the waiting requests are
+ * granted in order of priority, lowest value first in the same sense as {@link
+ * gov.nasa.worldwind.util.Tile#getPriority()}, until the byte budget is used up. A granted request is allowed if the
+ * frame's uploads have not yet used up the byte or time budget. A texture tile whose upload is refused draws its
+ * fallback tile's texture in the meantime. Uploads that cannot wait, such as
+ * the vertex buffers of the terrain, are not refused, but their bytes and time count against the frame's budget.
+ * <p/>
+ * The budgets may be changed at any time, from any thread. A budget of zero or less means no limit. All other methods
+ * must be called on the OpenGL thread.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class GpuUploadManager
+{
+    /** An upload waiting for permission. */
+    protected static class Upload
+    {
+        protected final Object key;
+        protected double priority;
+        protected long sizeInBytes;
+        protected long lastFrame;
+
+        public Upload(Object key)
+        {
+            this.key = key;
+        }
+    }
+
+    protected static final Comparator<Upload> PRIORITY_ORDER = new Comparator<Upload>()
+    {
+        public int compare(Upload a, Upload b)
+        {
+            return a.priority < b.priority ? -1 : (a.priority > b.priority ? 1 : 0);
+        }
+    };
+
+    protected volatile long byteBudget;
+    protected volatile double timeBudget;
+    protected long frameNumber;
+    protected long frameBytes;
+    protected long frameNanos;
+    protected int frameUploads;
+    protected int frameGrantedUploads;
+    protected long reservedBytes;
+    protected final Map<Object, Upload> pending = new HashMap<Object, Upload>();
+    protected final Map<Object, Upload> granted = new HashMap<Object, Upload>();
+    protected final List<Upload> ordered = new ArrayList<Upload>();
+
+    /**
+     * Creates an upload manager with specified budgets.
+     *
+     * @param byteBudget the most bytes uploaded each frame. Zero or less means no limit.
+     * @param timeBudget the most time spent uploading each frame, in milliseconds. Zero or less means no limit.
+     */
+    public GpuUploadManager(long byteBudget, double timeBudget)
+    {
+        this.byteBudget = byteBudget;
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * Indicates the most bytes uploaded each frame.
+     *
+     * @return the per-frame byte budget. Zero or less means no limit.
+     */
+    public long getByteBudget()
+    {
+        return this.byteBudget;
+    }
+
+    /**
+     * Specifies the most bytes uploaded each frame. Uploads that do not fit in the budget wait for later frames.
+     *
+     * @param budget the per-frame byte budget. Zero or less means no limit.
+     */
+    public void setByteBudget(long budget)
+    {
+        this.byteBudget = budget;
+    }
+
+    /**
+     * Indicates the most time spent uploading each frame.
+     *
+     * @return the per-frame time budget, in milliseconds. Zero or less means no limit.
+     */
+    public double getTimeBudget()
+    {
+        return this.timeBudget;
+    }
+
+    /**
+     * Specifies the most time spent uploading each frame. Uploads that do not fit in the budget wait for later frames.
+     *
+     * @param budget the per-frame time budget, in milliseconds. Zero or less means no limit.
+     */
+    public void setTimeBudget(double budget)
+    {
+        this.timeBudget = budget;
+    }
+
+    /**
+     * Returns the number of uploads waiting for permission.
+     *
+     * @return the number of pending uploads.
+     */
+    public int getNumPendingUploads()
+    {
+        return this.pending.size() + this.granted.size();
+    }
+
+    /**
+     * Returns the number of bytes uploaded so far this frame.
+     *
+     * @return the bytes uploaded this frame.
+     */
+    public long getFrameBytes()
+    {
+        return this.frameBytes;
+    }
+
+    /**
+     * Returns the time spent uploading so far this frame.
+     *
+     * @return the time spent uploading this frame, in milliseconds.
+     */
+    public double getFrameTime()
+    {
+        return this.frameNanos / 1.0e6;
+    }
+
+    /**
+     * Returns the number of uploads so far this frame.
+     *
+     * @return the number of uploads this frame.
+     */
+    public int getFrameUploads()
+    {
+        return this.frameUploads;
+    }
+
+    /**
+     * Starts a frame. The frame's budget is reset, requests that were not made again in the last frame are discarded,
+     * and the most urgent of the remaining requests are granted.
+     */
+    public void beginFrame()
+    {
+        this.frameNumber++;
+        this.frameBytes = 0;
+        this.frameNanos = 0;
+        this.frameUploads = 0;
+        this.frameGrantedUploads = 0;
+        this.reservedBytes = 0;
+
+        // Uploads granted in the last frame but not asked for are discarded, since their tiles were not drawn.
+        this.granted.clear();
+
+        if (this.pending.isEmpty())
+            return;
+
+        this.ordered.clear();
+        Iterator<Upload> iter = this.pending.values().iterator();
+        while (iter.hasNext())
+        {
+            Upload upload = iter.next();
+            if (upload.lastFrame < this.frameNumber - 1)
+                iter.remove(); // Its tile was not drawn in the last frame.
+            else
+                this.ordered.add(upload);
+        }
+
+        Collections.sort(this.ordered, PRIORITY_ORDER);
+
+        // Grant the most urgent uploads that fit in the byte budget. The first is always granted, so that an upload
+        // larger than the budget is not refused forever.
+        long byteBudget = this.byteBudget;
+        long bytes = 0;
+        for (Upload upload : this.ordered)
+        {
+            if (byteBudget > 0 && bytes > 0 && bytes + upload.sizeInBytes > byteBudget)
+                break;
+
+            bytes += upload.sizeInBytes;
+            this.granted.put(upload.key, upload);
+            this.pending.remove(upload.key);
+        }
+
+        // The granted uploads' bytes are set aside, so that requests made during the frame do not take their place.
+        this.reservedBytes = bytes;
+        this.ordered.clear();
+    }
+
+    /**
+     * Asks for permission to upload a resource. Permission is given if there is no budget, if the upload was granted at
+     * the start of this frame and the frame's budget is not yet used up, or if the frame's budget has room for the
+     * upload beyond the bytes set aside for the uploads granted at the start of this frame. Otherwise the request is
+     * kept, and granted in a later frame in order of priority. A caller that is refused should ask again each frame it
+     * needs the resource.
+     *
+     * @param key         the key identifying the resource.
+     * @param priority    the upload's priority. Lower values are granted first.
+     * @param sizeInBytes the resource's size in bytes.
+     *
+     * @return true if the resource may be uploaded now, otherwise false.
+     */
+    public boolean requestUpload(Object key, double priority, long sizeInBytes)
+    {
+        long byteBudget = this.byteBudget;
+        double timeBudget = this.timeBudget;
+        if (byteBudget <= 0 && timeBudget <= 0)
+            return true;
+
+        Upload grant = this.granted.remove(key);
+        if (grant != null)
+        {
+            this.reservedBytes -= grant.sizeInBytes;
+            if (!this.isBudgetExhausted(byteBudget, timeBudget, sizeInBytes))
+            {
+                this.frameGrantedUploads++;
+                return true;
+            }
+        }
+        else if (this.hasRoomFor(byteBudget, timeBudget, sizeInBytes))
+        {
+            this.pending.remove(key);
+            this.frameGrantedUploads++;
+            return true;
+        }
+
+        // The frame's budget is used up. The upload waits for a later frame.
+        Upload upload = this.pending.get(key);
+        if (upload == null)
+        {
+            upload = new Upload(key);
+            this.pending.put(key, upload);
+        }
+
+        upload.priority = priority;
+        upload.sizeInBytes = sizeInBytes;
+        upload.lastFrame = this.frameNumber;
+
+        return false;
+    }
+
+    /**
+     * Records an upload against the current frame's budget.
+     *
+     * @param sizeInBytes the number of bytes uploaded.
+     * @param nanos       the time the upload took, in nanoseconds.
+     */
+    public void recordUpload(long sizeInBytes, long nanos)
+    {
+        this.frameBytes += sizeInBytes;
+        this.frameNanos += nanos;
+        this.frameUploads++;
+    }
+
+    /** Discards all waiting requests. */
+    public void clear()
+    {
+        this.pending.clear();
+        this.granted.clear();
+        this.reservedBytes = 0;
+    }
+
+    protected boolean isBudgetExhausted(long byteBudget, double timeBudget, long sizeInBytes)
+    {
+        // The frame's first granted upload is always allowed, so that waiting uploads are made even while uploads that
+        // cannot wait use up the budget, and so that an upload larger than the budget is eventually made.
+        if (this.frameGrantedUploads == 0)
+            return false;
+
+        if (byteBudget > 0 && this.frameBytes + sizeInBytes > byteBudget)
+            return true;
+
+        return timeBudget > 0 && this.frameNanos >= timeBudget * 1.0e6;
+    }
+
+    protected boolean hasRoomFor(long byteBudget, double timeBudget, long sizeInBytes)
+    {
+        // With no uploads granted or made this frame, the frame's first upload is allowed for the same reasons as in
+        // isBudgetExhausted.
+        if (this.frameGrantedUploads == 0 && this.granted.isEmpty())
+            return true;
+
+        if (byteBudget > 0 && this.frameBytes + this.reservedBytes + sizeInBytes > byteBudget)
+            return false;
+
+        return timeBudget <= 0 || this.frameNanos < timeBudget * 1.0e6;
+    }
+}
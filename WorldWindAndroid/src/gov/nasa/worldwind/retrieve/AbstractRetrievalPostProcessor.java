@@ -81,6 +81,9 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
             return null;
         }
 
+        if (this.isNotModified())
+            return this.handleNotModified();
+
         if (!this.validateResponseCode())
         {
             this.handleInvalidResponseCode();
@@ -111,6 +114,72 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
             this.markResourceAbsent();
     }
 
+    /**
+     * Indicates whether the retrieval was a conditional request that the server answered by saying the resource has not
+     * changed since it was cached.
+     *
+     * @return true if the retriever is an {@link HTTPRetriever} whose response code is {@link
+     *         java.net.HttpURLConnection#HTTP_NOT_MODIFIED}, otherwise false.
+     */
+    protected boolean isNotModified()
+    {
+        return this.getRetriever() instanceof HTTPRetriever && ((HTTPRetriever) this.getRetriever()).isNotModified();
+    }
+
+    /**
+     * Called when the server answers a conditional request by saying the resource has not changed. There is no content
+     * to process. The default implementation sets the modification time of the output file to the current time, so
+     * that the cached copy is no longer out of date.
+     *
+     * @return null, since the response has no content.
+     */
+    protected ByteBuffer handleNotModified()
+    {
+        File outFile = this.doGetOutputFile();
+        if (outFile == null || !outFile.exists())
+            return null;
+
+        synchronized (this.getFileLock()) // synchronize with read of file in another class
+        {
+            if (!outFile.setLastModified(System.currentTimeMillis()))
+                Logging.warning(Logging.getMessage("generic.CannotRefreshDataFile", outFile));
+        }
+
+        return null;
+    }
+
+    /**
+     * Indicates whether the retrieval was a conditional request, made to revalidate a cached copy of the resource.
+     *
+     * @return true if the retriever is an {@link HTTPRetriever} that sent validators with its request, otherwise
+     *         false.
+     */
+    protected boolean isRevalidation()
+    {
+        return this.getRetriever() instanceof HTTPRetriever && ((HTTPRetriever) this.getRetriever()).isConditional();
+    }
+
+    /**
+     * Returns the validators to store with the retrieved resource. If the server answered a conditional request by
+     * saying the resource has not changed, these are the validators sent with the request updated by those of the
+     * response.
+     *
+     * @return the resource's validators, or null if the retriever is not an {@link HTTPRetriever}.
+     */
+    protected ResponseValidator getResponseValidator()
+    {
+        if (!(this.getRetriever() instanceof HTTPRetriever))
+            return null;
+
+        HTTPRetriever htr = (HTTPRetriever) this.getRetriever();
+        ResponseValidator validator = htr.getResponseValidator();
+
+        if (htr.isNotModified() && htr.getRequestValidator() != null)
+            validator = htr.getRequestValidator().update(validator);
+
+        return validator;
+    }
+
     /**
      * Process the retrieved data if it has been retrieved successfully.
      *
@@ -174,12 +243,16 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
 
     /**
      * Handle the case of an invalid response code. Subclasses can override this method to handle special cases. The
-     * default implementation calls {@link #markResourceAbsent()} and logs the contents of the retrieval buffer if it
-     * contains content of type "text".
+     * default implementation calls {@link #markResourceMissing()} if the server says it does not have the resource, and
+     * {@link #markResourceAbsent()} otherwise, and logs the contents of the retrieval buffer if it contains content of
+     * type "text".
      */
     protected void handleInvalidResponseCode()
     {
-        this.markResourceAbsent();
+        if (this.isResourceNotFound())
+            this.markResourceMissing();
+        else
+            this.markResourceAbsent();
 
         if (this.isWMSException())
             this.handleWMSExceptionContent();
@@ -196,6 +269,31 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
     {
     }
 
+    /**
+     * Marks the retrieval target as missing from the server, as confirmed by the server's response. Unlike {@link
+     * #markResourceAbsent()}, which may be called for failures that are transient, this is called only when retrying
+     * the retrieval is unlikely to succeed. The default implementation calls {@link #markResourceAbsent()}.
+     */
+    protected void markResourceMissing()
+    {
+        this.markResourceAbsent();
+    }
+
+    /**
+     * Indicates whether the server answered that it does not have the resource.
+     *
+     * @return true if the retriever is an {@link HTTPRetriever} whose response code is {@link
+     *         HttpURLConnection#HTTP_NOT_FOUND} or {@link HttpURLConnection#HTTP_GONE}, otherwise false.
+     */
+    protected boolean isResourceNotFound()
+    {
+        if (!(this.getRetriever() instanceof HTTPRetriever))
+            return false;
+
+        int responseCode = ((HTTPRetriever) this.getRetriever()).getResponseCode();
+        return responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE;
+    }
+
     /**
      * Saves the retrieved and possibly transformed data. The data may have been transformed during content handling.
      * <p/>
@@ -215,6 +313,9 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
     /**
      * Saves the retrieved and possibly transformed data. The data may have been transformed during content handling.
      * The data is not saved if the output file already exists unless {@link #overwriteExistingFile()} returns true.
+     * <p/>
+     * The data is written to a temporary file in the output file's directory, which is then renamed to the output
+     * file, so readers of the output file never see it partially written.
      *
      * @param buffer the buffer to save.
      *
@@ -235,12 +336,100 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
 
         synchronized (this.getFileLock()) // synchronize with read of file in another class
         {
-            WWIO.saveBuffer(buffer != null ? buffer : this.getRetriever().getBuffer(), outFile);
+            if (this.moveStreamedFile(buffer, outFile))
+                return true;
+        }
+
+        File tmpFile = this.createTempFile(outFile);
+        try
+        {
+            if (!WWIO.saveBuffer(buffer != null ? buffer : this.getRetriever().getBuffer(), tmpFile))
+                return false;
+
+            synchronized (this.getFileLock()) // synchronize with read of file in another class
+            {
+                this.renameTempFile(tmpFile, outFile);
+            }
+        }
+        finally
+        {
+            this.deleteTempFile(tmpFile);
         }
 
         return true;
     }
 
+    /**
+     * Creates an empty temporary file in the output file's directory, creating the directory if necessary. Content is
+     * written to the temporary file and then published by {@link #renameTempFile(java.io.File, java.io.File)}.
+     *
+     * @param outFile the output file.
+     *
+     * @return the temporary file.
+     *
+     * @throws IOException if the directory or the file cannot be created.
+     */
+    protected File createTempFile(File outFile) throws IOException
+    {
+        File dir = outFile.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists())
+            throw new IOException(Logging.getMessage("generic.CannotCreateFile", dir));
+
+        return File.createTempFile(outFile.getName(), ".tmp", dir);
+    }
+
+    /**
+     * Renames a temporary file created by {@link #createTempFile(java.io.File)} to the output file. The two files are
+     * in the same directory, so the rename is atomic.
+     *
+     * @param tmpFile the temporary file.
+     * @param outFile the output file.
+     *
+     * @throws IOException if the temporary file cannot be renamed.
+     */
+    protected void renameTempFile(File tmpFile, File outFile) throws IOException
+    {
+        if (!tmpFile.renameTo(outFile))
+        {
+            // Some file systems do not replace an existing file on rename.
+            // noinspection ResultOfMethodCallIgnored
+            outFile.delete();
+            if (!tmpFile.renameTo(outFile))
+                throw new IOException(Logging.getMessage("generic.CannotCreateFile", outFile));
+        }
+    }
+
+    protected void deleteTempFile(File tmpFile)
+    {
+        if (tmpFile.exists() && !tmpFile.delete())
+            tmpFile.deleteOnExit();
+    }
+
+    /**
+     * Renames the file a streaming retrieval wrote its content to, instead of writing the content a second time. The
+     * file is used only if the buffer to save is the retrieved content itself, rather than content transformed during
+     * content handling.
+     *
+     * @param buffer  the buffer to save, or null to save the retriever's buffer.
+     * @param outFile the output file.
+     *
+     * @return true if the streamed file was renamed to the output file, otherwise false.
+     */
+    protected boolean moveStreamedFile(ByteBuffer buffer, File outFile)
+    {
+        if (!(this.getRetriever() instanceof URLRetriever))
+            return false;
+
+        URLRetriever retriever = (URLRetriever) this.getRetriever();
+        File streamedFile = retriever.getStreamedFile();
+        if (streamedFile == null || (buffer != null && buffer != retriever.getBuffer()))
+            return false;
+
+        // The streamed file is in the output file's directory, so the rename is atomic and readers of the output file
+        // never see it partially written.
+        return streamedFile.renameTo(outFile);
+    }
+
     /**
      * Determines and returns the output file for the retrieved data.
      *
@@ -532,10 +721,20 @@ public abstract class AbstractRetrievalPostProcessor implements RetrievalPostPro
 
         if (image != null)
         {
-            synchronized (this.getFileLock()) // synchronize with read of file in another class
+            File tmpFile = this.createTempFile(outFile);
+            try
             {
                 String format = this.getRetriever().getContentType().split("/")[1];
-                writeImage(image, format, outFile);
+                writeImage(image, format, tmpFile);
+
+                synchronized (this.getFileLock()) // synchronize with read of file in another class
+                {
+                    this.renameTempFile(tmpFile, outFile);
+                }
+            }
+            finally
+            {
+                this.deleteTempFile(tmpFile);
             }
         }
         else
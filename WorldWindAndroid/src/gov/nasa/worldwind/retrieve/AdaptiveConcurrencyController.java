@@ -0,0 +1,492 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Adjusts the number of concurrent retrievals from each host to the network's observed capacity, using
+ * additive-increase/multiplicative-decrease. A fixed number of concurrent retrievals is too many for a slow or lossy
+ * network, where connections time out, and too few for a fast one.
+ * <p/>
+ * The controller is told when each retrieval from a host starts and finishes, and how long it waited in the retrieval
+ * queue, how long it took, how many bytes it read and whether it timed out. A retrieval that is retried is reported
+ * once for each attempt, from the time the attempt connects, so that neither the waits between attempts nor the
+ * timeouts of attempts that a retry recovers from are hidden. Once per evaluation window it decides each host's new
+ * limit from the window's samples: <ul> <li>If more than the maximum fraction of retrievals timed out, the limit is
+ * multiplied by the decrease factor.</li> <li>If the limit was raised at the end of the previous window and
+ * throughput has since fallen by more than the tolerated fraction, the raise did not help and the limit is multiplied
+ * by the decrease factor.</li> <li>If every allowed retrieval was in use, or retrievals waited longer than the queue
+ * wait threshold, the limit is raised by one.</li> <li>Otherwise the limit is kept.</li> </ul>
+ * <p/>
+ * The controller only makes decisions; the retrieval service applies them. Each decision is kept in a bounded history
+ * returned by {@link #getDecisions()}, so that limits and the measurements behind them can be graphed. The controller
+ * is thread safe.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class AdaptiveConcurrencyController
+{
+    /** Identifies a decision that raised a host's limit because its retrievals were limited by it. */
+    public static final String INCREASE = "Increase";
+    /** Identifies a decision that lowered a host's limit because too many of its retrievals timed out. */
+    public static final String DECREASE_TIMEOUTS = "DecreaseTimeouts";
+    /** Identifies a decision that lowered a host's limit because raising it reduced throughput. */
+    public static final String DECREASE_THROUGHPUT = "DecreaseThroughput";
+    /** Identifies a decision that kept a host's limit. */
+    public static final String HOLD = "Hold";
+
+    protected static final int DEFAULT_MIN_LIMIT = 1;
+    protected static final long DEFAULT_WINDOW = 2000; // milliseconds
+    protected static final int DEFAULT_MIN_SAMPLES = 4;
+    protected static final double DEFAULT_MAX_TIMEOUT_RATE = 0.1;
+    protected static final double DEFAULT_DECREASE_FACTOR = 0.5;
+    protected static final double DEFAULT_THROUGHPUT_DROP_TOLERANCE = 0.2;
+    protected static final long DEFAULT_QUEUE_WAIT_THRESHOLD = 250; // milliseconds
+    /** Hosts with no retrievals for this long do not count toward {@link #getActiveLimit()}. */
+    protected static final long DEFAULT_HOST_IDLE_TIME = 60000; // milliseconds
+    protected static final int DEFAULT_MAX_DECISIONS = 256;
+
+    /** A decision made at the end of an evaluation window, with the measurements it was based on. */
+    public static class Decision
+    {
+        protected final long time;
+        protected final String host;
+        protected final int previousLimit;
+        protected final int limit;
+        protected final String reason;
+        protected final int numSamples;
+        protected final double throughput;
+        protected final double timeoutRate;
+        protected final long meanQueueWait;
+        protected final long meanDuration;
+
+        public Decision(long time, String host, int previousLimit, int limit, String reason, int numSamples,
+            double throughput, double timeoutRate, long meanQueueWait, long meanDuration)
+        {
+            this.time = time;
+            this.host = host;
+            this.previousLimit = previousLimit;
+            this.limit = limit;
+            this.reason = reason;
+            this.numSamples = numSamples;
+            this.throughput = throughput;
+            this.timeoutRate = timeoutRate;
+            this.meanQueueWait = meanQueueWait;
+            this.meanDuration = meanDuration;
+        }
+
+        /** @return the time the decision was made, in milliseconds since the epoch. */
+        public long getTime()
+        {
+            return this.time;
+        }
+
+        /** @return the host the decision applies to, as protocol://host:port. */
+        public String getHost()
+        {
+            return this.host;
+        }
+
+        public int getPreviousLimit()
+        {
+            return this.previousLimit;
+        }
+
+        public int getLimit()
+        {
+            return this.limit;
+        }
+
+        /**
+         * @return one of {@link #INCREASE}, {@link #DECREASE_TIMEOUTS}, {@link #DECREASE_THROUGHPUT} or {@link
+         *         #HOLD}.
+         */
+        public String getReason()
+        {
+            return this.reason;
+        }
+
+        /** @return the number of retrievals that finished during the window. */
+        public int getNumSamples()
+        {
+            return this.numSamples;
+        }
+
+        /** @return the bytes read per second during the window. */
+        public double getThroughput()
+        {
+            return this.throughput;
+        }
+
+        /** @return the fraction of the window's retrievals that timed out. */
+        public double getTimeoutRate()
+        {
+            return this.timeoutRate;
+        }
+
+        /** @return the mean time the window's retrievals waited in the retrieval queue, in milliseconds. */
+        public long getMeanQueueWait()
+        {
+            return this.meanQueueWait;
+        }
+
+        /** @return the mean time the window's retrievals took once started, in milliseconds. */
+        public long getMeanDuration()
+        {
+            return this.meanDuration;
+        }
+
+        public boolean isLimitChanged()
+        {
+            return this.limit != this.previousLimit;
+        }
+
+        @Override
+        public String toString()
+        {
+            return this.host + " " + this.previousLimit + " -> " + this.limit + " (" + this.reason + ")";
+        }
+    }
+
+    protected static class HostState
+    {
+        protected final String host;
+        protected int limit;
+        protected int numInFlight;
+        protected int peakInFlight;
+        protected long lastActive;
+        // Measurements of the current window.
+        protected long windowStart;
+        protected int numSamples;
+        protected int numTimeouts;
+        protected long numBytes;
+        protected long queueWait;
+        protected long duration;
+        // The outcome of the previous window.
+        protected double lastThroughput;
+        protected boolean lastIncreased;
+
+        protected HostState(String host, int limit, long now)
+        {
+            this.host = host;
+            this.limit = limit;
+            this.lastActive = now;
+            this.windowStart = now;
+        }
+    }
+
+    protected final int initialLimit;
+    protected final int minLimit;
+    protected final int maxLimit;
+    protected long window = DEFAULT_WINDOW;
+    protected int minSamples = DEFAULT_MIN_SAMPLES;
+    protected double maxTimeoutRate = DEFAULT_MAX_TIMEOUT_RATE;
+    protected double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+    protected double throughputDropTolerance = DEFAULT_THROUGHPUT_DROP_TOLERANCE;
+    protected long queueWaitThreshold = DEFAULT_QUEUE_WAIT_THRESHOLD;
+    protected long hostIdleTime = DEFAULT_HOST_IDLE_TIME;
+    protected final Map<String, HostState> hosts = new HashMap<String, HostState>();
+    protected final LinkedList<Decision> decisions = new LinkedList<Decision>();
+
+    /**
+     * Creates a controller whose hosts start at a specified limit and are kept within a specified maximum.
+     *
+     * @param initialLimit the limit of a host not yet evaluated.
+     * @param maxLimit     the highest limit of any host.
+     *
+     * @throws IllegalArgumentException if either limit is less than 1, or the initial limit exceeds the maximum.
+     */
+    public AdaptiveConcurrencyController(int initialLimit, int maxLimit)
+    {
+        this(initialLimit, DEFAULT_MIN_LIMIT, maxLimit);
+    }
+
+    /**
+     * Creates a controller.
+     *
+     * @param initialLimit the limit of a host not yet evaluated.
+     * @param minLimit     the lowest limit of any host.
+     * @param maxLimit     the highest limit of any host.
+     *
+     * @throws IllegalArgumentException if any limit is less than 1, or the limits are not in order.
+     */
+    public AdaptiveConcurrencyController(int initialLimit, int minLimit, int maxLimit)
+    {
+        if (minLimit < 1 || minLimit > maxLimit)
+        {
+            String msg = Logging.getMessage("generic.ConnectionCountIsInvalid", minLimit);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (initialLimit < minLimit || initialLimit > maxLimit)
+        {
+            String msg = Logging.getMessage("generic.ConnectionCountIsInvalid", initialLimit);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public int getInitialLimit()
+    {
+        return this.initialLimit;
+    }
+
+    public int getMinLimit()
+    {
+        return this.minLimit;
+    }
+
+    public int getMaxLimit()
+    {
+        return this.maxLimit;
+    }
+
+    /**
+     * Returns the current limit of a host.
+     *
+     * @param url a URL on the host in question.
+     *
+     * @return the host's limit, or the initial limit if the host has not been seen.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public synchronized int getLimit(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        HostState state = this.hosts.get(this.getHostKey(url));
+        return state != null ? state.limit : this.initialLimit;
+    }
+
+    /**
+     * Returns the current limit of every host seen.
+     *
+     * @return a map of limits keyed by host, as protocol://host:port.
+     */
+    public synchronized Map<String, Integer> getLimits()
+    {
+        Map<String, Integer> limits = new HashMap<String, Integer>();
+        for (HostState state : this.hosts.values())
+        {
+            limits.put(state.host, state.limit);
+        }
+
+        return limits;
+    }
+
+    /**
+     * Returns the sum of the limits of the hosts that have had retrievals recently. This is the number of retrievals
+     * that could usefully run at once.
+     *
+     * @return the sum of the limits of the active hosts.
+     */
+    public synchronized int getActiveLimit()
+    {
+        long now = System.currentTimeMillis();
+
+        int sum = 0;
+        for (HostState state : this.hosts.values())
+        {
+            if (state.numInFlight > 0 || now - state.lastActive <= this.hostIdleTime)
+                sum += state.limit;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Returns the most recent decisions, oldest first.
+     *
+     * @return a copy of the decision history.
+     */
+    public synchronized List<Decision> getDecisions()
+    {
+        return new ArrayList<Decision>(this.decisions);
+    }
+
+    /**
+     * Indicates that a retrieval from a host has started.
+     *
+     * @param url the URL being retrieved.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public synchronized void retrievalStarted(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        HostState state = this.getHostState(url, System.currentTimeMillis());
+        state.numInFlight++;
+        state.peakInFlight = Math.max(state.peakInFlight, state.numInFlight);
+    }
+
+    /**
+     * Indicates that a retrieval from a host was cancelled or aborted. The retrieval says nothing about the network, so
+     * it is not measured.
+     *
+     * @param url the URL that was being retrieved.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public synchronized void retrievalAbandoned(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        HostState state = this.getHostState(url, System.currentTimeMillis());
+        state.numInFlight = Math.max(state.numInFlight - 1, 0);
+    }
+
+    /**
+     * Indicates that a retrieval from a host has finished, and measures it. Evaluates the host's limit if its
+     * evaluation window has ended.
+     *
+     * @param url       the URL that was retrieved.
+     * @param queueWait the time the retrieval waited in the retrieval queue, in milliseconds.
+     * @param duration  the time the retrieval took once started, in milliseconds.
+     * @param numBytes  the number of bytes read.
+     * @param timedOut  true if the retrieval failed because a connection or read timed out.
+     *
+     * @return the decision made if the host was evaluated, otherwise null.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public synchronized Decision retrievalFinished(URL url, long queueWait, long duration, long numBytes,
+        boolean timedOut)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long now = System.currentTimeMillis();
+        HostState state = this.getHostState(url, now);
+        state.numInFlight = Math.max(state.numInFlight - 1, 0);
+        state.numSamples++;
+        state.numBytes += Math.max(numBytes, 0);
+        state.queueWait += Math.max(queueWait, 0);
+        state.duration += Math.max(duration, 0);
+        if (timedOut)
+            state.numTimeouts++;
+
+        if (now - state.windowStart < this.window || state.numSamples < this.minSamples)
+            return null;
+
+        Decision decision = this.evaluate(state, now);
+        this.addDecision(decision);
+
+        return decision;
+    }
+
+    protected Decision evaluate(HostState state, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long elapsed = Math.max(now - state.windowStart, 1);
+        double throughput = 1000d * state.numBytes / elapsed;
+        double timeoutRate = (double) state.numTimeouts / state.numSamples;
+        long meanQueueWait = state.queueWait / state.numSamples;
+        long meanDuration = state.duration / state.numSamples;
+
+        int limit = state.limit;
+        String reason;
+
+        if (timeoutRate > this.maxTimeoutRate)
+        {
+            limit = this.decrease(limit);
+            reason = DECREASE_TIMEOUTS;
+        }
+        else if (state.lastIncreased && throughput < state.lastThroughput * (1 - this.throughputDropTolerance))
+        {
+            limit = this.decrease(limit);
+            reason = DECREASE_THROUGHPUT;
+        }
+        else if ((state.peakInFlight >= limit || meanQueueWait >= this.queueWaitThreshold) && limit < this.maxLimit)
+        {
+            limit++;
+            reason = INCREASE;
+        }
+        else
+        {
+            reason = HOLD;
+        }
+
+        Decision decision = new Decision(now, state.host, state.limit, limit, reason, state.numSamples, throughput,
+            timeoutRate, meanQueueWait, meanDuration);
+
+        state.limit = limit;
+        state.lastIncreased = INCREASE.equals(reason);
+        state.lastThroughput = throughput;
+        state.windowStart = now;
+        state.numSamples = 0;
+        state.numTimeouts = 0;
+        state.numBytes = 0;
+        state.queueWait = 0;
+        state.duration = 0;
+        state.peakInFlight = state.numInFlight;
+
+        return decision;
+    }
+
+    protected int decrease(int limit)
+    {
+        return Math.max(this.minLimit, Math.min(limit - 1, (int) (limit * this.decreaseFactor)));
+    }
+
+    protected void addDecision(Decision decision) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        this.decisions.addLast(decision);
+        while (this.decisions.size() > DEFAULT_MAX_DECISIONS)
+        {
+            this.decisions.removeFirst();
+        }
+    }
+
+    protected HostState getHostState(URL url, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        String host = this.getHostKey(url);
+
+        HostState state = this.hosts.get(host);
+        if (state == null)
+        {
+            state = new HostState(host, this.initialLimit, now);
+            this.hosts.put(host, state);
+        }
+
+        state.lastActive = now;
+        return state;
+    }
+
+    protected String getHostKey(URL url)
+    {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+}
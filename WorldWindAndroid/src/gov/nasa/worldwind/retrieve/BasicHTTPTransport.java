@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The default {@link HTTPTransport}. Connections are opened by the platform's <code>HttpURLConnection</code>, which
+ * keeps connections alive after a response has been read and reuses them for later requests to the same host. This
+ * avoids a TCP and TLS handshake for nearly every tile, since tiles come from a small number of hosts. A connection is
+ * returned to the platform's pool only once its response body has been read to the end and closed, so {@link
+ * #releaseConnection(java.net.HttpURLConnection)} reads what remains of short error responses rather than dropping the
+ * connection.
+ * <p/>
+ * The transport allows at most {@link gov.nasa.worldwind.avlist.AVKey#HTTP_MAX_CONNECTIONS_PER_HOST} connections to
+ * be reserved for each host at a time, unless a host's limit is changed by {@link #setMaxConnections(java.net.URL,
+ * int)}. Reservations are counted without waiting, so a retrieval thread never blocks on a busy host; {@link
+ * #reserveConnection(java.net.URL)} returns false instead. The number of idle connections kept alive is {@link
+ * gov.nasa.worldwind.avlist.AVKey#HTTP_MAX_IDLE_CONNECTIONS}. The platform reads this from the
+ * <code>http.maxConnections</code> system property, so the transport sets that property only if the application has
+ * not already set it.
+ * <p/>
+ * The platform's <code>HttpURLConnection</code> does not pipeline requests; each connection carries one request at a
+ * time. Subclasses may open connections another way by overriding {@link #createConnection(java.net.URL,
+ * java.net.Proxy)}.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class BasicHTTPTransport implements HTTPTransport
+{
+    protected static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    protected static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+    /** The largest unread response body that is read to the end in order to reuse its connection. */
+    protected static final int MAX_DRAIN_LENGTH = 65536;
+
+    protected final int maxConnectionsPerHost;
+    protected final int maxIdleConnections;
+    /** Counts the connections reserved for a host, against a limit that can be changed while they are held. */
+    protected static class HostPermits
+    {
+        protected int limit; // guarded by this
+        protected int numReserved; // guarded by this
+
+        public HostPermits(int limit)
+        {
+            this.limit = limit;
+        }
+
+        public synchronized int getLimit()
+        {
+            return this.limit;
+        }
+
+        public synchronized void setLimit(int limit)
+        {
+            // Lowering the limit may leave more reserved than it allows, in which case none are reserved until enough
+            // have been released.
+            this.limit = limit;
+        }
+
+        public synchronized int getNumReserved()
+        {
+            return this.numReserved;
+        }
+
+        public synchronized boolean tryReserve()
+        {
+            if (this.numReserved >= this.limit)
+                return false;
+
+            this.numReserved++;
+            return true;
+        }
+
+        public synchronized void release()
+        {
+            this.numReserved = Math.max(this.numReserved - 1, 0);
+        }
+    }
+
+    // The connections reserved for each host, keyed by protocol, host and port.
+    protected final ConcurrentHashMap<String, HostPermits> hostPermits = new ConcurrentHashMap<String, HostPermits>();
+    // Connections opened and not yet released, so that they can be disconnected when the transport is shut down.
+    protected final Set<HttpURLConnection> openConnections = Collections.newSetFromMap(
+        new ConcurrentHashMap<HttpURLConnection, Boolean>());
+    protected volatile boolean shutDown;
+
+    /** Creates a transport configured by the World Wind configuration. */
+    public BasicHTTPTransport()
+    {
+        this(Configuration.getIntegerValue(AVKey.HTTP_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_PER_HOST),
+            Configuration.getIntegerValue(AVKey.HTTP_MAX_IDLE_CONNECTIONS, DEFAULT_MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * Creates a transport with a specified number of connections per host and idle connections.
+     *
+     * @param maxConnectionsPerHost the most connections that may be open to one host at a time.
+     * @param maxIdleConnections    the most idle connections kept alive for reuse.
+     *
+     * @throws IllegalArgumentException if either number is less than 1.
+     */
+    public BasicHTTPTransport(int maxConnectionsPerHost, int maxIdleConnections)
+    {
+        if (maxConnectionsPerHost < 1)
+        {
+            String msg = Logging.getMessage("generic.ConnectionCountIsInvalid", maxConnectionsPerHost);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (maxIdleConnections < 1)
+        {
+            String msg = Logging.getMessage("generic.ConnectionCountIsInvalid", maxIdleConnections);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxIdleConnections = maxIdleConnections;
+        this.configureConnectionPool();
+    }
+
+    public int getMaxConnectionsPerHost()
+    {
+        return this.maxConnectionsPerHost;
+    }
+
+    public int getMaxIdleConnections()
+    {
+        return this.maxIdleConnections;
+    }
+
+    /** {@inheritDoc} */
+    public boolean reserveConnection(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.getHostPermits(url).tryReserve();
+    }
+
+    /** {@inheritDoc} */
+    public void releaseReservation(URL url)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.getHostPermits(url).release();
+    }
+
+    /** {@inheritDoc} */
+    public HttpURLConnection openConnection(URL url, Proxy proxy) throws IOException
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.shutDown)
+            throw new IOException(Logging.getMessage("BasicHTTPTransport.TransportIsShutDown", url));
+
+        HttpURLConnection connection = this.createConnection(url, proxy);
+        this.openConnections.add(connection);
+
+        // Disconnect a connection opened while the transport was being shut down, since shutdown may have missed it.
+        if (this.shutDown)
+        {
+            this.openConnections.remove(connection);
+            connection.disconnect();
+            throw new IOException(Logging.getMessage("BasicHTTPTransport.TransportIsShutDown", url));
+        }
+
+        return connection;
+    }
+
+    /** {@inheritDoc} */
+    public void releaseConnection(HttpURLConnection connection)
+    {
+        if (connection == null)
+            return;
+
+        // A connection already disconnected by shutdown is not recycled.
+        if (this.openConnections.remove(connection))
+            this.recycleConnection(connection);
+    }
+
+    /** {@inheritDoc} */
+    public void setMaxConnections(URL url, int maxConnections)
+    {
+        if (url == null)
+        {
+            String msg = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (maxConnections < 1)
+        {
+            String msg = Logging.getMessage("generic.ConnectionCountIsInvalid", maxConnections);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.getHostPermits(url).setLimit(maxConnections);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Retrievals still reading a connection fail with an <code>IOException</code>.
+     */
+    public void shutdown()
+    {
+        this.shutDown = true;
+
+        for (HttpURLConnection connection : this.openConnections)
+        {
+            if (this.openConnections.remove(connection))
+                connection.disconnect();
+        }
+    }
+
+    /**
+     * Configures the pool of idle connections. The default implementation sets the platform's keep-alive system
+     * properties, unless the application has already set them.
+     */
+    protected void configureConnectionPool()
+    {
+        if (System.getProperty("http.keepAlive") == null)
+            System.setProperty("http.keepAlive", "true");
+
+        if (System.getProperty("http.maxConnections") == null)
+            System.setProperty("http.maxConnections", Integer.toString(this.maxIdleConnections));
+    }
+
+    /**
+     * Opens a connection to a URL. Called by {@link #openConnection(java.net.URL, java.net.Proxy)}.
+     *
+     * @param url   the URL to open.
+     * @param proxy the proxy to connect through, or null to connect directly.
+     *
+     * @return a new connection.
+     *
+     * @throws IOException if the connection cannot be opened, or the URL is not an HTTP URL.
+     */
+    protected HttpURLConnection createConnection(URL url, Proxy proxy) throws IOException
+    {
+        URLConnection connection = proxy != null ? url.openConnection(proxy) : url.openConnection();
+        if (!(connection instanceof HttpURLConnection))
+            throw new IOException(Logging.getMessage("BasicHTTPTransport.UnsupportedProtocol", url));
+
+        return (HttpURLConnection) connection;
+    }
+
+    /**
+     * Leaves a connection ready to be reused. A successful response has already been read to the end and closed by the
+     * retriever. An error response's body has not been read, so it is read here if it is short, and the connection is
+     * closed otherwise.
+     *
+     * @param connection the connection to recycle.
+     */
+    protected void recycleConnection(HttpURLConnection connection)
+    {
+        InputStream errorStream = connection.getErrorStream();
+        if (errorStream == null)
+            return;
+
+        try
+        {
+            byte[] buffer = new byte[4096];
+            int total = 0;
+            int count;
+            while (total <= MAX_DRAIN_LENGTH && (count = errorStream.read(buffer)) >= 0)
+            {
+                total += count;
+            }
+
+            if (total > MAX_DRAIN_LENGTH)
+                connection.disconnect();
+        }
+        catch (IOException e)
+        {
+            connection.disconnect();
+        }
+        finally
+        {
+            WWIO.closeStream(errorStream, connection.getURL().toString());
+        }
+    }
+
+    protected HostPermits getHostPermits(URL url)
+    {
+        String host = this.getHostKey(url);
+
+        HostPermits permits = this.hostPermits.get(host);
+        if (permits == null)
+        {
+            HostPermits newPermits = new HostPermits(this.maxConnectionsPerHost);
+            permits = this.hostPermits.putIfAbsent(host, newPermits);
+            if (permits == null)
+                permits = newPermits;
+        }
+
+        return permits;
+    }
+
+    protected String getHostKey(URL url)
+    {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+}
@@ -11,10 +11,44 @@ import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.Logging;
 
 import java.net.*;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Performs threaded retrieval of data.
+ * <p/>
+ * Waiting retrievals are ordered first by the time they were submitted, most recent first, in periods of half a second,
+ * and then by their priority within each period. Clients that tag their retrievers with {@link AVKey#RETRIEVAL_CLIENT}
+ * and {@link AVKey#RETRIEVAL_KEY} can reprioritize their retrievals once per frame by calling {@link
+ * #updatePriorities(Object, java.util.Map)}, which also cancels the retrievals the client no longer needs. A
+ * reprioritized retrieval is ordered as though it had just been submitted.
+ * <p/>
+ * Only one retrieval of a URL runs at a time. A {@link URLRetriever} submitted for a URL that is already waiting or
+ * running is coalesced with that retrieval: it is not run, but its post-processor is given the retrieval's response
+ * once the retrieval completes. If the retrieval is cancelled before it runs, the retrievers coalesced with it are
+ * queued to run by themselves. Retrievers from the same requester are not coalesced, and are rejected as duplicates.
+ * The requester is the retriever's {@link AVKey#RETRIEVAL_CLIENT} value, or its post-processor's class if it has no
+ * client. Coalesced retrievals are not cancelled by {@link #updatePriorities(Object, java.util.Map)}, since other
+ * requesters depend on them. A conditional {@link HTTPRetriever} accepts no coalesced retrievers, since its response
+ * may have no content, so a retriever of the same URL is queued to run by itself, as is one submitted after the
+ * retrieval has finished reading its response.
+ * <p/>
+ * An HTTP retrieval runs only once it has reserved a connection to its host from the {@link HTTPTransport}. Reserving
+ * does not wait: a retrieval whose host has no free connection gives up its thread and is put aside, and is returned
+ * to the queue, most urgent first, as other retrievals from the host release their reservations or the host's limit is
+ * raised.
+ * <p/>
+ * Unless {@link AVKey#RETRIEVAL_ADAPTIVE_CONCURRENCY_ENABLED} is false, the number of concurrent retrievals adapts to
+ * the network. An {@link AdaptiveConcurrencyController} measures each attempt of the HTTP retrievals from each host,
+ * from the time it connects until it finishes, so that an attempt that times out is counted even if a retry succeeds.
+ * The controller adjusts the host's connection limit in the {@link HTTPTransport}, and the retriever pool is resized
+ * to the sum of the limits of the hosts in use, between {@link AVKey#RETRIEVAL_POOL_SIZE} and {@link
+ * AVKey#RETRIEVAL_MAX_POOL_SIZE}. The controller's limits and decisions are available from {@link
+ * #getConcurrencyController()}.
+ * <p/>
+ * The throughput, latency percentiles and bytes read of the retrievals that run are available from {@link
+ * #getStatistics()}.
  *
  * @author Tom Gaskins
  * @version $Id: BasicRetrievalService.java 733 2012-09-02 17:15:09Z dcollins $
@@ -25,6 +59,8 @@ public class BasicRetrievalService extends WWObjectImpl
     // These constants are last-ditch values in case Configuration lacks defaults
     protected static final int DEFAULT_QUEUE_SIZE = 100;
     protected static final int DEFAULT_POOL_SIZE = 3;
+    protected static final int DEFAULT_MAX_POOL_SIZE = 16;
+    protected static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
     protected static final long DEFAULT_STALE_REQUEST_LIMIT = 30000; // milliseconds
     protected static final int DEFAULT_TIME_PRIORITY_GRANULARITY = 500; // milliseconds
 
@@ -35,7 +71,37 @@ public class BasicRetrievalService extends WWObjectImpl
 
     protected RetrievalExecutor executor; // thread pool for running retrievers
     protected ConcurrentLinkedQueue<RetrievalTask> activeTasks; // tasks currently allocated a thread
+    // Tasks waiting or running, keyed by retriever name. Used to find the retrieval a duplicate request joins.
+    protected ConcurrentHashMap<String, RetrievalTask> inFlightTasks = new ConcurrentHashMap<String, RetrievalTask>();
+    // Tasks put aside until a connection to their host is free, keyed by host.
+    protected final Map<String, List<RetrievalTask>> hostWaitingTasks =
+        new HashMap<String, List<RetrievalTask>>(); // guarded by this
     protected int queueSize; // maximum queue size
+    protected final AtomicLong numCompleted = new AtomicLong();
+    protected final AtomicLong completedBytes = new AtomicLong();
+    protected final AtomicLong numCancelled = new AtomicLong();
+    protected final AtomicLong cancelledBytes = new AtomicLong();
+    protected final AtomicLong numCoalesced = new AtomicLong();
+    protected final AtomicLong coalescedBytes = new AtomicLong();
+    protected final RetrievalStatistics statistics = new RetrievalStatistics();
+    // Adjusts the connections to each host and the pool size. Null if the number of retrievals is fixed.
+    protected AdaptiveConcurrencyController concurrencyController;
+    protected int minPoolSize;
+    protected int maxPoolSize;
+    // Reports each attempt of an HTTP retrieval to the concurrency controller.
+    protected final URLRetriever.AttemptListener attemptListener = new URLRetriever.AttemptListener()
+    {
+        public void attemptStarted(URLRetriever retriever, int numRetries)
+        {
+            BasicRetrievalService.this.attemptStarted(retriever, numRetries);
+        }
+
+        public void attemptFinished(URLRetriever retriever, int numRetries, long duration, long numBytes,
+            boolean timedOut)
+        {
+            BasicRetrievalService.this.attemptFinished(retriever, numRetries, duration, numBytes, timedOut);
+        }
+    };
 
     /** Encapsulates a single threaded retrieval as a {@link java.util.concurrent.FutureTask}. */
     protected static class RetrievalTask extends FutureTask<Retriever>
@@ -43,12 +109,20 @@ public class BasicRetrievalService extends WWObjectImpl
     {
         protected Retriever retriever;
         protected double priority; // retrieval secondary priority (primary priority is submit time)
+        // The time-granularity period the task was submitted or last reprioritized in. Fixed while the task is queued,
+        // so that the queue's ordering does not change under it.
+        protected long period;
+        // The URL whose host the task has reserved a connection to, or null if it holds no reservation.
+        protected volatile URL reservedURL;
+        // Set when the task is taken from the queue but its host has no free connection, so that it does not run.
+        protected boolean waitingForHost;
 
         protected RetrievalTask(Retriever retriever, double priority)
         {
             super(retriever);
             this.retriever = retriever;
             this.priority = priority;
+            this.period = System.currentTimeMillis() / DEFAULT_TIME_PRIORITY_GRANULARITY;
         }
 
         public double getPriority()
@@ -64,7 +138,7 @@ public class BasicRetrievalService extends WWObjectImpl
         @Override
         public void run()
         {
-            if (this.isDone() || this.isCancelled())
+            if (this.isDone() || this.isCancelled() || this.waitingForHost)
                 return;
 
             super.run();
@@ -89,12 +163,9 @@ public class BasicRetrievalService extends WWObjectImpl
             if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
             {
                 // Requests submitted within different time-granularity periods are ordered exclusive of their
-                // client-specified priority.
-                long now = System.currentTimeMillis();
-                long thisElapsedTime = now - this.retriever.getSubmitTime();
-                long thatElapsedTime = now - that.retriever.getSubmitTime();
-                if (((thisElapsedTime - thatElapsedTime) / DEFAULT_TIME_PRIORITY_GRANULARITY) != 0)
-                    return thisElapsedTime < thatElapsedTime ? -1 : 1;
+                // client-specified priority, most recent first.
+                if (this.period != that.period)
+                    return this.period > that.period ? -1 : 1;
             }
 
             // The client-specified priority is compared for requests submitted within the same granularity period.
@@ -157,6 +228,7 @@ public class BasicRetrievalService extends WWObjectImpl
                     // Interposes logging for rejected execution
                     Logging.verbose(Logging.getMessage("BasicRetrievalService.ResourceRejected",
                         ((RetrievalTask) runnable).getRetriever().getName()));
+                    BasicRetrievalService.this.removeInFlightTask((RetrievalTask) runnable);
 
                     super.rejectedExecution(runnable, threadPoolExecutor);
                 }
@@ -202,7 +274,7 @@ public class BasicRetrievalService extends WWObjectImpl
                 task.cancel(true);
             }
 
-            if (BasicRetrievalService.this.activeTasks.contains(task))
+            if (BasicRetrievalService.this.isDuplicateOfActiveTask(task))
             {
                 // Task is a duplicate
                 Logging.verbose(Logging.getMessage("BasicRetrievalService.CancellingDuplicateRetrieval",
@@ -210,7 +282,17 @@ public class BasicRetrievalService extends WWObjectImpl
                 task.cancel(true);
             }
 
+            // A retrieval whose host has no free connection is put aside by afterExecute rather than holding this
+            // thread.
+            if (!task.isCancelled() && !BasicRetrievalService.this.reserveConnection(task))
+            {
+                task.waitingForHost = true;
+                super.beforeExecute(thread, runnable);
+                return;
+            }
+
             BasicRetrievalService.this.activeTasks.add(task);
+            BasicRetrievalService.this.measureAttempts(task);
 
             thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
             thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
@@ -237,9 +319,30 @@ public class BasicRetrievalService extends WWObjectImpl
             super.afterExecute(runnable, throwable);
 
             RetrievalTask task = (RetrievalTask) runnable;
+            if (task.waitingForHost)
+            {
+                task.waitingForHost = false;
+                BasicRetrievalService.this.waitForHost(task);
+                return;
+            }
+
+            Throwable failure = throwable;
             BasicRetrievalService.this.activeTasks.remove(task);
+            BasicRetrievalService.this.removeInFlightTask(task);
+            BasicRetrievalService.this.runDetachedRetrievers(task);
             task.retriever.setEndTime(System.currentTimeMillis());
 
+            if (Retriever.RETRIEVER_STATE_SUCCESSFUL.equals(task.retriever.getState()))
+            {
+                BasicRetrievalService.this.numCompleted.incrementAndGet();
+                BasicRetrievalService.this.completedBytes.addAndGet(task.retriever.getContentLengthRead());
+
+                // Each coalesced retriever was given this response instead of downloading its own copy.
+                int numCoalesced = BasicRetrievalService.this.getNumCoalescedRetrievers(task);
+                BasicRetrievalService.this.coalescedBytes.addAndGet(
+                    (long) numCoalesced * task.retriever.getContentLengthRead());
+            }
+
             try
             {
                 if (throwable != null)
@@ -252,6 +355,7 @@ public class BasicRetrievalService extends WWObjectImpl
             }
             catch (java.util.concurrent.ExecutionException e)
             {
+                failure = e.getCause();
                 String message = Logging.getMessage("BasicRetrievalService.ExecutionExceptionDuringRetrieval",
                     task.getRetriever().getName());
                 if (e.getCause() instanceof SocketTimeoutException)
@@ -275,6 +379,8 @@ public class BasicRetrievalService extends WWObjectImpl
             }
             finally
             {
+                BasicRetrievalService.this.recordStatistics(task, failure);
+                BasicRetrievalService.this.releaseReservation(task);
                 Thread.currentThread().setName(IDLE_THREAD_NAME_PREFIX);
             }
         }
@@ -285,6 +391,19 @@ public class BasicRetrievalService extends WWObjectImpl
         Integer poolSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_POOL_SIZE, DEFAULT_POOL_SIZE);
         this.queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
 
+        if (Configuration.getBooleanValue(AVKey.RETRIEVAL_ADAPTIVE_CONCURRENCY_ENABLED, true))
+        {
+            // The pool starts at its configured size, which is also the fewest threads it keeps. A single host may use
+            // every thread of the largest pool.
+            this.minPoolSize = poolSize;
+            this.maxPoolSize = Math.max(poolSize,
+                Configuration.getIntegerValue(AVKey.RETRIEVAL_MAX_POOL_SIZE, DEFAULT_MAX_POOL_SIZE));
+            int initialLimit = Math.min(this.maxPoolSize,
+                Configuration.getIntegerValue(AVKey.HTTP_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_CONNECTIONS_PER_HOST));
+            this.concurrencyController = new AdaptiveConcurrencyController(Math.max(initialLimit, 1),
+                this.maxPoolSize);
+        }
+
         // this.executor runs the retrievers, each in their own thread
         this.executor = new RetrievalExecutor(poolSize, this.queueSize);
 
@@ -300,6 +419,12 @@ public class BasicRetrievalService extends WWObjectImpl
             this.executor.shutdown();
 
         this.activeTasks.clear();
+        this.inFlightTasks.clear();
+
+        synchronized (this)
+        {
+            this.hostWaitingTasks.clear();
+        }
     }
 
     /** {@inheritDoc} */
@@ -344,13 +469,41 @@ public class BasicRetrievalService extends WWObjectImpl
             Logging.verbose(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
         }
 
-        RetrievalTask task = new RetrievalTask(retriever, priority);
         retriever.setSubmitTime(System.currentTimeMillis());
 
-        // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
-            return null;
+        return this.submit(retriever, priority);
+    }
 
+    /**
+     * Queues a retriever, or coalesces it with a waiting or running retrieval of the same URL. The retriever's submit
+     * time is not changed.
+     *
+     * @param retriever the retriever to queue.
+     * @param priority  the retriever's secondary priority.
+     *
+     * @return the task the retriever is run by, or null if the retriever is a duplicate.
+     */
+    protected synchronized RetrievalFuture submit(Retriever retriever, double priority)
+    {
+        // Do not queue duplicates. Join a retrieval of the same URL from another requester instead.
+        RetrievalTask inFlightTask = this.inFlightTasks.get(retriever.getName());
+        if (inFlightTask != null && !inFlightTask.isDone())
+        {
+            if (this.isDuplicate(inFlightTask, retriever))
+                return null;
+
+            if (this.coalesce(inFlightTask, retriever))
+            {
+                this.numCoalesced.incrementAndGet();
+                Logging.verbose(Logging.getMessage("BasicRetrievalService.CoalescingRetrieval", retriever.getName()));
+                return inFlightTask;
+            }
+
+            // The retrieval cannot take another retriever, so this one runs by itself.
+        }
+
+        RetrievalTask task = new RetrievalTask(retriever, priority);
+        this.inFlightTasks.put(retriever.getName(), task);
         this.executor.execute(task);
 
         return task;
@@ -366,8 +519,223 @@ public class BasicRetrievalService extends WWObjectImpl
             throw new IllegalArgumentException(message);
         }
 
-        this.executor.setCorePoolSize(poolSize);
-        this.executor.setMaximumPoolSize(poolSize);
+        // The core size may not exceed the maximum size, so grow the maximum first and shrink it last.
+        if (poolSize > this.executor.getMaximumPoolSize())
+        {
+            this.executor.setMaximumPoolSize(poolSize);
+            this.executor.setCorePoolSize(poolSize);
+        }
+        else
+        {
+            this.executor.setCorePoolSize(poolSize);
+            this.executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /** {@inheritDoc} */
+    public AdaptiveConcurrencyController getConcurrencyController()
+    {
+        return this.concurrencyController;
+    }
+
+    /** {@inheritDoc} */
+    public RetrievalStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    protected void recordStatistics(RetrievalTask task, Throwable failure)
+    {
+        Retriever retriever = task.retriever;
+
+        // A cancelled retrieval did not complete, so it has no latency to record.
+        if (task.isCancelled() || Retriever.RETRIEVER_STATE_INTERRUPTED.equals(retriever.getState()))
+            return;
+
+        boolean successful = failure == null && Retriever.RETRIEVER_STATE_SUCCESSFUL.equals(retriever.getState());
+        this.statistics.recordRetrieval(successful, retriever.getEndTime() - retriever.getSubmitTime(),
+            retriever.getContentLengthRead());
+    }
+
+    /**
+     * Gives an HTTP retrieval's retriever a listener that reports each of its attempts to the concurrency controller.
+     * Each attempt is measured by itself, so that the controller sees neither the waits between attempts nor the
+     * outcome of a retrieval's last attempt alone.
+     *
+     * @param task the task about to run.
+     */
+    protected void measureAttempts(RetrievalTask task)
+    {
+        if (this.getAdaptiveURL(task) != null)
+            ((URLRetriever) task.retriever).setAttemptListener(this.attemptListener);
+    }
+
+    protected void attemptStarted(URLRetriever retriever, int numRetries)
+    {
+        this.concurrencyController.retrievalStarted(retriever.getUrl());
+    }
+
+    protected void attemptFinished(URLRetriever retriever, int numRetries, long duration, long numBytes,
+        boolean timedOut)
+    {
+        URL url = retriever.getUrl();
+
+        // An aborted or interrupted attempt's time and size say nothing about the network.
+        if (retriever.isAborted() || Retriever.RETRIEVER_STATE_INTERRUPTED.equals(retriever.getState()))
+        {
+            this.concurrencyController.retrievalAbandoned(url);
+            return;
+        }
+
+        // Only the first attempt waited in the queue. A retry waited for its backoff, which says nothing about the
+        // host's limit.
+        long queueWait = numRetries == 0 ? retriever.getBeginTime() - retriever.getSubmitTime() : 0;
+        AdaptiveConcurrencyController.Decision decision = this.concurrencyController.retrievalFinished(url,
+            queueWait, duration, numBytes, timedOut);
+
+        if (decision != null && decision.isLimitChanged())
+            this.applyConcurrencyDecision(url, decision);
+    }
+
+    /**
+     * Applies a change to a host's limit made by the concurrency controller: sets the host's connection limit in the
+     * HTTP transport, and resizes the retriever pool to the sum of the limits of the hosts in use.
+     *
+     * @param url      a URL on the host whose limit changed.
+     * @param decision the controller's decision.
+     */
+    protected void applyConcurrencyDecision(URL url, AdaptiveConcurrencyController.Decision decision)
+    {
+        Logging.verbose(Logging.getMessage("BasicRetrievalService.ConcurrencyLimitChanged", decision.getHost(),
+            decision.getPreviousLimit(), decision.getLimit(), decision.getReason()));
+
+        HTTPTransport transport = WorldWind.getHTTPTransport();
+        if (transport != null)
+        {
+            transport.setMaxConnections(url, decision.getLimit());
+            this.wakeWaitingTasks(url); // A raised limit frees connections for the retrievals put aside.
+        }
+
+        int poolSize = this.concurrencyController.getActiveLimit();
+        poolSize = Math.max(this.minPoolSize, Math.min(this.maxPoolSize, poolSize));
+        if (poolSize != this.getRetrieverPoolSize())
+            this.setRetrieverPoolSize(poolSize);
+    }
+
+    /**
+     * Reserves a connection for an HTTP retrieval to its host. Other retrievals need no reservation, nor does a task
+     * that was given one when it was returned to the queue.
+     *
+     * @param task the task about to run.
+     *
+     * @return true if the task may run now, or false if its host has no free connection.
+     */
+    protected boolean reserveConnection(RetrievalTask task)
+    {
+        URL url = this.getReservationURL(task);
+        if (url == null || task.reservedURL != null)
+            return true;
+
+        if (!WorldWind.getHTTPTransport().reserveConnection(url))
+            return false;
+
+        task.reservedURL = url;
+        return true;
+    }
+
+    /**
+     * Releases a task's connection reservation, if it holds one, and gives the freed connection to the most urgent
+     * retrieval waiting for the host.
+     *
+     * @param task the task that has finished, or will never run.
+     */
+    protected synchronized void releaseReservation(RetrievalTask task)
+    {
+        URL url = task.reservedURL;
+        if (url == null)
+            return;
+
+        task.reservedURL = null;
+        WorldWind.getHTTPTransport().releaseReservation(url);
+        this.wakeWaitingTasks(url);
+    }
+
+    /**
+     * Puts aside a task whose host had no free connection, until a connection to the host is released.
+     *
+     * @param task the task to put aside.
+     */
+    protected synchronized void waitForHost(RetrievalTask task)
+    {
+        URL url = this.getReservationURL(task);
+        String host = this.getHostKey(url);
+
+        List<RetrievalTask> tasks = this.hostWaitingTasks.get(host);
+        if (tasks == null)
+        {
+            tasks = new ArrayList<RetrievalTask>();
+            this.hostWaitingTasks.put(host, tasks);
+        }
+        tasks.add(task);
+
+        // A connection released since the task failed to reserve one found nothing waiting, so look again.
+        this.wakeWaitingTasks(url);
+    }
+
+    /**
+     * Returns waiting tasks to the queue, most urgent first, for as long as connections to a host can be reserved for
+     * them.
+     *
+     * @param url a URL on the host whose connections may have been freed.
+     */
+    protected synchronized void wakeWaitingTasks(URL url)
+    {
+        String host = this.getHostKey(url);
+        List<RetrievalTask> tasks = this.hostWaitingTasks.get(host);
+
+        while (tasks != null && !tasks.isEmpty() && WorldWind.getHTTPTransport().reserveConnection(url))
+        {
+            RetrievalTask task = Collections.min(tasks);
+            tasks.remove(task);
+            task.reservedURL = url;
+            this.executor.execute(task);
+        }
+
+        if (tasks != null && tasks.isEmpty())
+            this.hostWaitingTasks.remove(host);
+    }
+
+    protected synchronized int getNumWaitingTasks()
+    {
+        int count = 0;
+        for (List<RetrievalTask> tasks : this.hostWaitingTasks.values())
+        {
+            count += tasks.size();
+        }
+
+        return count;
+    }
+
+    protected URL getReservationURL(RetrievalTask task)
+    {
+        if (!(task.retriever instanceof HTTPRetriever) || WorldWind.getHTTPTransport() == null)
+            return null;
+
+        return ((HTTPRetriever) task.retriever).getUrl();
+    }
+
+    protected String getHostKey(URL url)
+    {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+
+    protected URL getAdaptiveURL(RetrievalTask task)
+    {
+        if (this.concurrencyController == null || !(task.retriever instanceof HTTPRetriever))
+            return null;
+
+        return ((HTTPRetriever) task.retriever).getUrl();
     }
 
     /** {@inheritDoc} */
@@ -404,7 +772,252 @@ public class BasicRetrievalService extends WWObjectImpl
     public int getNumRetrieversPending()
     {
         // Could use same method to determine active tasks as hasRetrievers() above, but this method only advisory.
-        return this.activeTasks.size() + this.executor.getQueue().size();
+        return this.activeTasks.size() + this.executor.getQueue().size() + this.getNumWaitingTasks();
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void updatePriorities(Object client, Map<?, Double> priorities)
+    {
+        if (client == null)
+        {
+            String msg = Logging.getMessage("nullValue.ClientIsNull");
+            Logging.verbose(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (priorities == null)
+        {
+            String msg = Logging.getMessage("nullValue.MapIsNull");
+            Logging.verbose(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        // Abort the client's running retrievals that are no longer needed. The thread's interrupt alone does not stop
+        // a retrieval blocked reading from the network, so the retriever also closes its connection.
+        for (RetrievalTask task : this.activeTasks)
+        {
+            if (!this.isClientRetrieval(task, client) || priorities.containsKey(task.retriever.getValue(AVKey.RETRIEVAL_KEY))
+                || this.getNumCoalescedRetrievers(task) > 0)
+                continue;
+
+            if (task.cancel(true))
+            {
+                task.retriever.abort();
+                this.recordCancellation(task);
+            }
+        }
+
+        // The queue's ordering cannot change while tasks are in it, so remove every task, update the client's tasks,
+        // and put back those that are still needed. Other clients' tasks are put back unchanged.
+        BlockingQueue<Runnable> queue = this.executor.getQueue();
+        List<Runnable> tasks = new ArrayList<Runnable>(queue.size());
+        queue.drainTo(tasks);
+
+        long period = System.currentTimeMillis() / DEFAULT_TIME_PRIORITY_GRANULARITY;
+
+        for (Iterator<Runnable> iter = tasks.iterator(); iter.hasNext(); )
+        {
+            if (!this.updatePriority((RetrievalTask) iter.next(), client, priorities, period))
+                iter.remove();
+        }
+
+        queue.addAll(tasks);
+
+        // Tasks put aside until their host has a free connection are updated in the same way.
+        for (List<RetrievalTask> waitingTasks : this.hostWaitingTasks.values())
+        {
+            for (Iterator<RetrievalTask> iter = waitingTasks.iterator(); iter.hasNext(); )
+            {
+                if (!this.updatePriority(iter.next(), client, priorities, period))
+                    iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Gives a waiting task of a client its new priority, or cancels it if the client no longer needs it. Tasks of
+     * other clients and tasks that other requesters depend on are not cancelled.
+     *
+     * @param task       the waiting task.
+     * @param client     the client whose priorities are updated.
+     * @param priorities the client's new priorities, keyed by retrieval key.
+     * @param period     the current time-granularity period.
+     *
+     * @return false if the task was cancelled, otherwise true.
+     */
+    protected boolean updatePriority(RetrievalTask task, Object client, Map<?, Double> priorities, long period)
+    {
+        if (!this.isClientRetrieval(task, client))
+            return true;
+
+        Double priority = priorities.get(task.retriever.getValue(AVKey.RETRIEVAL_KEY));
+        if (priority != null)
+        {
+            task.priority = priority;
+            task.period = period;
+            return true;
+        }
+
+        if (this.getNumCoalescedRetrievers(task) > 0)
+            return true;
+
+        task.cancel(false);
+        this.removeInFlightTask(task);
+        this.releaseReservation(task);
+        this.recordCancellation(task);
+        Logging.verbose(Logging.getMessage("BasicRetrievalService.CancellingUnneededRetrieval",
+            task.getRetriever().getName()));
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    public long getNumRetrieversCancelled()
+    {
+        return this.numCancelled.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getBytesSavedByCancellation()
+    {
+        return this.cancelledBytes.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getNumRetrieversCoalesced()
+    {
+        return this.numCoalesced.get();
+    }
+
+    /** {@inheritDoc} */
+    public long getBytesSavedByCoalescing()
+    {
+        return this.coalescedBytes.get();
+    }
+
+    /**
+     * Indicates whether a retriever duplicates a waiting or running retrieval of the same URL: whether it comes from a
+     * requester already served by the retrieval. Retrievers other than {@link URLRetriever}s are always duplicates.
+     *
+     * @param task      the retrieval of the same URL.
+     * @param retriever the retriever submitted.
+     *
+     * @return true if the retriever is a duplicate, otherwise false.
+     */
+    protected boolean isDuplicate(RetrievalTask task, Retriever retriever)
+    {
+        if (!(task.retriever instanceof URLRetriever) || !(retriever instanceof URLRetriever))
+            return true;
+
+        URLRetriever primary = (URLRetriever) task.retriever;
+        Object requester = this.getRequester(retriever);
+
+        if (requester.equals(this.getRequester(primary)))
+            return true;
+
+        for (URLRetriever r : primary.getCoalescedRetrievers())
+        {
+            if (requester.equals(this.getRequester(r)))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Attaches a retriever to a waiting or running retrieval of the same URL, so that the retriever's post-processor is
+     * given that retrieval's response.
+     *
+     * @param task      the retrieval to join.
+     * @param retriever the retriever to attach.
+     *
+     * @return true if the retriever was attached, or false if the retrieval is conditional or has progressed too far
+     *         to accept it.
+     */
+    protected boolean coalesce(RetrievalTask task, Retriever retriever)
+    {
+        // A conditional retrieval may be answered without content, which is no use to a retriever with no cached copy.
+        if (task.retriever instanceof HTTPRetriever && ((HTTPRetriever) task.retriever).isConditional())
+            return false;
+
+        return ((URLRetriever) task.retriever).addCoalescedRetriever((URLRetriever) retriever);
+    }
+
+    /**
+     * Queues the retrievers coalesced with a task that finished without giving them its response, such as a task
+     * cancelled before it ran, so that they run by themselves.
+     *
+     * @param task the task that is done.
+     */
+    protected void runDetachedRetrievers(RetrievalTask task)
+    {
+        if (!(task.retriever instanceof URLRetriever))
+            return;
+
+        for (URLRetriever retriever : ((URLRetriever) task.retriever).detachCoalescedRetrievers())
+        {
+            Logging.verbose(Logging.getMessage("BasicRetrievalService.DetachingCoalescedRetrieval",
+                retriever.getName()));
+            this.submit(retriever, task.priority);
+        }
+    }
+
+    /**
+     * Indicates whether a task about to run duplicates another task: whether a different retrieval of the same URL
+     * from the same requester is waiting or running. A retrieval of the same URL from another requester is not a
+     * duplicate, since it was queued to run by itself only because it could not be coalesced with the other one.
+     *
+     * @param task the task about to run.
+     *
+     * @return true if the task is a duplicate, otherwise false.
+     */
+    protected boolean isDuplicateOfActiveTask(RetrievalTask task)
+    {
+        RetrievalTask inFlightTask = this.inFlightTasks.get(task.retriever.getName());
+
+        return inFlightTask != null && inFlightTask != task && !inFlightTask.isDone()
+            && this.isDuplicate(inFlightTask, task.retriever);
+    }
+
+    protected Object getRequester(Retriever retriever)
+    {
+        Object client = retriever.getValue(AVKey.RETRIEVAL_CLIENT);
+        if (client != null)
+            return client;
+
+        RetrievalPostProcessor postProcessor = ((URLRetriever) retriever).getPostProcessor();
+        return postProcessor != null ? postProcessor.getClass() : URLRetriever.class;
+    }
+
+    protected int getNumCoalescedRetrievers(RetrievalTask task)
+    {
+        return task.retriever instanceof URLRetriever
+            ? ((URLRetriever) task.retriever).getCoalescedRetrievers().size() : 0;
+    }
+
+    protected synchronized void removeInFlightTask(RetrievalTask task)
+    {
+        // Tasks for the same URL are equal, so compare identity to avoid removing a newer task for the URL.
+        if (this.inFlightTasks.get(task.retriever.getName()) == task)
+            this.inFlightTasks.remove(task.retriever.getName());
+    }
+
+    protected boolean isClientRetrieval(RetrievalTask task, Object client)
+    {
+        return task.retriever.getValue(AVKey.RETRIEVAL_CLIENT) == client;
+    }
+
+    protected void recordCancellation(RetrievalTask task)
+    {
+        long numCompleted = this.numCompleted.get();
+        long meanSize = numCompleted > 0 ? this.completedBytes.get() / numCompleted : 0;
+
+        // Use the content length the server reported for a running retrieval, and the mean size of completed
+        // retrievals for one that had not yet received a response.
+        int contentLength = task.retriever.getContentLength();
+        long size = contentLength > 0 ? contentLength : meanSize;
+
+        this.numCancelled.incrementAndGet();
+        this.cancelledBytes.addAndGet(Math.max(0, size - task.retriever.getContentLengthRead()));
     }
 
     /** {@inheritDoc} */
@@ -416,7 +1029,9 @@ public class BasicRetrievalService extends WWObjectImpl
             Logging.verbose(msg);
             throw new IllegalArgumentException(msg);
         }
-        RetrievalTask task = new RetrievalTask(retriever, 0d);
-        return (this.activeTasks.contains(task) || this.executor.getQueue().contains(task));
+
+        // Every queued, waiting or running task is in flight until it finishes.
+        RetrievalTask task = this.inFlightTasks.get(retriever.getName());
+        return task != null && !task.isDone();
     }
 }
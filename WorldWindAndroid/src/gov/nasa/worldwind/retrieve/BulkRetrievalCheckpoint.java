@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Records the progress of a bulk retrieval, so that a retrieval of the same sector and levels can resume where an
+ * earlier one stopped. The checkpoint holds the sector, the range of levels, and for each level a bitmap of the tiles
+ * intersecting the sector that have been retrieved. A tile marked complete is not examined again, which spares a
+ * resumed retrieval from looking up every tile it has already retrieved in the file store.
+ * <p/>
+ * The tiles of each level are numbered by their row and column within the block of tiles intersecting the sector, so a
+ * checkpoint needs one bit per tile. The checkpoint can be written to and read from a stream by {@link
+ * #write(java.io.DataOutput)} and {@link #read(java.io.DataInput)}. A checkpoint is read only if it was written for the
+ * same sector, levels and tile layout.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class BulkRetrievalCheckpoint
+{
+    protected static final int FILE_MAGIC = 0x57574243;
+
+    protected final Sector sector;
+    protected final int firstLevel;
+    protected final int lastLevel;
+    // The block of tiles intersecting the sector on each level, indexed by level number minus the first level.
+    protected final int[] minRows;
+    protected final int[] minColumns;
+    protected final int[] numRows;
+    protected final int[] numColumns;
+    protected final BitSet[] completed;
+    protected long numCompleted;
+    protected boolean dirty;
+
+    /**
+     * Creates a checkpoint with no tiles complete.
+     *
+     * @param sector     the sector being retrieved.
+     * @param levels     the levels whose tiles are retrieved.
+     * @param firstLevel the number of the first level retrieved.
+     * @param lastLevel  the number of the last level retrieved.
+     *
+     * @throws IllegalArgumentException if the sector or levels are null, or the level range is not within the levels.
+     */
+    public BulkRetrievalCheckpoint(Sector sector, LevelSet levels, int firstLevel, int lastLevel)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (levels == null)
+        {
+            String msg = Logging.getMessage("nullValue.LevelSetIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (firstLevel < 0 || lastLevel < firstLevel || lastLevel >= levels.getNumLevels())
+        {
+            String msg = Logging.getMessage("generic.LevelRangeIsInvalid", firstLevel, lastLevel);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.sector = sector;
+        this.firstLevel = firstLevel;
+        this.lastLevel = lastLevel;
+
+        int count = lastLevel - firstLevel + 1;
+        this.minRows = new int[count];
+        this.minColumns = new int[count];
+        this.numRows = new int[count];
+        this.numColumns = new int[count];
+        this.completed = new BitSet[count];
+
+        LatLon origin = levels.getTileOrigin();
+        for (int i = 0; i < count; i++)
+        {
+            LatLon delta = levels.getLevel(firstLevel + i).getTileDelta();
+            int nwRow = Tile.computeRow(delta.latitude, sector.maxLatitude, origin.latitude);
+            int nwCol = Tile.computeColumn(delta.longitude, sector.minLongitude, origin.longitude);
+            int seRow = Tile.computeRow(delta.latitude, sector.minLatitude, origin.latitude);
+            int seCol = Tile.computeColumn(delta.longitude, sector.maxLongitude, origin.longitude);
+
+            this.completed[i] = new BitSet();
+
+            // A level with more tiles than a bitmap can index is left empty, and its tiles are never marked complete.
+            if ((long) (nwRow - seRow + 1) * (seCol - nwCol + 1) > Integer.MAX_VALUE)
+                continue;
+
+            this.minRows[i] = seRow;
+            this.minColumns[i] = nwCol;
+            this.numRows[i] = nwRow - seRow + 1;
+            this.numColumns[i] = seCol - nwCol + 1;
+        }
+    }
+
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    public int getFirstLevel()
+    {
+        return this.firstLevel;
+    }
+
+    public int getLastLevel()
+    {
+        return this.lastLevel;
+    }
+
+    /**
+     * Indicates whether a tile has been marked complete.
+     *
+     * @param tile the tile in question.
+     *
+     * @return true if the tile is marked complete, otherwise false.
+     *
+     * @throws IllegalArgumentException if the tile is null.
+     */
+    public synchronized boolean isCompleted(Tile tile)
+    {
+        if (tile == null)
+        {
+            String msg = Logging.getMessage("nullValue.TileIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int index = this.computeTileIndex(tile);
+        return index >= 0 && this.completed[tile.getLevelNumber() - this.firstLevel].get(index);
+    }
+
+    /**
+     * Marks a tile complete. Tiles outside the checkpoint's sector and levels are ignored.
+     *
+     * @param tile the tile to mark.
+     *
+     * @throws IllegalArgumentException if the tile is null.
+     */
+    public synchronized void setCompleted(Tile tile)
+    {
+        if (tile == null)
+        {
+            String msg = Logging.getMessage("nullValue.TileIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int index = this.computeTileIndex(tile);
+        if (index < 0)
+            return;
+
+        BitSet bits = this.completed[tile.getLevelNumber() - this.firstLevel];
+        if (!bits.get(index))
+        {
+            bits.set(index);
+            this.numCompleted++;
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Returns the number of tiles marked complete.
+     *
+     * @return the number of complete tiles.
+     */
+    public synchronized long getNumCompleted()
+    {
+        return this.numCompleted;
+    }
+
+    /**
+     * Indicates whether the checkpoint has changed since it was last written or read.
+     *
+     * @return true if the checkpoint has unwritten changes, otherwise false.
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty;
+    }
+
+    /**
+     * Writes the checkpoint to a stream and marks it as not dirty.
+     *
+     * @param out the stream to write to.
+     *
+     * @throws IOException              if the stream cannot be written.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        if (out == null)
+        {
+            String msg = Logging.getMessage("nullValue.OutputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.writeLayout(out);
+
+        for (BitSet bits : this.completed)
+        {
+            // The bitmap is written a byte at a time, since the platform's BitSet cannot be converted to bytes.
+            int numBytes = (bits.length() + 7) / 8;
+            out.writeInt(numBytes);
+            for (int i = 0; i < numBytes; i++)
+            {
+                int b = 0;
+                for (int bit = 0; bit < 8; bit++)
+                {
+                    if (bits.get(8 * i + bit))
+                        b |= 1 << bit;
+                }
+                out.writeByte(b);
+            }
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Reads a checkpoint written by {@link #write(java.io.DataOutput)} and marks its complete tiles complete in this
+     * checkpoint. Nothing is read if the checkpoint was written for another sector, other levels or another tile
+     * layout.
+     *
+     * @param in the stream to read from.
+     *
+     * @return true if the checkpoint was read, or false if it does not match this checkpoint.
+     *
+     * @throws IOException              if the stream cannot be read.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized boolean read(DataInput in) throws IOException
+    {
+        if (in == null)
+        {
+            String msg = Logging.getMessage("nullValue.InputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        ByteArrayOutputStream layout = new ByteArrayOutputStream();
+        this.writeLayout(new DataOutputStream(layout));
+
+        byte[] expected = layout.toByteArray();
+        byte[] actual = new byte[expected.length];
+        in.readFully(actual);
+        if (!Arrays.equals(expected, actual))
+            return false;
+
+        for (int level = 0; level < this.completed.length; level++)
+        {
+            int numBits = this.numRows[level] * this.numColumns[level];
+            int numBytes = in.readInt();
+            for (int i = 0; i < numBytes; i++)
+            {
+                int b = in.readUnsignedByte();
+                for (int bit = 0; bit < 8 && b != 0; bit++, b >>>= 1)
+                {
+                    int index = 8 * i + bit;
+                    if ((b & 1) != 0 && index < numBits && !this.completed[level].get(index))
+                    {
+                        this.completed[level].set(index);
+                        this.numCompleted++;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    protected void writeLayout(DataOutput out) throws IOException
+    {
+        out.writeInt(FILE_MAGIC);
+        out.writeDouble(this.sector.minLatitude.degrees);
+        out.writeDouble(this.sector.maxLatitude.degrees);
+        out.writeDouble(this.sector.minLongitude.degrees);
+        out.writeDouble(this.sector.maxLongitude.degrees);
+        out.writeInt(this.firstLevel);
+        out.writeInt(this.lastLevel);
+
+        for (int i = 0; i < this.completed.length; i++)
+        {
+            out.writeInt(this.minRows[i]);
+            out.writeInt(this.minColumns[i]);
+            out.writeInt(this.numRows[i]);
+            out.writeInt(this.numColumns[i]);
+        }
+    }
+
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected int computeTileIndex(Tile tile)
+    {
+        int level = tile.getLevelNumber() - this.firstLevel;
+        if (level < 0 || level >= this.completed.length)
+            return -1;
+
+        int row = tile.getRow() - this.minRows[level];
+        int column = tile.getColumn() - this.minColumns[level];
+        if (row < 0 || row >= this.numRows[level] || column < 0 || column >= this.numColumns[level])
+            return -1;
+
+        return row * this.numColumns[level] + column;
+    }
+}
@@ -9,13 +9,21 @@ package gov.nasa.worldwind.retrieve;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.event.*;
 import gov.nasa.worldwind.geom.Sector;
-import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.*;
 
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Retrieves data for a {@link BulkRetrievable}.
+ * <p/>
+ * A retrieval of tiled data records the tiles it has retrieved in a {@link BulkRetrievalCheckpoint}, which it writes to
+ * the file store every few seconds and when it is interrupted. A later retrieval of the same sector and levels reads
+ * the checkpoint and resumes where the earlier one stopped, without examining the tiles already retrieved. The
+ * checkpoint is deleted once the retrieval completes.
  *
  * @author Patrick Murris
  * @version $Id: BulkRetrievalThread.java 733 2012-09-02 17:15:09Z dcollins $
@@ -23,6 +31,10 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public abstract class BulkRetrievalThread extends Thread
 {
     protected int RETRIEVAL_SERVICE_POLL_DELAY = 1000;
+    /** The prefix of the name of a checkpoint file, in the levels' data cache folder. */
+    protected static final String CHECKPOINT_FILE_PREFIX = "BulkRetrieval-";
+    /** The least time, in milliseconds, between writes of a changed checkpoint. */
+    protected static final long CHECKPOINT_WRITE_INTERVAL = 10000;
 
     protected final BulkRetrievable retrievable;
     protected final Sector sector;
@@ -30,6 +42,9 @@ public abstract class BulkRetrievalThread extends Thread
     protected final Progress progress;
     protected final FileStore fileStore;
     protected List<BulkRetrievalListener> retrievalListeners = new CopyOnWriteArrayList<BulkRetrievalListener>();
+    protected BulkRetrievalCheckpoint checkpoint;
+    protected String checkpointFileName;
+    protected long checkpointWriteTime;
 
     /**
      * Construct a thread that attempts to download to a specified {@link FileStore} a retrievable's data for a given
@@ -143,6 +158,132 @@ public abstract class BulkRetrievalThread extends Thread
         return this.progress;
     }
 
+    /**
+     * Returns the checkpoint recording the tiles this thread has retrieved.
+     *
+     * @return the retrieval's checkpoint, or null if the retrieval has not started or does not retrieve tiles.
+     */
+    public BulkRetrievalCheckpoint getCheckpoint()
+    {
+        return this.checkpoint;
+    }
+
+    /**
+     * Creates the checkpoint of a retrieval of tiles, and resumes from the checkpoint written by an earlier retrieval
+     * of the same sector and levels if there is one. The checkpoint is kept in the file store only if the levels have
+     * a data cache folder.
+     *
+     * @param levels    the levels whose tiles are retrieved.
+     * @param lastLevel the number of the last level retrieved.
+     */
+    protected void openCheckpoint(LevelSet levels, int lastLevel)
+    {
+        this.checkpoint = new BulkRetrievalCheckpoint(this.sector, levels, 0, lastLevel);
+        this.checkpointWriteTime = System.currentTimeMillis();
+
+        String cacheName = levels.getFirstLevel().getCacheName();
+        if (WWUtil.isEmpty(cacheName))
+            return;
+
+        // Retrievals of different sectors or levels have different checkpoints. Two that share a name are told apart
+        // by the checkpoint itself, which is only read if it was written for the same sector and levels.
+        int hash = 31 * this.sector.hashCode() + lastLevel;
+        this.checkpointFileName = cacheName + "/" + CHECKPOINT_FILE_PREFIX + Integer.toHexString(hash) + ".dat";
+
+        URL url = this.fileStore.findFile(this.checkpointFileName, false);
+        if (url == null)
+            return;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(url.openStream()));
+            if (this.checkpoint.read(in))
+            {
+                Logging.verbose(Logging.getMessage("BulkRetrievalThread.ResumingFromCheckpoint",
+                    this.retrievable.getName(), this.checkpoint.getNumCompleted()));
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.warning(Logging.getMessage("BulkRetrievalThread.ExceptionReadingCheckpoint", url), e);
+        }
+        finally
+        {
+            WWIO.closeStream(in, this.checkpointFileName);
+        }
+    }
+
+    /**
+     * Indicates whether the checkpoint marks a tile as retrieved.
+     *
+     * @param tile the tile in question.
+     *
+     * @return true if the tile has been retrieved, or false if it has not or there is no checkpoint.
+     */
+    protected boolean isTileCheckpointed(Tile tile)
+    {
+        BulkRetrievalCheckpoint checkpoint = this.checkpoint;
+        return checkpoint != null && checkpoint.isCompleted(tile);
+    }
+
+    /**
+     * Marks a tile as retrieved in the checkpoint, if there is one.
+     *
+     * @param tile the retrieved tile.
+     */
+    protected void checkpointTile(Tile tile)
+    {
+        BulkRetrievalCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint != null)
+            checkpoint.setCompleted(tile);
+    }
+
+    /** Writes the checkpoint to the file store if it has changed and was last written long enough ago. */
+    protected void writeCheckpointIfDue()
+    {
+        if (System.currentTimeMillis() - this.checkpointWriteTime >= CHECKPOINT_WRITE_INTERVAL)
+            this.writeCheckpoint();
+    }
+
+    /** Writes the checkpoint to the file store if it has changed. */
+    protected void writeCheckpoint()
+    {
+        BulkRetrievalCheckpoint checkpoint = this.checkpoint;
+        if (checkpoint == null || this.checkpointFileName == null || !checkpoint.isDirty())
+            return;
+
+        this.checkpointWriteTime = System.currentTimeMillis();
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            checkpoint.write(out);
+            out.flush();
+
+            File file = this.fileStore.newFile(this.checkpointFileName);
+            if (file != null)
+                WWIO.saveBuffer(ByteBuffer.wrap(bytes.toByteArray()), file);
+        }
+        catch (Exception e)
+        {
+            Logging.error(Logging.getMessage("BulkRetrievalThread.ExceptionWritingCheckpoint",
+                this.checkpointFileName), e);
+        }
+    }
+
+    /** Deletes the checkpoint from the file store once the retrieval is complete. */
+    protected void deleteCheckpoint()
+    {
+        if (this.checkpointFileName == null)
+            return;
+
+        URL url = this.fileStore.findFile(this.checkpointFileName, false);
+        if (url != null)
+            this.fileStore.removeFile(url);
+    }
+
     public void addRetrievalListener(BulkRetrievalListener listener)
     {
         if (listener != null)
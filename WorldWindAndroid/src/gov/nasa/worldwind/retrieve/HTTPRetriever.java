@@ -6,19 +6,48 @@
 
 package gov.nasa.worldwind.retrieve;
 
+import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.util.Logging;
 
+import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.*;
 
 /**
+ * Retrieves a resource over HTTP.
+ * <p/>
+ * A retriever given the validators of a cached copy of the resource by {@link #setRequestValidator(ResponseValidator)}
+ * makes a conditional request. The server then answers with the response code {@link
+ * java.net.HttpURLConnection#HTTP_NOT_MODIFIED} and no content if the resource has not changed. The validators of
+ * every response are available from {@link #getResponseValidator()}, so that they can be stored with the resource.
+ * <p/>
+ * The response codes 408 (Request Timeout), 429 (Too Many Requests), 500 (Internal Server Error), 502 (Bad Gateway),
+ * 503 (Service Unavailable) and 504 (Gateway Timeout) are transient failures, which may be retried after the delay
+ * given by the response's <code>Retry-After</code> header.
+ * <p/>
+ * A retry of a response that failed while its body was being streamed to a file asks for the rest of the body with a
+ * <code>Range</code> request, rather than reading the body again. The request's <code>If-Range</code> header carries
+ * the validator of the interrupted response, so the server sends the whole body again if the resource has changed. A
+ * body is resumed only if its response had a content length, no content encoding and a strong validator; otherwise the
+ * bytes already read might not be a prefix of the resource.
+ *
  * @author Tom Gaskins
  * @version $Id: HTTPRetriever.java 733 2012-09-02 17:15:09Z dcollins $
  */
 public class HTTPRetriever extends URLRetriever
 {
+    /** The response code of a server asking its clients to slow down. Not defined by HttpURLConnection. */
+    protected static final int HTTP_TOO_MANY_REQUESTS = 429;
+
     private int responseCode;
     private String responseMessage;
+    private volatile ResponseValidator requestValidator;
+    private volatile ResponseValidator responseValidator;
+    private long retryAfter;
+    // The validator of the response whose body a retry resumes, or null if the body cannot be resumed.
+    private ResponseValidator resumeValidator;
 
     public HTTPRetriever(URL url, RetrievalPostProcessor postProcessor)
     {
@@ -35,6 +64,147 @@ public class HTTPRetriever extends URLRetriever
         return this.responseMessage;
     }
 
+    /**
+     * Returns the validators sent with the request, as specified by {@link #setRequestValidator(ResponseValidator)}.
+     *
+     * @return the request's validators, or null if the request is not conditional.
+     */
+    public ResponseValidator getRequestValidator()
+    {
+        return this.requestValidator;
+    }
+
+    /**
+     * Specifies the validators of a cached copy of the resource, making the request conditional. Must be called before
+     * the retriever runs.
+     *
+     * @param validator the validators of the cached copy, or null to request the resource unconditionally.
+     */
+    public void setRequestValidator(ResponseValidator validator)
+    {
+        this.requestValidator = validator;
+    }
+
+    /**
+     * Indicates whether this retriever makes a conditional request.
+     *
+     * @return true if the request carries validators, otherwise false.
+     */
+    public boolean isConditional()
+    {
+        ResponseValidator validator = this.requestValidator;
+        return validator != null && validator.isConditional();
+    }
+
+    /**
+     * Indicates whether the server answered a conditional request by saying the resource has not changed.
+     *
+     * @return true if the response code is {@link java.net.HttpURLConnection#HTTP_NOT_MODIFIED}, otherwise false.
+     */
+    public boolean isNotModified()
+    {
+        return this.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * Returns the validators of the response: its <code>ETag</code> and <code>Last-Modified</code> headers, and the
+     * expiration given by its <code>Cache-Control</code> max-age or its <code>Expires</code> header.
+     *
+     * @return the response's validators, or null if no response has been read.
+     */
+    public ResponseValidator getResponseValidator()
+    {
+        return this.responseValidator;
+    }
+
+    @Override
+    protected boolean isTransientFailure()
+    {
+        switch (this.responseCode)
+        {
+            case HttpURLConnection.HTTP_CLIENT_TIMEOUT:
+            case HTTP_TOO_MANY_REQUESTS:
+            case HttpURLConnection.HTTP_INTERNAL_ERROR:
+            case HttpURLConnection.HTTP_BAD_GATEWAY:
+            case HttpURLConnection.HTTP_UNAVAILABLE:
+            case HttpURLConnection.HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected long getRetryAfter()
+    {
+        return this.retryAfter;
+    }
+
+    @Override
+    protected boolean canResume()
+    {
+        return this.resumeValidator != null;
+    }
+
+    @Override
+    protected void prepareRetry()
+    {
+        super.prepareRetry();
+
+        this.responseCode = 0;
+        this.responseMessage = null;
+        this.responseValidator = null;
+        this.retryAfter = 0;
+    }
+
+    /** Opens the connection through the World Wind HTTP transport, which may reuse a kept-alive connection. */
+    @Override
+    protected URLConnection createConnection(Proxy proxy) throws IOException
+    {
+        HttpURLConnection connection = WorldWind.getHTTPTransport().openConnection(this.getUrl(), proxy);
+
+        ResponseValidator validator = this.requestValidator;
+        if (validator != null)
+        {
+            if (validator.getETag() != null)
+                connection.setRequestProperty("If-None-Match", validator.getETag());
+            if (validator.getLastModified() > 0)
+                connection.setIfModifiedSince(validator.getLastModified());
+        }
+
+        ResponseValidator resume = this.resumeValidator;
+        if (this.resumeOffset > 0 && resume != null)
+        {
+            connection.setRequestProperty("Range", "bytes=" + this.resumeOffset + "-");
+            connection.setRequestProperty("If-Range", this.formatIfRange(resume));
+            // The platform's transparent decompression would make the range refer to the compressed body.
+            connection.setRequestProperty("Accept-Encoding", "identity");
+        }
+
+        return connection;
+    }
+
+    @Override
+    protected void releaseConnection()
+    {
+        URLConnection connection = this.getConnection();
+        if (connection instanceof HttpURLConnection)
+            WorldWind.getHTTPTransport().releaseConnection((HttpURLConnection) connection);
+    }
+
+    @Override
+    protected void copyResponse(URLRetriever source)
+    {
+        super.copyResponse(source);
+
+        if (source instanceof HTTPRetriever)
+        {
+            this.responseCode = ((HTTPRetriever) source).responseCode;
+            this.responseMessage = ((HTTPRetriever) source).responseMessage;
+            this.responseValidator = ((HTTPRetriever) source).responseValidator;
+        }
+    }
+
     @Override
     protected ByteBuffer doRead(URLConnection connection) throws Exception
     {
@@ -48,15 +218,153 @@ public class HTTPRetriever extends URLRetriever
         HttpURLConnection htpc = (HttpURLConnection) connection;
         this.responseCode = htpc.getResponseCode();
         this.responseMessage = htpc.getResponseMessage();
+        this.responseValidator = this.readResponseValidator(htpc);
+        this.retryAfter = this.isTransientFailure() ? this.readRetryAfter(htpc) : 0;
         String contentType = connection.getContentType();
 
         String msg = Logging.getMessage("HTTPRetriever.ResponseInfo", this.responseCode, connection.getContentLength(),
             contentType != null ? contentType : "content type not returned", connection.getURL());
         Logging.verbose(msg);
 
+        if (this.responseCode == HttpURLConnection.HTTP_PARTIAL && this.resumeOffset > 0
+            && this.isResumedRange(htpc))
+        {
+            // The rest of the body follows the part already read, so the retrieval reads it as a complete response.
+            this.responseCode = HttpURLConnection.HTTP_OK;
+            return super.doRead(connection);
+        }
+
+        this.resumeOffset = 0;
+
         if (this.responseCode == HttpURLConnection.HTTP_OK)
+        {
+            this.resumeValidator = this.isResumable(htpc) ? this.responseValidator : null;
             return super.doRead(connection);
+        }
+
+        if (this.responseCode == HttpURLConnection.HTTP_PARTIAL)
+            this.resumeValidator = null; // The server sent a range other than the one asked for.
 
         return null;
     }
+
+    /**
+     * Indicates whether a response's body could be resumed by a range request if reading it fails. The body must have a
+     * known length and no content encoding, and the response must have a strong entity tag or a modification date.
+     *
+     * @param connection the connection whose response headers are read.
+     *
+     * @return true if the body can be resumed, otherwise false.
+     */
+    protected boolean isResumable(HttpURLConnection connection)
+    {
+        if (connection.getContentLength() <= 0 || connection.getContentEncoding() != null)
+            return false;
+
+        ResponseValidator validator = this.responseValidator;
+        String eTag = validator.getETag();
+        return (eTag != null && !eTag.startsWith("W/")) || validator.getLastModified() > 0;
+    }
+
+    /**
+     * Indicates whether a partial response begins where the part already read ends.
+     *
+     * @param connection the connection whose response headers are read.
+     *
+     * @return true if the response's <code>Content-Range</code> begins at the resume offset, otherwise false.
+     */
+    protected boolean isResumedRange(HttpURLConnection connection)
+    {
+        String contentRange = connection.getHeaderField("Content-Range");
+        return contentRange != null && contentRange.trim().startsWith("bytes " + this.resumeOffset + "-");
+    }
+
+    /**
+     * Formats the <code>If-Range</code> header of a range request: the strong entity tag of the interrupted response if
+     * it has one, and otherwise its modification date.
+     *
+     * @param validator the validator of the interrupted response.
+     *
+     * @return the header's value.
+     */
+    protected String formatIfRange(ResponseValidator validator)
+    {
+        String eTag = validator.getETag();
+        if (eTag != null && !eTag.startsWith("W/"))
+            return eTag;
+
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(validator.getLastModified()));
+    }
+
+    /**
+     * Reads the delay a server asked for in a response's <code>Retry-After</code> header, which is either a number of
+     * seconds or a date.
+     *
+     * @param connection the connection whose response headers are read.
+     *
+     * @return the delay in milliseconds, or 0 if the response has no valid <code>Retry-After</code> header.
+     */
+    protected long readRetryAfter(HttpURLConnection connection)
+    {
+        String retryAfter = connection.getHeaderField("Retry-After");
+        if (retryAfter == null)
+            return 0;
+
+        try
+        {
+            return 1000 * Math.max(Long.parseLong(retryAfter.trim()), 0);
+        }
+        catch (NumberFormatException e)
+        {
+            long date = connection.getHeaderFieldDate("Retry-After", 0);
+            return date > 0 ? Math.max(date - System.currentTimeMillis(), 0) : 0;
+        }
+    }
+
+    /**
+     * Reads the validators of a response from its headers. The expiration is computed from the max-age directive of the
+     * <code>Cache-Control</code> header if there is one, and is otherwise the <code>Expires</code> header. A response
+     * that must not be cached or must be revalidated on every use has no expiration.
+     *
+     * @param connection the connection whose response headers are read.
+     *
+     * @return the response's validators.
+     */
+    protected ResponseValidator readResponseValidator(HttpURLConnection connection)
+    {
+        long expiration = connection.getExpiration();
+
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        if (cacheControl != null)
+        {
+            for (String directive : cacheControl.toLowerCase().split(","))
+            {
+                directive = directive.trim();
+                if (directive.equals("no-cache") || directive.equals("no-store"))
+                {
+                    expiration = 0;
+                    break;
+                }
+                else if (directive.startsWith("max-age="))
+                {
+                    try
+                    {
+                        long maxAge = Long.parseLong(directive.substring(8).trim());
+                        expiration = System.currentTimeMillis() + 1000 * Math.max(maxAge, 0);
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // Ignore a malformed max-age, and use the Expires header.
+                    }
+                }
+            }
+        }
+
+        String eTag = connection.getHeaderField("ETag");
+        long lastModified = connection.getHeaderFieldDate("Last-Modified", 0);
+
+        return new ResponseValidator(eTag, lastModified, expiration);
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import java.io.IOException;
+import java.net.*;
+
+/**
+ * Opens the HTTP connections used by {@link HTTPRetriever}. A transport decides how connections are pooled and reused,
+ * and how many may be open to one host at a time. The transport in use is created from the class named by the
+ * configuration value {@link gov.nasa.worldwind.avlist.AVKey#HTTP_TRANSPORT_CLASS_NAME}, and is returned by {@link
+ * gov.nasa.worldwind.WorldWind#getHTTPTransport()}.
+ * <p/>
+ * A retrieval reserves one of the connections allowed to its URL's host with {@link #reserveConnection(java.net.URL)}
+ * before it opens any, and releases the reservation with {@link #releaseReservation(java.net.URL)} once it has
+ * finished, including any retries. Reserving does not wait, so a retrieval thread is never blocked by a busy host; a
+ * retrieval that cannot reserve a connection is put aside by the retrieval service until another retrieval from the
+ * host releases its reservation. Every connection returned by {@link #openConnection(java.net.URL, java.net.Proxy)}
+ * must be passed to {@link #releaseConnection(java.net.HttpURLConnection)} once the caller has finished reading it,
+ * whether or not the read succeeded. Transports are used concurrently by the retrieval threads, and must be thread
+ * safe.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public interface HTTPTransport
+{
+    /**
+     * Reserves one of the connections allowed to a URL's host, if one is free. Does not wait.
+     *
+     * @param url a URL on the host to connect to.
+     *
+     * @return true if a connection was reserved, or false if the host's connections are all reserved.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    boolean reserveConnection(URL url);
+
+    /**
+     * Releases a connection reserved by {@link #reserveConnection(java.net.URL)}, allowing another retrieval from the
+     * URL's host.
+     *
+     * @param url a URL on the host whose reservation is released.
+     *
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    void releaseReservation(URL url);
+
+    /**
+     * Opens a connection to a URL. The connection is not yet connected; the caller sets its timeouts and reads it. The
+     * caller holds a reservation for the URL's host made by {@link #reserveConnection(java.net.URL)}; the transport
+     * does not wait.
+     *
+     * @param url   the URL to open.
+     * @param proxy the proxy to connect through, or null to connect directly.
+     *
+     * @return a new connection.
+     *
+     * @throws IOException              if the connection cannot be opened.
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    HttpURLConnection openConnection(URL url, Proxy proxy) throws IOException;
+
+    /**
+     * Indicates that the caller has finished with a connection returned by {@link #openConnection(java.net.URL,
+     * java.net.Proxy)}. The transport returns the underlying socket to its pool if it can be reused. The caller's
+     * reservation for the host is kept until it is released by {@link #releaseReservation(java.net.URL)}.
+     *
+     * @param connection the connection to release. Has no effect if null.
+     */
+    void releaseConnection(HttpURLConnection connection);
+
+    /**
+     * Specifies the most connections that may be reserved for a URL's host at a time. Reservations already made are
+     * kept; if more are held than the new limit allows, no more are made until enough have been released.
+     *
+     * @param url            a URL on the host whose limit is specified.
+     * @param maxConnections the most connections allowed to the host.
+     *
+     * @throws IllegalArgumentException if the URL is null, or the number of connections is less than 1.
+     */
+    void setMaxConnections(URL url, int maxConnections);
+
+    /**
+     * Disconnects the connections this transport has open, and opens no more. Called when World Wind shuts down, after
+     * the retrieval services have been shut down.
+     */
+    void shutdown();
+}
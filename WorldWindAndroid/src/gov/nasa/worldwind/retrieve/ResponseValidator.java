@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+/**
+ * The HTTP validators of a retrieved resource: its entity tag, its last-modified time, and the time until which the
+ * server declared it fresh. A cached copy of the resource is revalidated by sending its validators in a conditional
+ * request, which the server answers with <code>304 Not Modified</code> and no content if the resource has not changed.
+ * See {@link HTTPRetriever#setRequestValidator(ResponseValidator)}.
+ * <p/>
+ * Validators are immutable.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class ResponseValidator
+{
+    protected final String eTag;
+    protected final long lastModified;
+    protected final long expiration;
+
+    /**
+     * Creates a validator.
+     *
+     * @param eTag         the resource's entity tag, exactly as sent by the server, or null if it has none.
+     * @param lastModified the resource's last-modified time in milliseconds since the epoch, or 0 if it has none.
+     * @param expiration   the time in milliseconds since the epoch until which the resource is fresh, or 0 if the
+     *                     server did not say.
+     */
+    public ResponseValidator(String eTag, long lastModified, long expiration)
+    {
+        this.eTag = eTag != null && eTag.length() > 0 ? eTag : null;
+        this.lastModified = Math.max(lastModified, 0);
+        this.expiration = Math.max(expiration, 0);
+    }
+
+    public String getETag()
+    {
+        return this.eTag;
+    }
+
+    public long getLastModified()
+    {
+        return this.lastModified;
+    }
+
+    public long getExpiration()
+    {
+        return this.expiration;
+    }
+
+    /**
+     * Indicates whether the validator can make a request conditional.
+     *
+     * @return true if the validator has an entity tag or a last-modified time, otherwise false.
+     */
+    public boolean isConditional()
+    {
+        return this.eTag != null || this.lastModified > 0;
+    }
+
+    /**
+     * Indicates whether the server declared the resource fresh at a specified time.
+     *
+     * @param time the time in question, in milliseconds since the epoch.
+     *
+     * @return true if the resource's expiration is after the specified time, otherwise false.
+     */
+    public boolean isFresh(long time)
+    {
+        return this.expiration > time;
+    }
+
+    /**
+     * Combines this validator with the validators of a later response to a conditional request. A <code>304 Not
+     * Modified</code> response need not repeat every validator, so the validators it omits keep their current value.
+     *
+     * @param response the validators of the later response. May be null.
+     *
+     * @return the combined validators.
+     */
+    public ResponseValidator update(ResponseValidator response)
+    {
+        if (response == null)
+            return this;
+
+        return new ResponseValidator(response.eTag != null ? response.eTag : this.eTag,
+            response.lastModified > 0 ? response.lastModified : this.lastModified,
+            response.expiration > 0 ? response.expiration : this.expiration);
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+        if (o == null || this.getClass() != o.getClass())
+            return false;
+
+        ResponseValidator that = (ResponseValidator) o;
+        return this.lastModified == that.lastModified && this.expiration == that.expiration
+            && (this.eTag != null ? this.eTag.equals(that.eTag) : that.eTag == null);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = this.eTag != null ? this.eTag.hashCode() : 0;
+        result = 31 * result + (int) (this.lastModified ^ (this.lastModified >>> 32));
+        result = 31 * result + (int) (this.expiration ^ (this.expiration >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "eTag=" + this.eTag + ", lastModified=" + this.lastModified + ", expiration=" + this.expiration;
+    }
+}
@@ -8,6 +8,8 @@ package gov.nasa.worldwind.retrieve;
 
 import gov.nasa.worldwind.WWObject;
 
+import java.util.Map;
+
 /**
  * @author Tom Gaskins
  * @version $Id: RetrievalService.java 733 2012-09-02 17:15:09Z dcollins $
@@ -83,6 +85,70 @@ public interface RetrievalService extends WWObject
      */
     int getNumRetrieversPending();
 
+    /**
+     * Updates the priorities of a client's retrievals, and cancels the client's retrievals that are no longer needed.
+     * A retrieval belongs to a client if its retriever's {@link gov.nasa.worldwind.avlist.AVKey#RETRIEVAL_CLIENT} value
+     * is the client, and is identified by its retriever's {@link gov.nasa.worldwind.avlist.AVKey#RETRIEVAL_KEY} value.
+     * A waiting retrieval whose key is in <code>priorities</code> takes the new priority, and one whose key is not is
+     * removed from the queue. A running retrieval whose key is not in <code>priorities</code> is aborted. Clients call
+     * this once per frame with the priorities of all the resources they need in that frame.
+     *
+     * @param client     the client whose retrievals to update.
+     * @param priorities the priorities of the resources the client still needs, keyed by retrieval key.
+     *
+     * @throws IllegalArgumentException if either argument is null.
+     */
+    void updatePriorities(Object client, Map<?, Double> priorities);
+
+    /**
+     * Indicates the number of retrievals cancelled by {@link #updatePriorities(Object, java.util.Map)}.
+     *
+     * @return the number of cancelled retrievals, both waiting and running.
+     */
+    long getNumRetrieversCancelled();
+
+    /**
+     * Indicates the number of bytes that were not downloaded because retrievals were cancelled by {@link
+     * #updatePriorities(Object, java.util.Map)}. The size of a cancelled running retrieval is known if the server sent
+     * its content length. The size of a cancelled waiting retrieval is estimated as the mean size of the retrievals
+     * that have completed.
+     *
+     * @return the number of bytes saved by cancellation.
+     */
+    long getBytesSavedByCancellation();
+
+    /**
+     * Indicates the number of retrievals that were coalesced with a retrieval of the same URL already in progress,
+     * rather than downloading the URL again.
+     *
+     * @return the number of coalesced retrievals.
+     */
+    long getNumRetrieversCoalesced();
+
+    /**
+     * Indicates the number of bytes that were not downloaded because retrievals were coalesced with a retrieval of the
+     * same URL.
+     *
+     * @return the number of bytes saved by coalescing.
+     */
+    long getBytesSavedByCoalescing();
+
+    /**
+     * Returns the controller that adapts the number of concurrent retrievals to the network. Its current limits and
+     * the history of its decisions can be read to monitor it.
+     *
+     * @return the service's concurrency controller, or null if the number of concurrent retrievals is fixed.
+     */
+    AdaptiveConcurrencyController getConcurrencyController();
+
+    /**
+     * Returns the performance statistics of the retrievals run by this service: the number that succeeded and failed,
+     * their throughput, the bytes they read and the distribution of their latencies.
+     *
+     * @return the service's retrieval statistics.
+     */
+    RetrievalStatistics getStatistics();
+
     /**
      * Shutdown the retrieval service.
      *
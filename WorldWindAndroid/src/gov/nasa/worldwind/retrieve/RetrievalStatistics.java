@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Accumulates performance statistics for a retrieval service: the retrievals that succeeded and failed, the bytes they
+ * read, and the distribution of their latencies. A retrieval's latency is the time from its submission to the end of
+ * its post-processing, so it includes the time spent waiting for a thread. Cancelled retrievals are not recorded.
+ * Counters are updated without locking so that recording a retrieval adds no contention to the retrieval threads. Use
+ * {@link #getSnapshot()} to read a copy of the current values.
+ * <p/>
+ * Latencies are counted in a histogram whose buckets are one millisecond wide below 8 milliseconds, and are one eighth
+ * of a power of two wide above it, so a percentile read from the histogram is within 12.5 percent of the true value.
+ * Latencies of 2<sup>25</sup> milliseconds, about nine hours, or longer are counted in the last bucket.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class RetrievalStatistics
+{
+    /** An immutable copy of a retrieval service's statistics at a point in time. */
+    public static class Snapshot
+    {
+        protected final long numSuccessful;
+        protected final long numFailed;
+        protected final long bytesRead;
+        protected final long elapsedNanos;
+        protected final long[] latencyCounts;
+
+        public Snapshot(long numSuccessful, long numFailed, long bytesRead, long elapsedNanos, long[] latencyCounts)
+        {
+            this.numSuccessful = numSuccessful;
+            this.numFailed = numFailed;
+            this.bytesRead = bytesRead;
+            this.elapsedNanos = elapsedNanos;
+            this.latencyCounts = latencyCounts;
+        }
+
+        /**
+         * Returns the number of retrievals that completed successfully.
+         *
+         * @return the number of successful retrievals.
+         */
+        public long getNumSuccessful()
+        {
+            return this.numSuccessful;
+        }
+
+        /**
+         * Returns the number of retrievals that failed.
+         *
+         * @return the number of failed retrievals.
+         */
+        public long getNumFailed()
+        {
+            return this.numFailed;
+        }
+
+        /**
+         * Returns the number of bytes read by the recorded retrievals.
+         *
+         * @return the number of bytes read.
+         */
+        public long getBytesRead()
+        {
+            return this.bytesRead;
+        }
+
+        /**
+         * Returns the time over which the statistics were accumulated.
+         *
+         * @return the time since the statistics were created or reset, in milliseconds.
+         */
+        public double getElapsedTime()
+        {
+            return this.elapsedNanos / 1.0e6;
+        }
+
+        /**
+         * Returns the mean rate at which retrievals succeeded.
+         *
+         * @return the number of successful retrievals per second, or 0 if no time has elapsed.
+         */
+        public double getRetrievalRate()
+        {
+            return this.elapsedNanos > 0 ? this.numSuccessful / (this.elapsedNanos / 1.0e9) : 0;
+        }
+
+        /**
+         * Returns the mean rate at which bytes were read.
+         *
+         * @return the number of bytes read per second, or 0 if no time has elapsed.
+         */
+        public double getByteRate()
+        {
+            return this.elapsedNanos > 0 ? this.bytesRead / (this.elapsedNanos / 1.0e9) : 0;
+        }
+
+        /**
+         * Returns a percentile of the latencies of the recorded retrievals.
+         *
+         * @param percentile the percentile, in the range [0, 100].
+         *
+         * @return the latency in milliseconds below which the specified percent of the recorded retrievals fall, or 0
+         *         if no retrievals have been recorded.
+         */
+        public long getLatencyPercentile(double percentile)
+        {
+            long total = 0;
+            for (long count : this.latencyCounts)
+            {
+                total += count;
+            }
+
+            if (total == 0)
+                return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+            long cumulative = 0;
+            for (int i = 0; i < this.latencyCounts.length; i++)
+            {
+                cumulative += this.latencyCounts[i];
+                if (cumulative >= rank)
+                    return bucketUpperBound(i);
+            }
+
+            return bucketUpperBound(this.latencyCounts.length - 1);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("successful=").append(this.numSuccessful);
+            sb.append(", failed=").append(this.numFailed);
+            sb.append(", bytesRead=").append(this.bytesRead);
+            sb.append(", retrievalsPerSec=").append(String.format("%.2f", this.getRetrievalRate()));
+            sb.append(", bytesPerSec=").append(String.format("%.0f", this.getByteRate()));
+            sb.append(", p50LatencyMs=").append(this.getLatencyPercentile(50));
+            sb.append(", p99LatencyMs=").append(this.getLatencyPercentile(99));
+
+            return sb.toString();
+        }
+    }
+
+    protected static final int SUB_BUCKET_BITS = 3;
+    protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    protected static final int MAX_EXPONENT = 24;
+    protected static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    protected final AtomicLong numSuccessful = new AtomicLong();
+    protected final AtomicLong numFailed = new AtomicLong();
+    protected final AtomicLong bytesRead = new AtomicLong();
+    protected final AtomicLongArray latencyCounts = new AtomicLongArray(NUM_BUCKETS);
+    protected volatile long startTime = System.nanoTime();
+
+    /**
+     * Records a completed retrieval.
+     *
+     * @param successful true if the retrieval succeeded, false if it failed.
+     * @param latency    the time from the retrieval's submission to its completion, in milliseconds.
+     * @param bytesRead  the number of bytes the retrieval read.
+     */
+    public void recordRetrieval(boolean successful, long latency, long bytesRead)
+    {
+        if (successful)
+            this.numSuccessful.incrementAndGet();
+        else
+            this.numFailed.incrementAndGet();
+
+        this.bytesRead.addAndGet(Math.max(0, bytesRead));
+        this.latencyCounts.incrementAndGet(bucketIndex(latency));
+    }
+
+    /**
+     * Returns a copy of the current statistics. The copy is not atomic: retrievals recorded while it is made may be
+     * partly included.
+     *
+     * @return a snapshot of the current statistics.
+     */
+    public Snapshot getSnapshot()
+    {
+        long[] counts = new long[NUM_BUCKETS];
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            counts[i] = this.latencyCounts.get(i);
+        }
+
+        return new Snapshot(this.numSuccessful.get(), this.numFailed.get(), this.bytesRead.get(),
+            System.nanoTime() - this.startTime, counts);
+    }
+
+    /** Sets all statistics to zero, and restarts the time over which rates are measured. */
+    public void reset()
+    {
+        this.numSuccessful.set(0);
+        this.numFailed.set(0);
+        this.bytesRead.set(0);
+
+        for (int i = 0; i < NUM_BUCKETS; i++)
+        {
+            this.latencyCounts.set(i, 0);
+        }
+
+        this.startTime = System.nanoTime();
+    }
+
+    protected static int bucketIndex(long latency)
+    {
+        if (latency < SUB_BUCKETS)
+            return (int) Math.max(latency, 0);
+
+        int exponent = 63 - Long.numberOfLeadingZeros(latency);
+        if (exponent > MAX_EXPONENT)
+            return NUM_BUCKETS - 1;
+
+        int subBucket = (int) (latency >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    protected static long bucketUpperBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+        return (SUB_BUCKETS + subBucket) * width + width - 1;
+    }
+}
@@ -59,4 +59,11 @@ public interface Retriever extends WWObject, java.util.concurrent.Callable<Retri
     int getStaleRequestLimit();
 
     void setStaleRequestLimit(int staleRequestLimit);
+
+    /**
+     * Stops the retrieval from any thread, including a retrieval that is blocked reading from the network. The
+     * retriever's state becomes {@link #RETRIEVER_STATE_INTERRUPTED} and its post-processor is not given any data. Has
+     * no effect if the retrieval has completed.
+     */
+    void abort();
 }
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.Random;
+
+/**
+ * Decides whether a failed retrieval is attempted again, and how long the retrieval waits before doing so. Retries
+ * wait an exponentially increasing time with full jitter: the wait before retry <code>n</code> is chosen uniformly at
+ * random between zero and the smaller of the maximum delay and the base delay times 2<sup>n</sup>. The randomness keeps
+ * the retrievals that failed together from retrying together. A server that asks for a longer wait with a
+ * <code>Retry-After</code> header is waited for, unless it asks for more than the maximum delay, in which case the
+ * retrieval is not retried.
+ * <p/>
+ * Retries are limited by a budget, so that a host that fails every request does not receive several times the traffic
+ * of a healthy one. Every completed attempt adds a fraction of a retry to the budget, and every retry spends one. The
+ * fraction is therefore the largest share of the traffic that retries can become, once the budget's initial reserve is
+ * spent. A retry is refused when the budget holds less than one retry.
+ * <p/>
+ * The policy draws its jitter from a {@link java.util.Random} given to the constructor, so that its delays can be
+ * reproduced.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class RetryPolicy
+{
+    /** The default number of times a retrieval is retried. */
+    protected static final int DEFAULT_MAX_RETRIES = 2;
+    /** The default delay before the first retry, in milliseconds. */
+    protected static final long DEFAULT_BASE_DELAY = 250;
+    /** The default longest delay before a retry, in milliseconds. */
+    protected static final long DEFAULT_MAX_DELAY = 10000;
+    /** The default fraction of a retry added to the budget by each completed attempt. */
+    protected static final double DEFAULT_BUDGET_RATIO = 0.1;
+    /** The default number of retries the budget can hold. */
+    protected static final double DEFAULT_MAX_BUDGET = 10;
+
+    protected final int maxRetries;
+    protected final long baseDelay;
+    protected final long maxDelay;
+    protected final double budgetRatio;
+    protected final double maxBudget;
+    protected final Random random;
+    protected double budget; // guarded by this
+    protected long numAttempts; // guarded by this
+    protected long numRetries; // guarded by this
+    protected long numRetriesRefused; // guarded by this
+
+    /** Creates a retry policy configured by the World Wind configuration. */
+    public RetryPolicy()
+    {
+        this(Configuration.getIntegerValue(AVKey.RETRIEVAL_MAX_RETRIES, DEFAULT_MAX_RETRIES),
+            Configuration.getLongValue(AVKey.RETRIEVAL_RETRY_BASE_DELAY, DEFAULT_BASE_DELAY),
+            Configuration.getLongValue(AVKey.RETRIEVAL_RETRY_MAX_DELAY, DEFAULT_MAX_DELAY),
+            Configuration.getDoubleValue(AVKey.RETRIEVAL_RETRY_BUDGET, DEFAULT_BUDGET_RATIO), DEFAULT_MAX_BUDGET,
+            new Random());
+    }
+
+    /**
+     * Creates a retry policy.
+     *
+     * @param maxRetries  the most times a retrieval is retried. 0 disables retries.
+     * @param baseDelay   the delay before the first retry, in milliseconds. Must be positive.
+     * @param maxDelay    the longest delay before a retry, in milliseconds. Must not be less than the base delay.
+     * @param budgetRatio the fraction of a retry added to the budget by each completed attempt. Must not be negative.
+     * @param maxBudget   the number of retries the budget can hold, which is also its initial reserve. Must not be
+     *                    negative.
+     * @param random      the source of the delays' jitter.
+     *
+     * @throws IllegalArgumentException if any argument is out of range, or the random source is null.
+     */
+    public RetryPolicy(int maxRetries, long baseDelay, long maxDelay, double budgetRatio, double maxBudget,
+        Random random)
+    {
+        if (maxRetries < 0)
+        {
+            String msg = Logging.getMessage("RetryPolicy.RetryCountIsInvalid", maxRetries);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (baseDelay < 1 || maxDelay < baseDelay)
+        {
+            String msg = Logging.getMessage("RetryPolicy.DelayIsInvalid", baseDelay, maxDelay);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (budgetRatio < 0 || maxBudget < 0)
+        {
+            String msg = Logging.getMessage("RetryPolicy.BudgetIsInvalid", budgetRatio, maxBudget);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (random == null)
+        {
+            String msg = Logging.getMessage("nullValue.RandomIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.budgetRatio = budgetRatio;
+        this.maxBudget = maxBudget;
+        this.random = random;
+        this.budget = maxBudget;
+    }
+
+    public int getMaxRetries()
+    {
+        return this.maxRetries;
+    }
+
+    public long getBaseDelay()
+    {
+        return this.baseDelay;
+    }
+
+    public long getMaxDelay()
+    {
+        return this.maxDelay;
+    }
+
+    public double getBudgetRatio()
+    {
+        return this.budgetRatio;
+    }
+
+    /**
+     * Returns the number of retries the budget currently holds.
+     *
+     * @return the current budget.
+     */
+    public synchronized double getBudget()
+    {
+        return this.budget;
+    }
+
+    /**
+     * Returns the number of attempts recorded by {@link #attemptCompleted()}.
+     *
+     * @return the number of completed attempts.
+     */
+    public synchronized long getNumAttempts()
+    {
+        return this.numAttempts;
+    }
+
+    /**
+     * Returns the number of retries granted by {@link #acquireRetry(int, long)}.
+     *
+     * @return the number of retries granted.
+     */
+    public synchronized long getNumRetries()
+    {
+        return this.numRetries;
+    }
+
+    /**
+     * Returns the number of retries refused by {@link #acquireRetry(int, long)} because the budget was spent.
+     *
+     * @return the number of retries refused for lack of budget.
+     */
+    public synchronized long getNumRetriesRefused()
+    {
+        return this.numRetriesRefused;
+    }
+
+    /** Records a completed attempt, successful or not, adding to the retry budget. */
+    public synchronized void attemptCompleted()
+    {
+        this.numAttempts++;
+        this.budget = Math.min(this.budget + this.budgetRatio, this.maxBudget);
+    }
+
+    /**
+     * Asks to retry a failed retrieval. If the retry is granted it is taken from the budget.
+     *
+     * @param numRetries the number of times the retrieval has already been retried.
+     * @param minDelay   the least delay the server asked for, in milliseconds, or 0 if it did not ask.
+     *
+     * @return the time to wait before retrying, in milliseconds, or -1 if the retrieval must not be retried.
+     */
+    public synchronized long acquireRetry(int numRetries, long minDelay)
+    {
+        if (numRetries >= this.maxRetries || minDelay > this.maxDelay)
+            return -1;
+
+        if (this.budget < 1)
+        {
+            this.numRetriesRefused++;
+            return -1;
+        }
+
+        this.budget -= 1;
+        this.numRetries++;
+
+        return Math.max(this.computeDelay(numRetries), minDelay);
+    }
+
+    /**
+     * Computes the delay before a retry: a time chosen uniformly between zero and the smaller of the maximum delay and
+     * the base delay times 2<sup>numRetries</sup>.
+     *
+     * @param numRetries the number of times the retrieval has already been retried.
+     *
+     * @return the delay in milliseconds.
+     */
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected long computeDelay(int numRetries)
+    {
+        long ceiling = numRetries < 30 ? Math.min(this.baseDelay << numRetries, this.maxDelay) : this.maxDelay;
+        return (long) (this.random.nextDouble() * (ceiling + 1));
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.retrieve;
+
+import java.io.File;
+
+/**
+ * A post-processor that receives retrieved content as a file rather than as a buffer on the heap. A {@link
+ * URLRetriever} whose post-processor implements this interface writes the response body directly to a temporary file
+ * in the destination's directory while reading it, and gives the post-processor a read-only memory-mapped view of that
+ * file as its buffer. This avoids holding the whole response on the heap, and avoids writing it a second time.
+ * <p/>
+ * If the post-processor saves the content unchanged, {@link AbstractRetrievalPostProcessor#saveBuffer(java.nio.ByteBuffer)}
+ * renames the temporary file to the output file instead of writing the buffer. The rename is atomic because both files
+ * are in the same directory, so readers of the output file never see a partial file. The retriever deletes the
+ * temporary file once post-processing is complete if the post-processor did not use it.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public interface StreamingRetrievalPostProcessor extends RetrievalPostProcessor
+{
+    /**
+     * Returns the file the retrieved content is intended for. The retriever writes the content to a temporary file in
+     * the same directory.
+     *
+     * @param retriever the retriever about to read the content.
+     *
+     * @return the destination file, or null to read the content into a buffer on the heap.
+     */
+    File getStreamingDestination(Retriever retriever);
+}
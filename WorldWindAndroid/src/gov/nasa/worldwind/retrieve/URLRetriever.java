@@ -14,10 +14,20 @@ import java.io.*;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.*;
 
 /**
+ * Retrieves the resource at a URL, and runs a post-processor on the result.
+ * <p/>
+ * The outcome of each attempt is logged with the World Wind {@link gov.nasa.worldwind.util.NetworkStatus}. An attempt
+ * that fails in a way that may not last, such as a timeout, a refused connection, or a server response identified by
+ * {@link #isTransientFailure()}, is retried if {@link gov.nasa.worldwind.util.NetworkStatus#acquireRetry(java.net.URL,
+ * int, long)} allows it. The retriever waits on its thread before retrying, and stops waiting if it is aborted. An
+ * {@link AttemptListener} given to the retriever is told when each attempt starts and finishes, so that the network can
+ * be measured without the waits between attempts.
+ *
  * @author Tom Gaskins
  * @version $Id: URLRetriever.java 733 2012-09-02 17:15:09Z dcollins $
  */
@@ -31,12 +41,48 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
      */
     public static final String EXTRACT_ZIP_ENTRY = "URLRetriever.ExtractZipEntry";
 
+    /** The size of the buffer used to read a response of unknown length. */
+    protected static final int DEFAULT_PAGE_SIZE = 32768;
+    /** The largest buffer allocated up front from a response's content length. */
+    protected static final int MAX_PRESIZED_BUFFER = 1 << 20;
+    /** The size of the buffer used to copy a streamed response body to its file. */
+    protected static final int STREAM_CHUNK_SIZE = 8192;
+    /** The longest time a retriever waiting to retry goes without checking whether it has been aborted. */
+    protected static final long RETRY_POLL_INTERVAL = 100;
+
+    /** Receives the start and outcome of each attempt a retriever makes to retrieve its URL. */
+    public interface AttemptListener
+    {
+        /**
+         * Called when an attempt is about to connect.
+         *
+         * @param retriever  the retriever making the attempt.
+         * @param numRetries the number of attempts that have already been retried.
+         */
+        void attemptStarted(URLRetriever retriever, int numRetries);
+
+        /**
+         * Called when an attempt has finished, whether or not it succeeded, and before the retriever waits to retry.
+         *
+         * @param retriever  the retriever that made the attempt.
+         * @param numRetries the number of attempts that had already been retried.
+         * @param duration   the time the attempt took, in milliseconds.
+         * @param numBytes   the number of bytes the attempt read.
+         * @param timedOut   true if the attempt failed because a connection or read timed out.
+         */
+        void attemptFinished(URLRetriever retriever, int numRetries, long duration, long numBytes, boolean timedOut);
+    }
+
     protected volatile String state = RETRIEVER_STATE_NOT_STARTED;
     protected volatile int contentLength = 0;
     protected AtomicInteger contentLengthRead = new AtomicInteger(0);
     protected volatile String contentType;
     protected volatile ByteBuffer byteBuffer;
     protected volatile URLConnection connection;
+    protected volatile boolean aborted;
+    protected volatile File streamedFile;
+    // The length of a partial body kept in the streamed file by a failed attempt, which the next attempt resumes.
+    protected long resumeOffset;
     protected final URL url;
     protected final RetrievalPostProcessor postProcessor;
     protected int connectTimeout = Configuration.getIntegerValue(AVKey.URL_CONNECT_TIMEOUT, 8000);
@@ -45,6 +91,11 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
     protected long submitTime;
     protected long beginTime;
     protected long endTime;
+    // Retrievers of the same URL that receive this retriever's response instead of downloading it themselves.
+    protected final List<URLRetriever> coalescedRetrievers = new ArrayList<URLRetriever>();
+    protected boolean coalescingClosed; // guarded by coalescedRetrievers
+    protected volatile AttemptListener attemptListener;
+    protected boolean attemptTimedOut;
 
     /**
      * Create the appropriate retriever for a URL's protocol.
@@ -141,6 +192,18 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         return this.state;
     }
 
+    /**
+     * Returns the temporary file the response body was written to, if this retriever's post-processor is a {@link
+     * StreamingRetrievalPostProcessor}. The file exists only while the post-processor runs, unless the post-processor
+     * renames it.
+     *
+     * @return the temporary file holding the response body, or null if the body was read into a heap buffer.
+     */
+    public File getStreamedFile()
+    {
+        return this.streamedFile;
+    }
+
     protected final URLConnection getConnection()
     {
         return this.connection;
@@ -220,10 +283,93 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         {
             this.setState(RETRIEVER_STATE_STARTED);
 
+            for (int numRetries = 0; ; numRetries++)
+            {
+                long delay = this.measureAttempt(numRetries);
+                if (delay < 0)
+                    break;
+
+                this.prepareRetry();
+                if (!this.waitToRetry(delay, numRetries + 1))
+                    break;
+            }
+        }
+        finally
+        {
+            this.releaseConnection();
+
+            // Capture the response before this retriever's post-processor replaces the buffer.
+            ByteBuffer response = this.byteBuffer;
+            List<URLRetriever> coalesced = this.closeCoalescing();
+            try
+            {
+                this.end();
+            }
+            finally
+            {
+                for (URLRetriever retriever : coalesced)
+                {
+                    retriever.endCoalesced(this, response);
+                }
+
+                this.deleteStreamedFile();
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Makes one attempt to retrieve this retriever's URL, and tells this retriever's attempt listener when the attempt
+     * starts and finishes.
+     *
+     * @param numRetries the number of attempts that have already been retried.
+     *
+     * @return the time to wait before retrying, in milliseconds, or -1 if the retrieval is complete.
+     *
+     * @throws Exception if the attempt fails and is not retried.
+     */
+    protected long measureAttempt(int numRetries) throws Exception
+    {
+        AttemptListener listener = this.attemptListener;
+        if (listener == null)
+            return this.attemptRetrieval(numRetries);
+
+        this.attemptTimedOut = false;
+        long start = System.currentTimeMillis();
+        listener.attemptStarted(this, numRetries);
+        try
+        {
+            return this.attemptRetrieval(numRetries);
+        }
+        finally
+        {
+            listener.attemptFinished(this, numRetries, System.currentTimeMillis() - start, this.getContentLengthRead(),
+                this.attemptTimedOut);
+        }
+    }
+
+    /**
+     * Makes one attempt to retrieve this retriever's URL, and logs its outcome with the network status.
+     *
+     * @param numRetries the number of attempts that have already been retried.
+     *
+     * @return the time to wait before retrying, in milliseconds, or -1 if the retrieval is complete.
+     *
+     * @throws Exception if the attempt fails and is not retried.
+     */
+    protected long attemptRetrieval(int numRetries) throws Exception
+    {
+        try
+        {
             if (!this.interrupted())
             {
                 this.setState(RETRIEVER_STATE_CONNECTING);
                 this.connection = this.openConnection();
+
+                // The retrieval may have been aborted before the connection existed to be closed.
+                if (this.aborted)
+                    this.disconnect();
             }
 
             if (!this.interrupted())
@@ -232,21 +378,43 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 this.byteBuffer = this.read();
             }
 
+            if (this.isTransientFailure())
+            {
+                WorldWind.getNetworkStatus().logUnavailableHost(this.url);
+
+                long delay = this.acquireRetry(numRetries);
+                if (delay >= 0)
+                    return delay;
+            }
+            else
+            {
+                WorldWind.getNetworkStatus().logAvailableHost(this.url);
+            }
+
             if (!this.interrupted())
                 this.setState(RETRIEVER_STATE_SUCCESSFUL);
-
-            WorldWind.getNetworkStatus().logAvailableHost(this.url);
         }
         catch (UnknownHostException e)
         {
+            if (this.interrupted())
+                return -1;
+
             this.setState(RETRIEVER_STATE_ERROR);
             WorldWind.getNetworkStatus().logUnavailableHost(this.url);
             throw e;
         }
         catch (SocketException e)
         {
-            this.setState(RETRIEVER_STATE_ERROR);
+            if (this.interrupted())
+                return -1; // Closing the connection to abort the retrieval causes this exception.
+
             WorldWind.getNetworkStatus().logUnavailableHost(this.url);
+
+            long delay = this.acquireRetry(numRetries);
+            if (delay >= 0)
+                return delay;
+
+            this.setState(RETRIEVER_STATE_ERROR);
             throw e;
         }
         catch (ClosedByInterruptException e)
@@ -255,6 +423,19 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         }
         catch (Exception e)
         {
+            if (this.interrupted())
+                return -1;
+
+            if (e instanceof java.net.SocketTimeoutException)
+            {
+                this.attemptTimedOut = true;
+                WorldWind.getNetworkStatus().logUnavailableHost(this.url);
+
+                long delay = this.acquireRetry(numRetries);
+                if (delay >= 0)
+                    return delay;
+            }
+
             this.setState(RETRIEVER_STATE_ERROR);
             if (!(e instanceof java.net.SocketTimeoutException))
             {
@@ -262,12 +443,231 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
             }
             throw e;
         }
-        finally
+
+        return -1;
+    }
+
+    /**
+     * Indicates whether the response that was read reports a failure that may not last, such as an overloaded server.
+     * Such a response is logged as a failure of the host, and the retrieval may be retried. The default implementation
+     * returns false.
+     *
+     * @return true if the response reports a transient failure, otherwise false.
+     */
+    protected boolean isTransientFailure()
+    {
+        return false;
+    }
+
+    /**
+     * Returns the least time the server asked this retriever to wait before retrying. The default implementation
+     * returns 0.
+     *
+     * @return the delay the server asked for, in milliseconds, or 0 if it did not ask.
+     */
+    protected long getRetryAfter()
+    {
+        return 0;
+    }
+
+    /**
+     * Asks the network status whether a failed attempt may be retried. A retrieval that has been aborted is not.
+     *
+     * @param numRetries the number of attempts that have already been retried.
+     *
+     * @return the time to wait before retrying, in milliseconds, or -1 if the retrieval must not be retried.
+     */
+    protected long acquireRetry(int numRetries)
+    {
+        if (this.aborted || Thread.currentThread().isInterrupted())
+            return -1;
+
+        return WorldWind.getNetworkStatus().acquireRetry(this.url, numRetries, this.getRetryAfter());
+    }
+
+    /**
+     * Discards the connection and response of a failed attempt before the retrieval is retried. A partial body streamed
+     * to a file is kept if {@link #canResume()} allows the next attempt to resume it, and is deleted otherwise.
+     * Subclasses that record additional response information override this to clear it.
+     */
+    protected void prepareRetry()
+    {
+        File file = this.streamedFile;
+        this.resumeOffset = file != null && this.canResume() ? file.length() : 0;
+        if (this.resumeOffset == 0)
+            this.deleteStreamedFile();
+
+        this.releaseConnection();
+        this.connection = null;
+        this.byteBuffer = null;
+        this.contentLength = 0;
+        this.contentLengthRead.set(0);
+        this.contentType = null;
+    }
+
+    /**
+     * Indicates whether the partial body a failed attempt streamed to a file can be resumed by the next attempt, rather
+     * than read again from its start. The default implementation returns false, since only some protocols can request
+     * part of a resource.
+     *
+     * @return true if the next attempt may resume the partial body, otherwise false.
+     */
+    protected boolean canResume()
+    {
+        return false;
+    }
+
+    /**
+     * Waits before retrying a retrieval. The wait ends early if the retrieval is aborted or its thread is interrupted.
+     *
+     * @param delay      the time to wait in milliseconds.
+     * @param numRetries the number of the retry about to be made.
+     *
+     * @return true if the retrieval should be retried, or false if it was interrupted.
+     */
+    protected boolean waitToRetry(long delay, int numRetries)
+    {
+        Logging.verbose(Logging.getMessage("URLRetriever.RetryingRetrieval", this.url.toString(), delay, numRetries));
+
+        long retryTime = System.currentTimeMillis() + delay;
+        try
+        {
+            for (long remaining = delay; remaining > 0 && !this.aborted;
+                remaining = retryTime - System.currentTimeMillis())
+            {
+                Thread.sleep(Math.min(remaining, RETRY_POLL_INTERVAL));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt(); // Leave the retrieval to see that it was interrupted.
+        }
+
+        return !this.interrupted();
+    }
+
+    public AttemptListener getAttemptListener()
+    {
+        return this.attemptListener;
+    }
+
+    /**
+     * Specifies the listener told when each attempt of this retriever starts and finishes.
+     *
+     * @param listener the attempt listener. May be null.
+     */
+    public void setAttemptListener(AttemptListener listener)
+    {
+        this.attemptListener = listener;
+    }
+
+    /**
+     * Attaches a retriever of the same URL to this one. When this retriever completes, the attached retriever takes
+     * this retriever's response and state, and its post-processor is run, without it retrieving the URL itself.
+     * Retrievers can be attached until this retriever has finished reading its response.
+     *
+     * @param retriever the retriever to attach.
+     *
+     * @return true if the retriever was attached, or false if this retriever has already finished reading.
+     *
+     * @throws IllegalArgumentException if the retriever is null.
+     */
+    public boolean addCoalescedRetriever(URLRetriever retriever)
+    {
+        if (retriever == null)
+        {
+            String message = Logging.getMessage("nullValue.RetrieverIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        synchronized (this.coalescedRetrievers)
+        {
+            if (this.coalescingClosed)
+                return false;
+
+            this.coalescedRetrievers.add(retriever);
+            return true;
+        }
+    }
+
+    /**
+     * Returns the retrievers attached to this one by {@link #addCoalescedRetriever(URLRetriever)}.
+     *
+     * @return a copy of the list of attached retrievers.
+     */
+    public List<URLRetriever> getCoalescedRetrievers()
+    {
+        synchronized (this.coalescedRetrievers)
+        {
+            return new ArrayList<URLRetriever>(this.coalescedRetrievers);
+        }
+    }
+
+    /**
+     * Detaches the retrievers attached to this one, unless this retriever has already given them its response, and
+     * stops more from being attached. The retrieval service calls this once this retriever's task is done, so that the
+     * retrievers attached to a retrieval that was cancelled before it ran can run by themselves.
+     *
+     * @return the detached retrievers, or an empty list if this retriever has completed its attached retrievers.
+     */
+    public List<URLRetriever> detachCoalescedRetrievers()
+    {
+        synchronized (this.coalescedRetrievers)
+        {
+            if (this.coalescingClosed)
+                return Collections.emptyList();
+
+            this.coalescingClosed = true;
+            return new ArrayList<URLRetriever>(this.coalescedRetrievers);
+        }
+    }
+
+    protected List<URLRetriever> closeCoalescing()
+    {
+        synchronized (this.coalescedRetrievers)
+        {
+            this.coalescingClosed = true;
+            return new ArrayList<URLRetriever>(this.coalescedRetrievers);
+        }
+    }
+
+    /**
+     * Completes this retriever with the response of the retriever it was attached to, and runs its post-processor.
+     * The response buffer's content is shared with the other retriever, so post-processors must not modify it.
+     *
+     * @param source   the retriever that retrieved the URL.
+     * @param response the response read by <code>source</code>, before its post-processor ran. May be null.
+     */
+    protected void endCoalesced(URLRetriever source, ByteBuffer response)
+    {
+        this.beginTime = source.beginTime;
+        this.endTime = System.currentTimeMillis();
+        this.copyResponse(source);
+        this.byteBuffer = response != null ? response.duplicate() : null;
+        this.setState(source.getState());
+
+        try
         {
             this.end();
         }
+        catch (Exception e)
+        {
+            // Logged by end(). The exception belongs to this retriever's post-processor, not to the source retrieval.
+        }
+    }
 
-        return this;
+    /**
+     * Copies the response metadata of another retriever of the same URL. Subclasses that record additional response
+     * information override this to copy it.
+     *
+     * @param source the retriever to copy from.
+     */
+    protected void copyResponse(URLRetriever source)
+    {
+        this.contentLength = source.contentLength;
+        this.contentLengthRead.set(source.getContentLengthRead());
+        this.contentType = source.contentType;
     }
 
     protected void setState(String state)
@@ -277,9 +677,34 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         this.firePropertyChange(AVKey.RETRIEVER_STATE, oldState, this.state);
     }
 
+    /** {@inheritDoc} */
+    public void abort()
+    {
+        this.aborted = true;
+        this.disconnect();
+    }
+
+    /**
+     * Indicates whether {@link #abort()} has been called.
+     *
+     * @return true if the retrieval has been aborted, otherwise false.
+     */
+    public boolean isAborted()
+    {
+        return this.aborted;
+    }
+
+    protected void disconnect()
+    {
+        // Closing the connection causes a read blocked on its input stream to fail immediately.
+        URLConnection connection = this.connection;
+        if (connection instanceof HttpURLConnection)
+            ((HttpURLConnection) connection).disconnect();
+    }
+
     protected boolean interrupted()
     {
-        if (Thread.currentThread().isInterrupted())
+        if (this.aborted || Thread.currentThread().isInterrupted())
         {
             this.setState(RETRIEVER_STATE_INTERRUPTED);
             String message = Logging.getMessage("URLRetriever.RetrievalInterruptedFor", this.url.toString());
@@ -293,11 +718,7 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
     {
         try
         {
-            Proxy proxy = WWIO.configureProxy();
-            if (proxy != null)
-                this.connection = this.url.openConnection(proxy);
-            else
-                this.connection = this.url.openConnection();
+            this.connection = this.createConnection(WWIO.configureProxy());
         }
         catch (java.io.IOException e)
         {
@@ -318,6 +739,28 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         return connection;
     }
 
+    /**
+     * Opens the connection to this retriever's URL.
+     *
+     * @param proxy the proxy to connect through, or null to connect directly.
+     *
+     * @return the new connection.
+     *
+     * @throws IOException if the connection cannot be opened.
+     */
+    protected URLConnection createConnection(Proxy proxy) throws IOException
+    {
+        return proxy != null ? this.url.openConnection(proxy) : this.url.openConnection();
+    }
+
+    /**
+     * Called when this retriever has finished with its connection, whether or not the retrieval succeeded. The default
+     * implementation does nothing.
+     */
+    protected void releaseConnection()
+    {
+    }
+
     protected void end() throws Exception
     {
         try
@@ -402,7 +845,11 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
                 // and transparently unzipping the content. However, the content-length refers to the compressed length.
                 // Treat the stream as if it did not have a content length header to make sure that we read the full
                 // contents.
-                buffer = this.readNonSpecificStreamUnknownLength(inputStream);
+                File destination = this.getStreamingDestination();
+                if (destination != null)
+                    buffer = this.readStreamToFile(inputStream, destination);
+                else
+                    buffer = this.readNonSpecificStreamUnknownLength(inputStream);
             }
         }
         finally
@@ -415,10 +862,8 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
 
     protected ByteBuffer readNonSpecificStreamUnknownLength(InputStream inputStream) throws IOException
     {
-        final int pageSize = (int) Math.ceil(Math.pow(2, 15));
-
         ReadableByteChannel channel = Channels.newChannel(inputStream);
-        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        ByteBuffer buffer = ByteBuffer.allocate(this.getInitialBufferSize());
 
         int count = 0;
         int numBytesRead = 0;
@@ -426,12 +871,13 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         {
             count = channel.read(buffer);
             if (count > 0)
-                this.contentLengthRead.getAndAdd(numBytesRead += count);
+                this.contentLengthRead.set(numBytesRead += count);
 
             if (count > 0 && !buffer.hasRemaining())
             {
-                ByteBuffer biggerBuffer = ByteBuffer.allocate(buffer.limit() + pageSize);
-                biggerBuffer.put((ByteBuffer) buffer.rewind());
+                // Double the buffer so that the total copying is linear in the content length.
+                ByteBuffer biggerBuffer = ByteBuffer.allocate(2 * buffer.capacity());
+                biggerBuffer.put((ByteBuffer) buffer.flip());
                 buffer = biggerBuffer;
             }
         }
@@ -442,6 +888,108 @@ public abstract class URLRetriever extends WWObjectImpl implements Retriever
         return buffer;
     }
 
+    /**
+     * Reads a response body into a temporary file in the destination's directory, and returns a read-only mapped view
+     * of the file. The body is copied to the file through a small direct buffer, and each chunk is written as soon as
+     * it is read, so the body is never held on the heap and a failed read leaves everything read before it in the
+     * file. The temporary file is available from {@link #getStreamedFile()}.
+     * <p/>
+     * If an earlier attempt left part of the body in the file, the response is written after the first {@link
+     * #resumeOffset} bytes of the file, which are kept. The file is otherwise written from its start. A file left
+     * incomplete by a failed read is kept for the next attempt, and is deleted when the retrieval ends.
+     *
+     * @param inputStream the response body.
+     * @param destination the file the body is intended for.
+     *
+     * @return a mapped view of the body, or null if the retrieval was interrupted.
+     *
+     * @throws IOException if the body cannot be read or the file cannot be written.
+     */
+    protected ByteBuffer readStreamToFile(InputStream inputStream, File destination) throws IOException
+    {
+        File dir = destination.getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs() && !dir.exists())
+            throw new IOException(Logging.getMessage("generic.CannotCreateFile", dir));
+
+        File file = this.streamedFile;
+        if (file == null)
+        {
+            file = File.createTempFile(destination.getName(), ".tmp", dir);
+            this.streamedFile = file;
+        }
+
+        ReadableByteChannel in = Channels.newChannel(inputStream);
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(this.resumeOffset);
+            FileChannel out = raf.getChannel();
+            out.position(this.resumeOffset);
+            ByteBuffer transfer = ByteBuffer.allocateDirect(STREAM_CHUNK_SIZE);
+
+            int count;
+            int numBytesRead = 0;
+            while (!this.interrupted() && (count = in.read(transfer)) >= 0)
+            {
+                // Write each chunk as it arrives, so that the bytes read so far survive a failed read and the next
+                // attempt can resume after them.
+                transfer.flip();
+                while (transfer.hasRemaining())
+                {
+                    out.write(transfer);
+                }
+                transfer.clear();
+
+                if (count > 0)
+                    this.contentLengthRead.set(numBytesRead += count);
+            }
+
+            if (this.interrupted())
+                return null;
+
+            return out.map(FileChannel.MapMode.READ_ONLY, 0, out.size());
+        }
+        finally
+        {
+            WWIO.closeStream(raf, file.getPath()); // the mapping remains valid after the file is closed
+        }
+    }
+
+    /**
+     * Returns the destination file of this retriever's post-processor if it accepts streamed content.
+     *
+     * @return the file to stream the response body toward, or null to read the body into a heap buffer.
+     */
+    protected File getStreamingDestination()
+    {
+        if (!(this.postProcessor instanceof StreamingRetrievalPostProcessor))
+            return null;
+
+        return ((StreamingRetrievalPostProcessor) this.postProcessor).getStreamingDestination(this);
+    }
+
+    protected void deleteStreamedFile()
+    {
+        File file = this.streamedFile;
+        this.streamedFile = null;
+
+        if (file != null && file.exists() && !file.delete())
+            file.deleteOnExit();
+    }
+
+    /**
+     * Returns the size of the buffer to read the response into. The content length is used when it is known, though
+     * it is only a hint: the platform may transparently decompress the response, in which case the content length is
+     * the compressed length.
+     *
+     * @return the initial buffer size.
+     */
+    protected int getInitialBufferSize()
+    {
+        return this.contentLength > 0 ? Math.min(this.contentLength + 1, MAX_PRESIZED_BUFFER) : DEFAULT_PAGE_SIZE;
+    }
+
     /**
      * @param inputStream a stream to the zip connection.
      * @param url         the URL of the zip resource.
@@ -15,6 +15,7 @@ import gov.nasa.worldwind.cache.BasicMemoryCache;
 import gov.nasa.worldwind.cache.Cacheable;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.cache.TinyLfuAdmissionFilter;
 import gov.nasa.worldwind.event.BulkRetrievalListener;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
@@ -23,13 +24,16 @@ import gov.nasa.worldwind.retrieve.AbstractRetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.BulkRetrievable;
 import gov.nasa.worldwind.retrieve.BulkRetrievalThread;
 import gov.nasa.worldwind.retrieve.HTTPRetriever;
+import gov.nasa.worldwind.retrieve.ResponseValidator;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.RetrieverFactory;
+import gov.nasa.worldwind.retrieve.StreamingRetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.LevelSet;
 import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.PrioritizedTask;
 import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWIO;
@@ -187,8 +191,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 			return WorldWind.getMemoryCache(cacheName);
 		} else {
 			long size = Configuration.getLongValue(AVKey.ELEVATION_TILE_CACHE_SIZE, 5000000L);
-			MemoryCache mc = new BasicMemoryCache((long) (0.85 * size), size);
+			MemoryCache mc = WorldWind.getMemoryCacheSet().createMemoryCache((long) (0.85 * size), size);
 			mc.setName("Elevation Tiles");
+			if (Configuration.getBooleanValue(AVKey.TILE_CACHE_ADMISSION_FILTER_ENABLED, false)) mc.setAdmissionFilter(new TinyLfuAdmissionFilter());
 			WorldWind.getMemoryCacheSet().put(cacheName, mc);
 			return mc;
 		}
@@ -312,21 +317,44 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 	// cache or a remote server.
 
 	protected void requestTile(TileKey key) {
-		if (WorldWind.getTaskService().isFull()) return;
-
 		if (this.getLevels().isResourceAbsent(key)) return;
 
-		RequestTask request = new RequestTask(key, this);
-		WorldWind.getTaskService().runTask(request);
+		// The scheduler sends elevation requests together with the requests of every layer, in order of importance.
+		RequestTask request = new RequestTask(key, this, this.computeTilePriority(key));
+		WorldWind.getTileRequestScheduler().addRequest(request);
 	}
 
-	protected static class RequestTask implements Runnable {
+	/**
+	 * Computes the priority of a request for a tile's elevations. Lower values are requested first. The default implementation gives the tile's size on
+	 * screen, as computed by the {@link gov.nasa.worldwind.util.TileRequestScheduler}, so that elevation requests are ordered with the requests of image
+	 * layers. The low resolution tiles used as fallbacks are larger, and so arrive before the high resolution tiles that refine them.
+	 * 
+	 * @param key
+	 *            the key of the requested tile.
+	 * @return the request's priority.
+	 */
+	protected double computeTilePriority(TileKey key) {
+		Sector sector = this.createTile(key).getSector();
+		return WorldWind.getTileRequestScheduler().computePriority(sector);
+	}
+
+	protected static class RequestTask implements PrioritizedTask {
 		protected final BasicElevationModel elevationModel;
 		protected final TileKey tileKey;
+		protected final double priority;
 
-		protected RequestTask(TileKey tileKey, BasicElevationModel elevationModel) {
+		protected RequestTask(TileKey tileKey, BasicElevationModel elevationModel, double priority) {
 			this.elevationModel = elevationModel;
 			this.tileKey = tileKey;
+			this.priority = priority;
+		}
+
+		public double getPriority() {
+			return this.priority;
+		}
+
+		public Object getOwner() {
+			return this.elevationModel;
 		}
 
 		public final void run() {
@@ -338,10 +366,13 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
 				ElevationTile tile = this.elevationModel.createTile(this.tileKey);
 				final URL url = this.elevationModel.getDataFileStore().findFile(tile.getPath(), false);
-				if (url != null && !this.elevationModel.isFileExpired(tile, url, this.elevationModel.getDataFileStore())) {
+				if (url != null) {
+					// Expired elevations are used while they're revalidated with the network.
+					boolean expired = this.elevationModel.isFileExpired(tile, url, this.elevationModel.getDataFileStore());
 					if (this.elevationModel.loadElevations(tile, url)) {
 						this.elevationModel.levels.unmarkResourceAbsent(tile);
 						this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, tile);
+						if (expired) this.elevationModel.downloadElevations(tile);
 						return;
 					} else {
 						// Assume that something is wrong with the file and delete it.
@@ -380,11 +411,25 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 		}
 	}
 
+	/**
+	 * Indicates whether a cached tile is older than its level's expiry time, and must be revalidated with the network.
+	 * The file is kept, so that its elevations can be used until it is revalidated. A tile that the server declared
+	 * fresh beyond the current time is not revalidated again until that time.
+	 * 
+	 * @param tile
+	 *            the tile in question.
+	 * @param fileURL
+	 *            local URL to the cached tile.
+	 * @param fileStore
+	 *            the file store containing the tile.
+	 * @return true if the tile must be revalidated, otherwise false.
+	 */
 	protected boolean isFileExpired(Tile tile, java.net.URL fileURL, FileStore fileStore) {
-		if (!WWIO.isFileOutOfDate(fileURL, tile.getLevel().getExpiryTime())) return false;
+		if (!fileStore.isFileExpired(fileURL, tile.getLevel().getExpiryTime())) return false;
+
+		ResponseValidator validator = this.getLevels().getResponseValidator(tile);
+		if (validator != null && validator.isFresh(System.currentTimeMillis())) return false;
 
-		// The file has expired. Delete it.
-		fileStore.removeFile(fileURL);
 		String message = Logging.getMessage("generic.DataFileExpired", fileURL);
 		Logging.verbose(message);
 		return true;
@@ -424,10 +469,9 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 
 	protected short[] readElevations(URL url) throws IOException {
 		try {
-			ByteBuffer byteBuffer;
-			synchronized (this.fileLock) {
-				byteBuffer = WWIO.readURLContentToBuffer(url);
-			}
+			// The file is read without holding the file lock, since downloads publish an elevation file by renaming a
+			// complete file into place.
+			ByteBuffer byteBuffer = WWIO.readURLContentToBuffer(url);
 
 			// This byte order assignment assumes the WW .BIL format. It will be generalized when the new server
 			// setup is integrated.
@@ -612,12 +656,17 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 		if (postProcessor == null) postProcessor = new DownloadPostProcessor(tile, this);
 		URLRetriever retriever = new HTTPRetriever(url, postProcessor);
 		retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy elevation models
-		if (WorldWind.getRetrievalService().contains(retriever)) return;
+		// Revalidate a cached tile rather than download it again. The server sends no content if the tile hasn't changed.
+		if (postProcessor.getFileStore().findFile(tile.getPath(), false) != null) {
+			((HTTPRetriever) retriever).setRequestValidator(this.getLevels().getResponseValidator(tile));
+		}
+		// Identifies this model's retrievals, so that another model or layer requesting the same URL shares the download.
+		retriever.setValue(AVKey.RETRIEVAL_CLIENT, this);
 
 		WorldWind.getRetrievalService().runRetriever(retriever, 0d);
 	}
 
-	protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor {
+	protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor implements StreamingRetrievalPostProcessor {
 		protected final Tile tile;
 		protected final BasicElevationModel elevationModel;
 		protected final FileStore fileStore;
@@ -649,6 +698,11 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 			this.elevationModel.getLevels().markResourceAbsent(this.tile);
 		}
 
+		@Override
+		protected void markResourceMissing() {
+			this.elevationModel.getLevels().markResourceMissing(this.tile);
+		}
+
 		@Override
 		protected Object getFileLock() {
 			return this.elevationModel.fileLock;
@@ -659,11 +713,23 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 			return this.getFileStore().newFile(this.tile.getPath());
 		}
 
+		/** Streams the elevation tile into the file store, so that it is not held on the heap while it is downloaded. */
+		public File getStreamingDestination(Retriever retriever) {
+			return this.doGetOutputFile();
+		}
+
 		@Override
 		protected ByteBuffer handleSuccessfulRetrieval() {
 			ByteBuffer buffer = super.handleSuccessfulRetrieval();
 
 			if (buffer != null) {
+				this.elevationModel.getLevels().setResponseValidator(this.tile, this.getResponseValidator());
+
+				// Revalidated elevations that have changed replace the expired elevations already in memory.
+				if (this.isRevalidation() && this.elevationModel.getMemoryCache().contains(this.tile.getTileKey())) {
+					this.reloadElevations();
+				}
+
 				// Fire a property change to denote that the model's backing data has changed.
 				this.elevationModel.firePropertyChange(AVKey.ELEVATION_MODEL, null, this);
 			}
@@ -671,9 +737,33 @@ public class BasicElevationModel extends AbstractElevationModel implements BulkR
 			return buffer;
 		}
 
+		@Override
+		protected ByteBuffer handleNotModified() {
+			// The expired elevations are still current, and remain in use. The file store refreshes them, since it may
+			// hold the tile in a pack rather than in a file of its own.
+			if (!this.getFileStore().refreshFile(this.tile.getPath()))
+				Logging.warning(Logging.getMessage("generic.CannotRefreshDataFile", this.tile.getPath()));
+			this.elevationModel.getLevels().setResponseValidator(this.tile, this.getResponseValidator());
+
+			return null;
+		}
+
+		protected void reloadElevations() {
+			URL url = this.getFileStore().findFile(this.tile.getPath(), false);
+			if (url == null) return;
+
+			try {
+				this.elevationModel.loadElevations(this.elevationModel.createTile(this.tile.getTileKey()), url);
+			} catch (IOException e) {
+				String msg = Logging.getMessage("ElevationModel.ExceptionRequestingElevations", this.tile.getTileKey().toString());
+				Logging.verbose(msg, e);
+			}
+		}
+
 		@Override
 		protected ByteBuffer handleTextContent() throws IOException {
-			this.markResourceAbsent();
+			// The server answered with something other than a tile, and will likely do so again.
+			this.markResourceMissing();
 
 			return super.handleTextContent();
 		}
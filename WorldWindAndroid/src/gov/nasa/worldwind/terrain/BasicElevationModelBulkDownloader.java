@@ -89,6 +89,9 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
     {
         try
         {
+            // Resume from the checkpoint of an earlier retrieval of the same sector and levels, if there is one
+            this.openCheckpoint(this.elevationModel.getLevels(), this.level);
+
             // Init progress with missing tiles count estimate
             this.progress.setTotalCount(this.estimateMissingTilesCount(20));
             this.progress.setTotalSize(this.progress.getTotalCount() * estimateAverageTileSize());
@@ -115,20 +118,25 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
                         submitMissingTilesRequests();
                         if (this.missingTiles.size() > 0)
                             Thread.sleep(RETRIEVAL_SERVICE_POLL_DELAY);
+
+                        this.writeCheckpointIfDue();
                     }
                 }
             }
+            this.deleteCheckpoint();
             // Set progress to 100%
             this.progress.setTotalCount(this.progress.getCurrentCount());
             this.progress.setTotalSize(this.progress.getCurrentSize());
         }
         catch (InterruptedException e)
         {
+            this.writeCheckpoint();
             String message = Logging.getMessage("generic.BulkRetrievalInterrupted", elevationModel.getName());
             Logging.warning(message, e);
         }
         catch (Exception e)
         {
+            this.writeCheckpoint();
             String message = Logging.getMessage("generic.ExceptionDuringBulkRetrieval", elevationModel.getName());
             Logging.error(message);
             throw new RuntimeException(message);
@@ -152,7 +160,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
             }
 
             URL url = this.fileStore.findFile(tile.getPath(), false);
-            if (url != null)
+            if (url != null && !this.elevationModel.isFileExpired(tile, url, this.fileStore))
             {
                 // tile has been retrieved and is local now, count it as retrieved.
                 removeRetrievedTile(tile);
@@ -196,6 +204,7 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
     protected synchronized void removeRetrievedTile(Tile tile)
     {
         this.missingTiles.remove(tile);
+        this.checkpointTile(tile);
         // Update progress
         this.progress.setCurrentCount(this.progress.getCurrentCount() + 1);
         this.progress.setCurrentSize(this.progress.getCurrentSize() + estimateAverageTileSize());
@@ -482,11 +491,12 @@ public class BasicElevationModelBulkDownloader extends BulkRetrievalThread
         {
             for (Tile tile : row)
             {
-                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
-
-                if (tile == null)
+                // A tile retrieved before the retrieval was resumed needs no further examination.
+                if (tile == null || this.isTileCheckpointed(tile))
                     continue;
 
+                Thread.sleep(1); // generates InterruptedException if thread has been interrupted
+
                 if (isTileLocalOrAbsent(tile))
                     continue;  // tile is local or absent
 
@@ -5,14 +5,15 @@ All Rights Reserved.
 package gov.nasa.worldwind.terrain;
 
 import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.Disposable;
 import gov.nasa.worldwind.WWObjectImpl;
 import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.cache.BasicMemoryCache;
 import gov.nasa.worldwind.cache.Cacheable;
 import gov.nasa.worldwind.cache.GpuResourceCache;
 import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.cache.TinyLfuAdmissionFilter;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Extent;
 import gov.nasa.worldwind.geom.Line;
@@ -25,11 +26,13 @@ import gov.nasa.worldwind.pick.PickedObject;
 import gov.nasa.worldwind.render.Color;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.GpuProgram;
+import gov.nasa.worldwind.render.GpuUploadManager;
 import gov.nasa.worldwind.util.BufferUtil;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.LevelSet;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
+import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWXML;
 import java.beans.PropertyChangeEvent;
 import java.nio.ByteBuffer;
@@ -40,6 +43,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 import android.graphics.Point;
@@ -52,7 +60,7 @@ import android.util.Pair;
  * @author dcollins
  * @version $Id: TiledTessellator.java 842 2012-10-09 23:46:47Z tgaskins $
  */
-public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.TileFactory {
+public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.TileFactory, Disposable {
 	protected static class TerrainTile extends Tile implements SectorGeometry {
 		protected TiledTessellator tessellator;
 		protected Extent extent;
@@ -278,11 +286,22 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		protected Vec4 referenceCenter = new Vec4();
 		protected Matrix transformMatrix = Matrix.fromIdentity();
 		protected FloatBuffer points;
-		protected final Object vboCacheKey = new Object();
+		protected final Object vboCacheKey;
 		protected boolean mustRegnerateVbos;
 		protected TerrainSharedGeometry sharedGeom;
 
 		public TerrainGeometry() {
+			this(new Object());
+		}
+
+		/**
+		 * Creates geometry whose vertices are uploaded into the VBO of existing geometry, which it replaces.
+		 * 
+		 * @param vboCacheKey
+		 *            the GPU resource cache key of the existing geometry's VBO.
+		 */
+		public TerrainGeometry(Object vboCacheKey) {
+			this.vboCacheKey = vboCacheKey;
 		}
 
 		public long getSizeInBytes() {
@@ -325,7 +344,35 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 	}
 
+	/** A request to build a tile's geometry on the tessellator's build thread. */
+	protected static class GeometryBuild implements Comparable<GeometryBuild> {
+		protected final TerrainTile tile;
+		protected final Globe globe;
+		protected final double verticalExaggeration;
+		protected final double priority;
+		protected volatile long requestTime;
+		protected volatile boolean started;
+		protected volatile boolean expired;
+		protected TerrainGeometry geometry;
+
+		public GeometryBuild(TerrainTile tile, Globe globe, double verticalExaggeration, double priority) {
+			this.tile = tile;
+			this.globe = globe;
+			this.verticalExaggeration = verticalExaggeration;
+			this.priority = priority;
+			this.requestTime = System.currentTimeMillis();
+		}
+
+		public int compareTo(GeometryBuild that) {
+			return this.priority < that.priority ? -1 : (this.priority > that.priority ? 1 : 0);
+		}
+	}
+
 	protected static final double DEFAULT_DETAIL_HINT_ORIGIN = 1.3;
+	/** The most tiles whose geometry waits to be built. Tiles requested while this many wait are requested again in a later frame. */
+	protected static final int MAX_PENDING_BUILDS = 64;
+	/** The time in milliseconds after which a build that has not been requested again is discarded, since its tile is no longer drawn. */
+	protected static final long BUILD_EXPIRY_TIME = 1000;
 	protected static Map<Object, TerrainSharedGeometry> sharedGeometry = new HashMap<Object, TerrainSharedGeometry>();
 	protected static Map<Object, TerrainPickGeometry> pickGeometry = new HashMap<Object, TerrainPickGeometry>();
 	protected static final String PICK_VERTEX_SHADER_PATH = "shaders/TiledTessellatorPick.vert";
@@ -348,6 +395,13 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 	protected Vec4[] tilePoints;
 	protected float[] tileCoords;
 	protected float[] pointBuffer = new float[12];
+	// Guards the arrays above that hold a tile's elevations and points while its vertices are built.
+	protected final Object buildLock = new Object();
+	// Builds requested and not yet published, by tile key.
+	protected final Map<TileKey, GeometryBuild> pendingBuilds = new ConcurrentHashMap<TileKey, GeometryBuild>();
+	protected final BlockingQueue<GeometryBuild> buildQueue = new PriorityBlockingQueue<GeometryBuild>();
+	protected final Queue<GeometryBuild> completedBuilds = new ConcurrentLinkedQueue<GeometryBuild>();
+	protected Thread buildThread; // guarded by this
 	// Properties used for picking.
 	protected final Object pickProgramKey = new Object();
 	protected boolean pickProgramCreationFailed;
@@ -364,6 +418,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 
 		this.initWithParams(params);
+		WorldWind.addPropertyChangeListener(WorldWind.SHUTDOWN_EVENT, this);
 	}
 
 	public TiledTessellator(Element element) {
@@ -374,6 +429,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 
 		this.initWithConfigDoc(element);
+		WorldWind.addPropertyChangeListener(WorldWind.SHUTDOWN_EVENT, this);
 	}
 
 	protected void initWithParams(AVList params) {
@@ -392,6 +448,26 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		this.levels = new LevelSet(LevelSet.paramsFromConfigDoc(element));
 	}
 
+	/**
+	 * Stops the thread that builds terrain geometry and discards the builds waiting for it. The tessellator is disposed
+	 * of when World Wind shuts down, and by {@link gov.nasa.worldwind.BasicModel#dispose()}. A tessellator used after
+	 * it is disposed of starts a new build thread.
+	 */
+	public void dispose() {
+		WorldWind.removePropertyChangeListener(WorldWind.SHUTDOWN_EVENT, this);
+
+		synchronized (this) {
+			if (this.buildThread != null) {
+				this.buildThread.interrupt();
+				this.buildThread = null;
+			}
+		}
+
+		this.buildQueue.clear();
+		this.pendingBuilds.clear();
+		this.completedBuilds.clear();
+	}
+
 	public double getDetailHint() {
 		return this.detailHint;
 	}
@@ -404,6 +480,12 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 	public void propertyChange(PropertyChangeEvent event) {
 		super.propertyChange(event);
 
+		// noinspection StringEquality
+		if (event != null && event.getPropertyName() == WorldWind.SHUTDOWN_EVENT) {
+			this.dispose();
+			return;
+		}
+
 		// Listen to the Globe's elevation model for changes in elevation model sectors. We mark these sectors as
 		// expired and regenerate geometry for tiles intersecting these sectors.
 		// noinspection StringEquality
@@ -444,6 +526,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 
 		this.assembleExpiredSectors();
+		this.publishBuiltGeometry(dc);
 		this.assembleTiles(dc);
 		this.currentExpiredSectors.clear();
 
@@ -520,22 +603,53 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		MemoryCache cache = this.getTerrainTileCache();
 
 		Tile[] subTiles = tile.subdivide(this.levels.getLevel(tile.getLevelNumber() + 1), cache, this);
+		boolean childrenReady = true;
 		for (Tile child : subTiles) {
 			// Put all sub-tiles in the terrain tile cache to avoid repeatedly allocating them each frame. Top level
 			// tiles are not cached because they are held in the topLevelTiles list. Sub tiles are placed in the cache
 			// here, and updated when their terrain geometry changes.
 			if (!cache.contains(child.getTileKey())) cache.put(child.getTileKey(), child);
 
-			// Add descendant tiles that intersect the LevelSet's sector and intersect the viewing frustum. If half or
-			// more of the tile (in either latitude or longitude) extends beyond the LevelSet's sector, then two or
-			// three of its children will be entirely outside the LevelSet's sector.
-			if (this.levels.getSector().intersects(child.getSector()) && this.intersectsFrustum(dc, (TerrainTile) child)) {
-				this.addTileOrDescendants(dc, (TerrainTile) child);
+			// Request geometry for the visible children that have none. It is built on the build thread, so that the
+			// frame is not held up by building the geometry of every tile a pan or zoom reveals.
+			this.updateTileExtent(dc, (TerrainTile) child);
+			if (this.isChildVisible(dc, (TerrainTile) child) && !this.hasGeometry((TerrainTile) child)) {
+				this.requestGeometry(dc, (TerrainTile) child);
+				childrenReady = false;
+			}
+		}
+
+		// Draw this tile in place of its children until every visible child has geometry, so that the children
+		// replace it all at once instead of leaving holes.
+		if (!childrenReady && this.hasGeometry(tile)) {
+			this.addTile(dc, tile);
+		} else {
+			for (Tile child : subTiles) {
+				if (this.isChildVisible(dc, (TerrainTile) child)) this.addTileOrDescendants(dc, (TerrainTile) child);
 			}
 		}
 		tile.clearChildList();
 	}
 
+	/**
+	 * Indicates whether a child tile is drawn. Descendant tiles are drawn if they intersect the LevelSet's sector and
+	 * the viewing frustum. If half or more of the tile (in either latitude or longitude) extends beyond the LevelSet's
+	 * sector, then two or three of its children will be entirely outside the LevelSet's sector.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 * @param tile
+	 *            the child tile.
+	 * @return true if the child tile is drawn, otherwise false.
+	 */
+	protected boolean isChildVisible(DrawContext dc, TerrainTile tile) {
+		return this.levels.getSector().intersects(tile.getSector()) && this.intersectsFrustum(dc, tile);
+	}
+
+	protected boolean hasGeometry(TerrainTile tile) {
+		return tile.getGeometry(this.getTerrainGeometryCache()) != null;
+	}
+
 	protected void addTile(DrawContext dc, TerrainTile tile) {
 		if (this.mustRegenerateGeometry(dc, tile)) this.regenerateGeometry(dc, tile);
 
@@ -622,15 +736,160 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 	protected void regenerateGeometry(DrawContext dc, TerrainTile tile) {
 		MemoryCache cache = this.getTerrainGeometryCache();
 		TerrainGeometry geom = tile.getGeometry(cache);
-		if (geom == null) geom = new TerrainGeometry();
 
-		this.buildTileVertices(dc, tile, geom);
+		// An expired tile keeps drawing its previous geometry while its new geometry is built on the build thread.
+		if (geom != null) {
+			this.requestGeometry(dc, tile);
+			return;
+		}
+
+		// A tile without geometry is drawn only if no ancestor can be drawn in its place, such as a top level tile or
+		// a tile whose geometry has been evicted from the cache. Its geometry is built now.
+		geom = new TerrainGeometry();
+		synchronized (this.buildLock) {
+			this.buildTileVertices(dc, tile, geom);
+		}
 		this.buildSharedGeometry(tile, geom);
 
-		// Update the geometry's cached size.
 		tile.setGeometry(cache, geom);
 	}
 
+	/**
+	 * Requests that a tile's geometry be built on the build thread. A tile already waiting to be built has its request
+	 * renewed. The new geometry replaces the tile's geometry at the start of a later frame.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 * @param tile
+	 *            the tile whose geometry to build.
+	 */
+	protected void requestGeometry(DrawContext dc, TerrainTile tile) {
+		GeometryBuild build = this.pendingBuilds.get(tile.getTileKey());
+		if (build != null) {
+			// A tile that expires after its build has started is built again once the build is published.
+			build.requestTime = System.currentTimeMillis();
+			if (build.started && this.isExpired(dc, tile)) build.expired = true;
+			return;
+		}
+
+		this.enqueueBuild(dc, tile);
+	}
+
+	protected void enqueueBuild(DrawContext dc, TerrainTile tile) {
+		if (this.pendingBuilds.size() >= MAX_PENDING_BUILDS) return; // The tile is requested again in a later frame.
+
+		GeometryBuild build = new GeometryBuild(tile, dc.getGlobe(), dc.getVerticalExaggeration(), this.computeBuildPriority(dc, tile));
+		this.pendingBuilds.put(tile.getTileKey(), build);
+		this.buildQueue.add(build);
+
+		synchronized (this) {
+			if (this.buildThread == null) this.buildThread = this.createBuildThread();
+		}
+	}
+
+	/**
+	 * Computes the order in which a tile's geometry is built: the ratio of the distance from the eye point to the
+	 * tile's extent and the extent's radius. Lower values are built first, so that nearer and larger tiles are built
+	 * before those further away.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 * @param tile
+	 *            the tile whose geometry to build.
+	 * @return the tile's build priority.
+	 */
+	protected double computeBuildPriority(DrawContext dc, TerrainTile tile) {
+		Extent extent = tile.getExtent();
+		if (extent == null || extent.getRadius() <= 0) return Double.MAX_VALUE;
+
+		return dc.getView().getEyePoint().distanceTo3(extent.getCenter()) / extent.getRadius();
+	}
+
+	protected Thread createBuildThread() {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				runBuilds();
+			}
+		}, Logging.getMessage("Tessellator.BuildThreadName"));
+		thread.setDaemon(true); // Daemon threads don't prevent the JVM from shutting down.
+		thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+		thread.start();
+
+		return thread;
+	}
+
+	/** Builds requested geometry, most urgent first, until the build thread is interrupted. Runs on the build thread. */
+	protected void runBuilds() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				GeometryBuild build = this.buildQueue.take();
+
+				// Discard builds for tiles that are no longer drawn.
+				if (System.currentTimeMillis() - build.requestTime > BUILD_EXPIRY_TIME) {
+					this.pendingBuilds.remove(build.tile.getTileKey());
+					continue;
+				}
+
+				try {
+					build.started = true;
+					build.geometry = this.buildGeometry(build);
+				} catch (Exception e) {
+					this.pendingBuilds.remove(build.tile.getTileKey());
+					Logging.error(Logging.getMessage("Tessellator.ExceptionBuildingGeometry", build.tile), e);
+					continue;
+				}
+
+				// Request a frame, in which the new geometry is published.
+				this.completedBuilds.add(build);
+				build.globe.firePropertyChange(AVKey.REPAINT, null, build.globe);
+			}
+		} catch (InterruptedException e) {
+			Logging.verbose(Logging.getMessage("Tessellator.BuildThreadInterrupted"));
+		}
+	}
+
+	/**
+	 * Builds a tile's geometry. Runs on the build thread.
+	 * 
+	 * @param build
+	 *            the build request.
+	 * @return the tile's new geometry.
+	 */
+	protected TerrainGeometry buildGeometry(GeometryBuild build) {
+		// Build new geometry rather than rebuilding the tile's current geometry, which may be drawn while this runs.
+		// The new geometry takes over the current geometry's VBO, which is reloaded the first time it is drawn.
+		TerrainGeometry current = build.tile.getGeometry(this.getTerrainGeometryCache());
+		TerrainGeometry geom = current != null ? new TerrainGeometry(current.vboCacheKey) : new TerrainGeometry();
+
+		synchronized (this.buildLock) {
+			this.buildTileVertices(build.globe, build.verticalExaggeration, build.tile, geom);
+		}
+		this.buildSharedGeometry(build.tile, geom);
+
+		return geom;
+	}
+
+	/**
+	 * Replaces the geometry of the tiles whose builds have completed since the last frame. Called on the GL thread at the
+	 * start of each frame, so that geometry does not change while it is drawn. Only the VBOs of the new geometry are
+	 * loaded on the GL thread, the first time the geometry is drawn.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 */
+	protected void publishBuiltGeometry(DrawContext dc) {
+		MemoryCache cache = this.getTerrainGeometryCache();
+
+		GeometryBuild build;
+		while ((build = this.completedBuilds.poll()) != null) {
+			this.pendingBuilds.remove(build.tile.getTileKey());
+			build.tile.setGeometry(cache, build.geometry);
+
+			// The tile expired while its geometry was built, and may have been built from outdated elevations.
+			if (build.expired) this.enqueueBuild(dc, build.tile);
+		}
+	}
+
 	/**
 	 * Returns the memory cache used to cache terrain tiles, initializing the cache if it doesn't yet exist.
 	 * 
@@ -639,8 +898,9 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 	protected MemoryCache getTerrainTileCache() {
 		if (!WorldWind.getMemoryCacheSet().contains(TerrainTile.class.getName())) {
 			long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_TILE_CACHE_SIZE);
-			MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+			MemoryCache cache = WorldWind.getMemoryCacheSet().createMemoryCache((long) (0.8 * size), size);
 			cache.setName("Tessellator Tiles");
+			if (Configuration.getBooleanValue(AVKey.TILE_CACHE_ADMISSION_FILTER_ENABLED, false)) cache.setAdmissionFilter(new TinyLfuAdmissionFilter());
 			WorldWind.getMemoryCacheSet().put(TerrainTile.class.getName(), cache);
 		}
 
@@ -655,15 +915,22 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 	protected MemoryCache getTerrainGeometryCache() {
 		if (!WorldWind.getMemoryCacheSet().contains(TerrainGeometry.class.getName())) {
 			long size = Configuration.getLongValue(AVKey.SECTOR_GEOMETRY_CACHE_SIZE);
-			MemoryCache cache = new BasicMemoryCache((long) (0.8 * size), size);
+			MemoryCache cache = WorldWind.getMemoryCacheSet().createMemoryCache((long) (0.8 * size), size);
 			cache.setName("Tessellator Geometry");
+			if (Configuration.getBooleanValue(AVKey.TILE_CACHE_ADMISSION_FILTER_ENABLED, false)) cache.setAdmissionFilter(new TinyLfuAdmissionFilter());
 			WorldWind.getMemoryCacheSet().put(TerrainGeometry.class.getName(), cache);
 		}
 
 		return WorldWind.getMemoryCacheSet().get(TerrainGeometry.class.getName());
 	}
 
+	// MUST BE CALLED WITHIN SYNCHRONIZED (buildLock)
 	protected void buildTileVertices(DrawContext dc, TerrainTile tile, TerrainGeometry geom) {
+		this.buildTileVertices(dc.getGlobe(), dc.getVerticalExaggeration(), tile, geom);
+	}
+
+	// MUST BE CALLED WITHIN SYNCHRONIZED (buildLock)
+	protected void buildTileVertices(Globe globe, double verticalExaggeration, TerrainTile tile, TerrainGeometry geom) {
 		// The WWAndroid terrain tessellator attempts to improves upon the WWJ tessellator's vertex construction
 		// performance by exploiting the fact that each terrain tile is a regular geographic grid. The following three
 		// critical differences have improved the performance of buildTileVertices by approximately 10x (from ~8ms to
@@ -697,7 +964,6 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 
 		// Get the elevation values for the tile from the Globe. Any elevations that are unknown or outside the Globe's
 		// elevation model are assigned the value 0.0.
-		Globe globe = dc.getGlobe();
 		globe.getElevations(tile.getSector(), numLat, numLon, tile.getResolution(), this.tileElevations);
 
 		// Adjust the tile's elevations and min elevation by the DrawContext's vertical exaggeration. We skip this step
@@ -709,7 +975,6 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		// skirt elevation only when the Globe's min elevation was less than zero, or the verticalExaggeration was less
 		// than zero. That bug has been fixed in the WWAndroid project, and we can rely on Globe to return a min
 		// elevation of 0 if the elevation model does not span the entire globe.
-		double verticalExaggeration = dc.getVerticalExaggeration();
 		double minElevation = globe.getMinElevation();
 		if (verticalExaggeration != 1.0) {
 			for (int i = 0; i < numLat * numLon; i++) {
@@ -721,7 +986,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 
 		// Compute a local coordinate origin for the tile's world Cartesian points. We use this origin to keep each
 		// world coordinate small in order to achieve the resolution we need on the Gpu.
-		tile.getSector().computeCentroidPoint(globe, dc.getVerticalExaggeration(), geom.referenceCenter);
+		tile.getSector().computeCentroidPoint(globe, verticalExaggeration, geom.referenceCenter);
 		geom.transformMatrix.setTranslation(geom.referenceCenter);
 
 		// Re-use the tile's existing vertex buffer whenever possible. Create a new buffer if one has not been set or if
@@ -745,7 +1010,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		// elevations. buildTileRowVertices handles adding the redundant columns for the tile's skirt.
 		rowSector.setDegrees(minLat, minLat, minLon, maxLon);
 		Arrays.fill(this.tileRowElevations, minElevation);
-		this.buildTileRowVertices(dc, rowSector, numLon, this.tileRowElevations, minElevation, geom);
+		this.buildTileRowVertices(globe, rowSector, numLon, this.tileRowElevations, minElevation, geom);
 
 		double lat = minLat;
 		int elevOffset = 0;
@@ -759,7 +1024,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 			// Process each tile row in bulk.
 			rowSector.setDegrees(lat, lat, minLon, maxLon);
 			System.arraycopy(this.tileElevations, elevOffset, this.tileRowElevations, 0, numLon);
-			this.buildTileRowVertices(dc, rowSector, numLon, this.tileRowElevations, minElevation, geom);
+			this.buildTileRowVertices(globe, rowSector, numLon, this.tileRowElevations, minElevation, geom);
 
 			elevOffset += numLon;
 		}
@@ -769,7 +1034,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		// elevations. buildTileRowVertices handles adding the redundant columns for the tile's skirt.
 		rowSector.setDegrees(maxLat, maxLat, minLon, maxLon);
 		Arrays.fill(this.tileRowElevations, minElevation);
-		this.buildTileRowVertices(dc, rowSector, numLon, this.tileRowElevations, minElevation, geom);
+		this.buildTileRowVertices(globe, rowSector, numLon, this.tileRowElevations, minElevation, geom);
 
 		// Set the limit to the current position then set the position to zero. We flip the buffer because its capacity
 		// may be greater than the space needed, and the GL commands that ready this buffer rely on the limit to
@@ -778,7 +1043,8 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		geom.mustRegnerateVbos = true;
 	}
 
-	protected void buildTileRowVertices(DrawContext dc, Sector rowSector, int width, double[] elevations, double minElevation, TerrainGeometry geom) {
+	// MUST BE CALLED WITHIN SYNCHRONIZED (buildLock)
+	protected void buildTileRowVertices(Globe globe, Sector rowSector, int width, double[] elevations, double minElevation, TerrainGeometry geom) {
 		// Allocate an array of points that hold the Cartesian coordinates for each XYZ point in this row. The array
 		// is a property of this tessellator to avoid constantly reallocating it each time a tile is updated.
 		if (this.tilePoints == null || this.tilePoints.length < width) {
@@ -794,7 +1060,6 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		int numCoords = 3 * (width + 2);
 		if (this.tileCoords == null || this.tileCoords.length < numCoords) this.tileCoords = new float[numCoords];
 
-		Globe globe = dc.getGlobe();
 		int index = 0;
 
 		// Add a redundant point with the row's minimum latitude. This point is used to display the tile's skirt, and
@@ -834,17 +1099,20 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		int tileHeight = tile.getHeight();
 		Object key = Pair.create(tileWidth, tileHeight);
 
-		TerrainSharedGeometry sharedGeom = sharedGeometry.get(key);
-		if (sharedGeom == null) {
-			sharedGeom = new TerrainSharedGeometry();
-			sharedGeom.texCoords = this.buildTexCoords(tileWidth, tileHeight);
-			sharedGeom.indices = this.buildIndices(tileWidth, tileHeight);
-			sharedGeom.wireframeIndices = this.buildWireframeIndices(tileWidth, tileHeight);
-			sharedGeom.outlineIndices = this.buildOutlineIndices(tileWidth, tileHeight);
-			sharedGeometry.put(key, sharedGeom);
-		}
+		// Shared geometry is built by both the GL thread and the build thread.
+		synchronized (sharedGeometry) {
+			TerrainSharedGeometry sharedGeom = sharedGeometry.get(key);
+			if (sharedGeom == null) {
+				sharedGeom = new TerrainSharedGeometry();
+				sharedGeom.texCoords = this.buildTexCoords(tileWidth, tileHeight);
+				sharedGeom.indices = this.buildIndices(tileWidth, tileHeight);
+				sharedGeom.wireframeIndices = this.buildWireframeIndices(tileWidth, tileHeight);
+				sharedGeom.outlineIndices = this.buildOutlineIndices(tileWidth, tileHeight);
+				sharedGeometry.put(key, sharedGeom);
+			}
 
-		geom.sharedGeom = sharedGeom;
+			geom.sharedGeom = sharedGeom;
+		}
 	}
 
 	protected FloatBuffer buildTexCoords(int tileWidth, int tileHeight) {
@@ -1181,6 +1449,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 
 		try {
+			long startTime = System.nanoTime();
 			int sizeInBytes = 4 * geom.points.remaining();
 			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, vboIds[0]);
 			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, sizeInBytes, geom.points, GLES20.GL_STREAM_DRAW);
@@ -1191,6 +1460,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 			if (!cache.contains(geom.vboCacheKey)) cache.put(geom.vboCacheKey, vboIds, GpuResourceCache.VBO_BUFFERS, sizeInBytes);
 
 			geom.mustRegnerateVbos = false;
+			this.recordGpuUpload(dc, sizeInBytes, startTime);
 		} finally {
 			// Restore the array buffer binding to 0.
 			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
@@ -1206,6 +1476,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		GLES20.glGenBuffers(4, vboIds, 0);
 
 		try {
+			long startTime = System.nanoTime();
 			long totalSizeInBytes = 0;
 			int sizeInBytes = 4 * geom.texCoords.remaining();
 			totalSizeInBytes += sizeInBytes;
@@ -1228,6 +1499,7 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 			GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, sizeInBytes, geom.outlineIndices, GLES20.GL_STREAM_DRAW);
 
 			cache.put(geom.vboCacheKey, vboIds, GpuResourceCache.VBO_BUFFERS, totalSizeInBytes);
+			this.recordGpuUpload(dc, totalSizeInBytes, startTime);
 		} finally {
 			// Restore the array and element array buffer bindings to 0.
 			GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
@@ -1235,6 +1507,23 @@ public class TiledTessellator extends WWObjectImpl implements Tessellator, Tile.
 		}
 	}
 
+	/**
+	 * Counts a vertex buffer upload against the frame's GPU upload budget. Terrain vertex buffers are always uploaded
+	 * when they are needed, since the terrain cannot be drawn without them, but their cost reduces the number of
+	 * texture uploads made in the same frame.
+	 * 
+	 * @param dc
+	 *            the current draw context.
+	 * @param sizeInBytes
+	 *            the number of bytes uploaded.
+	 * @param startTime
+	 *            the time the upload started, from {@link System#nanoTime()}.
+	 */
+	protected void recordGpuUpload(DrawContext dc, long sizeInBytes, long startTime) {
+		GpuUploadManager manager = dc.getGpuUploadManager();
+		if (manager != null) manager.recordUpload(sizeInBytes, System.nanoTime() - startTime);
+	}
+
 	protected void pick(DrawContext dc, SectorGeometryList sgList, Point pickPoint) {
 		// Load the program used to draw the tiles in unique colors.
 		GpuProgram program = this.getGpuPickProgram(dc.getGpuResourceCache());
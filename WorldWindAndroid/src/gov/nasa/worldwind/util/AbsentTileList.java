@@ -0,0 +1,652 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Maintains the tiles of a single level that are missing from the level's data source. Tiles are identified by their
+ * tile number within the level. A tile follows the same rules as a resource in an {@link AbsentResourceList}: once
+ * marked, it is considered absent until a check interval elapses, and once marked more than a maximum number of times
+ * it is considered absent until a try-again interval elapses.
+ * <p/>
+ * A tile that the data source has confirmed it does not have, for example by answering a request for it with HTTP 404
+ * or with a response that is not an image, is marked by {@link #markResourceMissing(long)} instead. Unlike {@link
+ * AbsentResourceList}, a missing tile that is found to be absent again after its try-again interval expires is
+ * considered absent for twice as long as before, up to a maximum try-again interval. A tile that is truly missing is
+ * therefore requested less and less often, while a tile that was marked absent only because of a transient failure,
+ * such as a timeout or an unreachable host, is always retried after the original interval.
+ * <p/>
+ * The tiles are held in an open-addressing hash table of primitive arrays keyed by tile number, so testing whether a
+ * tile is absent neither allocates memory nor converts the tile number to a string. The list holds at most a fixed
+ * number of tiles. When it is full, tiles whose absence has expired are removed first, then the tiles marked least
+ * recently.
+ * <p/>
+ * The missing tiles can be written to and read from a stream by {@link #write(java.io.DataOutput)} and {@link
+ * #read(java.io.DataInput)}, so that they are remembered from one session to the next. Tiles marked absent only by
+ * transient failures are not written, so a failure while offline does not keep a tile absent after a restart. Mark
+ * times are written as absolute times, so the intervals continue to elapse while the application is not running.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class AbsentTileList
+{
+    /** The default number of times a tile is marked as absent before being marked as permanently absent. */
+    protected static final int DEFAULT_MAX_TRIES = 2;
+    /** The default interval to wait, in milliseconds, before indicating the tile is not absent. */
+    protected static final int DEFAULT_MIN_CHECK_INTERVAL = 10000;
+    /** The default interval, in milliseconds, after which a permanently absent tile is first marked as not absent. */
+    protected static final int DEFAULT_TRY_AGAIN_INTERVAL = 60000;
+    /** The default longest interval, in milliseconds, a tile is considered permanently absent. One day. */
+    protected static final int DEFAULT_MAX_TRY_AGAIN_INTERVAL = 86400000;
+    /** The default maximum number of tiles the list holds. */
+    protected static final int DEFAULT_MAX_ENTRIES = 100000;
+    /** The largest number of times a tile's try-again interval is doubled. */
+    protected static final int MAX_ROUNDS = 30;
+    /** The initial number of slots in the hash table. Must be a power of two. */
+    protected static final int INITIAL_SLOTS = 16;
+    /** The key of an empty slot. Tile numbers are never negative. */
+    protected static final long EMPTY = -1;
+
+    protected int maxTries;
+    protected int minCheckInterval;
+    protected int tryAgainInterval;
+    protected int maxTryAgainInterval;
+    protected int maxEntries;
+    // Parallel arrays indexed by slot. A slot is empty when its key is EMPTY.
+    protected long[] keys;
+    // The time each tile was last marked absent, in milliseconds since the epoch.
+    protected long[] marks;
+    // The number of times each tile has been marked since its absence last expired.
+    protected byte[] tries;
+    // The number of times each tile's absence has expired after it was marked permanently absent.
+    protected byte[] rounds;
+    // Whether the data source has confirmed that each tile is missing.
+    protected boolean[] missing;
+    protected int size;
+    protected boolean dirty;
+
+    /**
+     * Constructs an absent-tile list with default values for max tries (2), check interval (10 seconds), try-again
+     * interval (60 seconds), maximum try-again interval (one day) and maximum number of tiles (100000).
+     */
+    public AbsentTileList()
+    {
+        this(DEFAULT_MAX_TRIES, DEFAULT_MIN_CHECK_INTERVAL);
+    }
+
+    /**
+     * Constructs an absent-tile list with a specified number of maximum tries and check interval, and default values
+     * for the try-again interval (60 seconds), maximum try-again interval (one day) and maximum number of tiles
+     * (100000).
+     *
+     * @param maxTries         the number of max tries. Must be greater than 0.
+     * @param minCheckInterval the check interval. Must be greater than or equal to 0.
+     *
+     * @throws IllegalArgumentException if max-tries is less than 1 or the minimum check interval is less than 0.
+     */
+    public AbsentTileList(int maxTries, int minCheckInterval)
+    {
+        this(maxTries, minCheckInterval, DEFAULT_TRY_AGAIN_INTERVAL, DEFAULT_MAX_TRY_AGAIN_INTERVAL,
+            DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs an absent-tile list.
+     *
+     * @param maxTries            the number of max tries. Must be greater than 0.
+     * @param minCheckInterval    the check interval. Must be greater than or equal to 0.
+     * @param tryAgainInterval    the interval after which a permanently absent tile is first considered not absent.
+     *                            Must be greater than or equal to 0.
+     * @param maxTryAgainInterval the longest interval a tile is considered permanently absent. Must be greater than or
+     *                            equal to 0.
+     * @param maxEntries          the maximum number of tiles the list holds. Must be greater than 0.
+     *
+     * @throws IllegalArgumentException if max-tries or the maximum number of tiles is less than 1, or if any interval
+     *                                  is less than 0.
+     */
+    public AbsentTileList(int maxTries, int minCheckInterval, int tryAgainInterval, int maxTryAgainInterval,
+        int maxEntries)
+    {
+        if (maxEntries < 1)
+        {
+            String msg = Logging.getMessage("generic.SizeIsInvalid", maxEntries);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.setMaxTries(maxTries);
+        this.setMinCheckInterval(minCheckInterval);
+        this.setTryAgainInterval(tryAgainInterval);
+        this.setMaxTryAgainInterval(maxTryAgainInterval);
+
+        this.maxEntries = maxEntries;
+        this.allocate(INITIAL_SLOTS);
+    }
+
+    /**
+     * Indicates the maximum number of times a tile is marked as absent before being marked as permanently absent.
+     *
+     * @return the maximum number of absent markings.
+     */
+    public synchronized int getMaxTries()
+    {
+        return this.maxTries;
+    }
+
+    /**
+     * Specifies the maximum number of times a tile is marked as absent before being marked as permanently absent.
+     *
+     * @param maxTries the number of max tries. Must be greater than 0.
+     *
+     * @throws IllegalArgumentException if max-tries is less than 1.
+     */
+    public synchronized void setMaxTries(int maxTries)
+    {
+        if (maxTries < 1)
+        {
+            String msg = Logging.getMessage("generic.MaxTriesIsInvalid", maxTries);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxTries = maxTries;
+    }
+
+    /**
+     * Indicates the time interval that must elapse before the tile is considered not absent if its max-tries has not
+     * been reached.
+     *
+     * @return the interval, in milliseconds.
+     */
+    public synchronized int getMinCheckInterval()
+    {
+        return this.minCheckInterval;
+    }
+
+    /**
+     * Specifies the time interval that must elapse before the tile is considered not absent if its max-tries has not
+     * been reached.
+     *
+     * @param checkInterval the check interval, in milliseconds. Must be greater than or equal to 0.
+     *
+     * @throws IllegalArgumentException if the check interval is less than 0.
+     */
+    public synchronized void setMinCheckInterval(int checkInterval)
+    {
+        if (checkInterval < 0)
+        {
+            String msg = Logging.getMessage("generic.CheckIntervalIsInvalid", checkInterval);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.minCheckInterval = checkInterval;
+    }
+
+    /**
+     * Indicates the time interval that must elapse before a tile marked as permanently absent for the first time is
+     * again considered not absent.
+     *
+     * @return the interval, in milliseconds.
+     */
+    public synchronized int getTryAgainInterval()
+    {
+        return this.tryAgainInterval;
+    }
+
+    /**
+     * Specifies the time interval that must elapse before a tile marked as permanently absent for the first time is
+     * again considered not absent.
+     *
+     * @param retryInterval the try-again interval, in milliseconds. Must be greater than or equal to 0.
+     *
+     * @throws IllegalArgumentException if the try-again interval is less than 0.
+     */
+    public synchronized void setTryAgainInterval(int retryInterval)
+    {
+        if (retryInterval < 0)
+        {
+            String msg = Logging.getMessage("generic.RetryIntervalIsInvalid", retryInterval);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.tryAgainInterval = retryInterval;
+    }
+
+    /**
+     * Indicates the longest time interval a tile is considered permanently absent, regardless of how many times its
+     * absence has expired.
+     *
+     * @return the interval, in milliseconds.
+     */
+    public synchronized int getMaxTryAgainInterval()
+    {
+        return this.maxTryAgainInterval;
+    }
+
+    /**
+     * Specifies the longest time interval a tile is considered permanently absent, regardless of how many times its
+     * absence has expired. A tile whose absence has expired and that is not marked again within this interval is
+     * removed from the list.
+     *
+     * @param retryInterval the maximum try-again interval, in milliseconds. Must be greater than or equal to 0.
+     *
+     * @throws IllegalArgumentException if the interval is less than 0.
+     */
+    public synchronized void setMaxTryAgainInterval(int retryInterval)
+    {
+        if (retryInterval < 0)
+        {
+            String msg = Logging.getMessage("generic.RetryIntervalIsInvalid", retryInterval);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxTryAgainInterval = retryInterval;
+    }
+
+    /**
+     * Indicates whether a tile is considered absent.
+     *
+     * @param tileNumber the tile in question.
+     *
+     * @return true if the tile is considered absent, otherwise false.
+     */
+    public synchronized boolean isResourceAbsent(long tileNumber)
+    {
+        int slot = this.find(tileNumber);
+        if (slot < 0 || this.tries[slot] == 0)
+            return false;
+
+        long timeSinceLastMark = System.currentTimeMillis() - this.marks[slot];
+
+        if (timeSinceLastMark > this.tryAgainIntervalFor(this.rounds[slot]))
+        {
+            this.expire(slot);
+            return false;
+        }
+
+        return timeSinceLastMark < this.minCheckInterval || this.tries[slot] > this.maxTries;
+    }
+
+    /**
+     * Marks a tile as absent because of a failure that may be transient, such as a timeout or an unreachable host. If
+     * the tile is already marked as absent, its max-tries value is incremented. The tile's try-again interval is not
+     * lengthened, and the mark is not written by {@link #write(java.io.DataOutput)}, unless the tile has also been
+     * marked missing.
+     *
+     * @param tileNumber the tile to mark as absent. Negative tile numbers are ignored.
+     */
+    public synchronized void markResourceAbsent(long tileNumber)
+    {
+        this.mark(tileNumber, false);
+    }
+
+    /**
+     * Marks a tile as absent because the data source has confirmed that it does not have the tile. If the tile is
+     * already marked as absent, its max-tries value is incremented. Each time a missing tile's absence expires and it is
+     * found to be absent again, its try-again interval is doubled, up to the maximum try-again interval.
+     *
+     * @param tileNumber the tile to mark as missing. Negative tile numbers are ignored.
+     */
+    public synchronized void markResourceMissing(long tileNumber)
+    {
+        this.mark(tileNumber, true);
+    }
+
+    /**
+     * Marks a tile as not absent, effectively removing it from this absent-tile list.
+     *
+     * @param tileNumber the tile to mark as not absent.
+     */
+    public synchronized void unmarkResourceAbsent(long tileNumber)
+    {
+        int slot = this.find(tileNumber);
+        if (slot < 0)
+            return;
+
+        if (this.missing[slot])
+            this.dirty = true;
+
+        this.remove(slot);
+    }
+
+    /**
+     * Returns the number of tiles in the list, including tiles whose absence has expired but that are remembered to
+     * lengthen their try-again interval.
+     *
+     * @return the number of tiles in the list.
+     */
+    public synchronized int getNumEntries()
+    {
+        return this.size;
+    }
+
+    /**
+     * Indicates whether the list has changed since it was last written or read.
+     *
+     * @return true if the list has unwritten changes, otherwise false.
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty;
+    }
+
+    /** Removes every tile from the list. */
+    public synchronized void clear()
+    {
+        this.allocate(INITIAL_SLOTS);
+        this.dirty = true;
+    }
+
+    /**
+     * Writes the missing tiles in the list to a stream, and marks the list as not dirty. Tiles marked absent only by
+     * transient failures, and tiles that would be removed from the list because their absence has expired, are not
+     * written.
+     *
+     * @param out the stream to write to.
+     *
+     * @throws IOException              if the stream cannot be written.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        if (out == null)
+        {
+            String msg = Logging.getMessage("nullValue.OutputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long now = System.currentTimeMillis();
+
+        int count = 0;
+        for (int i = 0; i < this.keys.length; i++)
+        {
+            if (this.keys[i] != EMPTY && this.missing[i] && !this.isForgotten(i, now))
+                count++;
+        }
+
+        out.writeInt(count);
+
+        for (int i = 0; i < this.keys.length; i++)
+        {
+            if (this.keys[i] == EMPTY || !this.missing[i] || this.isForgotten(i, now))
+                continue;
+
+            out.writeLong(this.keys[i]);
+            out.writeLong(this.marks[i]);
+            out.writeByte(this.tries[i]);
+            out.writeByte(this.rounds[i]);
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Reads tiles written by {@link #write(java.io.DataOutput)} and adds them to the list as missing tiles. Tiles
+     * already in the list keep their current state.
+     *
+     * @param in the stream to read from.
+     *
+     * @throws IOException              if the stream cannot be read.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized void read(DataInput in) throws IOException
+    {
+        if (in == null)
+        {
+            String msg = Logging.getMessage("nullValue.InputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        long now = System.currentTimeMillis();
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            long tileNumber = in.readLong();
+            long mark = in.readLong();
+            byte numTries = in.readByte();
+            byte numRounds = in.readByte();
+
+            if (tileNumber < 0 || this.find(tileNumber) >= 0)
+                continue;
+
+            int slot = this.insert(tileNumber, now);
+            this.marks[slot] = mark;
+            this.tries[slot] = numTries;
+            this.rounds[slot] = numRounds;
+            this.missing[slot] = true;
+        }
+    }
+
+    protected void mark(long tileNumber, boolean isMissing) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (tileNumber < 0)
+            return;
+
+        long now = System.currentTimeMillis();
+
+        int slot = this.find(tileNumber);
+        if (slot < 0)
+            slot = this.insert(tileNumber, now);
+        else if (this.tries[slot] != 0 && now - this.marks[slot] > this.tryAgainIntervalFor(this.rounds[slot]))
+            this.expire(slot);
+
+        if (this.tries[slot] < Byte.MAX_VALUE)
+            this.tries[slot]++;
+
+        this.marks[slot] = now;
+
+        // A tile stays missing until it is unmarked, so a transient failure while offline does not reset its interval.
+        if (isMissing)
+            this.missing[slot] = true;
+
+        // Only missing tiles are written.
+        if (this.missing[slot])
+            this.dirty = true;
+    }
+
+    protected long tryAgainIntervalFor(int numRounds) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long interval = (long) this.tryAgainInterval << numRounds;
+        return Math.min(interval, Math.max(this.tryAgainInterval, this.maxTryAgainInterval));
+    }
+
+    protected void expire(int slot) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // A missing tile that was permanently absent is remembered, so that if it is found to be absent again its
+        // try-again interval is longer. Other tiles are forgotten, unless they were permanently absent in an earlier
+        // round.
+        if (this.tries[slot] > this.maxTries && this.missing[slot])
+        {
+            if (this.rounds[slot] < MAX_ROUNDS)
+                this.rounds[slot]++;
+            this.tries[slot] = 0;
+        }
+        else if (this.rounds[slot] > 0)
+        {
+            this.tries[slot] = 0;
+        }
+        else
+        {
+            if (this.missing[slot])
+                this.dirty = true;
+
+            this.remove(slot);
+            return;
+        }
+
+        if (this.missing[slot])
+            this.dirty = true;
+    }
+
+    protected boolean isForgotten(int slot, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        return this.isForgotten(this.marks[slot], this.tries[slot], this.rounds[slot], now);
+    }
+
+    protected boolean isForgotten(long mark, int numTries, int numRounds, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long timeSinceLastMark = now - mark;
+
+        if (numTries == 0)
+            return timeSinceLastMark > this.maxTryAgainInterval;
+
+        return numTries <= this.maxTries && numRounds == 0 && timeSinceLastMark > this.tryAgainIntervalFor(numRounds);
+    }
+
+    protected int find(long tileNumber) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        int mask = this.keys.length - 1;
+
+        for (int i = slotFor(tileNumber, mask); this.keys[i] != EMPTY; i = (i + 1) & mask)
+        {
+            if (this.keys[i] == tileNumber)
+                return i;
+        }
+
+        return -1;
+    }
+
+    protected int insert(long tileNumber, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        if (this.size >= this.maxEntries)
+            this.trim(now);
+
+        // Keep the table at most half full, so that probe sequences stay short.
+        if (2 * (this.size + 1) > this.keys.length)
+            this.rehash(2 * this.keys.length, Long.MIN_VALUE, now);
+
+        int mask = this.keys.length - 1;
+        int i = slotFor(tileNumber, mask);
+        while (this.keys[i] != EMPTY)
+        {
+            i = (i + 1) & mask;
+        }
+
+        this.keys[i] = tileNumber;
+        this.marks[i] = now;
+        this.tries[i] = 0;
+        this.rounds[i] = 0;
+        this.missing[i] = false;
+        this.size++;
+
+        return i;
+    }
+
+    protected void remove(int slot) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // Shift later entries of the probe sequence back into the hole, so that lookups need no deletion markers.
+        int mask = this.keys.length - 1;
+        int hole = slot;
+
+        for (int i = (slot + 1) & mask; this.keys[i] != EMPTY; i = (i + 1) & mask)
+        {
+            int home = slotFor(this.keys[i], mask);
+            if (((i - home) & mask) >= ((i - hole) & mask))
+            {
+                this.keys[hole] = this.keys[i];
+                this.marks[hole] = this.marks[i];
+                this.tries[hole] = this.tries[i];
+                this.rounds[hole] = this.rounds[i];
+                this.missing[hole] = this.missing[i];
+                hole = i;
+            }
+        }
+
+        this.keys[hole] = EMPTY;
+        this.size--;
+    }
+
+    protected void trim(long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        // First remove the tiles that would be forgotten anyway.
+        this.rehash(this.keys.length, Long.MIN_VALUE, now);
+        if (this.size < this.maxEntries)
+            return;
+
+        // Then remove the tiles marked before the midpoint of the oldest and newest marks, which is about half of them.
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (int i = 0; i < this.keys.length; i++)
+        {
+            if (this.keys[i] == EMPTY)
+                continue;
+
+            oldest = Math.min(oldest, this.marks[i]);
+            newest = Math.max(newest, this.marks[i]);
+        }
+
+        this.rehash(this.keys.length, oldest + (newest - oldest) / 2 + 1, now);
+        this.dirty = true;
+    }
+
+    protected void rehash(int numSlots, long minMark, long now) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        long[] oldKeys = this.keys;
+        long[] oldMarks = this.marks;
+        byte[] oldTries = this.tries;
+        byte[] oldRounds = this.rounds;
+        boolean[] oldMissing = this.missing;
+
+        this.allocate(numSlots);
+        int mask = numSlots - 1;
+
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldKeys[j] == EMPTY || oldMarks[j] < minMark)
+                continue;
+
+            if (this.isForgotten(oldMarks[j], oldTries[j], oldRounds[j], now))
+                continue;
+
+            int i = slotFor(oldKeys[j], mask);
+            while (this.keys[i] != EMPTY)
+            {
+                i = (i + 1) & mask;
+            }
+
+            this.keys[i] = oldKeys[j];
+            this.marks[i] = oldMarks[j];
+            this.tries[i] = oldTries[j];
+            this.rounds[i] = oldRounds[j];
+            this.missing[i] = oldMissing[j];
+            this.size++;
+        }
+    }
+
+    protected void allocate(int numSlots) // MUST BE CALLED WITHIN SYNCHRONIZED
+    {
+        this.keys = new long[numSlots];
+        this.marks = new long[numSlots];
+        this.tries = new byte[numSlots];
+        this.rounds = new byte[numSlots];
+        this.missing = new boolean[numSlots];
+        this.size = 0;
+
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    protected static int slotFor(long tileNumber, int mask)
+    {
+        // Mix the bits of the tile number, since tile numbers of neighboring tiles differ only in their low bits.
+        long h = tileNumber;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return (int) h & mask;
+    }
+}
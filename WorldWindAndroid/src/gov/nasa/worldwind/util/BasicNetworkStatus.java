@@ -8,6 +8,7 @@ package gov.nasa.worldwind.util;
 
 import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.retrieve.RetryPolicy;
 
 import java.io.IOException;
 import java.net.*;
@@ -16,6 +17,17 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 
 /**
+ * The default {@link NetworkStatus}. Each host has a circuit breaker. The breaker is closed while the host answers,
+ * and opens when the host fails the attempt limit's number of consecutive requests. While it is open the host is
+ * reported unavailable. Once the try-again interval has passed the breaker is half open: the host is reported available
+ * to a single caller, whose request probes the host, and unavailable to every other caller until the probe completes.
+ * A successful probe closes the breaker. A failed probe opens it again for twice as long as before, up to a maximum.
+ * Each interval is varied at random by up to a fifth, so that hosts that failed together are not probed together.
+ * <p/>
+ * Failed retrievals are retried according to a {@link gov.nasa.worldwind.retrieve.RetryPolicy}, whose budget limits
+ * retries to a share of the attempts logged by this network status. A host whose breaker is not closed is never
+ * retried.
+ *
  * @author pabercrombie
  * @version $Id: BasicNetworkStatus.java 733 2012-09-02 17:15:09Z dcollins $
  */
@@ -25,32 +37,31 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
     protected static final long DEFAULT_TRY_AGAIN_INTERVAL = (long) 60e3; // seconds
     protected static final long NETWORK_STATUS_REPORT_INTERVAL = (long) 120e3;
     protected static final int DEFAULT_ATTEMPT_LIMIT = 7; // number of unavailable events to declare host unavailable
+    protected static final long DEFAULT_MAX_TRY_AGAIN_INTERVAL = (long) 960e3; // longest interval after failed probes
+    protected static final long DEFAULT_PROBE_TIMEOUT = (long) 30e3; // time after which another probe is allowed
+    protected static final double TRY_AGAIN_JITTER = 0.2; // fraction by which try-again intervals vary
     protected static final String[] DEFAULT_NETWORK_TEST_SITES = new String[]
         {"www.nasa.gov", "worldwind.arc.nasa.gov", "google.com", "microsoft.com", "yahoo.com"};
 
+    /** The state of a breaker whose host is available. */
+    protected static final int CIRCUIT_CLOSED = 0;
+    /** The state of a breaker whose host is unavailable until its try-again interval has passed. */
+    protected static final int CIRCUIT_OPEN = 1;
+    /** The state of a breaker whose host is available to a single probe. */
+    protected static final int CIRCUIT_HALF_OPEN = 2;
+
+    /** The circuit breaker of a host. Guarded by the network status. */
     protected static class HostInfo
     {
-        protected final long tryAgainInterval;
-        protected final int attemptLimit;
-        protected AtomicInteger logCount = new AtomicInteger();
-        protected AtomicLong lastLogTime = new AtomicLong();
-
-        protected HostInfo(int attemptLimit, long tryAgainInterval)
-        {
-            this.lastLogTime.set(System.currentTimeMillis());
-            this.logCount.set(1);
-            this.tryAgainInterval = tryAgainInterval;
-            this.attemptLimit = attemptLimit;
-        }
+        protected int state = CIRCUIT_CLOSED;
+        protected int failureCount; // consecutive failures while closed
+        protected long tryAgainInterval; // the interval the breaker was last opened for, before jitter
+        protected long tryAgainTime; // the time the open breaker becomes half open
+        protected long probeTime; // the time the half-open breaker allowed a probe, or 0 if it has not
 
         protected boolean isUnavailable()
         {
-            return this.logCount.get() >= this.attemptLimit;
-        }
-
-        protected boolean isTimeToTryAgain()
-        {
-            return System.currentTimeMillis() - this.lastLogTime.get() >= this.tryAgainInterval;
+            return this.state != CIRCUIT_CLOSED;
         }
     }
 
@@ -60,6 +71,10 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
     protected AtomicLong tryAgainInterval = new AtomicLong(DEFAULT_TRY_AGAIN_INTERVAL);
     protected AtomicInteger attemptLimit = new AtomicInteger(DEFAULT_ATTEMPT_LIMIT);
     protected boolean offlineMode;
+    protected volatile RetryPolicy retryPolicy;
+    protected long maxTryAgainInterval = DEFAULT_MAX_TRY_AGAIN_INTERVAL;
+    protected long probeTimeout = DEFAULT_PROBE_TIMEOUT;
+    protected Random random = new Random();
 
     // Fields for determining and remembering overall network status.
     protected ConcurrentHashMap<String, HostInfo> hostMap = new ConcurrentHashMap<String, HostInfo>();
@@ -73,10 +88,40 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
     {
         String oms = Configuration.getStringValue(AVKey.OFFLINE_MODE, "false");
         this.offlineMode = oms.startsWith("t") || oms.startsWith("T");
+        this.retryPolicy = new RetryPolicy();
 
         this.establishNetworkTestSites();
     }
 
+    /**
+     * Returns the policy that decides whether failed retrievals are retried.
+     *
+     * @return the retry policy.
+     */
+    public RetryPolicy getRetryPolicy()
+    {
+        return this.retryPolicy;
+    }
+
+    /**
+     * Specifies the policy that decides whether failed retrievals are retried.
+     *
+     * @param retryPolicy the retry policy.
+     *
+     * @throws IllegalArgumentException if the policy is null.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy)
+    {
+        if (retryPolicy == null)
+        {
+            String message = Logging.getMessage("nullValue.RetryPolicyIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        this.retryPolicy = retryPolicy;
+    }
+
     /**
      * Determines and stores the network sites to test for public network connectivity. The sites are drawn from the
      * JVM's gov.nasa.worldwind.avkey.NetworkStatusTestSites property ({@link AVKey#NETWORK_STATUS_TEST_SITES}). If that
@@ -183,26 +228,26 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
 
         String hostName = url.getHost();
         HostInfo hi = this.hostMap.get(hostName);
-        if (hi != null)
+        if (hi == null)
         {
-            if (!hi.isUnavailable())
-            {
-                hi.logCount.incrementAndGet();
-                if (hi.isUnavailable()) // host just became unavailable
-                    this.firePropertyChange(NetworkStatus.HOST_UNAVAILABLE, null, url);
-            }
-            hi.lastLogTime.set(System.currentTimeMillis());
+            hi = new HostInfo();
+            this.hostMap.put(hostName, hi);
         }
-        else
+
+        long now = System.currentTimeMillis();
+
+        if (hi.state == CIRCUIT_HALF_OPEN) // the probe failed
         {
-            hi = new HostInfo(this.attemptLimit.get(), this.tryAgainInterval.get());
-            hi.logCount.set(1);
-            if (hi.isUnavailable()) // the attempt limit may be as low as 1, so handle that case here
-                this.firePropertyChange(NetworkStatus.HOST_UNAVAILABLE, null, url);
-            this.hostMap.put(hostName, hi);
+            this.openCircuit(hi, url, Math.min(2 * hi.tryAgainInterval, this.maxTryAgainInterval), now);
+        }
+        else if (hi.state == CIRCUIT_CLOSED && ++hi.failureCount >= this.attemptLimit.get())
+        {
+            this.openCircuit(hi, url, this.tryAgainInterval.get(), now);
+            this.firePropertyChange(NetworkStatus.HOST_UNAVAILABLE, null, url); // host just became unavailable
         }
 
-        this.lastUnavailableLogTime.set(System.currentTimeMillis());
+        this.lastUnavailableLogTime.set(now);
+        this.retryPolicy.attemptCompleted();
     }
 
     public synchronized void logAvailableHost(URL url)
@@ -218,17 +263,18 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
         }
 
         String hostName = url.getHost();
-        HostInfo hi = this.hostMap.get(hostName);
-        if (hi != null)
+        HostInfo hi = this.hostMap.remove(hostName); // the breaker is closed with no failures
+        if (hi != null && hi.isUnavailable())
         {
-            this.hostMap.remove(hostName); // host is available again
-            firePropertyChange(NetworkStatus.HOST_AVAILABLE, null, url);
+            Logging.verbose(Logging.getMessage("NetworkStatus.HostCircuitClosed", hostName));
+            firePropertyChange(NetworkStatus.HOST_AVAILABLE, null, url); // host is available again
         }
 
         this.lastAvailableLogTime.set(System.currentTimeMillis());
+        this.retryPolicy.attemptCompleted();
     }
 
-    public boolean isHostUnavailable(URL url)
+    public synchronized boolean isHostUnavailable(URL url)
     {
         if (this.offlineMode)
             return true;
@@ -242,16 +288,68 @@ public class BasicNetworkStatus extends AVListImpl implements NetworkStatus
 
         String hostName = url.getHost();
         HostInfo hi = this.hostMap.get(hostName);
-        if (hi == null)
+        if (hi == null || hi.state == CIRCUIT_CLOSED)
             return false;
 
-        if (hi.isTimeToTryAgain())
+        long now = System.currentTimeMillis();
+
+        if (hi.state == CIRCUIT_OPEN)
         {
-            hi.logCount.set(0); // info removed from table in logAvailableHost
-            return false;
+            if (now < hi.tryAgainTime)
+                return true;
+
+            hi.state = CIRCUIT_HALF_OPEN;
+            hi.probeTime = 0;
         }
 
-        return hi.isUnavailable();
+        // Allow a single probe of a half-open host, and another if the probe's outcome is never logged.
+        if (hi.probeTime != 0 && now - hi.probeTime < this.probeTimeout)
+            return true;
+
+        hi.probeTime = now;
+        Logging.verbose(Logging.getMessage("NetworkStatus.HostCircuitHalfOpen", hostName));
+        return false;
+    }
+
+    public synchronized long acquireRetry(URL url, int numRetries, long minDelay)
+    {
+        if (this.offlineMode)
+            return -1;
+
+        if (url == null)
+        {
+            String message = Logging.getMessage("nullValue.URLIsNull");
+            Logging.error(message);
+            throw new IllegalArgumentException(message);
+        }
+
+        HostInfo hi = this.hostMap.get(url.getHost());
+        if (hi != null && hi.isUnavailable())
+            return -1; // the failure opened the breaker, or the host was already unavailable
+
+        return this.retryPolicy.acquireRetry(numRetries, minDelay);
+    }
+
+    /**
+     * Opens a host's circuit breaker for a specified interval, varied at random by up to {@link #TRY_AGAIN_JITTER}.
+     *
+     * @param hi       the host's breaker.
+     * @param url      a URL of the host.
+     * @param interval the interval to open the breaker for, in milliseconds.
+     * @param now      the current time in milliseconds.
+     */
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected void openCircuit(HostInfo hi, URL url, long interval, long now)
+    {
+        double jitter = 1 + TRY_AGAIN_JITTER * (2 * this.random.nextDouble() - 1);
+
+        hi.state = CIRCUIT_OPEN;
+        hi.failureCount = 0;
+        hi.tryAgainInterval = Math.max(interval, 1);
+        hi.tryAgainTime = now + (long) (jitter * interval);
+        hi.probeTime = 0;
+
+        Logging.verbose(Logging.getMessage("NetworkStatus.HostCircuitOpened", url.getHost(), hi.tryAgainTime - now));
     }
 
     public boolean isNetworkUnavailable()
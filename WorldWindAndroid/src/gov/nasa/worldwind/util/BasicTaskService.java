@@ -191,6 +191,25 @@ public class BasicTaskService extends WWObjectImpl implements TaskService, Threa
         return this.executor.getQueue().remainingCapacity() == 0;
     }
 
+    /** {@inheritDoc} */
+    public synchronized int getRemainingCapacity()
+    {
+        return this.executor.getQueue().remainingCapacity();
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void shutdown()
+    {
+        this.executor.shutdown();
+        this.executor.getQueue().clear();
+    }
+
+    /** {@inheritDoc} */
+    public synchronized void shutdownNow()
+    {
+        this.executor.shutdownNow();
+    }
+
     public synchronized void uncaughtException(Thread thread, Throwable throwable)
     {
         // Just log the uncaught exception and return without doing anything. In this case the TaskExecutor's
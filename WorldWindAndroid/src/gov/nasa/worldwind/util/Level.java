@@ -5,6 +5,7 @@
  */
 package gov.nasa.worldwind.util;
 
+import gov.nasa.worldwind.Configuration;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.avlist.AVListImpl;
@@ -38,9 +39,17 @@ public class Level extends AVListImpl implements Comparable<Level> {
 	// Absent tiles: A tile is deemed absent if a specified maximum number of attempts have been made to retrieve it.
 	// Retrieval attempts are governed by a minimum time interval between successive attempts. If an attempt is made
 	// within this interval, the tile is still deemed to be absent until the interval expires.
+	protected AbsentTileList absentTileList;
 	protected AbsentResourceList absentTiles;
 	int DEFAULT_MAX_ABSENT_TILE_ATTEMPTS = 2;
 	int DEFAULT_MIN_ABSENT_TILE_CHECK_INTERVAL = 10000; // milliseconds
+	int DEFAULT_ABSENT_TILE_TRY_AGAIN_INTERVAL = 60000; // milliseconds
+	int DEFAULT_MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL = 86400000; // milliseconds
+	int DEFAULT_MAX_ABSENT_TILES = 100000;
+
+	// Validators of cached tiles: The HTTP validators of each tile's response, used to revalidate the tile with a
+	// conditional request once it expires.
+	protected TileValidatorList validators = new TileValidatorList();
 
 	public Level(AVList params) {
 		if (params == null) {
@@ -81,7 +90,12 @@ public class Level extends AVListImpl implements Comparable<Level> {
 		Integer minAbsentTileCheckInterval = (Integer) this.params.getValue(AVKey.MIN_ABSENT_TILE_CHECK_INTERVAL);
 		if (minAbsentTileCheckInterval == null) minAbsentTileCheckInterval = DEFAULT_MIN_ABSENT_TILE_CHECK_INTERVAL;
 
-		this.absentTiles = new AbsentResourceList(maxAbsentTileAttempts, minAbsentTileCheckInterval);
+		Integer maxAbsentTileTryAgainInterval = (Integer) this.params.getValue(AVKey.MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL);
+		if (maxAbsentTileTryAgainInterval == null) maxAbsentTileTryAgainInterval = Configuration.getIntegerValue(AVKey.MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL, DEFAULT_MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL);
+
+		this.absentTileList = new AbsentTileList(maxAbsentTileAttempts, minAbsentTileCheckInterval, DEFAULT_ABSENT_TILE_TRY_AGAIN_INTERVAL, maxAbsentTileTryAgainInterval,
+				DEFAULT_MAX_ABSENT_TILES);
+		this.absentTiles = new AbsentTileResourceList(this.absentTileList);
 	}
 
 	/**
@@ -186,15 +200,27 @@ public class Level extends AVListImpl implements Comparable<Level> {
 	}
 
 	public void markResourceAbsent(long tileNumber) {
-		if (tileNumber >= 0) this.absentTiles.markResourceAbsent(tileNumber);
+		if (tileNumber >= 0) this.absentTileList.markResourceAbsent(tileNumber);
+	}
+
+	/**
+	 * Marks a tile as absent because the data source has confirmed that it does not have the tile, for example by
+	 * answering with HTTP 404. Unlike tiles marked by {@link #markResourceAbsent(long)}, missing tiles are retried less
+	 * and less often, and are remembered from one session to the next.
+	 * 
+	 * @param tileNumber
+	 *            the tile to mark as missing.
+	 */
+	public void markResourceMissing(long tileNumber) {
+		if (tileNumber >= 0) this.absentTileList.markResourceMissing(tileNumber);
 	}
 
 	public boolean isResourceAbsent(long tileNumber) {
-		return this.absentTiles.isResourceAbsent(tileNumber);
+		return this.absentTileList.isResourceAbsent(tileNumber);
 	}
 
 	public void unmarkResourceAbsent(long tileNumber) {
-		if (tileNumber >= 0) this.absentTiles.unmarkResourceAbsent(tileNumber);
+		if (tileNumber >= 0) this.absentTileList.unmarkResourceAbsent(tileNumber);
 	}
 
 	public long getExpiryTime() {
@@ -213,22 +239,43 @@ public class Level extends AVListImpl implements Comparable<Level> {
 		this.active = active;
 	}
 
+	/**
+	 * Returns the level's absent tiles as an {@link AbsentResourceList} keyed by tile number. The list is a view of
+	 * {@link #getAbsentTileList()}: tiles marked through it are marked in the level's absent tile list.
+	 * 
+	 * @return the level's absent tiles.
+	 */
 	public AbsentResourceList getAbsentTiles() {
 		return absentTiles;
 	}
 
+	/**
+	 * Returns the table that holds the level's absent tiles.
+	 * 
+	 * @return the level's absent tile list.
+	 */
+	public AbsentTileList getAbsentTileList() {
+		return this.absentTileList;
+	}
+
+	public TileValidatorList getValidators() {
+		return this.validators;
+	}
+
 	@Override
 	public Object setValue(String key, Object value) {
-		if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_ATTEMPTS) && value instanceof Integer) this.absentTiles.setMaxTries((Integer) value);
-		else if (key != null && key.equals(AVKey.MIN_ABSENT_TILE_CHECK_INTERVAL) && value instanceof Integer) this.absentTiles.setMinCheckInterval((Integer) value);
+		if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_ATTEMPTS) && value instanceof Integer) this.absentTileList.setMaxTries((Integer) value);
+		else if (key != null && key.equals(AVKey.MIN_ABSENT_TILE_CHECK_INTERVAL) && value instanceof Integer) this.absentTileList.setMinCheckInterval((Integer) value);
+		else if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL) && value instanceof Integer) this.absentTileList.setMaxTryAgainInterval((Integer) value);
 
 		return super.setValue(key, value);
 	}
 
 	@Override
 	public Object getValue(String key) {
-		if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_ATTEMPTS)) return this.absentTiles.getMaxTries();
-		else if (key != null && key.equals(AVKey.MIN_ABSENT_TILE_CHECK_INTERVAL)) return this.absentTiles.getMinCheckInterval();
+		if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_ATTEMPTS)) return this.absentTileList.getMaxTries();
+		else if (key != null && key.equals(AVKey.MIN_ABSENT_TILE_CHECK_INTERVAL)) return this.absentTileList.getMinCheckInterval();
+		else if (key != null && key.equals(AVKey.MAX_ABSENT_TILE_TRY_AGAIN_INTERVAL)) return this.absentTileList.getMaxTryAgainInterval();
 
 		return super.getValue(key);
 	}
@@ -329,4 +376,77 @@ public class Level extends AVListImpl implements Comparable<Level> {
 	public String toString() {
 		return this.path;
 	}
+
+	/**
+	 * An {@link AbsentResourceList} whose resources are tile numbers, and whose state is kept in an {@link AbsentTileList}.
+	 * Resource IDs that are not tile numbers are kept by the superclass.
+	 */
+	protected static class AbsentTileResourceList extends AbsentResourceList {
+		protected final AbsentTileList tiles;
+
+		public AbsentTileResourceList(AbsentTileList tiles) {
+			super(1, tiles.getMaxTries(), tiles.getMinCheckInterval(), tiles.getTryAgainInterval());
+			this.tiles = tiles;
+		}
+
+		@Override
+		public int getMaxTries() {
+			return this.tiles.getMaxTries();
+		}
+
+		@Override
+		public void setMaxTries(int maxTries) {
+			this.tiles.setMaxTries(maxTries);
+		}
+
+		@Override
+		public int getMinCheckInterval() {
+			return this.tiles.getMinCheckInterval();
+		}
+
+		@Override
+		public void setMinCheckInterval(int checkInterval) {
+			this.tiles.setMinCheckInterval(checkInterval);
+		}
+
+		@Override
+		public int getTryAgainInterval() {
+			return this.tiles.getTryAgainInterval();
+		}
+
+		@Override
+		public void setTryAgainInterval(int retryInterval) {
+			this.tiles.setTryAgainInterval(retryInterval);
+		}
+
+		@Override
+		public boolean isResourceAbsent(String resourceID) {
+			long tileNumber = parseTileNumber(resourceID);
+			return tileNumber >= 0 ? this.tiles.isResourceAbsent(tileNumber) : super.isResourceAbsent(resourceID);
+		}
+
+		@Override
+		public void markResourceAbsent(String resourceID) {
+			long tileNumber = parseTileNumber(resourceID);
+			if (tileNumber >= 0) this.tiles.markResourceAbsent(tileNumber);
+			else super.markResourceAbsent(resourceID);
+		}
+
+		@Override
+		public void unmarkResourceAbsent(String resourceID) {
+			long tileNumber = parseTileNumber(resourceID);
+			if (tileNumber >= 0) this.tiles.unmarkResourceAbsent(tileNumber);
+			else super.unmarkResourceAbsent(resourceID);
+		}
+
+		protected static long parseTileNumber(String resourceID) {
+			if (resourceID == null) return -1;
+
+			try {
+				return Long.parseLong(resourceID);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+	}
 }
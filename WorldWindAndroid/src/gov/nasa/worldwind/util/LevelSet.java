@@ -5,16 +5,36 @@
  */
 package gov.nasa.worldwind.util;
 
-import gov.nasa.worldwind.WWObjectImpl;
+import gov.nasa.worldwind.*;
 import gov.nasa.worldwind.avlist.*;
+import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.retrieve.ResponseValidator;
 import org.w3c.dom.Element;
 
 import javax.xml.xpath.XPath;
+import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * A set of levels of tiles covering a common sector, each level having twice the resolution of the level before it.
+ * <p/>
+ * The level set remembers the tiles marked missing by {@link #markResourceMissing(Tile)} from one session to the next.
+ * Tiles marked absent by {@link #markResourceAbsent(Tile)}, which may be absent only because of a transient failure, are
+ * not remembered. Each level keeps its absent tiles in an {@link AbsentTileList}. The lists of all levels are written to a file in the
+ * data file store, in the folder named by the levels' data cache name, shortly after any of them changes. They are read
+ * back in the background when a level set with the same data cache name is next created.
+ * <p/>
+ * The level set also remembers the HTTP validators of its cached tiles, specified by {@link
+ * #setResponseValidator(Tile, gov.nasa.worldwind.retrieve.ResponseValidator)}, so that expired tiles can be
+ * revalidated with a conditional request rather than downloaded again. Each level keeps its validators in a {@link
+ * TileValidatorList}, and they are written to and read from a second file in the same folder, in the same way as the
+ * absent tiles.
+ *
  * @author dcollins
  * @version $Id: LevelSet.java 733 2012-09-02 17:15:09Z dcollins $
  */
@@ -49,6 +69,23 @@ public class LevelSet extends WWObjectImpl
     protected final java.util.ArrayList<Level> levels = new java.util.ArrayList<Level>();
     protected final SectorResolution[] sectorLevelLimits;
 
+    /** The name of the file, in the levels' data cache folder, that holds the tiles marked absent. */
+    protected static final String ABSENT_TILES_FILE_NAME = "AbsentTiles.dat";
+    protected static final int ABSENT_TILES_FILE_MAGIC = 0x57574154;
+    /** The delay, in milliseconds, between a change to the absent tiles and writing them to the file store. */
+    protected static final long ABSENT_TILES_WRITE_DELAY = 30000;
+
+    /** The name of the file, in the levels' data cache folder, that holds the validators of the cached tiles. */
+    protected static final String VALIDATORS_FILE_NAME = "Validators.dat";
+    protected static final int VALIDATORS_FILE_MAGIC = 0x57575456;
+
+    protected static ScheduledExecutorService absentTilesService;
+
+    protected String absentTilesFileName;
+    protected final AtomicBoolean absentTilesWritePending = new AtomicBoolean();
+    protected String validatorsFileName;
+    protected final AtomicBoolean validatorsWritePending = new AtomicBoolean();
+
     public LevelSet(AVList params)
     {
         StringBuffer sb = new StringBuffer();
@@ -187,6 +224,15 @@ public class LevelSet extends WWObjectImpl
                 this.getLevel(i).setActive(false);
             }
         }
+
+        String cacheName = this.getFirstLevel().getCacheName();
+        if (!WWUtil.isEmpty(cacheName))
+        {
+            this.absentTilesFileName = cacheName + "/" + ABSENT_TILES_FILE_NAME;
+            this.readAbsentTilesLater();
+            this.validatorsFileName = cacheName + "/" + VALIDATORS_FILE_NAME;
+            this.readValidatorsLater();
+        }
     }
 
     public LevelSet(LevelSet source)
@@ -203,6 +249,8 @@ public class LevelSet extends WWObjectImpl
         this.tileOrigin = source.tileOrigin;
         this.numLevelZeroColumns = source.numLevelZeroColumns;
         this.sectorLevelLimits = source.sectorLevelLimits;
+        this.absentTilesFileName = source.absentTilesFileName;
+        this.validatorsFileName = source.validatorsFileName;
 
         for (Level level : source.levels)
         {
@@ -414,6 +462,31 @@ public class LevelSet extends WWObjectImpl
         }
 
         tile.getLevel().markResourceAbsent(this.getTileNumber(tile));
+
+        if (tile.getLevel().getAbsentTileList().isDirty())
+            this.writeAbsentTilesLater();
+    }
+
+    /**
+     * Instructs the level set that the data source has confirmed that a tile is missing, for example by answering a
+     * request for the tile with HTTP 404. Missing tiles are retried less and less often, and are remembered from one
+     * session to the next.
+     *
+     * @param tile The tile to mark as missing.
+     *
+     * @throws IllegalArgumentException if <code>tile</code> is null
+     */
+    public final void markResourceMissing(Tile tile)
+    {
+        if (tile == null)
+        {
+            String msg = Logging.getMessage("nullValue.TileIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        tile.getLevel().markResourceMissing(this.getTileNumber(tile));
+        this.writeAbsentTilesLater();
     }
 
     /**
@@ -476,6 +549,300 @@ public class LevelSet extends WWObjectImpl
         }
 
         tile.getLevel().unmarkResourceAbsent(this.getTileNumber(tile));
+
+        // Tiles are unmarked every time they are loaded, but the absent tiles change only if the tile was marked.
+        if (tile.getLevel().getAbsentTileList().isDirty())
+            this.writeAbsentTilesLater();
+    }
+
+    /**
+     * Returns the HTTP validators of a cached tile.
+     *
+     * @param tile the tile in question.
+     *
+     * @return the tile's validators, or null if none are known.
+     *
+     * @throws IllegalArgumentException if <code>tile</code> is null
+     */
+    public final ResponseValidator getResponseValidator(Tile tile)
+    {
+        if (tile == null)
+        {
+            String msg = Logging.getMessage("nullValue.TileIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return tile.getLevel().getValidators().getValidator(this.getTileNumber(tile));
+    }
+
+    /**
+     * Specifies the HTTP validators of a cached tile, typically those of the response the tile was last retrieved or
+     * revalidated with.
+     *
+     * @param tile      the tile whose validators are specified.
+     * @param validator the tile's validators, or null to forget the tile's validators.
+     *
+     * @throws IllegalArgumentException if <code>tile</code> is null
+     */
+    public final void setResponseValidator(Tile tile, ResponseValidator validator)
+    {
+        if (tile == null)
+        {
+            String msg = Logging.getMessage("nullValue.TileIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        TileValidatorList validators = tile.getLevel().getValidators();
+        validators.setValidator(this.getTileNumber(tile), validator);
+
+        if (validators.isDirty())
+            this.writeValidatorsLater();
+    }
+
+    protected static synchronized ScheduledExecutorService getAbsentTilesService()
+    {
+        if (absentTilesService == null)
+            absentTilesService = DataConfigurationUtils.createResourceRetrievalService("World Wind Absent Tiles");
+
+        return absentTilesService;
+    }
+
+    protected void readAbsentTilesLater()
+    {
+        getAbsentTilesService().execute(new Runnable()
+        {
+            public void run()
+            {
+                readAbsentTiles();
+            }
+        });
+    }
+
+    protected void writeAbsentTilesLater()
+    {
+        if (this.absentTilesFileName == null)
+            return;
+
+        // Schedule one write for all the changes made during the write delay.
+        if (this.absentTilesWritePending.compareAndSet(false, true))
+        {
+            getAbsentTilesService().schedule(new Runnable()
+            {
+                public void run()
+                {
+                    writeAbsentTiles();
+                }
+            }, ABSENT_TILES_WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads the absent tiles written by a previous session from the data file store, and adds them to the levels'
+     * absent tile lists. The file is ignored if it was written by a level set whose tiles are numbered differently.
+     */
+    protected void readAbsentTiles()
+    {
+        FileStore fileStore = WorldWind.getDataFileStore();
+        if (fileStore == null)
+            return;
+
+        URL url = fileStore.findFile(this.absentTilesFileName, false);
+        if (url == null)
+            return;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(url.openStream()));
+
+            // Tile numbers depend on the number of level zero columns, so tiles numbered for a different number of
+            // columns do not identify the same tiles.
+            if (in.readInt() != ABSENT_TILES_FILE_MAGIC || in.readInt() != this.numLevelZeroColumns)
+                return;
+
+            int numLevels = in.readInt();
+            for (int i = 0; i < numLevels; i++)
+            {
+                Level level = this.getLevel(in.readInt());
+                if (level == null)
+                    break;
+
+                level.getAbsentTileList().read(in);
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.warning(Logging.getMessage("layers.LevelSet.ExceptionReadingAbsentTiles", url), e);
+        }
+        finally
+        {
+            WWIO.closeStream(in, this.absentTilesFileName);
+        }
+    }
+
+    /** Writes the levels' absent tile lists to the data file store if any of them has changed. */
+    protected void writeAbsentTiles()
+    {
+        this.absentTilesWritePending.set(false);
+
+        boolean dirty = false;
+        for (Level level : this.levels)
+        {
+            if (level.getAbsentTileList().isDirty())
+            {
+                dirty = true;
+                break;
+            }
+        }
+
+        FileStore fileStore = WorldWind.getDataFileStore();
+        if (!dirty || fileStore == null)
+            return;
+
+        try
+        {
+            // Write the lists to memory first, so that each list is locked only while it is copied.
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(ABSENT_TILES_FILE_MAGIC);
+            out.writeInt(this.numLevelZeroColumns);
+            out.writeInt(this.levels.size());
+
+            for (Level level : this.levels)
+            {
+                out.writeInt(level.getLevelNumber());
+                level.getAbsentTileList().write(out);
+            }
+
+            out.flush();
+
+            File file = fileStore.newFile(this.absentTilesFileName);
+            if (file != null)
+                WWIO.saveBuffer(ByteBuffer.wrap(bytes.toByteArray()), file);
+        }
+        catch (Exception e)
+        {
+            Logging.error(Logging.getMessage("layers.LevelSet.ExceptionWritingAbsentTiles", this.absentTilesFileName),
+                e);
+        }
+    }
+
+    protected void readValidatorsLater()
+    {
+        getAbsentTilesService().execute(new Runnable()
+        {
+            public void run()
+            {
+                readValidators();
+            }
+        });
+    }
+
+    protected void writeValidatorsLater()
+    {
+        if (this.validatorsFileName == null)
+            return;
+
+        // Schedule one write for all the changes made during the write delay.
+        if (this.validatorsWritePending.compareAndSet(false, true))
+        {
+            getAbsentTilesService().schedule(new Runnable()
+            {
+                public void run()
+                {
+                    writeValidators();
+                }
+            }, ABSENT_TILES_WRITE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads the tile validators written by a previous session from the data file store, and adds them to the levels'
+     * validator lists. The file is ignored if it was written by a level set whose tiles are numbered differently.
+     */
+    protected void readValidators()
+    {
+        FileStore fileStore = WorldWind.getDataFileStore();
+        if (fileStore == null)
+            return;
+
+        URL url = fileStore.findFile(this.validatorsFileName, false);
+        if (url == null)
+            return;
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(url.openStream()));
+
+            if (in.readInt() != VALIDATORS_FILE_MAGIC || in.readInt() != this.numLevelZeroColumns)
+                return;
+
+            int numLevels = in.readInt();
+            for (int i = 0; i < numLevels; i++)
+            {
+                Level level = this.getLevel(in.readInt());
+                if (level == null)
+                    break;
+
+                level.getValidators().read(in);
+            }
+        }
+        catch (Exception e)
+        {
+            Logging.warning(Logging.getMessage("layers.LevelSet.ExceptionReadingValidators", url), e);
+        }
+        finally
+        {
+            WWIO.closeStream(in, this.validatorsFileName);
+        }
+    }
+
+    /** Writes the levels' tile validator lists to the data file store if any of them has changed. */
+    protected void writeValidators()
+    {
+        this.validatorsWritePending.set(false);
+
+        boolean dirty = false;
+        for (Level level : this.levels)
+        {
+            if (level.getValidators().isDirty())
+            {
+                dirty = true;
+                break;
+            }
+        }
+
+        FileStore fileStore = WorldWind.getDataFileStore();
+        if (!dirty || fileStore == null)
+            return;
+
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(VALIDATORS_FILE_MAGIC);
+            out.writeInt(this.numLevelZeroColumns);
+            out.writeInt(this.levels.size());
+
+            for (Level level : this.levels)
+            {
+                out.writeInt(level.getLevelNumber());
+                level.getValidators().write(out);
+            }
+
+            out.flush();
+
+            File file = fileStore.newFile(this.validatorsFileName);
+            if (file != null)
+                WWIO.saveBuffer(ByteBuffer.wrap(bytes.toByteArray()), file);
+        }
+        catch (Exception e)
+        {
+            Logging.error(Logging.getMessage("layers.LevelSet.ExceptionWritingValidators", this.validatorsFileName), e);
+        }
     }
 
     // Create the tile corresponding to a specified key.
@@ -26,6 +26,9 @@ import java.util.List;
  * as not unreachable after a specifiable interval of time. If the host is once more logged as unavailable, its entry
  * returns to the unavailable state. This cycle continues indefinitely.
  * <p/>
+ * Retrievals that fail in a way that may not last ask {@link #acquireRetry(java.net.URL, int, long)} whether they may
+ * try again, and how long to wait first.
+ * <p/>
  * Methods are provided to determine whether the public network can be reached and whether the NASA World Wind servers
  * can be reached. The addresses used to detect public network access can be explicitly specified.
  *
@@ -63,6 +66,19 @@ public interface NetworkStatus extends AVList
      */
     boolean isHostUnavailable(URL url);
 
+    /**
+     * Asks to retry a retrieval from a host after a failure that has been logged by {@link
+     * #logUnavailableHost(java.net.URL)}. A retry is refused if the host is marked as unavailable, if the retrieval has
+     * been retried too often, or if retries already make up too great a share of the network traffic.
+     *
+     * @param url        the URL whose retrieval failed.
+     * @param numRetries the number of times the retrieval has already been retried.
+     * @param minDelay   the least delay the host asked for, in milliseconds, or 0 if it did not ask.
+     *
+     * @return the time to wait before retrying, in milliseconds, or -1 if the retrieval must not be retried.
+     */
+    long acquireRetry(URL url, int numRetries, long minDelay);
+
     /**
      * Indicates whether a public network can be reached or has been reached in the previous five seconds.
      *
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+/**
+ * A task that tells a {@link TaskService} how urgently it should run and on whose behalf. A task service that orders
+ * its tasks runs tasks with lower priority values first, in the same sense as {@link Tile#getPriority()}, and may limit
+ * how many tasks of one owner it holds at a time. Tasks that do not implement this interface have the lowest priority
+ * and no owner.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public interface PrioritizedTask extends Runnable
+{
+    /**
+     * Returns the task's priority. Lower values run first.
+     *
+     * @return the task's priority.
+     */
+    double getPriority();
+
+    /**
+     * Returns the object on whose behalf the task runs, such as the layer or elevation model that requested it.
+     *
+     * @return the task's owner, or null if the task has no owner.
+     */
+    Object getOwner();
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.*;
+import gov.nasa.worldwind.avlist.AVKey;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link TaskService} that runs its tasks in order of priority. Tasks implementing {@link PrioritizedTask} give their
+ * priority and owner; other tasks have the lowest priority and no owner. Tasks of equal priority run in the order they
+ * were submitted.
+ * <p/>
+ * Pending and running tasks are indexed by a concurrent hash map, so {@link #contains(Runnable)} and the rejection of
+ * duplicate tasks take constant time and no lock. The queue of pending tasks holds at most {@link
+ * gov.nasa.worldwind.avlist.AVKey#TASK_SERVICE_QUEUE_SIZE} tasks. A task submitted to a full queue evicts the pending
+ * task of lowest priority if its own priority is higher, and is discarded otherwise, so the queue always holds the most
+ * urgent tasks submitted to it. Each owner may have at most {@link
+ * gov.nasa.worldwind.avlist.AVKey#TASK_SERVICE_OWNER_QUOTA} pending tasks, so that a layer requesting many tiles cannot
+ * fill the queue and starve the others. An owner at its quota evicts its own pending task of lowest priority rather
+ * than another owner's.
+ * <p/>
+ * {@link #isFull()} reports whether the queue is full. Callers may still submit to a full queue, since an urgent task
+ * evicts a pending one.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class PriorityTaskService extends WWObjectImpl implements TaskService, Thread.UncaughtExceptionHandler
+{
+    /** A task waiting in or taken from the queue. */
+    protected static class Entry implements Comparable<Entry>
+    {
+        protected final Runnable task;
+        protected final double priority;
+        protected final Object owner;
+        protected final long sequence;
+
+        public Entry(Runnable task, double priority, Object owner, long sequence)
+        {
+            this.task = task;
+            this.priority = priority;
+            this.owner = owner;
+            this.sequence = sequence;
+        }
+
+        public int compareTo(Entry that)
+        {
+            if (this.priority != that.priority)
+                return this.priority < that.priority ? -1 : 1;
+
+            return this.sequence < that.sequence ? -1 : (this.sequence > that.sequence ? 1 : 0);
+        }
+    }
+
+    protected static final String RUNNING_THREAD_NAME_PREFIX = Logging.getMessage(
+        "TaskService.RunningThreadNamePrefix");
+    protected static final String IDLE_THREAD_NAME_PREFIX = Logging.getMessage(
+        "TaskService.IdleThreadNamePrefix");
+    /** The default number of seconds that idle threads are kept alive: 2 seconds. */
+    protected static final long DEFAULT_THREAD_TIMEOUT = 2;
+    protected static final int DEFAULT_POOL_SIZE = 4;
+    protected static final int DEFAULT_QUEUE_SIZE = 20;
+    protected static final int DEFAULT_OWNER_QUOTA = 10;
+
+    protected final int queueSize;
+    protected final int ownerQuota;
+    // Pending and running tasks, mapped to their queue entries.
+    protected final ConcurrentHashMap<Runnable, Entry> tasks = new ConcurrentHashMap<Runnable, Entry>();
+    protected final TreeSet<Entry> pending = new TreeSet<Entry>(); // guarded by pending
+    // Each owner's pending tasks. Guarded by pending.
+    protected final Map<Object, TreeSet<Entry>> ownerPending = new HashMap<Object, TreeSet<Entry>>();
+    protected final AtomicLong sequence = new AtomicLong();
+    protected final ThreadPoolExecutor executor;
+    protected boolean shutDown; // guarded by pending
+    // Runs the most urgent pending task. The executor is given one of these for each task added to the queue.
+    protected final Runnable nextTaskRunner = new Runnable()
+    {
+        public void run()
+        {
+            runNextTask();
+        }
+    };
+
+    /** Creates a task service configured by the World Wind configuration. */
+    public PriorityTaskService()
+    {
+        this(Configuration.getIntegerValue(AVKey.TASK_SERVICE_POOL_SIZE, DEFAULT_POOL_SIZE),
+            Configuration.getIntegerValue(AVKey.TASK_SERVICE_QUEUE_SIZE, DEFAULT_QUEUE_SIZE),
+            Configuration.getIntegerValue(AVKey.TASK_SERVICE_OWNER_QUOTA, DEFAULT_OWNER_QUOTA));
+    }
+
+    /**
+     * Creates a task service with a specified number of threads, queue size and quota of pending tasks per owner.
+     *
+     * @param poolSize   the number of threads that run tasks.
+     * @param queueSize  the most tasks that may be pending.
+     * @param ownerQuota the most tasks of one owner that may be pending.
+     *
+     * @throws IllegalArgumentException if any argument is less than 1.
+     */
+    public PriorityTaskService(int poolSize, int queueSize, int ownerQuota)
+    {
+        if (poolSize < 1)
+        {
+            String msg = Logging.getMessage("TaskService.PoolSizeIsInvalid", poolSize);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (queueSize < 1 || ownerQuota < 1)
+        {
+            String msg = Logging.getMessage("TaskService.QueueSizeIsInvalid", queueSize, ownerQuota);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.queueSize = queueSize;
+        this.ownerQuota = ownerQuota;
+        this.executor = this.createExecutor(poolSize);
+    }
+
+    /**
+     * Creates the executor whose threads run this service's tasks. The threads are daemons, so that they do not keep
+     * the JVM from shutting down, and forward uncaught task exceptions to this service. The executor's own queue is
+     * unbounded, since it holds at most one runner for each pending task.
+     *
+     * @param poolSize the number of threads.
+     *
+     * @return a new executor.
+     */
+    protected ThreadPoolExecutor createExecutor(int poolSize)
+    {
+        final Thread.UncaughtExceptionHandler handler = this;
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, DEFAULT_THREAD_TIMEOUT,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true); // Daemon threads don't prevent the JVM from shutting down.
+                    thread.setUncaughtExceptionHandler(handler);
+                    return thread;
+                }
+            });
+
+        // Let idle core threads time out, since every thread is a core thread.
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    public int getQueueSize()
+    {
+        return this.queueSize;
+    }
+
+    public int getOwnerQuota()
+    {
+        return this.ownerQuota;
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.
+     *
+     * @return the number of pending tasks.
+     */
+    public int getNumPendingTasks()
+    {
+        synchronized (this.pending)
+        {
+            return this.pending.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A task equal to one that is pending or running is ignored. A task that finds the queue or its owner's quota full
+     * evicts the pending task of lowest priority, or is discarded if its own priority is no higher.
+     */
+    public void runTask(Runnable task)
+    {
+        if (task == null)
+        {
+            String msg = Logging.getMessage("nullValue.TaskIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        double priority = Double.MAX_VALUE; // Default is minimum priority
+        Object owner = null;
+        if (task instanceof PrioritizedTask)
+        {
+            priority = ((PrioritizedTask) task).getPriority();
+            owner = ((PrioritizedTask) task).getOwner();
+        }
+
+        Entry entry = new Entry(task, priority, owner, this.sequence.getAndIncrement());
+
+        // Silently ignore duplicate tasks.
+        if (this.tasks.putIfAbsent(task, entry) != null)
+            return;
+
+        Entry evicted = null;
+        boolean accepted = true;
+        synchronized (this.pending)
+        {
+            TreeSet<Entry> ownerEntries = this.ownerPending.get(owner);
+
+            Entry candidate = null;
+            if (this.shutDown)
+                accepted = false;
+            else if (ownerEntries != null && ownerEntries.size() >= this.ownerQuota)
+                candidate = ownerEntries.last();
+            else if (this.pending.size() >= this.queueSize)
+                candidate = this.pending.last();
+
+            if (candidate != null)
+            {
+                if (entry.compareTo(candidate) < 0)
+                {
+                    this.removePending(candidate);
+                    evicted = candidate;
+                }
+                else
+                {
+                    accepted = false;
+                }
+            }
+
+            if (accepted)
+                this.addPending(entry);
+        }
+
+        if (!accepted)
+        {
+            this.tasks.remove(task, entry);
+            Logging.verbose(Logging.getMessage("TaskService.TaskRejected", task));
+        }
+        else if (evicted != null)
+        {
+            // The new task takes the evicted task's place, and the runner already given to the executor.
+            this.tasks.remove(evicted.task, evicted);
+            Logging.verbose(Logging.getMessage("TaskService.EvictingTask", evicted.task, task));
+        }
+        else
+        {
+            try
+            {
+                this.executor.execute(this.nextTaskRunner);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // The service was shut down after the task was queued, and the task discarded with the other pending
+                // tasks.
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    public boolean contains(Runnable task)
+    {
+        if (task == null)
+        {
+            String msg = Logging.getMessage("nullValue.TaskIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        return this.tasks.containsKey(task);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns true when the queue holds {@link #getQueueSize()} pending tasks. A task submitted while the queue is full
+     * is still accepted if its priority is higher than that of a pending task, which it evicts.
+     */
+    public boolean isFull()
+    {
+        synchronized (this.pending)
+        {
+            return this.pending.size() >= this.queueSize;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns the number of tasks that can be added to the queue before a new task evicts a pending one.
+     */
+    public int getRemainingCapacity()
+    {
+        synchronized (this.pending)
+        {
+            return Math.max(this.queueSize - this.pending.size(), 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Pending tasks are removed from the queue, and tasks submitted later are rejected.
+     */
+    public void shutdown()
+    {
+        this.shutdown(false);
+    }
+
+    /** {@inheritDoc} */
+    public void shutdownNow()
+    {
+        this.shutdown(true);
+    }
+
+    protected void shutdown(boolean immediately)
+    {
+        synchronized (this.pending)
+        {
+            this.shutDown = true;
+
+            for (Entry entry : this.pending)
+            {
+                this.tasks.remove(entry.task, entry);
+            }
+
+            this.pending.clear();
+            this.ownerPending.clear();
+        }
+
+        if (immediately)
+            this.executor.shutdownNow();
+        else
+            this.executor.shutdown();
+    }
+
+    public void uncaughtException(Thread thread, Throwable throwable)
+    {
+        // Just log the uncaught exception and return without doing anything. The task has already been removed from
+        // this service's index. The JVM terminates with a FATAL EXCEPTION if we delegate this exception to the
+        // ThreadGroup's uncaughtException method.
+        String msg = Logging.getMessage("TaskService.UncaughtTaskException", thread.getName());
+        Logging.info(msg, throwable);
+    }
+
+    /**
+     * Takes the most urgent pending task from the queue and runs it on the current thread. Does nothing if the queue
+     * is empty, which happens when tasks have been evicted.
+     */
+    protected void runNextTask()
+    {
+        Entry entry;
+        synchronized (this.pending)
+        {
+            entry = this.pending.isEmpty() ? null : this.pending.first();
+            if (entry != null)
+                this.removePending(entry);
+        }
+
+        if (entry == null)
+            return;
+
+        Thread thread = Thread.currentThread();
+        if (!WWUtil.isEmpty(RUNNING_THREAD_NAME_PREFIX))
+            thread.setName(RUNNING_THREAD_NAME_PREFIX + ": " + entry.task);
+
+        try
+        {
+            entry.task.run();
+        }
+        finally
+        {
+            this.tasks.remove(entry.task, entry);
+
+            if (!WWUtil.isEmpty(IDLE_THREAD_NAME_PREFIX))
+                thread.setName(IDLE_THREAD_NAME_PREFIX);
+        }
+    }
+
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected void addPending(Entry entry)
+    {
+        this.pending.add(entry);
+
+        TreeSet<Entry> ownerEntries = this.ownerPending.get(entry.owner);
+        if (ownerEntries == null)
+        {
+            ownerEntries = new TreeSet<Entry>();
+            this.ownerPending.put(entry.owner, ownerEntries);
+        }
+        ownerEntries.add(entry);
+    }
+
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected void removePending(Entry entry)
+    {
+        this.pending.remove(entry);
+
+        TreeSet<Entry> ownerEntries = this.ownerPending.get(entry.owner);
+        if (ownerEntries != null)
+        {
+            ownerEntries.remove(entry);
+            if (ownerEntries.isEmpty())
+                this.ownerPending.remove(entry.owner);
+        }
+    }
+}
@@ -16,4 +16,23 @@ public interface TaskService
     boolean contains(Runnable task);
 
     boolean isFull();
+
+    /**
+     * Returns the number of tasks this service can accept without discarding or displacing any.
+     *
+     * @return the number of tasks that can be added to the service's queue.
+     */
+    int getRemainingCapacity();
+
+    /**
+     * Stops this service. Tasks that have not started are discarded and tasks submitted later are ignored. Running
+     * tasks are left to finish.
+     */
+    void shutdown();
+
+    /**
+     * Stops this service as {@link #shutdown()} does, and interrupts the threads running tasks. Tasks must check their
+     * thread's interrupted flag to stop early.
+     */
+    void shutdownNow();
 }
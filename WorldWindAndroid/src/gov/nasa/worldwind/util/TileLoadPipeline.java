@@ -0,0 +1,586 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads tiles from the file store in three stages, so that slow storage does not hold up decoding and decoding does not
+ * hold up rendering:
+ * <ol> <li>A small pool of I/O threads reads each tile's file into memory.</li> <li>A pool of CPU threads, one per
+ * processor by default, decodes what was read.</li> <li>The decoded tiles wait in a hand-off queue until the GL thread
+ * collects them by calling {@link #deliverLoadedTiles()}, which gives each to its owner to upload.</li> </ol>
+ * <p/>
+ * The stages are joined by bounded queues. A stage whose next queue is full waits for room, so a GL thread that falls
+ * behind slows the decoders, and decoders that fall behind slow the readers. A load submitted while the read queue is
+ * full is refused, and its owner requests it again in a later frame. Each stage keeps its own {@link Stage statistics}.
+ * <p/>
+ * A tile is loaded once however often it is submitted while it is in the pipeline: a load equal to one in the pipeline
+ * only renews that load's request time. A load that is cancelled, or whose request time is more than {@link
+ * gov.nasa.worldwind.avlist.AVKey#TILE_REQUEST_EXPIRY_TIME} milliseconds old, is discarded at the start of its next
+ * stage, since its tile is no longer needed.
+ * <p/>
+ * {@link #shutdown()} stops the stage threads and discards the loads in the pipeline. World Wind shuts its pipeline
+ * down in {@link gov.nasa.worldwind.WorldWind#shutDown()}.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class TileLoadPipeline
+{
+    /**
+     * A tile to load. Subclasses read the tile's content, decode it, and give the decoded tile to its owner. Loads are
+     * identified by their key, so two loads with equal keys load the same tile.
+     */
+    public abstract static class Job
+    {
+        protected final Object key;
+        protected volatile long requestTime;
+        protected volatile boolean cancelled;
+        protected ByteBuffer content;
+        protected Object result;
+
+        protected Job(Object key)
+        {
+            if (key == null)
+            {
+                String msg = Logging.getMessage("nullValue.KeyIsNull");
+                Logging.error(msg);
+                throw new IllegalArgumentException(msg);
+            }
+
+            this.key = key;
+        }
+
+        public Object getKey()
+        {
+            return this.key;
+        }
+
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+
+        /** Cancels this load. A load already being read or decoded is discarded once that stage ends. */
+        public void cancel()
+        {
+            this.cancelled = true;
+        }
+
+        /**
+         * Reads the tile's content. Called on an I/O thread.
+         *
+         * @return the content read.
+         *
+         * @throws Exception if the content cannot be read.
+         */
+        protected abstract ByteBuffer read() throws Exception;
+
+        /**
+         * Decodes the tile's content. Called on a decoding thread.
+         *
+         * @param content the content returned by {@link #read()}.
+         *
+         * @return the decoded tile, or null if the content cannot be decoded.
+         *
+         * @throws Exception if the content cannot be decoded.
+         */
+        protected abstract Object decode(ByteBuffer content) throws Exception;
+
+        /**
+         * Called on a decoding thread once the decoded tile waits in the hand-off queue. The default implementation
+         * does nothing. Owners that draw on demand override this to request a frame, in which the tile is delivered.
+         */
+        protected void decoded()
+        {
+        }
+
+        /**
+         * Gives the decoded tile to its owner. Called on the GL thread by {@link #deliverLoadedTiles()}.
+         *
+         * @param result the decoded tile returned by {@link #decode(java.nio.ByteBuffer)}.
+         */
+        protected abstract void deliver(Object result);
+
+        /**
+         * Called on the stage's thread when the tile cannot be read or decoded.
+         *
+         * @param e the exception that stopped the load, or null if the content could not be decoded.
+         */
+        protected abstract void failed(Exception e);
+    }
+
+    /** The statistics of one stage of the pipeline. */
+    public static class Stage
+    {
+        protected final String name;
+        protected final BlockingQueue<Job> queue;
+        protected final int capacity;
+        protected final AtomicLong numCompleted = new AtomicLong();
+        protected final AtomicLong numFailed = new AtomicLong();
+        protected final AtomicLong numCancelled = new AtomicLong();
+        protected final AtomicLong numRejected = new AtomicLong();
+        protected final AtomicLong totalNanos = new AtomicLong();
+
+        public Stage(String name, int capacity)
+        {
+            this.name = name;
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<Job>(capacity);
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        /**
+         * Returns the number of loads waiting to enter this stage.
+         *
+         * @return the number of loads in this stage's queue.
+         */
+        public int getQueueSize()
+        {
+            return this.queue.size();
+        }
+
+        public int getCapacity()
+        {
+            return this.capacity;
+        }
+
+        public long getNumCompleted()
+        {
+            return this.numCompleted.get();
+        }
+
+        public long getNumFailed()
+        {
+            return this.numFailed.get();
+        }
+
+        public long getNumCancelled()
+        {
+            return this.numCancelled.get();
+        }
+
+        /**
+         * Returns the number of loads refused because this stage's queue was full. Only the read stage refuses loads;
+         * the others wait for room.
+         *
+         * @return the number of loads refused.
+         */
+        public long getNumRejected()
+        {
+            return this.numRejected.get();
+        }
+
+        /**
+         * Returns the mean time this stage spent on each completed load.
+         *
+         * @return the mean time in milliseconds, or 0 if no load has completed.
+         */
+        public double getMeanTime()
+        {
+            long count = this.numCompleted.get();
+            return count > 0 ? this.totalNanos.get() / 1.0e6 / count : 0;
+        }
+
+        protected void recordCompleted(long nanos)
+        {
+            this.numCompleted.incrementAndGet();
+            this.totalNanos.addAndGet(nanos);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(this.name);
+            sb.append(": queued=").append(this.getQueueSize()).append("/").append(this.capacity);
+            sb.append(", completed=").append(this.getNumCompleted());
+            sb.append(", failed=").append(this.getNumFailed());
+            sb.append(", cancelled=").append(this.getNumCancelled());
+            sb.append(", rejected=").append(this.getNumRejected());
+            sb.append(", meanMs=").append(String.format("%.2f", this.getMeanTime()));
+
+            return sb.toString();
+        }
+    }
+
+    protected static final int DEFAULT_READ_THREADS = 2;
+    protected static final int DEFAULT_QUEUE_SIZE = 16;
+    protected static final long DEFAULT_EXPIRY_TIME = 5000;
+
+    protected final long expiryTime;
+    // Loads in any stage, keyed by their keys.
+    protected final ConcurrentHashMap<Object, Job> jobs = new ConcurrentHashMap<Object, Job>();
+    protected final Stage readStage;
+    protected final Stage decodeStage;
+    protected final Stage deliverStage;
+    protected final List<Thread> threads = new ArrayList<Thread>(); // guarded by this
+    protected volatile boolean shutDown;
+
+    /** Creates a pipeline configured by the World Wind configuration. */
+    public TileLoadPipeline()
+    {
+        this(Configuration.getIntegerValue(AVKey.TILE_LOAD_READ_THREADS, DEFAULT_READ_THREADS),
+            Configuration.getIntegerValue(AVKey.TILE_LOAD_DECODE_THREADS, 0),
+            Configuration.getIntegerValue(AVKey.TILE_LOAD_QUEUE_SIZE, DEFAULT_QUEUE_SIZE),
+            Configuration.getLongValue(AVKey.TILE_REQUEST_EXPIRY_TIME, DEFAULT_EXPIRY_TIME));
+    }
+
+    /**
+     * Creates a pipeline with a specified number of threads in each stage.
+     *
+     * @param readThreads   the number of threads reading files.
+     * @param decodeThreads the number of threads decoding tiles, or 0 for one per processor.
+     * @param queueSize     the number of loads each stage's queue holds.
+     * @param expiryTime    the time in milliseconds after which a load that has not been requested again is discarded.
+     *
+     * @throws IllegalArgumentException if a thread count or the queue size is out of range, or the expiry time is less
+     *                                  than 1.
+     */
+    public TileLoadPipeline(int readThreads, int decodeThreads, int queueSize, long expiryTime)
+    {
+        if (readThreads < 1 || decodeThreads < 0)
+        {
+            String msg = Logging.getMessage("TileLoadPipeline.ThreadCountIsInvalid", readThreads, decodeThreads);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (queueSize < 1)
+        {
+            String msg = Logging.getMessage("TileLoadPipeline.QueueSizeIsInvalid", queueSize);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (expiryTime < 1)
+        {
+            String msg = Logging.getMessage("TileLoadPipeline.ExpiryTimeIsInvalid", expiryTime);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (decodeThreads == 0)
+            decodeThreads = Runtime.getRuntime().availableProcessors();
+
+        this.expiryTime = expiryTime;
+        this.readStage = new Stage(Logging.getMessage("TileLoadPipeline.ReadStageName"), queueSize);
+        this.decodeStage = new Stage(Logging.getMessage("TileLoadPipeline.DecodeStageName"), queueSize);
+        this.deliverStage = new Stage(Logging.getMessage("TileLoadPipeline.DeliverStageName"), queueSize);
+
+        for (int i = 0; i < readThreads; i++)
+        {
+            this.startThread(this.readStage, new Runnable()
+            {
+                public void run()
+                {
+                    runReadStage();
+                }
+            });
+        }
+
+        for (int i = 0; i < decodeThreads; i++)
+        {
+            this.startThread(this.decodeStage, new Runnable()
+            {
+                public void run()
+                {
+                    runDecodeStage();
+                }
+            });
+        }
+    }
+
+    public Stage getReadStage()
+    {
+        return this.readStage;
+    }
+
+    public Stage getDecodeStage()
+    {
+        return this.decodeStage;
+    }
+
+    public Stage getDeliverStage()
+    {
+        return this.deliverStage;
+    }
+
+    /**
+     * Returns the number of loads in any stage of the pipeline.
+     *
+     * @return the number of loads in the pipeline.
+     */
+    public int getNumLoads()
+    {
+        return this.jobs.size();
+    }
+
+    /**
+     * Indicates whether a load with a specified key is in the pipeline.
+     *
+     * @param key the load's key.
+     *
+     * @return true if the load is in the pipeline, otherwise false.
+     */
+    public boolean contains(Object key)
+    {
+        return key != null && this.jobs.containsKey(key);
+    }
+
+    /**
+     * Submits a load to the pipeline. If a load with the same key is already in the pipeline, that load's request time
+     * is renewed and the new load is ignored.
+     *
+     * @param job the load to submit.
+     *
+     * @return true if the load is in the pipeline, or false if the read queue is full or the pipeline has been shut
+     *         down, and the load was refused.
+     *
+     * @throws IllegalArgumentException if the load is null.
+     */
+    public boolean submit(Job job)
+    {
+        if (job == null)
+        {
+            String msg = Logging.getMessage("nullValue.JobIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.shutDown)
+            return false;
+
+        long now = System.currentTimeMillis();
+        job.requestTime = now;
+
+        Job existing = this.jobs.putIfAbsent(job.key, job);
+        if (existing != null)
+        {
+            existing.requestTime = now;
+            return true;
+        }
+
+        if (!this.readStage.queue.offer(job))
+        {
+            this.jobs.remove(job.key, job);
+            this.readStage.numRejected.incrementAndGet();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels the load with a specified key, if it is in the pipeline.
+     *
+     * @param key the load's key.
+     */
+    public void cancel(Object key)
+    {
+        Job job = key != null ? this.jobs.get(key) : null;
+        if (job != null)
+            job.cancel();
+    }
+
+    /**
+     * Gives every decoded tile waiting in the hand-off queue to its owner. Must be called on the GL thread, once per
+     * frame.
+     *
+     * @return the number of tiles delivered.
+     */
+    public int deliverLoadedTiles()
+    {
+        int count = 0;
+
+        Job job;
+        while ((job = this.deliverStage.queue.poll()) != null)
+        {
+            if (this.isDiscarded(job, this.deliverStage))
+                continue;
+
+            long start = System.nanoTime();
+            try
+            {
+                job.deliver(job.result);
+                this.deliverStage.recordCompleted(System.nanoTime() - start);
+                count++;
+            }
+            finally
+            {
+                this.finish(job);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Stops the stage threads and discards every load in the pipeline. Loads submitted afterwards are refused. A load
+     * being read or decoded when the pipeline shuts down is discarded once that stage ends.
+     */
+    public synchronized void shutdown()
+    {
+        this.shutDown = true;
+
+        for (Thread thread : this.threads)
+        {
+            thread.interrupt();
+        }
+        this.threads.clear();
+
+        for (Job job : this.jobs.values())
+        {
+            job.cancel();
+        }
+        this.readStage.queue.clear();
+        this.decodeStage.queue.clear();
+        this.deliverStage.queue.clear();
+        this.jobs.clear();
+    }
+
+    /**
+     * Indicates whether {@link #shutdown()} has been called.
+     *
+     * @return true if the pipeline has been shut down, otherwise false.
+     */
+    public boolean isShutDown()
+    {
+        return this.shutDown;
+    }
+
+    protected synchronized void startThread(Stage stage, Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, stage.getName());
+        thread.setDaemon(true); // Daemon threads don't prevent the JVM from shutting down.
+        thread.setPriority(Thread.MIN_PRIORITY); // Subordinate thread priority to rendering
+        thread.start();
+        this.threads.add(thread);
+    }
+
+    protected void runReadStage()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                Job job = this.readStage.queue.take();
+                if (this.isDiscarded(job, this.readStage))
+                    continue;
+
+                long start = System.nanoTime();
+                try
+                {
+                    job.content = job.read();
+                }
+                catch (Exception e)
+                {
+                    this.fail(job, this.readStage, e);
+                    continue;
+                }
+                this.readStage.recordCompleted(System.nanoTime() - start);
+
+                this.decodeStage.queue.put(job); // Waits while the decoders are behind.
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Logging.verbose(Logging.getMessage("TileLoadPipeline.StageInterrupted", this.readStage.getName()));
+        }
+    }
+
+    protected void runDecodeStage()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                Job job = this.decodeStage.queue.take();
+                if (this.isDiscarded(job, this.decodeStage))
+                    continue;
+
+                long start = System.nanoTime();
+                try
+                {
+                    job.result = job.decode(job.content);
+                }
+                catch (Exception e)
+                {
+                    this.fail(job, this.decodeStage, e);
+                    continue;
+                }
+                finally
+                {
+                    job.content = null; // The content is no longer needed, and may be large.
+                }
+
+                if (job.result == null)
+                {
+                    this.fail(job, this.decodeStage, null);
+                    continue;
+                }
+                this.decodeStage.recordCompleted(System.nanoTime() - start);
+
+                this.deliverStage.queue.put(job); // Waits while the GL thread is behind.
+                job.decoded();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Logging.verbose(Logging.getMessage("TileLoadPipeline.StageInterrupted", this.decodeStage.getName()));
+        }
+    }
+
+    /**
+     * Discards a load about to enter a stage if it has been cancelled or has expired.
+     *
+     * @param job   the load.
+     * @param stage the stage the load is about to enter.
+     *
+     * @return true if the load was discarded, otherwise false.
+     */
+    protected boolean isDiscarded(Job job, Stage stage)
+    {
+        if (!job.cancelled && System.currentTimeMillis() - job.requestTime <= this.expiryTime)
+            return false;
+
+        stage.numCancelled.incrementAndGet();
+        this.finish(job);
+        return true;
+    }
+
+    protected void fail(Job job, Stage stage, Exception e)
+    {
+        stage.numFailed.incrementAndGet();
+        this.finish(job);
+
+        try
+        {
+            job.failed(e);
+        }
+        catch (Exception failure)
+        {
+            Logging.error(Logging.getMessage("TileLoadPipeline.ExceptionHandlingFailure", job.key), failure);
+        }
+    }
+
+    protected void finish(Job job)
+    {
+        this.jobs.remove(job.key, job);
+        job.content = null;
+        job.result = null;
+    }
+}
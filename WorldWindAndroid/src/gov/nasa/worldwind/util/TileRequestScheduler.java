@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.geom.*;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.*;
+
+/**
+ * Collects the tile requests of every layer and elevation model during a frame, and submits them to a {@link
+ * TaskService} in one order for the whole scene. The scene controller calls {@link #beginFrame(DrawContext)} once the
+ * view is applied, and {@link #sendRequests(TaskService)} once the frame is drawn.
+ * <p/>
+ * Requests are ordered by screen-space importance rather than by the layer that made them. {@link
+ * #computePriority(Extent)} and {@link #computePriority(Sector)} give a tile the ratio of its distance from the eye to
+ * its radius, which is inversely proportional to the tile's size on screen and has the same meaning for imagery and
+ * elevations. Lower values are sent first, in the same sense as {@link Tile#getPriority()}.
+ * <p/>
+ * Each frame sends only as many requests as the task service has room for. The others are kept for later frames rather
+ * than dropped, and a request made again in a later frame takes its new priority but keeps its age. A request's
+ * priority is divided by one plus {@link gov.nasa.worldwind.avlist.AVKey#TILE_REQUEST_AGING_RATE} times the number of
+ * frames it has waited, so that a request that is never the most important is eventually sent. A request that is not
+ * made again for {@link gov.nasa.worldwind.avlist.AVKey#TILE_REQUEST_EXPIRY_TIME} milliseconds is discarded, since its
+ * tile is no longer needed.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class TileRequestScheduler
+{
+    /** A request waiting to be sent. */
+    protected static class Request
+    {
+        protected final Runnable task;
+        protected final long firstFrame;
+        protected double priority;
+        protected long lastRequestTime;
+        protected double effectivePriority;
+
+        public Request(Runnable task, long firstFrame)
+        {
+            this.task = task;
+            this.firstFrame = firstFrame;
+        }
+    }
+
+    protected static final double DEFAULT_AGING_RATE = 0.1;
+    protected static final long DEFAULT_EXPIRY_TIME = 5000;
+
+    protected static final Comparator<Request> EFFECTIVE_PRIORITY_ORDER = new Comparator<Request>()
+    {
+        public int compare(Request a, Request b)
+        {
+            return a.effectivePriority < b.effectivePriority ? -1 : (a.effectivePriority > b.effectivePriority ? 1 : 0);
+        }
+    };
+
+    protected final double agingRate;
+    protected final long expiryTime;
+    protected final Map<Runnable, Request> requests = new HashMap<Runnable, Request>(); // guarded by this
+    protected long frameNumber; // guarded by this
+    protected Vec4 eyePoint; // guarded by this
+    protected Globe globe; // guarded by this
+    protected final Vec4 point = new Vec4(); // guarded by this
+
+    /** Creates a scheduler configured by the World Wind configuration. */
+    public TileRequestScheduler()
+    {
+        this(Configuration.getDoubleValue(AVKey.TILE_REQUEST_AGING_RATE, DEFAULT_AGING_RATE),
+            Configuration.getLongValue(AVKey.TILE_REQUEST_EXPIRY_TIME, DEFAULT_EXPIRY_TIME));
+    }
+
+    /**
+     * Creates a scheduler with a specified aging rate and expiry time.
+     *
+     * @param agingRate  the fraction by which a request's priority improves for each frame it waits. 0 disables aging.
+     * @param expiryTime the time in milliseconds after which a request that has not been made again is discarded.
+     *
+     * @throws IllegalArgumentException if the aging rate is negative or the expiry time is less than 1.
+     */
+    public TileRequestScheduler(double agingRate, long expiryTime)
+    {
+        if (agingRate < 0)
+        {
+            String msg = Logging.getMessage("TileRequestScheduler.AgingRateIsInvalid", agingRate);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (expiryTime < 1)
+        {
+            String msg = Logging.getMessage("TileRequestScheduler.ExpiryTimeIsInvalid", expiryTime);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.agingRate = agingRate;
+        this.expiryTime = expiryTime;
+    }
+
+    public double getAgingRate()
+    {
+        return this.agingRate;
+    }
+
+    public long getExpiryTime()
+    {
+        return this.expiryTime;
+    }
+
+    /**
+     * Returns the number of requests waiting to be sent.
+     *
+     * @return the number of pending requests.
+     */
+    public synchronized int getNumPendingRequests()
+    {
+        return this.requests.size();
+    }
+
+    /**
+     * Starts a frame, recording the eye point and globe that tile priorities are computed from.
+     *
+     * @param dc the current draw context.
+     *
+     * @throws IllegalArgumentException if the draw context is null.
+     */
+    public synchronized void beginFrame(DrawContext dc)
+    {
+        if (dc == null)
+        {
+            String msg = Logging.getMessage("nullValue.DrawContextIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.frameNumber++;
+        this.eyePoint = dc.getView() != null ? dc.getView().getEyePoint() : null;
+        this.globe = dc.getGlobe();
+    }
+
+    /**
+     * Computes the priority of a tile with a specified extent: the ratio of the distance from the current frame's eye
+     * point to the extent's center and the extent's radius.
+     *
+     * @param extent the tile's extent.
+     *
+     * @return the tile's priority, or {@link Double#MAX_VALUE} if no frame has begun.
+     *
+     * @throws IllegalArgumentException if the extent is null.
+     */
+    public synchronized double computePriority(Extent extent)
+    {
+        if (extent == null)
+        {
+            String msg = Logging.getMessage("nullValue.ExtentIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.eyePoint == null)
+            return Double.MAX_VALUE;
+
+        return this.computePriority(this.eyePoint.distanceTo3(extent.getCenter()), extent.getRadius());
+    }
+
+    /**
+     * Computes the priority of a tile covering a specified sector. The sector is treated as a sphere at sea level,
+     * centered at the sector's centroid and reaching the sector's corners.
+     *
+     * @param sector the tile's sector.
+     *
+     * @return the tile's priority, or {@link Double#MAX_VALUE} if no frame has begun.
+     *
+     * @throws IllegalArgumentException if the sector is null.
+     */
+    public synchronized double computePriority(Sector sector)
+    {
+        if (sector == null)
+        {
+            String msg = Logging.getMessage("nullValue.SectorIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (this.eyePoint == null || this.globe == null)
+            return Double.MAX_VALUE;
+
+        LatLon centroid = sector.getCentroid();
+        this.globe.computePointFromPosition(centroid, 0, this.point);
+
+        double dLat = sector.getDeltaLatRadians();
+        double dLon = sector.getDeltaLonRadians() * Math.cos(centroid.latitude.radians);
+        double radius = 0.5 * this.globe.getRadius() * Math.sqrt(dLat * dLat + dLon * dLon);
+
+        return this.computePriority(this.eyePoint.distanceTo3(this.point), radius);
+    }
+
+    /**
+     * Adds a request to be sent at the end of the frame, or updates the priority of an equal request that is already
+     * waiting. Tasks implementing {@link PrioritizedTask} give their priority; other tasks have the lowest priority.
+     *
+     * @param task the task that loads the requested tile.
+     *
+     * @throws IllegalArgumentException if the task is null.
+     */
+    public synchronized void addRequest(Runnable task)
+    {
+        if (task == null)
+        {
+            String msg = Logging.getMessage("nullValue.TaskIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        Request request = this.requests.get(task);
+        if (request == null)
+        {
+            request = new Request(task, this.frameNumber);
+            this.requests.put(task, request);
+        }
+
+        request.priority = task instanceof PrioritizedTask ? ((PrioritizedTask) task).getPriority() : Double.MAX_VALUE;
+        request.lastRequestTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Sends the most important waiting requests to a task service, as many as it has room for. Requests the task
+     * service is already running are discarded, and expired requests are discarded without being sent.
+     *
+     * @param taskService the task service to send the requests to.
+     *
+     * @throws IllegalArgumentException if the task service is null.
+     */
+    public void sendRequests(TaskService taskService)
+    {
+        if (taskService == null)
+        {
+            String msg = Logging.getMessage("nullValue.TaskServiceIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        List<Request> ordered;
+        synchronized (this)
+        {
+            this.removeExpiredRequests(System.currentTimeMillis());
+
+            if (this.requests.isEmpty())
+                return;
+
+            ordered = new ArrayList<Request>(this.requests.size());
+            for (Request request : this.requests.values())
+            {
+                long age = Math.max(this.frameNumber - request.firstFrame, 0);
+                request.effectivePriority = request.priority / (1 + this.agingRate * age);
+                ordered.add(request);
+            }
+        }
+
+        Collections.sort(ordered, EFFECTIVE_PRIORITY_ORDER);
+
+        // The task service is given no more than it has room for, so that none of these requests evicts another.
+        int capacity = taskService.getRemainingCapacity();
+        for (int i = 0; i < ordered.size() && capacity > 0; i++)
+        {
+            Request request = ordered.get(i);
+            if (!taskService.contains(request.task))
+            {
+                taskService.runTask(request.task);
+                capacity--;
+            }
+
+            synchronized (this)
+            {
+                if (this.requests.get(request.task) == request)
+                    this.requests.remove(request.task);
+            }
+        }
+    }
+
+    /** Discards all waiting requests. */
+    public synchronized void clear()
+    {
+        this.requests.clear();
+    }
+
+    protected double computePriority(double distance, double radius)
+    {
+        return radius > 0 ? distance / radius : Double.MAX_VALUE;
+    }
+
+    // MUST BE CALLED WITHIN SYNCHRONIZED
+    protected void removeExpiredRequests(long now)
+    {
+        Iterator<Request> iter = this.requests.values().iterator();
+        while (iter.hasNext())
+        {
+            if (now - iter.next().lastRequestTime > this.expiryTime)
+                iter.remove();
+        }
+    }
+}
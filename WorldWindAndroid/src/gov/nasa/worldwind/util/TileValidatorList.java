@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 United States Government as represented by the Administrator of the
+ * National Aeronautics and Space Administration.
+ * All Rights Reserved.
+ */
+package gov.nasa.worldwind.util;
+
+import gov.nasa.worldwind.retrieve.ResponseValidator;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Maintains the HTTP validators of the cached tiles of a single level, so that an expired tile can be revalidated with
+ * a conditional request instead of being downloaded again. Tiles are identified by their tile number within the level,
+ * as in {@link AbsentTileList}. Only validators that can make a request conditional are kept. The list holds at most a
+ * fixed number of tiles, and when it is full the validators used least recently are removed first. A tile without
+ * validators is simply downloaded again when it expires.
+ * <p/>
+ * The list can be written to and read from a stream by {@link #write(java.io.DataOutput)} and {@link
+ * #read(java.io.DataInput)}, so that the validators are kept with the cached tiles from one session to the next.
+ *
+ * @author dcollins
+ * @version $Id$
+ */
+public class TileValidatorList
+{
+    /** The default maximum number of tiles the list holds. */
+    protected static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    protected final int maxEntries;
+    protected final LinkedHashMap<Long, ResponseValidator> validators;
+    protected boolean dirty;
+
+    /** Constructs a validator list that holds at most 100000 tiles. */
+    public TileValidatorList()
+    {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a validator list.
+     *
+     * @param maxEntries the maximum number of tiles the list holds. Must be greater than 0.
+     *
+     * @throws IllegalArgumentException if the maximum number of tiles is less than 1.
+     */
+    public TileValidatorList(int maxEntries)
+    {
+        if (maxEntries < 1)
+        {
+            String msg = Logging.getMessage("generic.SizeIsInvalid", maxEntries);
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        this.maxEntries = maxEntries;
+        this.validators = new LinkedHashMap<Long, ResponseValidator>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ResponseValidator> eldest)
+            {
+                return this.size() > TileValidatorList.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the validators of a tile.
+     *
+     * @param tileNumber the tile in question.
+     *
+     * @return the tile's validators, or null if the list has none for the tile.
+     */
+    public synchronized ResponseValidator getValidator(long tileNumber)
+    {
+        return this.validators.get(tileNumber);
+    }
+
+    /**
+     * Specifies the validators of a tile. Validators that cannot make a request conditional remove the tile from the
+     * list.
+     *
+     * @param tileNumber the tile whose validators are specified. Negative tile numbers are ignored.
+     * @param validator  the tile's validators. May be null.
+     */
+    public synchronized void setValidator(long tileNumber, ResponseValidator validator)
+    {
+        if (tileNumber < 0)
+            return;
+
+        if (validator == null || !validator.isConditional())
+        {
+            this.removeValidator(tileNumber);
+            return;
+        }
+
+        if (!validator.equals(this.validators.put(tileNumber, validator)))
+            this.dirty = true;
+    }
+
+    /**
+     * Removes the validators of a tile.
+     *
+     * @param tileNumber the tile whose validators are removed.
+     */
+    public synchronized void removeValidator(long tileNumber)
+    {
+        if (this.validators.remove(tileNumber) != null)
+            this.dirty = true;
+    }
+
+    /**
+     * Returns the number of tiles in the list.
+     *
+     * @return the number of tiles in the list.
+     */
+    public synchronized int getNumEntries()
+    {
+        return this.validators.size();
+    }
+
+    /**
+     * Indicates whether the list has changed since it was last written or read.
+     *
+     * @return true if the list has unwritten changes, otherwise false.
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty;
+    }
+
+    /** Removes every tile from the list. */
+    public synchronized void clear()
+    {
+        this.validators.clear();
+        this.dirty = true;
+    }
+
+    /**
+     * Writes the validators in the list to a stream, least recently used first, and marks the list as not dirty.
+     *
+     * @param out the stream to write to.
+     *
+     * @throws IOException              if the stream cannot be written.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized void write(DataOutput out) throws IOException
+    {
+        if (out == null)
+        {
+            String msg = Logging.getMessage("nullValue.OutputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        out.writeInt(this.validators.size());
+
+        for (Map.Entry<Long, ResponseValidator> entry : this.validators.entrySet())
+        {
+            ResponseValidator validator = entry.getValue();
+            out.writeLong(entry.getKey());
+            out.writeUTF(validator.getETag() != null ? validator.getETag() : "");
+            out.writeLong(validator.getLastModified());
+            out.writeLong(validator.getExpiration());
+        }
+
+        this.dirty = false;
+    }
+
+    /**
+     * Reads validators written by {@link #write(java.io.DataOutput)} and adds them to the list. Tiles already in the
+     * list keep their current validators.
+     *
+     * @param in the stream to read from.
+     *
+     * @throws IOException              if the stream cannot be read.
+     * @throws IllegalArgumentException if the stream is null.
+     */
+    public synchronized void read(DataInput in) throws IOException
+    {
+        if (in == null)
+        {
+            String msg = Logging.getMessage("nullValue.InputStreamIsNull");
+            Logging.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            long tileNumber = in.readLong();
+            String eTag = in.readUTF();
+            long lastModified = in.readLong();
+            long expiration = in.readLong();
+
+            if (tileNumber < 0 || this.validators.containsKey(tileNumber))
+                continue;
+
+            ResponseValidator validator = new ResponseValidator(eTag, lastModified, expiration);
+            if (validator.isConditional())
+                this.validators.put(tileNumber, validator);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2013 Trilogis S.r.l.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package it.trilogis.android.ww;
+
+import gov.nasa.worldwind.retrieve.BasicHTTPTransport;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+
+/**
+ * HTTP transport that opens World Wind's connections with the bundled OkHttp client instead of the platform's
+ * HttpURLConnection. OkHttp keeps its own pool of kept-alive connections, and multiplexes concurrent requests over a
+ * single connection to servers that support SPDY. The per-host connection limit is still applied by
+ * {@link BasicHTTPTransport}. Selected by the HTTPTransportClassName property of config/wwandroiddemo.xml.
+ */
+public class OkHttpTransport extends BasicHTTPTransport {
+    /** How long an idle connection is kept alive, in milliseconds. */
+    protected static final long KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    protected OkHttpClient client;
+
+    @Override
+    protected void configureConnectionPool() {
+        // Called by the superclass constructor, once the connection limits are known.
+        this.client = new OkHttpClient().setConnectionPool(new ConnectionPool(this.getMaxIdleConnections(), KEEP_ALIVE_DURATION));
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(URL url, Proxy proxy) throws IOException {
+        if (proxy == null) return this.client.open(url);
+
+        // The client's proxy is shared by every request, so use a client for this request that shares the pool.
+        return new OkHttpClient().setConnectionPool(this.client.getConnectionPool()).setProxy(proxy).open(url);
+    }
+}
@@ -20,6 +20,7 @@ import gov.nasa.worldwind.Model;
 import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.WorldWindowGLSurfaceView;
 import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.cache.MemoryBudgetCoordinator;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.globes.Globe;
@@ -106,6 +107,14 @@ public class WorldWindowActivity extends Activity {
         this.setupTextViews();
     }
 
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        // Shrink the World Wind memory caches instead of letting the system kill the application.
+        MemoryBudgetCoordinator coordinator = WorldWind.getMemoryBudgetCoordinator();
+        if (coordinator != null) coordinator.onLowMemory();
+    }
+
     @Override
     protected void onPause() {
         super.onPause();